@@ -15,7 +15,9 @@
  */
 package com.google.idea.blaze.android.editor;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.idea.blaze.android.util.ResourcePsiElementFinder;
 import com.google.idea.blaze.base.lang.buildfile.psi.util.PsiUtils;
@@ -38,9 +40,11 @@ import com.google.idea.blaze.base.sync.workspace.WorkspacePathResolver;
 import com.google.idea.blaze.base.sync.workspace.WorkspacePathResolverProvider;
 import com.google.idea.blaze.base.syncstatus.SyncStatusContributor;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.LowMemoryWatcher;
 import com.intellij.openapi.vfs.LocalFileSystem;
@@ -51,9 +55,11 @@ import com.intellij.serviceContainer.NonInjectable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /** Class to log unresolved resource symbols per project. */
@@ -70,10 +76,16 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
   private final Project project;
   private SyncMode lastSyncMode;
   private SyncResult lastSyncResult;
-  private boolean isSyncing;
+  private volatile boolean isSyncing;
 
-  /** Map from file path to the list of highlights for unresolved resource references. */
-  private final Map<String, List<HighlightInfo>> fileToHighlightStats;
+  /**
+   * Map from file path to the highlights for unresolved resource references, as of the PSI
+   * modification stamp the file was last fully highlighted at.
+   */
+  private final Map<String, FileResult> fileToHighlightStats = new ConcurrentHashMap<>();
+
+  /** Time spent processing highlights since the stats were last logged. */
+  private final AtomicLong processingNanos = new AtomicLong();
 
   ProjectUnresolvedResourceStatsCollector(Project project) {
     this(
@@ -93,7 +105,6 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
       FileTypeRegistry fileTypeRegistry) {
 
     this.project = project;
-    fileToHighlightStats = Collections.synchronizedMap(new HashMap<>());
 
     this.workspacePathResolverProvider = workspacePathResolverProvider;
     this.blazeProjectDataManager = blazeProjectDataManager;
@@ -106,13 +117,21 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
   /**
    * Returns whether the collector wants to process the file.
    *
-   * <p>Checks to see if information about the file is already present, and return true only if the
-   * collector has no information on the file. Whether a resource reference resolves does not change
-   * very frequently without syncing so we only collect information about a file once per sync.
+   * <p>Returns true only if the collector has no information on the file as of its current PSI
+   * modification stamp. Whether a resource reference resolves does not change very frequently
+   * without syncing, so an unmodified file is only processed once per sync. Files aren't processed
+   * while indexing, when references can't be resolved.
    */
   boolean canProcessFile(PsiFile psiFile) {
+    if (isSyncing || DumbService.isDumb(project)) {
+      return false;
+    }
     String filePath = PsiUtils.getFilePath(psiFile);
-    return filePath != null && !fileToHighlightStats.containsKey(filePath);
+    if (filePath == null) {
+      return false;
+    }
+    FileResult result = fileToHighlightStats.get(filePath);
+    return result == null || result.modificationStamp != psiFile.getModificationStamp();
   }
 
   void processHighlight(
@@ -121,30 +140,64 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
       return;
     }
 
-    String filePath = getFilePath(psiElement);
+    PsiFile psiFile = psiElement.getContainingFile();
+    String filePath = psiFile != null ? PsiUtils.getFilePath(psiFile) : null;
     if (filePath == null) {
       return;
     }
 
+    long startNanos = System.nanoTime();
     PsiElement resourceExpression = ResourcePsiElementFinder.getFullExpression(psiElement);
-    if (resourceExpression == null) {
+    if (resourceExpression != null) {
+      HighlightInfo fileHighlightInfo =
+          HighlightInfo.builder()
+              .setText(resourceExpression.getText())
+              .setSeverity(HighlightInfo.convertHighlightSeverity(highlightInfo.getSeverity()))
+              .setType(HighlightInfo.convertHighlightInfoType(highlightInfo.type))
+              .setStartOffset(highlightInfo.startOffset)
+              .setEndOffset(highlightInfo.endOffset)
+              .build();
+      getCurrentResult(filePath, psiFile.getModificationStamp())
+          .highlightInfos
+          .add(fileHighlightInfo);
+    }
+    processingNanos.addAndGet(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Records that the file has been fully highlighted at its current modification stamp, so it isn't
+   * processed again until it's modified.
+   */
+  void onFileProcessed(PsiFile psiFile) {
+    if (isSyncing) {
       return;
     }
+    String filePath = PsiUtils.getFilePath(psiFile);
+    if (filePath != null) {
+      getCurrentResult(filePath, psiFile.getModificationStamp());
+    }
+  }
 
-    com.google.idea.blaze.base.logging.utils.HighlightInfo fileHighlightInfo =
-        com.google.idea.blaze.base.logging.utils.HighlightInfo.builder()
-            .setText(resourceExpression.getText())
-            .setSeverity(HighlightInfo.convertHighlightSeverity(highlightInfo.getSeverity()))
-            .setType(HighlightInfo.convertHighlightInfoType(highlightInfo.type))
-            .setStartOffset(highlightInfo.startOffset)
-            .setEndOffset(highlightInfo.endOffset)
-            .build();
+  /** Returns the result for the file, discarding any collected at an earlier modification stamp. */
+  private FileResult getCurrentResult(String filePath, long modificationStamp) {
+    return fileToHighlightStats.compute(
+        filePath,
+        (path, result) ->
+            result != null && result.modificationStamp == modificationStamp
+                ? result
+                : new FileResult(modificationStamp));
+  }
 
-    fileToHighlightStats.computeIfAbsent(filePath, k -> new ArrayList<>()).add(fileHighlightInfo);
+  /** Returns the unresolved resource highlights currently held for the file. */
+  @VisibleForTesting
+  ImmutableList<HighlightInfo> getHighlightInfos(PsiFile psiFile) {
+    String filePath = PsiUtils.getFilePath(psiFile);
+    FileResult result = filePath != null ? fileToHighlightStats.get(filePath) : null;
+    return result != null ? result.getHighlightInfos() : ImmutableList.of();
   }
 
   void onSyncStart(SyncMode syncMode) {
-    logStatsAndClearMap();
+    logStatsAndClearMap(/* inBackground= */ true);
     lastSyncMode = syncMode;
     lastSyncResult = null;
     isSyncing = true;
@@ -163,7 +216,7 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
    */
   @Override
   public void dispose() {
-    logStatsAndClearMap();
+    logStatsAndClearMap(/* inBackground= */ false);
   }
 
   /**
@@ -174,21 +227,76 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
    * thread.
    *
    * <p>Map is cleared after flushing to prevent accidental double logging.
+   *
+   * @param inBackground whether to build and log the stats on a pooled thread, once indexing is
+   *     complete, rather than on the calling thread
    */
-  private synchronized void logStatsAndClearMap() {
+  private synchronized void logStatsAndClearMap(boolean inBackground) {
     if (fileToHighlightStats.isEmpty() || lastSyncResult == null) {
       return;
     }
-    HighlightStats highlightStats =
-        HighlightStats.builder()
-            .setGroup(HighlightStats.Group.ANDROID_RESOURCE_MISSING_REF)
-            .setLastSyncMode(lastSyncMode)
-            .setLastSyncResult(lastSyncResult)
-            .setFileHighlights(getAllFileHighlights())
-            .build();
-
-    EventLoggingService.getInstance().logHighlightStats(highlightStats);
+    ImmutableMap<String, FileResult> fileResults = ImmutableMap.copyOf(fileToHighlightStats);
+    long highlightProcessingNanos = processingNanos.getAndSet(0);
+    SyncMode syncMode = lastSyncMode;
+    SyncResult syncResult = lastSyncResult;
     clearMap();
+
+    Runnable logStats =
+        () -> {
+          if (project.isDisposed()) {
+            return;
+          }
+          logStats(fileResults, highlightProcessingNanos, syncMode, syncResult);
+        };
+    if (inBackground) {
+      ApplicationManager.getApplication()
+          .executeOnPooledThread(
+              () -> DumbService.getInstance(project).runReadActionInSmartMode(logStats));
+    } else {
+      logStats.run();
+    }
+  }
+
+  private void logStats(
+      ImmutableMap<String, FileResult> fileResults,
+      long highlightProcessingNanos,
+      SyncMode syncMode,
+      SyncResult syncResult) {
+    long startNanos = System.nanoTime();
+    ImmutableList.Builder<FileHighlights> listBuilder = new ImmutableList.Builder<>();
+    fileResults.forEach(
+        (filePath, result) -> {
+          List<HighlightInfo> highlightInfos = result.getHighlightInfos();
+          if (highlightInfos.isEmpty()) {
+            return;
+          }
+          FileHighlights fileHighlights = createFileHighlights(filePath, highlightInfos);
+          if (fileHighlights != null) {
+            listBuilder.add(fileHighlights);
+          }
+        });
+    ImmutableList<FileHighlights> fileHighlights = listBuilder.build();
+
+    if (!fileHighlights.isEmpty()) {
+      HighlightStats highlightStats =
+          HighlightStats.builder()
+              .setGroup(HighlightStats.Group.ANDROID_RESOURCE_MISSING_REF)
+              .setLastSyncMode(syncMode)
+              .setLastSyncResult(syncResult)
+              .setFileHighlights(fileHighlights)
+              .build();
+      EventLoggingService.getInstance().logHighlightStats(highlightStats);
+    }
+    EventLoggingService.getInstance()
+        .logEvent(
+            ProjectUnresolvedResourceStatsCollector.class,
+            "UnresolvedResourceStats",
+            ImmutableMap.of(
+                "filesProcessed", Integer.toString(fileResults.size()),
+                "filesWithUnresolvedReferences", Integer.toString(fileHighlights.size()),
+                "highlightProcessingMillis",
+                    Long.toString(TimeUnit.NANOSECONDS.toMillis(highlightProcessingNanos))),
+            System.nanoTime() - startNanos);
   }
 
   /**
@@ -199,21 +307,6 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
     fileToHighlightStats.clear();
   }
 
-  private ImmutableList<FileHighlights> getAllFileHighlights() {
-    ImmutableList.Builder<FileHighlights> listBuilder = new ImmutableList.Builder<>();
-    synchronized (fileToHighlightStats) {
-      fileToHighlightStats.forEach(
-          (filePath, highlightInfos) -> {
-            FileHighlights fileHighlights = createFileHighlights(filePath, highlightInfos);
-            if (fileHighlights != null) {
-              listBuilder.add(fileHighlights);
-            }
-          });
-    }
-
-    return listBuilder.build();
-  }
-
   @Nullable
   private FileHighlights createFileHighlights(String filePath, List<HighlightInfo> highlightInfos) {
     File file = new File(filePath);
@@ -254,13 +347,20 @@ class ProjectUnresolvedResourceStatsCollector implements Disposable {
         .build();
   }
 
-  @Nullable
-  private static String getFilePath(PsiElement psiElement) {
-    PsiFile psiFile = psiElement.getContainingFile();
-    if (psiFile == null) {
-      return null;
+  /** The unresolved resource references in a file, as of a particular modification stamp. */
+  private static class FileResult {
+    final long modificationStamp;
+    final List<HighlightInfo> highlightInfos = Collections.synchronizedList(new ArrayList<>());
+
+    FileResult(long modificationStamp) {
+      this.modificationStamp = modificationStamp;
+    }
+
+    ImmutableList<HighlightInfo> getHighlightInfos() {
+      synchronized (highlightInfos) {
+        return ImmutableList.copyOf(highlightInfos);
+      }
     }
-    return PsiUtils.getFilePath(psiFile);
   }
 
   /**
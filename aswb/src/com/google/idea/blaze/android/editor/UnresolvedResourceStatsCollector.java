@@ -68,4 +68,13 @@ public class UnresolvedResourceStatsCollector implements BlazeHighlightStatsColl
     ProjectUnresolvedResourceStatsCollector.getInstance(psiElement.getProject())
         .processHighlight(psiElement, highlightInfo);
   }
+
+  @Override
+  public void onFileProcessed(PsiFile psiFile) {
+    if (!enabled.getValue()) {
+      return;
+    }
+    ProjectUnresolvedResourceStatsCollector.getInstance(psiFile.getProject())
+        .onFileProcessed(psiFile);
+  }
 }
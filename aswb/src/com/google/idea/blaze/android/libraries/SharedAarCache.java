@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.libraries;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
+import com.google.idea.blaze.base.command.buildresult.BlazeArtifact.LocalFileArtifact;
+import com.google.idea.blaze.base.command.buildresult.RemoteOutputArtifact;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * An application-wide cache of unpacked AARs, keyed by a digest of each AAR's contents, so that an
+ * AAR shared between several projects is only unpacked once.
+ *
+ * <p>AARs are streamed straight from the artifact, and everything but their jars is extracted.
+ * {@link UnpackedAars} then links (or, failing that, copies) the unpacked files into each project's
+ * AAR directory.
+ */
+final class SharedAarCache {
+  private static final Logger logger = Logger.getInstance(SharedAarCache.class);
+
+  /** Written last, holding how long the extraction took. */
+  private static final String COMPLETE_MARKER = ".complete";
+
+  /** Entries which haven't been used by any project for this long are deleted. */
+  private static final long MAX_UNUSED_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+  private static final SharedAarCache instance =
+      new SharedAarCache(new File(PathManager.getSystemPath(), "blaze/unpacked_aars"));
+
+  private static final int MAX_LOCAL_DIGESTS = 10_000;
+
+  private final Path cacheDir;
+
+  /**
+   * Digests of local AARs, keyed by path, so an AAR is only hashed again once its timestamp or
+   * size changes.
+   */
+  private final Cache<File, LocalDigest> localDigests =
+      CacheBuilder.newBuilder().maximumSize(MAX_LOCAL_DIGESTS).build();
+
+  @VisibleForTesting
+  SharedAarCache(File cacheDir) {
+    this.cacheDir = cacheDir.toPath();
+  }
+
+  static SharedAarCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns a directory holding the unpacked contents of the given AAR, extracting it if no
+   * project has done so already.
+   */
+  Path getOrExtract(BlazeArtifact aar, Stats stats) throws IOException {
+    Path entryDir = cacheDir.resolve(digest(aar));
+    Path marker = entryDir.resolve(COMPLETE_MARKER);
+    if (Files.exists(marker)) {
+      Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+      stats.aarsReused.incrementAndGet();
+      stats.millisSaved.addAndGet(readExtractionMillis(marker));
+      return entryDir;
+    }
+
+    long startMillis = System.currentTimeMillis();
+    Path tmpDir = cacheDir.resolve(entryDir.getFileName() + ".tmp-" + UUID.randomUUID());
+    Files.createDirectories(tmpDir);
+    try {
+      try (InputStream in = aar.getInputStream()) {
+        stats.bytesExtracted.addAndGet(extract(in, tmpDir));
+      }
+      long elapsedMillis = System.currentTimeMillis() - startMillis;
+      Files.write(
+          tmpDir.resolve(COMPLETE_MARKER),
+          Long.toString(elapsedMillis).getBytes(StandardCharsets.UTF_8));
+      moveIntoPlace(tmpDir, entryDir);
+      stats.aarsExtracted.incrementAndGet();
+      return entryDir;
+    } finally {
+      if (Files.exists(tmpDir)) {
+        MoreFiles.deleteRecursively(tmpDir, RecursiveDeleteOption.ALLOW_INSECURE);
+      }
+    }
+  }
+
+  /**
+   * Atomically moves a freshly extracted entry into place. If the entry already exists it was
+   * either extracted concurrently (e.g. by another project), in which case that copy is kept, or
+   * left incomplete (e.g. partially deleted), in which case it's replaced.
+   */
+  private static void moveIntoPlace(Path tmpDir, Path entryDir) throws IOException {
+    Path marker = entryDir.resolve(COMPLETE_MARKER);
+    try {
+      Files.move(tmpDir, entryDir, StandardCopyOption.ATOMIC_MOVE);
+      return;
+    } catch (IOException e) {
+      // Depending on the platform, an existing entry is reported as a
+      // FileAlreadyExistsException, a DirectoryNotEmptyException or a plain FileSystemException.
+      if (Files.exists(marker)) {
+        return;
+      }
+      if (!Files.exists(entryDir)) {
+        throw e;
+      }
+    }
+    try {
+      MoreFiles.deleteRecursively(entryDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    } catch (NoSuchFileException e) {
+      // removed concurrently
+    }
+    try {
+      Files.move(tmpDir, entryDir, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      if (!Files.exists(marker)) {
+        throw e;
+      }
+    }
+  }
+
+  /** Deletes any entries which haven't been used recently. */
+  void removeUnusedEntries() {
+    if (!Files.isDirectory(cacheDir)) {
+      return;
+    }
+    long cutoff = System.currentTimeMillis() - MAX_UNUSED_MILLIS;
+    List<Path> entries;
+    try (Stream<Path> children = Files.list(cacheDir)) {
+      entries = children.collect(Collectors.toList());
+    } catch (IOException e) {
+      logger.warn("Failed to list shared AAR cache " + cacheDir, e);
+      return;
+    }
+    for (Path entry : entries) {
+      try {
+        Path marker = entry.resolve(COMPLETE_MARKER);
+        long lastUsed =
+            Files.exists(marker)
+                ? Files.getLastModifiedTime(marker).toMillis()
+                : Files.getLastModifiedTime(entry).toMillis();
+        if (lastUsed < cutoff) {
+          MoreFiles.deleteRecursively(entry, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+      } catch (IOException e) {
+        logger.warn("Failed to remove unused AAR from the shared cache: " + entry, e);
+      }
+    }
+  }
+
+  /** Returns true if the given AAR entry should be extracted. Jars are synchronized separately. */
+  @VisibleForTesting
+  static boolean shouldExtract(String entryName) {
+    return !entryName.endsWith(".jar");
+  }
+
+  /** Extracts the needed entries from a zip stream, returning the number of bytes written. */
+  @VisibleForTesting
+  static long extract(InputStream in, Path destination) throws IOException {
+    long bytesWritten = 0;
+    Path root = destination.normalize();
+    ZipInputStream zip = new ZipInputStream(in);
+    for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+      if (entry.isDirectory() || !shouldExtract(entry.getName())) {
+        continue;
+      }
+      Path file = root.resolve(entry.getName()).normalize();
+      if (!file.startsWith(root)) {
+        throw new IOException("AAR entry is outside the target directory: " + entry.getName());
+      }
+      Files.createDirectories(file.getParent());
+      bytesWritten += Files.copy(zip, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return bytesWritten;
+  }
+
+  /**
+   * Returns a digest of the AAR's contents. Remote artifacts already carry one; local files are
+   * hashed, unless they're unchanged since they were last hashed.
+   */
+  private String digest(BlazeArtifact aar) throws IOException {
+    if (aar instanceof RemoteOutputArtifact) {
+      return Hashing.sha256()
+          .hashString(((RemoteOutputArtifact) aar).getHashId(), StandardCharsets.UTF_8)
+          .toString();
+    }
+    if (aar instanceof LocalFileArtifact) {
+      File file = ((LocalFileArtifact) aar).getFile();
+      long lastModified = file.lastModified();
+      long length = file.length();
+      LocalDigest cached = localDigests.getIfPresent(file);
+      if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+        return cached.digest;
+      }
+      String digest = MoreFiles.asByteSource(file.toPath()).hash(Hashing.sha256()).toString();
+      if (lastModified != 0) {
+        localDigests.put(file, new LocalDigest(lastModified, length, digest));
+      }
+      return digest;
+    }
+    throw new IOException("Unhandled BlazeArtifact type: " + aar.getClass());
+  }
+
+  @VisibleForTesting
+  int localDigestCount() {
+    return (int) localDigests.size();
+  }
+
+  private static long readExtractionMillis(Path marker) {
+    try {
+      return Long.parseLong(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim());
+    } catch (IOException | NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /** The digest of a local AAR, along with the file state it was computed from. */
+  private static final class LocalDigest {
+    final long lastModified;
+    final long length;
+    final String digest;
+
+    LocalDigest(long lastModified, long length, String digest) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.digest = digest;
+    }
+  }
+
+  /** Counters describing the work done while synchronizing unpacked AARs. */
+  static final class Stats {
+    final AtomicInteger aarsExtracted = new AtomicInteger();
+    final AtomicInteger aarsReused = new AtomicInteger();
+    final AtomicLong bytesExtracted = new AtomicLong();
+    /** The time originally taken to extract the reused AARs. */
+    final AtomicLong millisSaved = new AtomicLong();
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d unpacked (%d bytes extracted), %d reused from the shared cache (~%d ms saved)",
+          aarsExtracted.get(), bytesExtracted.get(), aarsReused.get(), millisSaved.get());
+    }
+  }
+}
@@ -22,8 +22,11 @@ import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import com.android.SdkConstants;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.android.sync.model.AarLibrary;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact.LocalFileArtifact;
@@ -36,7 +39,6 @@ import com.google.idea.blaze.base.io.FileOperationProvider;
 import com.google.idea.blaze.base.model.BlazeLibrary;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.RemoteOutputArtifacts;
-import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.google.idea.blaze.base.projectview.ProjectViewManager;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
@@ -53,7 +55,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.PathUtil;
-import com.intellij.util.io.ZipUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -71,6 +73,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
 /**
@@ -95,6 +98,13 @@ import javax.annotation.Nullable;
 public class UnpackedAars {
   private static final Logger logger = Logger.getInstance(UnpackedAars.class);
 
+  private static final int MAX_IO_THREADS = 8;
+
+  /** Bounds the number of AARs unpacked concurrently, since this is mostly disk I/O. */
+  private static final ListeningExecutorService executor =
+      MoreExecutors.listeningDecorator(
+          AppExecutorUtil.createBoundedApplicationPoolExecutor("UnpackedAars", MAX_IO_THREADS));
+
   private final File cacheDir;
 
   /** The state of the cache as of the last call to {@link #readFileState}. */
@@ -176,14 +186,29 @@ public class UnpackedAars {
       }
 
       // update cache files, and remove files if required
-      List<ListenableFuture<?>> futures = new ArrayList<>(copyLocally(projectState, updatedKeys));
+      SharedAarCache.Stats stats = new SharedAarCache.Stats();
+      List<ListenableFuture<?>> futures =
+          new ArrayList<>(copyLocally(projectState, updatedKeys, stats));
       if (removeMissingFiles) {
         futures.addAll(deleteCacheEntries(removedKeys));
       }
 
       Futures.allAsList(futures).get();
       if (!updatedKeys.isEmpty()) {
-        context.output(PrintOutput.log(String.format("Copied %d AARs", updatedKeys.size())));
+        context.output(
+            PrintOutput.log(String.format("Copied %d AARs: %s", updatedKeys.size(), stats)));
+        Futures.addCallback(
+            executor.submit(() -> SharedAarCache.getInstance().removeUnusedEntries()),
+            new FutureCallback<Object>() {
+              @Override
+              public void onSuccess(@Nullable Object result) {}
+
+              @Override
+              public void onFailure(Throwable t) {
+                logger.warn("Failed to clean up the shared AAR cache", t);
+              }
+            },
+            MoreExecutors.directExecutor());
       }
       if (!removedKeys.isEmpty()) {
         context.output(PrintOutput.log(String.format("Removed %d AARs", removedKeys.size())));
@@ -410,16 +435,18 @@ public class UnpackedAars {
   }
 
   private Collection<ListenableFuture<?>> copyLocally(
-      ImmutableMap<String, AarAndJar> toCache, Set<String> updatedKeys) {
+      ImmutableMap<String, AarAndJar> toCache,
+      Set<String> updatedKeys,
+      SharedAarCache.Stats stats) {
     FileOperationProvider ops = FileOperationProvider.getInstance();
     List<ListenableFuture<?>> futures = new ArrayList<>();
     updatedKeys.forEach(
-        key ->
-            futures.add(FetchExecutor.EXECUTOR.submit(() -> copyLocally(ops, toCache.get(key)))));
+        key -> futures.add(executor.submit(() -> copyLocally(ops, toCache.get(key), stats))));
     return futures;
   }
 
-  private void copyLocally(FileOperationProvider ops, AarAndJar aarAndJar) {
+  private void copyLocally(
+      FileOperationProvider ops, AarAndJar aarAndJar, SharedAarCache.Stats stats) {
     String cacheKey = cacheKeyForAar(aarAndJar.aar);
     File aarDir = aarDirForKey(cacheKey);
     try {
@@ -427,13 +454,8 @@ public class UnpackedAars {
         ops.deleteRecursively(aarDir);
       }
       ops.mkdirs(aarDir);
-      // TODO(brendandouglas): decompress via ZipInputStream so we don't require a local file
-      File toCopy = getOrCreateLocalFile(aarAndJar.aar);
-      ZipUtil.extract(
-          toCopy,
-          aarDir,
-          // Skip jars. The merged jar will be synchronized by JarTraits.
-          (dir, name) -> !name.endsWith(".jar"));
+      Path unpackedAar = SharedAarCache.getInstance().getOrExtract(aarAndJar.aar, stats);
+      linkOrCopyContents(unpackedAar, aarDir.toPath());
 
       createStampFile(ops, aarDir, aarAndJar.aar);
 
@@ -451,6 +473,36 @@ public class UnpackedAars {
     }
   }
 
+  /**
+   * Hard links each file under {@code source} into {@code destination}, falling back to copying
+   * if links aren't supported (e.g. the directories are on different file systems).
+   */
+  private static void linkOrCopyContents(Path source, Path destination) throws IOException {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(source)) {
+      files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    boolean link = true;
+    for (Path file : files) {
+      Path relativePath = source.relativize(file);
+      if (relativePath.getNameCount() == 1 && relativePath.toString().startsWith(".")) {
+        // the shared cache's own bookkeeping
+        continue;
+      }
+      Path target = destination.resolve(relativePath);
+      Files.createDirectories(target.getParent());
+      if (link) {
+        try {
+          Files.createLink(target, file);
+          continue;
+        } catch (IOException | UnsupportedOperationException e) {
+          link = false;
+        }
+      }
+      Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
   private static void createStampFile(
       FileOperationProvider fileOps, File aarDir, BlazeArtifact aar) {
     File stampFile = new File(aarDir, STAMP_FILE_NAME);
@@ -474,7 +526,7 @@ public class UnpackedAars {
     return cacheKeys.stream()
         .map(
             key ->
-                FetchExecutor.EXECUTOR.submit(
+                executor.submit(
                     () -> {
                       try {
                         ops.deleteRecursively(aarDirForKey(key));
@@ -484,20 +536,4 @@ public class UnpackedAars {
                     }))
         .collect(toImmutableList());
   }
-
-  /** Returns a locally-accessible file mirroring the contents of this {@link BlazeArtifact}. */
-  private static File getOrCreateLocalFile(BlazeArtifact artifact) throws IOException {
-    if (artifact instanceof LocalFileArtifact) {
-      return ((LocalFileArtifact) artifact).getFile();
-    }
-    File tmpFile =
-        FileUtil.createTempFile(
-            "local-aar-file",
-            Integer.toHexString(artifactKey(artifact).hashCode()),
-            /* deleteOnExit= */ true);
-    try (InputStream stream = artifact.getInputStream()) {
-      Files.copy(stream, Paths.get(tmpFile.getPath()), StandardCopyOption.REPLACE_EXISTING);
-      return tmpFile;
-    }
-  }
 }
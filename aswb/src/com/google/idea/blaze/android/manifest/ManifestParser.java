@@ -16,12 +16,18 @@
 package com.google.idea.blaze.android.manifest;
 
 import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_ENABLED;
+import static com.android.SdkConstants.ATTR_EXPORTED;
 import static com.android.SdkConstants.ATTR_NAME;
+import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
 import static com.android.xml.AndroidManifest.ATTRIBUTE_PACKAGE;
+import static com.android.xml.AndroidManifest.NODE_ACTION;
 import static com.android.xml.AndroidManifest.NODE_ACTIVITY;
 import static com.android.xml.AndroidManifest.NODE_ACTIVITY_ALIAS;
 import static com.android.xml.AndroidManifest.NODE_APPLICATION;
+import static com.android.xml.AndroidManifest.NODE_CATEGORY;
 import static com.android.xml.AndroidManifest.NODE_INSTRUMENTATION;
+import static com.android.xml.AndroidManifest.NODE_INTENT;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
@@ -31,26 +37,32 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import javax.annotation.Nullable;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /** Parses manifests from input streams. */
 public class ManifestParser {
   private static final Logger log = Logger.getInstance(ManifestParser.class);
 
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
   public static ManifestParser getInstance(Project project) {
     return ServiceManager.getService(project, ManifestParser.class);
   }
 
   /** Container class for common manifest attributes required by the blaze plugin. */
-  public static class ParsedManifest {
+  public static class ParsedManifest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Package name of the application and should always be non-null in normal cases. A null package
      * name indicates something went wrong when parsing the manifest. E.g. Invalid manifest.
@@ -85,87 +97,200 @@ public class ManifestParser {
    *
    * <p>An invalid manifest is anything that could not be parsed by the parser, such as a malformed
    * manifest.
+   *
+   * <p>The manifest is streamed, and only the elements needed to populate {@link ParsedManifest}
+   * are read.
    */
+  @Nullable
   public static ParsedManifest parseManifestFromInputStream(InputStream inputStream)
       throws IOException {
-    Element manifestRootElement = getManifestRootElementFromInputStream(inputStream);
-    if (manifestRootElement == null) {
+    XMLStreamReader reader = null;
+    try {
+      reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+      return parseManifest(reader);
+    } catch (XMLStreamException e) {
+      if (e.getNestedException() instanceof IOException) {
+        throw (IOException) e.getNestedException();
+      }
+      log.warn("Could not parse manifest XML: " + e.getMessage());
       return null;
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore, the underlying stream is closed by the caller
+        }
+      }
     }
-    return parseManifestElement(manifestRootElement);
   }
 
-  @Nullable
-  private static Element getManifestRootElementFromInputStream(InputStream input)
-      throws IOException {
-    try {
-      DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-      dbf.setNamespaceAware(true);
-      DocumentBuilder db = dbf.newDocumentBuilder();
-      Document doc = db.parse(input);
-      return doc.getDocumentElement();
-    } catch (ParserConfigurationException e) {
-      log.warn("Error in manifest parser: " + e.getMessage());
-    } catch (SAXException e) {
-      log.warn("Could not parse manifest XML: " + e.getMessage());
-    }
-    return null;
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
   }
 
+  /**
+   * Reads the manifest package, the {@code <instrumentation>} elements, and the {@code <activity>}
+   * and {@code <activity-alias>} elements of {@code <application>}, skipping everything else.
+   */
   @Nullable
-  private static ParsedManifest parseManifestElement(Element manifestRootElement) {
-    String packageName =
-        Strings.emptyToNull(manifestRootElement.getAttributeNS(null, ATTRIBUTE_PACKAGE));
-    if (packageName == null) {
-      return null; // Return early because a manifest with no package name is not a valid manifest.
-    }
-
+  private static ParsedManifest parseManifest(XMLStreamReader reader) throws XMLStreamException {
+    String packageName = null;
     ImmutableList.Builder<String> instrumentationClassNames = ImmutableList.builder();
-    ImmutableList.Builder<Element> activities = new ImmutableList.Builder<>();
-    ImmutableList.Builder<Element> activityAliases = new ImmutableList.Builder<>();
-    try {
-      Node node = manifestRootElement.getFirstChild();
-      while (node != null) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-          String nodeName = node.getNodeName();
-
-          if (NODE_APPLICATION.equals(nodeName)) {
-            // Extract <activity> and <activity-alias> elements from <application>
-            Node child = node.getFirstChild();
-            while (child != null) {
-              if (child.getNodeType() == Node.ELEMENT_NODE) {
-                String childNodeName = child.getNodeName();
-
-                if (NODE_ACTIVITY.equals(childNodeName)) {
-                  activities.add((Element) child);
-                } else if (NODE_ACTIVITY_ALIAS.equals(childNodeName)) {
-                  activityAliases.add((Element) child);
-                }
-              }
-              child = child.getNextSibling();
-            }
-          } else if (NODE_INSTRUMENTATION.equals(nodeName)) {
-            // Extract instrumentation class names from <instrumentation>
-            String name = ((Element) node).getAttributeNS(ANDROID_URI, ATTR_NAME);
-            if (name != null) {
-              instrumentationClassNames.add(name);
-            }
-          }
-        }
+    List<ParsedActivity> activities = new ArrayList<>();
+    List<ParsedActivity> activityAliases = new ArrayList<>();
 
-        node = node.getNextSibling();
+    int depth = 0;
+    boolean inApplication = false;
+    ParsedActivity activity = null;
+    boolean inIntentFilter = false;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        if (depth == 2) {
+          inApplication = false;
+        } else if (depth == 3) {
+          activity = null;
+        } else if (depth == 4) {
+          inIntentFilter = false;
+        }
+        depth--;
+        continue;
       }
-    } catch (DOMException e) {
-      log.warn("Could not parse manifest XML: " + e.getMessage());
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      depth++;
+      String elementName = getElementName(reader);
+      if (depth == 1) {
+        packageName = Strings.emptyToNull(getAttribute(reader, null, ATTRIBUTE_PACKAGE));
+        if (packageName == null) {
+          // A manifest with no package name is not a valid manifest.
+          return null;
+        }
+      } else if (depth == 2) {
+        if (NODE_APPLICATION.equals(elementName)) {
+          inApplication = true;
+        } else if (NODE_INSTRUMENTATION.equals(elementName)) {
+          instrumentationClassNames.add(
+              Strings.nullToEmpty(getAttribute(reader, ANDROID_URI, ATTR_NAME)));
+        }
+      } else if (depth == 3 && inApplication) {
+        if (NODE_ACTIVITY.equals(elementName)) {
+          activity = new ParsedActivity(reader, packageName);
+          activities.add(activity);
+        } else if (NODE_ACTIVITY_ALIAS.equals(elementName)) {
+          activity = new ParsedActivity(reader, packageName);
+          activityAliases.add(activity);
+        }
+      } else if (depth == 4 && activity != null) {
+        inIntentFilter = NODE_INTENT.equals(elementName);
+      } else if (depth == 5 && inIntentFilter) {
+        String name = getAttribute(reader, ANDROID_URI, ATTR_NAME);
+        if (name != null && NODE_ACTION.equals(elementName)) {
+          activity.actions.add(name);
+        } else if (name != null && NODE_CATEGORY.equals(elementName)) {
+          activity.categories.add(name);
+        }
+      }
+    }
+    if (packageName == null) {
       return null;
     }
 
+    List<DefaultActivityLocatorCompat.ActivityWrapper> allActivities =
+        new ArrayList<>(activities.size() + activityAliases.size());
+    allActivities.addAll(activities);
+    allActivities.addAll(activityAliases);
     String defaultActivityClassName =
-        DefaultActivityLocatorCompat.computeDefaultActivity(
-            DefaultActivityLocatorCompat.ActivityWrapper.get(
-                activities.build(), activityAliases.build()));
+        DefaultActivityLocatorCompat.computeDefaultActivity(allActivities);
 
     return new ParsedManifest(
         packageName, instrumentationClassNames.build(), defaultActivityClassName);
   }
+
+  /** Returns the element's qualified name, as a DOM parser would report it. */
+  private static String getElementName(XMLStreamReader reader) {
+    String prefix = reader.getPrefix();
+    return Strings.isNullOrEmpty(prefix)
+        ? reader.getLocalName()
+        : prefix + ":" + reader.getLocalName();
+  }
+
+  /** Returns the value of the given attribute, or null if it isn't present. */
+  @Nullable
+  private static String getAttribute(
+      XMLStreamReader reader, @Nullable String namespace, String localName) {
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (localName.equals(reader.getAttributeLocalName(i))
+          && Objects.equals(
+              Strings.emptyToNull(namespace),
+              Strings.emptyToNull(reader.getAttributeNamespace(i)))) {
+        return reader.getAttributeValue(i);
+      }
+    }
+    return null;
+  }
+
+  /** The parts of an {@code <activity>} or {@code <activity-alias>} element we need. */
+  private static class ParsedActivity extends DefaultActivityLocatorCompat.ActivityWrapper {
+    @Nullable private final String qualifiedName;
+    @Nullable private final String enabled;
+    @Nullable private final String exported;
+    private final Set<String> actions = new HashSet<>();
+    private final Set<String> categories = new HashSet<>();
+
+    ParsedActivity(XMLStreamReader reader, String packageName) {
+      this.qualifiedName =
+          getQualifiedName(getAttribute(reader, ANDROID_URI, ATTR_NAME), packageName);
+      this.enabled = getAttribute(reader, ANDROID_URI, ATTR_ENABLED);
+      this.exported = getAttribute(reader, ANDROID_URI, ATTR_EXPORTED);
+    }
+
+    @Override
+    public boolean hasCategory(String name) {
+      return categories.contains(name);
+    }
+
+    @Override
+    public boolean hasAction(String name) {
+      return actions.contains(name);
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return Strings.isNullOrEmpty(enabled) // true if not specified
+          || Boolean.parseBoolean(enabled)
+          || enabled.startsWith(PREFIX_RESOURCE_REF);
+    }
+
+    @Nullable
+    @Override
+    public Boolean getExported() {
+      return Strings.isNullOrEmpty(exported) ? null : Boolean.parseBoolean(exported);
+    }
+
+    @Nullable
+    @Override
+    public String getQualifiedName() {
+      return qualifiedName;
+    }
+
+    /** Mirrors {@link DefaultActivityLocatorCompat#getQualifiedName(org.w3c.dom.Element)}. */
+    @Nullable
+    private static String getQualifiedName(@Nullable String name, String packageName) {
+      if (name == null) {
+        return null;
+      }
+      int dotIndex = name.indexOf('.');
+      if (dotIndex > 0) { // fully qualified
+        return name;
+      }
+      return packageName + (dotIndex == -1 ? "." : "") + name;
+    }
+  }
 }
@@ -17,33 +17,62 @@ package com.google.idea.blaze.android.manifest;
 
 import static com.google.idea.blaze.android.manifest.ManifestParser.parseManifestFromInputStream;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.io.FileOperationProvider;
 import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
 import com.google.idea.blaze.base.sync.SyncListener;
 import com.google.idea.blaze.base.sync.SyncMode;
 import com.google.idea.blaze.base.sync.SyncResult;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
+import com.google.idea.blaze.base.util.SerializationUtil;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 
-/** Obtains and caches {@link ManifestParser.ParsedManifest}. */
+/**
+ * Obtains and caches {@link ManifestParser.ParsedManifest}.
+ *
+ * <p>Parsed manifests are keyed by the manifest's modification time and size, so they stay valid
+ * across syncs while the file is unchanged. The cache is persisted in the project's cache
+ * directory after each sync, so it also survives restarts.
+ */
 public class ParsedManifestService {
-  private final Map<File, ManifestParser.ParsedManifest> manifestFileToParsedManifests =
-      Maps.newHashMap();
+  private static final Logger logger = Logger.getInstance(ParsedManifestService.class);
+
+  private static final String CACHE_FILE_NAME = "parsed_manifests.dat";
+
+  private final Project project;
+  private final Map<File, CachedManifest> manifestFileToParsedManifests = new ConcurrentHashMap<>();
+  private volatile boolean loadedFromDisk;
+  private volatile boolean modified;
 
   public static ParsedManifestService getInstance(Project project) {
     return ServiceManager.getService(project, ParsedManifestService.class);
   }
 
+  private ParsedManifestService(Project project) {
+    this.project = project;
+  }
+
   /**
    * Returns parsed manifest from the given manifest file. Returns null if the manifest is invalid.
    *
@@ -55,24 +84,132 @@ public class ParsedManifestService {
    */
   @Nullable
   public ManifestParser.ParsedManifest getParsedManifest(File file) throws IOException {
-    if (!manifestFileToParsedManifests.containsKey(file)) {
-      try (InputStream inputStream = new FileInputStream(file)) {
-        ManifestParser.ParsedManifest parsedManifest = parseManifestFromInputStream(inputStream);
-        if (parsedManifest == null) {
-          return null;
-        }
-        manifestFileToParsedManifests.put(file, parsedManifest);
-      }
+    loadFromDiskIfNecessary();
+    FileOperationProvider ops = FileOperationProvider.getInstance();
+    long modifiedTime = ops.getFileModifiedTime(file);
+    long size = ops.getFileSize(file);
+    CachedManifest cached = manifestFileToParsedManifests.get(file);
+    if (cached != null && cached.modifiedTime == modifiedTime && cached.size == size) {
+      return cached.parsedManifest;
+    }
+    ManifestParser.ParsedManifest parsedManifest;
+    try (InputStream inputStream = new FileInputStream(file)) {
+      parsedManifest = parseManifestFromInputStream(inputStream);
     }
+    manifestFileToParsedManifests.put(file, new CachedManifest(modifiedTime, size, parsedManifest));
+    modified = true;
+    return parsedManifest;
+  }
 
-    return manifestFileToParsedManifests.get(file);
+  /**
+   * Parses the given manifests in parallel, so that subsequent calls to {@link #getParsedManifest}
+   * are served from the cache. Manifests which fail to parse are skipped.
+   */
+  public void prefetchParsedManifests(Collection<File> manifestFiles) {
+    loadFromDiskIfNecessary();
+    ImmutableList<ListenableFuture<?>> futures =
+        manifestFiles.stream()
+            .distinct()
+            .map(
+                file ->
+                    FetchExecutor.EXECUTOR.submit(
+                        () -> {
+                          try {
+                            getParsedManifest(file);
+                          } catch (IOException e) {
+                            // reported when the manifest is actually requested
+                          }
+                        }))
+            .collect(ImmutableList.toImmutableList());
+    try {
+      Futures.allAsList(futures).get();
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      logger.warn("Failed to prefetch manifests", e);
+    }
   }
 
   public void invalidateCachedManifest(File manifestFile) {
     manifestFileToParsedManifests.keySet().remove(manifestFile);
   }
 
-  static class ClearManifestParser implements SyncListener {
+  private void loadFromDiskIfNecessary() {
+    if (loadedFromDisk) {
+      return;
+    }
+    synchronized (this) {
+      if (loadedFromDisk) {
+        return;
+      }
+      loadedFromDisk = true;
+      File cacheFile = getCacheFile();
+      if (cacheFile == null) {
+        return;
+      }
+      try {
+        @SuppressWarnings("unchecked")
+        Map<File, CachedManifest> cached =
+            (Map<File, CachedManifest>)
+                SerializationUtil.loadFromDisk(
+                    cacheFile, ImmutableList.of(ParsedManifestService.class.getClassLoader()));
+        if (cached != null) {
+          cached.forEach(manifestFileToParsedManifests::putIfAbsent);
+        }
+      } catch (IOException e) {
+        logger.info("Failed to load cached manifests", e);
+      }
+    }
+  }
+
+  private void saveToDisk() {
+    if (!modified) {
+      return;
+    }
+    modified = false;
+    File cacheFile = getCacheFile();
+    if (cacheFile == null) {
+      return;
+    }
+    // don't persist manifests which no longer exist
+    FileOperationProvider ops = FileOperationProvider.getInstance();
+    manifestFileToParsedManifests.keySet().removeIf(file -> !ops.exists(file));
+    try {
+      SerializationUtil.saveToDisk(cacheFile, new HashMap<>(manifestFileToParsedManifests));
+    } catch (IOException e) {
+      logger.warn("Failed to save cached manifests", e);
+    }
+  }
+
+  @Nullable
+  private File getCacheFile() {
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    if (importSettings == null) {
+      return null;
+    }
+    return new File(BlazeDataStorage.getProjectCacheDir(project, importSettings), CACHE_FILE_NAME);
+  }
+
+  /** A parsed manifest, along with the state of the file it was parsed from. */
+  private static class CachedManifest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long modifiedTime;
+    private final long size;
+    /** Null if the manifest was invalid. */
+    @Nullable private final ManifestParser.ParsedManifest parsedManifest;
+
+    CachedManifest(
+        long modifiedTime, long size, @Nullable ManifestParser.ParsedManifest parsedManifest) {
+      this.modifiedTime = modifiedTime;
+      this.size = size;
+      this.parsedManifest = parsedManifest;
+    }
+  }
+
+  static class SaveParsedManifests implements SyncListener {
     @Override
     public void onSyncComplete(
         Project project,
@@ -83,9 +220,8 @@ public class ParsedManifestService {
         BlazeProjectData blazeProjectData,
         SyncMode syncMode,
         SyncResult syncResult) {
-      getInstance(project).manifestFileToParsedManifests.clear();
+      ParsedManifestService service = getInstance(project);
+      FetchExecutor.EXECUTOR.submit(service::saveToDisk);
     }
   }
-
-  private ParsedManifestService() {}
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.projectsystem;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.idea.blaze.base.io.ZipCentralDirectory;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable index from Java packages to the class jars containing classes in them.
+ *
+ * <p>Only each jar's central directory is read. Indexing by package rather than by class keeps the
+ * index small, while still narrowing a class lookup down to one or two jars.
+ */
+final class ClassJarIndex {
+  private static final Logger logger = Logger.getInstance(ClassJarIndex.class);
+
+  private final ImmutableMap<File, IndexedJar> jars;
+  private final ImmutableSetMultimap<String, File> packageToJars;
+  private final ImmutableSet<File> unindexedJars;
+
+  private ClassJarIndex(
+      ImmutableMap<File, IndexedJar> jars,
+      ImmutableSetMultimap<String, File> packageToJars,
+      ImmutableSet<File> unindexedJars) {
+    this.jars = jars;
+    this.packageToJars = packageToJars;
+    this.unindexedJars = unindexedJars;
+  }
+
+  /**
+   * Indexes the given jars, reusing the contents of any jar in {@code previous} which hasn't been
+   * modified since.
+   */
+  static ClassJarIndex create(Collection<File> jarFiles, @Nullable ClassJarIndex previous) {
+    Interner<String> packageNames = Interners.newStrongInterner();
+    ImmutableMap.Builder<File, IndexedJar> jars = ImmutableMap.builder();
+    ImmutableSetMultimap.Builder<String, File> packageToJars = ImmutableSetMultimap.builder();
+    ImmutableSet.Builder<File> unindexedJars = ImmutableSet.builder();
+    for (File jarFile : ImmutableSet.copyOf(jarFiles)) {
+      long timestamp = jarFile.lastModified();
+      IndexedJar jar = previous != null ? previous.jars.get(jarFile) : null;
+      if (jar == null || jar.timestamp != timestamp) {
+        jar = new IndexedJar(timestamp, readPackages(jarFile, packageNames));
+      }
+      jars.put(jarFile, jar);
+      if (jar.packages == null) {
+        unindexedJars.add(jarFile);
+        continue;
+      }
+      for (String packagePath : jar.packages) {
+        packageToJars.put(packagePath, jarFile);
+      }
+    }
+    return new ClassJarIndex(jars.build(), packageToJars.build(), unindexedJars.build());
+  }
+
+  /**
+   * Returns the packages containing classes in the given jar, or null if it doesn't exist (yet)
+   * or can't be read.
+   */
+  @Nullable
+  private static ImmutableSet<String> readPackages(File jarFile, Interner<String> packageNames) {
+    if (!jarFile.isFile()) {
+      return null;
+    }
+    ImmutableSet.Builder<String> packages = ImmutableSet.builder();
+    try {
+      ZipCentralDirectory.read(
+          jarFile,
+          entry -> {
+            if (entry.nameEndsWith(".class")) {
+              String name = entry.getName();
+              int lastSlash = name.lastIndexOf('/');
+              packages.add(
+                  packageNames.intern(lastSlash == -1 ? "" : name.substring(0, lastSlash)));
+            }
+            return true;
+          });
+    } catch (IOException e) {
+      logger.warn("Failed to read class jar " + jarFile, e);
+      return null;
+    }
+    return packages.build();
+  }
+
+  /** Returns false if any indexed jar has been modified, created or deleted since it was read. */
+  boolean isUpToDate() {
+    return isUpToDate(jars.keySet());
+  }
+
+  /**
+   * Returns false if any of the given jars wasn't indexed, or has been modified, created or deleted
+   * since it was read.
+   */
+  boolean isUpToDate(Collection<File> jarFiles) {
+    for (File jarFile : jarFiles) {
+      IndexedJar jar = jars.get(jarFile);
+      if (jar == null || jarFile.lastModified() != jar.timestamp) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether the given jar was indexed, even if it was missing or couldn't be read. */
+  boolean contains(File jarFile) {
+    return jars.containsKey(jarFile);
+  }
+
+  /**
+   * Returns the jars which may contain the given class. This includes any jars which couldn't be
+   * indexed, because they were missing or unreadable: they're searched as if there were no index,
+   * rather than being treated as empty, until they're created or modified.
+   *
+   * @param className the binary name of the class, e.g. "com.google.Foo$Bar"
+   */
+  ImmutableSet<File> getCandidateJars(String className) {
+    ImmutableSet<File> jars = packageToJars.get(getPackagePath(className));
+    if (unindexedJars.isEmpty()) {
+      return jars;
+    }
+    return ImmutableSet.<File>builder().addAll(jars).addAll(unindexedJars).build();
+  }
+
+  int jarCount() {
+    return jars.size();
+  }
+
+  /** Returns the package of a class as a jar entry directory, e.g. "com/google". */
+  static String getPackagePath(String className) {
+    int lastDot = className.lastIndexOf('.');
+    return lastDot == -1 ? "" : className.substring(0, lastDot).replace('.', '/');
+  }
+
+  private static final class IndexedJar {
+    final long timestamp;
+    /** Null if the jar was missing or couldn't be read. */
+    @Nullable final ImmutableSet<String> packages;
+
+    IndexedJar(long timestamp, @Nullable ImmutableSet<String> packages) {
+      this.timestamp = timestamp;
+      this.packages = packages;
+    }
+  }
+}
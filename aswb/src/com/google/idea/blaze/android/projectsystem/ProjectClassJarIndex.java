@@ -0,0 +1,226 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.projectsystem;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * The class jars searched by {@link TransitiveClosureClassFileFinder}, shared between all modules
+ * and recomputed after each sync.
+ *
+ * <p>Each target's transitive closure is resolved to an ordered list of jars once, rather than on
+ * every class lookup. The {@link ClassJarIndex} is built in the background, and then narrows a
+ * lookup down to the jars containing the class's package. Until it's ready, every jar in the
+ * closure is searched. The same goes for closures with jars the index doesn't know about yet, and
+ * for lookups with no candidates while the closure's jars have changed since they were indexed.
+ */
+final class ProjectClassJarIndex {
+  private static final Logger logger = Logger.getInstance(ProjectClassJarIndex.class);
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("aswb.class.jar.index.enabled", true);
+
+  /** How often to check whether any jars have changed since they were indexed, e.g. by a build. */
+  private static final long REFRESH_INTERVAL_MILLIS = 5_000;
+
+  private final Project project;
+  private final BlazeProjectData projectData;
+
+  /** For each target, the jars to search in order, mapped to their position in the search. */
+  private final Map<TargetKey, ImmutableMap<File, Integer>> jarsByTarget =
+      new ConcurrentHashMap<>();
+
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private volatile long lastRefreshMillis;
+  @Nullable private volatile ClassJarIndex index;
+
+  private ProjectClassJarIndex(Project project, BlazeProjectData projectData) {
+    this.project = project;
+    this.projectData = projectData;
+  }
+
+  @Nullable
+  static ProjectClassJarIndex getInstance(Project project) {
+    return SyncCache.getInstance(project)
+        .get(ProjectClassJarIndex.class, ProjectClassJarIndex::new);
+  }
+
+  /** Returns the jars which might contain the given class, in the order they should be searched. */
+  ImmutableList<File> getJarsToSearch(TargetIdeInfo target, String className) {
+    ImmutableMap<File, Integer> jars =
+        jarsByTarget.computeIfAbsent(target.getKey(), key -> getClassJarsInClosure(target));
+    ClassJarIndex index = getIndex();
+    if (index == null || !jars.keySet().stream().allMatch(index::contains)) {
+      // the index doesn't know about some of these jars, so can't rule any of them out
+      return jars.keySet().asList();
+    }
+    List<File> candidates = new ArrayList<>();
+    for (File jar : index.getCandidateJars(className)) {
+      if (jars.containsKey(jar)) {
+        candidates.add(jar);
+      }
+    }
+    if (candidates.isEmpty() && !index.isUpToDate(jars.keySet())) {
+      // a jar may have been rebuilt with the class since it was indexed, and the background
+      // refresh hasn't caught up yet
+      return jars.keySet().asList();
+    }
+    if (candidates.size() > 1) {
+      candidates.sort(Comparator.comparing(jars::get));
+    }
+    return ImmutableList.copyOf(candidates);
+  }
+
+  /**
+   * Returns the current index, or null if it hasn't been built yet. Schedules a background refresh
+   * if it may be out of date.
+   */
+  @Nullable
+  private ClassJarIndex getIndex() {
+    if (!enabled.getValue()) {
+      return null;
+    }
+    if (System.currentTimeMillis() - lastRefreshMillis >= REFRESH_INTERVAL_MILLIS
+        && refreshing.compareAndSet(false, true)) {
+      ListenableFuture<Void> refresh =
+          BlazeExecutor.getInstance()
+              .submit(
+                  () -> {
+                    try {
+                      refreshIndex();
+                    } finally {
+                      lastRefreshMillis = System.currentTimeMillis();
+                      refreshing.set(false);
+                    }
+                    return null;
+                  });
+      Futures.addCallback(
+          refresh,
+          new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(@Nullable Void result) {}
+
+            @Override
+            public void onFailure(Throwable t) {
+              logger.warn("Failed to index class jars", t);
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+    return index;
+  }
+
+  private void refreshIndex() {
+    ClassJarIndex current = index;
+    if (current != null && current.isUpToDate()) {
+      return;
+    }
+    long startMillis = System.currentTimeMillis();
+    ClassJarIndex updated = ClassJarIndex.create(getAllClassJars(), current);
+    index = updated;
+    logger.info(
+        String.format(
+            "Indexed %d class jars in %d ms",
+            updated.jarCount(), System.currentTimeMillis() - startMillis));
+  }
+
+  private ImmutableSet<File> getAllClassJars() {
+    ImmutableSet.Builder<File> jars = ImmutableSet.builder();
+    for (TargetIdeInfo target : projectData.getTargetMap().targets()) {
+      if (target.getJavaIdeInfo() == null) {
+        continue;
+      }
+      for (LibraryArtifact jar : target.getJavaIdeInfo().getJars()) {
+        ArtifactLocation classJar = jar.getClassJar();
+        File classJarFile =
+            classJar != null && !classJar.isSource() ? resolveClassJar(classJar) : null;
+        if (classJarFile != null) {
+          jars.add(classJarFile);
+        }
+      }
+    }
+    return jars.build();
+  }
+
+  private ImmutableMap<File, Integer> getClassJarsInClosure(TargetIdeInfo target) {
+    // As a potential optimization, we could choose an arbitrary android_binary target
+    // that depends on the library to provide a single complete resource jar,
+    // instead of having to rely on dynamic class generation.
+    // TODO: benchmark to see if optimization is worthwhile.
+    TargetMap targetMap = projectData.getTargetMap();
+    List<LibraryArtifact> jarsToSearch = Lists.newArrayList(target.getJavaIdeInfo().getJars());
+    jarsToSearch.addAll(
+        TransitiveDependencyMap.getInstance(project)
+            .getTransitiveDependencies(target.getKey())
+            .stream()
+            .map(targetMap::get)
+            .filter(Objects::nonNull)
+            .flatMap(TransitiveClosureClassFileFinder::getNonResourceJars)
+            .collect(Collectors.toList()));
+
+    Map<File, Integer> positions = new LinkedHashMap<>();
+    for (LibraryArtifact jar : jarsToSearch) {
+      ArtifactLocation classJar = jar.getClassJar();
+      if (classJar == null || classJar.isSource()) {
+        continue;
+      }
+      File classJarFile =
+          Preconditions.checkNotNull(
+              resolveClassJar(classJar), "Fail to find file %s", classJar.getRelativePath());
+      positions.putIfAbsent(classJarFile, positions.size());
+    }
+    return ImmutableMap.copyOf(positions);
+  }
+
+  @Nullable
+  private File resolveClassJar(ArtifactLocation classJar) {
+    ArtifactLocationDecoder decoder = projectData.getArtifactLocationDecoder();
+    return OutputArtifactResolver.resolve(project, decoder, classJar);
+  }
+}
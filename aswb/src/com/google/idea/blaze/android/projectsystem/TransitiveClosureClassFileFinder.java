@@ -17,19 +17,13 @@ package com.google.idea.blaze.android.projectsystem;
 
 import com.android.SdkConstants;
 import com.android.tools.idea.project.ModuleBasedClassFileFinder;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.idea.blaze.android.sync.model.AndroidResourceModuleRegistry;
-import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
-import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
-import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
-import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
-import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.module.Module;
@@ -40,9 +34,7 @@ import com.intellij.openapi.vfs.ex.temp.TempFileSystem;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
@@ -52,9 +44,8 @@ import javax.annotation.Nullable;
  * jars belonging to each Blaze target in the transitive closure of the target corresponding to each
  * resource module.
  *
- * <p>TODO: Prevent duplicate checking of Blaze targets. The findClassFileInModule method gets
- * called for every module in the project since they all transitively depend on each other, and the
- * corresponding Blaze targets have many overlapping transitive dependencies.
+ * <p>The jars in each target's closure are resolved once per sync and shared between modules, and
+ * narrowed down to those containing the class's package using a {@link ClassJarIndex}.
  */
 public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
     implements BlazeClassFileFinder {
@@ -84,8 +75,6 @@ public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
       return null;
     }
 
-    TargetMap targetMap = blazeProjectData.getTargetMap();
-    ArtifactLocationDecoder decoder = blazeProjectData.getArtifactLocationDecoder();
     AndroidResourceModuleRegistry registry =
         AndroidResourceModuleRegistry.getInstance(module.getProject());
     TargetIdeInfo target = blazeProjectData.getTargetMap().get(registry.getTargetKey(module));
@@ -93,36 +82,15 @@ public class TransitiveClosureClassFileFinder extends ModuleBasedClassFileFinder
     if (target == null || target.getJavaIdeInfo() == null) {
       return null;
     }
-
-    // As a potential optimization, we could choose an arbitrary android_binary target
-    // that depends on the library to provide a single complete resource jar,
-    // instead of having to rely on dynamic class generation.
-    // TODO: benchmark to see if optimization is worthwhile.
+    ProjectClassJarIndex jarIndex = ProjectClassJarIndex.getInstance(module.getProject());
+    if (jarIndex == null) {
+      return null;
+    }
 
     String classNamePath = className.replace('.', File.separatorChar) + SdkConstants.DOT_CLASS;
 
-    List<LibraryArtifact> jarsToSearch = Lists.newArrayList(target.getJavaIdeInfo().getJars());
-    jarsToSearch.addAll(
-        TransitiveDependencyMap.getInstance(module.getProject())
-            .getTransitiveDependencies(target.getKey())
-            .stream()
-            .map(targetMap::get)
-            .filter(Objects::nonNull)
-            .flatMap(TransitiveClosureClassFileFinder::getNonResourceJars)
-            .collect(Collectors.toList()));
-
     List<File> missingClassJars = Lists.newArrayList();
-    for (LibraryArtifact jar : jarsToSearch) {
-      if (jar.getClassJar() == null || jar.getClassJar().isSource()) {
-        continue;
-      }
-
-      ArtifactLocation classJar = jar.getClassJar();
-      File classJarFile =
-          Preconditions.checkNotNull(
-              OutputArtifactResolver.resolve(module.getProject(), decoder, classJar),
-              "Fail to find file %s",
-              classJar.getRelativePath());
+    for (File classJarFile : jarIndex.getJarsToSearch(target, className)) {
       VirtualFile classJarVF =
           VirtualFileSystemProvider.getInstance().getSystem().findFileByIoFile(classJarFile);
       if (classJarVF == null) {
@@ -19,7 +19,9 @@ import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
 import com.android.tools.idea.projectsystem.LightResourceClassService;
 import com.android.tools.idea.res.AndroidLightPackage;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -27,6 +29,7 @@ import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
 import com.google.idea.common.experiments.BoolExperiment;
 import com.google.idea.common.experiments.FeatureRolloutExperiment;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
@@ -38,6 +41,9 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.Nullable;
 
@@ -54,15 +60,30 @@ public class BlazeLightResourceClassService implements LightResourceClassService
   private static final BoolExperiment createStubResourcePackages =
       new BoolExperiment("create.stub.resource.packages", true);
 
-  private final Project project;
+  private static final Logger logger = Logger.getInstance(BlazeLightResourceClassService.class);
 
-  private Map<String, BlazeRClass> rClasses = Maps.newHashMap();
-  private Map<Module, BlazeRClass> rClassesByModule = Maps.newHashMap();
-  private Map<String, PsiPackage> rClassPackages = Maps.newHashMap();
-  private Map<String, BlazeRClass> workspaceRClasses = Maps.newHashMap();
-  private Set<String> workspaceRClassNames = ImmutableSet.of();
+  /** Creates light R classes. */
+  @VisibleForTesting
+  interface RClassFactory {
+    BlazeRClass create(PsiManager psiManager, AndroidFacet androidFacet, String packageName);
+  }
+
+  private final RClassFactory rClassFactory;
+  /** Looks up the workspace module's android facet, which is replaced on each sync. */
+  private final Supplier<AndroidFacet> workspaceFacetFinder;
+
+  private volatile Map<String, BlazeRClass> rClasses = ImmutableMap.of();
+  private volatile Map<String, AndroidFacet> rClassFacets = ImmutableMap.of();
+  private volatile Map<Module, BlazeRClass> rClassesByModule = ImmutableMap.of();
+  private volatile Map<String, PsiPackage> rClassPackages = ImmutableMap.of();
+  private final Map<String, BlazeRClass> workspaceRClasses = new ConcurrentHashMap<>();
+  private volatile Set<String> workspaceRClassNames = ImmutableSet.of();
+  /** The workspace facet the {@link #workspaceRClasses} were created for. */
+  @GuardedBy("this")
+  @Nullable
+  private AndroidFacet workspaceRClassesFacet;
 
-  private final Set<BlazeRClass> allRClasses = Sets.newHashSet();
+  private final Set<BlazeRClass> allRClasses = ConcurrentHashMap.newKeySet();
   private PsiManager psiManager;
 
   public static BlazeLightResourceClassService getInstance(Project project) {
@@ -70,14 +91,23 @@ public class BlazeLightResourceClassService implements LightResourceClassService
   }
 
   private BlazeLightResourceClassService(Project project) {
-    this.project = project;
+    this(BlazeRClass::new, () -> findWorkspaceFacet(project));
   }
 
-  /** Builds light R classes */
+  @VisibleForTesting
+  BlazeLightResourceClassService(
+      RClassFactory rClassFactory, Supplier<AndroidFacet> workspaceFacetFinder) {
+    this.rClassFactory = rClassFactory;
+    this.workspaceFacetFinder = workspaceFacetFinder;
+  }
+
+  /**
+   * Collects the light R classes for a sync. The classes themselves are only created by {@link
+   * #installRClasses}, which reuses those left unchanged since the previous sync.
+   */
   public static class Builder {
-    Map<String, BlazeRClass> rClassMap = Maps.newHashMap();
-    Map<Module, BlazeRClass> rClassByModuleMap = Maps.newHashMap();
-    Map<String, PsiPackage> rClassPackages = Maps.newHashMap();
+    Map<String, AndroidFacet> rClassFacets = Maps.newHashMap();
+    Set<String> rClassPackages = Sets.newHashSet();
     Set<String> workspaceRClassNames = ImmutableSet.of();
 
     PsiManager psiManager;
@@ -91,9 +121,12 @@ public class BlazeLightResourceClassService implements LightResourceClassService
       if (androidFacet == null) {
         return; // Do not register R class if android facet is not present.
       }
-      BlazeRClass rClass = new BlazeRClass(psiManager, androidFacet, resourceJavaPackage);
-      rClassMap.put(getQualifiedRClassName(resourceJavaPackage), rClass);
-      rClassByModuleMap.put(module, rClass);
+      addRClass(resourceJavaPackage, androidFacet);
+    }
+
+    @VisibleForTesting
+    void addRClass(String resourceJavaPackage, AndroidFacet androidFacet) {
+      rClassFacets.put(getQualifiedRClassName(resourceJavaPackage), androidFacet);
       if (createStubResourcePackages.getValue()) {
         addStubPackages(resourceJavaPackage);
       }
@@ -116,12 +149,9 @@ public class BlazeLightResourceClassService implements LightResourceClassService
 
     private void addStubPackages(String resourceJavaPackage) {
       while (!resourceJavaPackage.isEmpty()) {
-        if (rClassPackages.containsKey(resourceJavaPackage)) {
+        if (!rClassPackages.add(resourceJavaPackage)) {
           return;
         }
-        rClassPackages.put(
-            resourceJavaPackage,
-            AndroidLightPackage.withName(resourceJavaPackage, psiManager.getProject()));
         int nextIndex = resourceJavaPackage.lastIndexOf('.');
         if (nextIndex < 0) {
           return;
@@ -131,17 +161,65 @@ public class BlazeLightResourceClassService implements LightResourceClassService
     }
   }
 
+  /**
+   * Replaces the light R classes with those collected by the builder.
+   *
+   * <p>An R class whose package and android facet are unchanged since the previous sync is reused
+   * as-is, so that PSI referencing it isn't invalidated. Its fields are already computed lazily,
+   * per resource type, from the module's resource repository.
+   */
   public void installRClasses(Builder builder) {
-    this.rClasses = builder.rClassMap;
-    this.rClassesByModule = builder.rClassByModuleMap;
-    this.rClassPackages = builder.rClassPackages;
+    Map<String, BlazeRClass> previousRClasses = this.rClasses;
+    Map<String, AndroidFacet> previousFacets = this.rClassFacets;
+    Map<String, PsiPackage> previousPackages = this.rClassPackages;
+    int created = 0;
+    int reused = 0;
+
+    ImmutableMap.Builder<String, BlazeRClass> rClasses = ImmutableMap.builder();
+    Map<Module, BlazeRClass> rClassesByModule = new HashMap<>();
+    for (Map.Entry<String, AndroidFacet> entry : builder.rClassFacets.entrySet()) {
+      String qualifiedName = entry.getKey();
+      AndroidFacet facet = entry.getValue();
+      BlazeRClass rClass = previousRClasses.get(qualifiedName);
+      if (rClass != null && previousFacets.get(qualifiedName) == facet) {
+        reused++;
+      } else {
+        // Remove the .R suffix
+        String packageName = qualifiedName.substring(0, qualifiedName.length() - 2);
+        rClass = rClassFactory.create(builder.psiManager, facet, packageName);
+        created++;
+      }
+      rClasses.put(qualifiedName, rClass);
+      rClassesByModule.put(rClass.getModule(), rClass);
+    }
+
+    ImmutableMap.Builder<String, PsiPackage> rClassPackages = ImmutableMap.builder();
+    for (String packageName : builder.rClassPackages) {
+      PsiPackage psiPackage = previousPackages.get(packageName);
+      rClassPackages.put(
+          packageName,
+          psiPackage != null
+              ? psiPackage
+              : AndroidLightPackage.withName(packageName, builder.psiManager.getProject()));
+    }
 
-    this.workspaceRClasses = new HashMap<>();
-    this.workspaceRClassNames = ImmutableSet.copyOf(builder.workspaceRClassNames);
     this.psiManager = builder.psiManager;
+    this.rClasses = rClasses.build();
+    this.rClassFacets = ImmutableMap.copyOf(builder.rClassFacets);
+    this.rClassesByModule = ImmutableMap.copyOf(rClassesByModule);
+    this.rClassPackages = rClassPackages.build();
+    this.workspaceRClassNames = ImmutableSet.copyOf(builder.workspaceRClassNames);
 
-    this.allRClasses.clear();
-    this.allRClasses.addAll(rClasses.values());
+    // Workspace R classes are created on demand, so can be kept if the workspace facet is unchanged
+    getWorkspaceRClasses(workspaceFacetFinder.get()).keySet().retainAll(workspaceRClassNames);
+    allRClasses.clear();
+    allRClasses.addAll(this.rClasses.values());
+    allRClasses.addAll(workspaceRClasses.values());
+
+    logger.info(
+        String.format(
+            "Installed %d light R classes: %d created, %d reused, %d workspace R classes kept",
+            created + reused, created, reused, workspaceRClasses.size()));
   }
 
   @Override
@@ -166,32 +244,43 @@ public class BlazeLightResourceClassService implements LightResourceClassService
       return null;
     }
 
-    BlazeRClass rClass = workspaceRClasses.get(qualifiedName);
-    if (rClass != null) {
-      if (scope.isSearchInModuleContent(rClass.getModule())) {
-        return rClass;
-      } else {
-        return null;
-      }
-    }
-
-    Module workspaceModule =
-        ModuleManager.getInstance(project).findModuleByName(BlazeDataStorage.WORKSPACE_MODULE_NAME);
-    if (workspaceModule == null || !scope.isSearchInModuleContent(workspaceModule)) {
+    // Looked up each time, since the facet is replaced whenever the project is re-synced.
+    AndroidFacet workspaceFacet = workspaceFacetFinder.get();
+    if (workspaceFacet == null || !scope.isSearchInModuleContent(workspaceFacet.getModule())) {
       return null;
     }
 
-    // Remove the .R suffix
-    String packageName = qualifiedName.substring(0, qualifiedName.length() - 2);
-    AndroidFacet workspaceFacet = AndroidFacet.getInstance(workspaceModule);
-    if (workspaceFacet == null) {
-      return null;
+    return getWorkspaceRClasses(workspaceFacet)
+        .computeIfAbsent(
+            qualifiedName,
+            name -> {
+              // Remove the .R suffix
+              String packageName = name.substring(0, name.length() - 2);
+              BlazeRClass rClass = rClassFactory.create(psiManager, workspaceFacet, packageName);
+              allRClasses.add(rClass);
+              return rClass;
+            });
+  }
+
+  /**
+   * Returns the workspace R classes created for the given workspace facet, first discarding any
+   * created for a previous one.
+   */
+  private synchronized Map<String, BlazeRClass> getWorkspaceRClasses(
+      @Nullable AndroidFacet workspaceFacet) {
+    if (workspaceFacet != workspaceRClassesFacet) {
+      allRClasses.removeAll(workspaceRClasses.values());
+      workspaceRClasses.clear();
+      workspaceRClassesFacet = workspaceFacet;
     }
+    return workspaceRClasses;
+  }
 
-    rClass = new BlazeRClass(psiManager, workspaceFacet, packageName);
-    workspaceRClasses.put(qualifiedName, rClass);
-    allRClasses.add(rClass);
-    return rClass;
+  @Nullable
+  private static AndroidFacet findWorkspaceFacet(Project project) {
+    Module workspaceModule =
+        ModuleManager.getInstance(project).findModuleByName(BlazeDataStorage.WORKSPACE_MODULE_NAME);
+    return workspaceModule != null ? AndroidFacet.getInstance(workspaceModule) : null;
   }
 
   @Override
@@ -47,6 +47,7 @@ import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.scope.output.StatusOutput;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.settings.BuildSystem;
@@ -165,6 +166,7 @@ public class BlazeApkBuildStepMobileInstall implements BlazeApkBuildStep {
           .addExeFlags(exeFlags);
 
       SaveUtil.saveAllFiles();
+      long buildStartMillis = System.currentTimeMillis();
       int retVal =
           ExternalTask.builder(workspaceRoot)
               .addBlazeCommand(command.build())
@@ -175,6 +177,11 @@ public class BlazeApkBuildStepMobileInstall implements BlazeApkBuildStep {
                       BlazeConsoleLineProcessorProvider.getAllStderrLineProcessors(context)))
               .build()
               .run();
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "mobile-install finished in %d ms",
+                  System.currentTimeMillis() - buildStartMillis)));
       FileCaches.refresh(project, context);
 
       if (retVal != 0) {
@@ -183,6 +190,7 @@ public class BlazeApkBuildStepMobileInstall implements BlazeApkBuildStep {
       }
 
       context.output(new StatusOutput("Reading deployment information..."));
+      long deployInfoStartMillis = System.currentTimeMillis();
       String executionRoot =
           ExecRootUtil.getExecutionRoot(buildResultHelper, project, blazeFlags, context);
       if (executionRoot == null) {
@@ -196,6 +204,11 @@ public class BlazeApkBuildStepMobileInstall implements BlazeApkBuildStep {
       deployInfo =
           deployInfoHelper.extractDeployInfoAndInvalidateManifests(
               project, new File(executionRoot), deployInfoProto);
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Read deployment information in %d ms",
+                  System.currentTimeMillis() - deployInfoStartMillis)));
     } catch (GetArtifactsException e) {
       IssueOutput.error("Could not read BEP output: " + e.getMessage()).submit(context);
     } catch (GetDeployInfoException e) {
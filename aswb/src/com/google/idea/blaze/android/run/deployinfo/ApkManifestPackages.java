@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.run.deployinfo;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.android.run.runner.AaptUtil;
+import com.google.idea.blaze.android.run.runner.AaptUtil.AaptUtilException;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The manifest package of each APK to deploy, as reported by aapt.
+ *
+ * <p>Running aapt takes a while for large APKs, so the packages are looked up in parallel as soon
+ * as the deploy info has been read, while the launch continues. Results are kept until the APK
+ * changes, so unchanged APKs (e.g. test support APKs) aren't inspected again on the next launch.
+ */
+public final class ApkManifestPackages {
+
+  private static final int MAX_AAPT_PROCESSES = 4;
+  private static final int MAX_CACHED_APKS = 100;
+
+  private static final ApkManifestPackages instance =
+      new ApkManifestPackages(
+          MoreExecutors.listeningDecorator(
+              AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                  "ApkManifestPackages", MAX_AAPT_PROCESSES)),
+          MAX_CACHED_APKS);
+
+  /** Reads the manifest package of an APK. */
+  @VisibleForTesting
+  @FunctionalInterface
+  interface ManifestPackageReader {
+    String read(File apk) throws AaptUtilException;
+  }
+
+  private final ListeningExecutorService executor;
+  private final Cache<File, Entry> entries;
+
+  @VisibleForTesting
+  ApkManifestPackages(ListeningExecutorService executor, int maxCachedApks) {
+    this.executor = executor;
+    this.entries = CacheBuilder.newBuilder().maximumSize(maxCachedApks).build();
+  }
+
+  /**
+   * Starts looking up the manifest packages of the given APKs in the background. Does nothing if
+   * aapt can't be found; the error is reported when the packages are needed.
+   */
+  public static void prefetch(Project project, Collection<File> apks) {
+    String aapt;
+    try {
+      aapt = AaptUtil.getAaptPath(project);
+    } catch (AaptUtilException e) {
+      return;
+    }
+    instance.prefetch(apks, aaptReader(aapt));
+  }
+
+  /**
+   * Returns the manifest package of the given APK, waiting for any lookup already in progress.
+   *
+   * @throws AaptUtilException if the package couldn't be determined
+   */
+  static String get(Project project, File apk) throws AaptUtilException {
+    return instance.get(apk, aaptReader(AaptUtil.getAaptPath(project)));
+  }
+
+  /** Only captures the aapt path, so that no project is retained by the lookups. */
+  private static ManifestPackageReader aaptReader(String aapt) {
+    return apk -> AaptUtil.getApkManifestPackage(aapt, apk);
+  }
+
+  @VisibleForTesting
+  void prefetch(Collection<File> apks, ManifestPackageReader reader) {
+    for (File apk : apks) {
+      if (apk.exists()) {
+        getEntry(apk, reader);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  String get(File apk, ManifestPackageReader reader) throws AaptUtilException {
+    Entry entry = getEntry(apk, reader);
+    try {
+      return entry.manifestPackage.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while running aapt on " + apk, e);
+    } catch (ExecutionException e) {
+      // retry next time, e.g. if the SDK was missing
+      entries.asMap().remove(apk, entry);
+      if (e.getCause() instanceof AaptUtilException) {
+        throw (AaptUtilException) e.getCause();
+      }
+      throw new IllegalStateException("Failed to run aapt on " + apk, e.getCause());
+    }
+  }
+
+  private Entry getEntry(File apk, ManifestPackageReader reader) {
+    long modifiedTime = apk.lastModified();
+    long size = apk.length();
+    return entries
+        .asMap()
+        .compute(
+            apk,
+            (file, entry) ->
+                entry != null && entry.modifiedTime == modifiedTime && entry.size == size
+                    ? entry
+                    : new Entry(modifiedTime, size, executor.submit(() -> reader.read(file))));
+  }
+
+  private static class Entry {
+    final long modifiedTime;
+    final long size;
+    final ListenableFuture<String> manifestPackage;
+
+    Entry(long modifiedTime, long size, ListenableFuture<String> manifestPackage) {
+      this.modifiedTime = modifiedTime;
+      this.size = size;
+      this.manifestPackage = manifestPackage;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import com.android.tools.idea.run.ValidationError;
 import com.google.common.collect.ImmutableList;
 import com.google.idea.blaze.android.run.runner.AaptUtil;
 import com.google.idea.blaze.android.run.runner.BlazeApkBuildStep;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import java.io.File;
 import java.util.Collection;
@@ -30,6 +31,8 @@ import java.util.List;
 
 /** Apk provider from deploy info proto */
 public class BlazeApkProvider implements ApkProvider {
+  private static final Logger logger = Logger.getInstance(BlazeApkProvider.class);
+
   private final Project project;
   private final BlazeApkBuildStep buildStep;
 
@@ -41,16 +44,23 @@ public class BlazeApkProvider implements ApkProvider {
   @Override
   public Collection<ApkInfo> getApks(IDevice device) throws ApkProvisionException {
     BlazeAndroidDeployInfo deployInfo = buildStep.getDeployInfo();
+    long startMillis = System.currentTimeMillis();
+    // start any lookups which weren't prefetched, so they run in parallel
+    ApkManifestPackages.prefetch(project, deployInfo.getApksToDeploy());
     ImmutableList.Builder<ApkInfo> apkInfos = ImmutableList.builder();
     for (File apk : deployInfo.getApksToDeploy()) {
       apkInfos.add(new ApkInfo(apk, manifestPackageForApk(apk)));
     }
+    logger.info(
+        String.format(
+            "Resolved manifest packages of %d APKs in %d ms",
+            deployInfo.getApksToDeploy().size(), System.currentTimeMillis() - startMillis));
     return apkInfos.build();
   }
 
   private String manifestPackageForApk(final File apk) throws ApkProvisionException {
     try {
-      return AaptUtil.getApkManifestPackage(project, apk);
+      return ApkManifestPackages.get(project, apk);
     } catch (AaptUtil.AaptUtilException e) {
       throw new ApkProvisionException(
           "Could not determine manifest package for apk: "
@@ -51,7 +51,12 @@ public final class AaptUtil {
 
   /** Determines the manifest package name for the given APK. */
   public static String getApkManifestPackage(Project project, File apk) throws AaptUtilException {
-    MatchResult packageResult = getAaptBadging(project, apk, PACKAGE_PATTERN);
+    return getApkManifestPackage(getAaptPath(project), apk);
+  }
+
+  /** Determines the manifest package name for the given APK, using the given aapt binary. */
+  public static String getApkManifestPackage(String aapt, File apk) throws AaptUtilException {
+    MatchResult packageResult = getAaptBadging(aapt, apk, PACKAGE_PATTERN);
     if (packageResult == null) {
       throw new AaptUtilException(
           "No match found in `aapt dump badging` for package manifest pattern.");
@@ -59,16 +64,8 @@ public final class AaptUtil {
     return packageResult.group(1);
   }
 
-  /**
-   * Uses aapt to dump badging information for the given apk, and extracts information from the
-   * output matching the given pattern.
-   */
-  @Nullable
-  private static MatchResult getAaptBadging(Project project, File apk, Pattern pattern)
-      throws AaptUtilException {
-    if (!apk.exists()) {
-      throw new AaptUtilException("apk file does not exist: " + apk);
-    }
+  /** Returns the path of the aapt binary in the project's Android SDK build-tools. */
+  public static String getAaptPath(Project project) throws AaptUtilException {
     AndroidPlatform androidPlatform = SdkUtil.getAndroidPlatform(project);
     if (androidPlatform == null) {
       throw new AaptUtilException(
@@ -79,7 +76,19 @@ public final class AaptUtil {
       throw new AaptUtilException(
           "Could not find Android sdk build-tools for project " + project.getName());
     }
-    String aapt = toolInfo.getPath(PathId.AAPT);
+    return toolInfo.getPath(PathId.AAPT);
+  }
+
+  /**
+   * Uses aapt to dump badging information for the given apk, and extracts information from the
+   * output matching the given pattern.
+   */
+  @Nullable
+  private static MatchResult getAaptBadging(String aapt, File apk, Pattern pattern)
+      throws AaptUtilException {
+    if (!apk.exists()) {
+      throw new AaptUtilException("apk file does not exist: " + apk);
+    }
     GeneralCommandLine commandLine =
         new GeneralCommandLine(aapt, "dump", "badging", apk.getAbsolutePath());
     OSProcessHandler handler;
@@ -19,6 +19,7 @@ import com.android.tools.idea.run.ApkProvisionException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.rules.android.deployinfo.AndroidDeployInfoOuterClass.AndroidDeployInfo;
+import com.google.idea.blaze.android.run.deployinfo.ApkManifestPackages;
 import com.google.idea.blaze.android.run.deployinfo.BlazeAndroidDeployInfo;
 import com.google.idea.blaze.android.run.deployinfo.BlazeApkDeployInfoProtoHelper;
 import com.google.idea.blaze.android.run.deployinfo.BlazeApkDeployInfoProtoHelper.GetDeployInfoException;
@@ -36,6 +37,7 @@ import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.scope.output.StatusOutput;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
@@ -93,6 +95,7 @@ public class BlazeApkBuildStepNormalBuild implements BlazeApkBuildStep {
           .addBlazeFlags(buildResultHelper.getBuildFlags());
 
       SaveUtil.saveAllFiles();
+      long buildStartMillis = System.currentTimeMillis();
       int retVal =
           ExternalTask.builder(workspaceRoot)
               .addBlazeCommand(command.build())
@@ -102,6 +105,10 @@ public class BlazeApkBuildStepNormalBuild implements BlazeApkBuildStep {
                       BlazeConsoleLineProcessorProvider.getAllStderrLineProcessors(context)))
               .build()
               .run();
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Build finished in %d ms", System.currentTimeMillis() - buildStartMillis)));
       FileCaches.refresh(project, context);
 
       if (retVal != 0) {
@@ -110,6 +117,7 @@ public class BlazeApkBuildStepNormalBuild implements BlazeApkBuildStep {
       }
 
       context.output(new StatusOutput("Reading deployment information..."));
+      long deployInfoStartMillis = System.currentTimeMillis();
       String executionRoot =
           ExecRootUtil.getExecutionRoot(buildResultHelper, project, buildFlags, context);
       if (executionRoot == null) {
@@ -123,6 +131,13 @@ public class BlazeApkBuildStepNormalBuild implements BlazeApkBuildStep {
       deployInfo =
           deployInfoHelper.extractDeployInfoAndInvalidateManifests(
               project, new File(executionRoot), deployInfoProto);
+      // start looking up the APKs' manifest packages while the launch continues
+      ApkManifestPackages.prefetch(project, deployInfo.getApksToDeploy());
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Read deployment information in %d ms",
+                  System.currentTimeMillis() - deployInfoStartMillis)));
     } catch (GetArtifactsException e) {
       IssueOutput.error("Could not read BEP output: " + e.getMessage()).submit(context);
     } catch (GetDeployInfoException e) {
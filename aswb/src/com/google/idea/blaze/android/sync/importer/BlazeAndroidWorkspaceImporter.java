@@ -69,6 +69,7 @@ public class BlazeAndroidWorkspaceImporter {
   private final Predicate<ArtifactLocation> shouldCreateFakeAar;
   ImmutableSet<String> whitelistedGenResourcePaths;
   private final WhitelistFilter whitelistFilter;
+  private final TransitiveResourceSets transitiveResourceSets = new TransitiveResourceSets();
 
   public BlazeAndroidWorkspaceImporter(
       Project project, BlazeContext context, BlazeImportInput input) {
@@ -103,6 +104,7 @@ public class BlazeAndroidWorkspaceImporter {
         AndroidResourceModule.Builder androidResourceModuleBuilder =
             getOrCreateResourceModuleBuilder(
                 target, libraries, targetKeyToAndroidResourceModuleBuilder);
+        transitiveResourceSets.populate(target.getKey(), androidResourceModuleBuilder);
         resourceModules.add(androidResourceModuleBuilder.build());
       }
     }
@@ -141,38 +143,30 @@ public class BlazeAndroidWorkspaceImporter {
     AndroidResourceModule.Builder targetResourceModule =
         createResourceModuleBuilder(target, libraryFactory);
     resourceModuleBuilderCache.put(targetKey, targetResourceModule);
+    transitiveResourceSets.create(
+        targetKey,
+        targetResourceModule.getTransitiveResources(),
+        targetResourceModule.getResourceLibraryKeys());
     for (TargetKey dep : DependencyUtil.getResourceDependencies(target)) {
       TargetIdeInfo depIdeInfo = input.targetMap.get(dep);
-      reduce(
-          targetKey,
-          targetResourceModule,
-          dep,
-          depIdeInfo,
-          libraryFactory,
-          resourceModuleBuilderCache);
+      reduce(targetKey, dep, depIdeInfo, libraryFactory, resourceModuleBuilderCache);
     }
+    transitiveResourceSets.complete(targetKey);
     return targetResourceModule;
   }
 
   protected void reduce(
       TargetKey targetKey,
-      AndroidResourceModule.Builder targetResourceModule,
       TargetKey depKey,
       TargetIdeInfo depIdeInfo,
       LibraryFactory libraryFactory,
       Map<TargetKey, AndroidResourceModule.Builder> resourceModuleBuilderCache) {
     if (depIdeInfo != null) {
-      AndroidResourceModule.Builder depTargetResourceModule =
-          getOrCreateResourceModuleBuilder(depIdeInfo, libraryFactory, resourceModuleBuilderCache);
-      targetResourceModule.addTransitiveResources(depTargetResourceModule.getTransitiveResources());
-      targetResourceModule.addResourceLibraryKeys(depTargetResourceModule.getResourceLibraryKeys());
-      targetResourceModule.addTransitiveResourceDependencies(
-          depTargetResourceModule.getTransitiveResourceDependencies().stream()
-              .filter(key -> !targetKey.equals(key))
-              .collect(Collectors.toList()));
-      if (shouldCreateModule(depIdeInfo.getAndroidIdeInfo()) && !depKey.equals(targetKey)) {
-        targetResourceModule.addTransitiveResourceDependency(depKey);
-      }
+      // Only the dependency's transitive sets are needed, and those are combined without copying
+      // them into each builder. See TransitiveResourceSets.
+      getOrCreateResourceModuleBuilder(depIdeInfo, libraryFactory, resourceModuleBuilderCache);
+      transitiveResourceSets.addDependency(
+          targetKey, depKey, shouldCreateModule(depIdeInfo.getAndroidIdeInfo()));
     }
   }
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.sync.importer;
+
+import com.google.idea.blaze.android.sync.model.AndroidResourceModule;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The transitive resources, resource libraries and resource dependencies of each target visited by
+ * {@link BlazeAndroidWorkspaceImporter}.
+ *
+ * <p>Each set is a bitset over ids assigned to the resources, libraries and targets, so the union
+ * over a dependency is a word-wise OR computed once per edge. A completed set is shared, rather
+ * than copied, by any dependent which doesn't add to it (e.g. a chain of targets without resources
+ * of their own). Sets are only expanded back into objects for the resource modules actually built.
+ */
+final class TransitiveResourceSets {
+
+  private final IdTable<ArtifactLocation> resourceIds = new IdTable<>();
+  private final IdTable<String> libraryIds = new IdTable<>();
+  private final IdTable<TargetKey> targetIds = new IdTable<>();
+  private final Map<TargetKey, Node> nodes = new HashMap<>();
+
+  /** Starts the sets for a target, from the resources and library keys it contributes itself. */
+  void create(
+      TargetKey target, Collection<ArtifactLocation> resources, Collection<String> libraryKeys) {
+    Node node = new Node();
+    resources.forEach(resource -> node.resources.add(resourceIds.getId(resource)));
+    libraryKeys.forEach(key -> node.libraryKeys.add(libraryIds.getId(key)));
+    nodes.put(target, node);
+  }
+
+  /**
+   * Adds the transitive sets of {@code dependency} to those of {@code target}.
+   *
+   * @param isResourceModule whether the dependency will have a resource module of its own, and so
+   *     should be recorded as a transitive resource dependency
+   */
+  void addDependency(TargetKey target, TargetKey dependency, boolean isResourceModule) {
+    Node node = nodes.get(target);
+    Node dependencyNode = nodes.get(dependency);
+    node.resources.addAll(dependencyNode.resources);
+    node.libraryKeys.addAll(dependencyNode.libraryKeys);
+    node.dependencies.addAll(dependencyNode.dependencies);
+    node.dependencies.remove(targetIds.getId(target));
+    if (isResourceModule && !dependency.equals(target)) {
+      node.dependencies.add(targetIds.getId(dependency));
+    }
+  }
+
+  /**
+   * Marks the sets for a target as complete, after which they can be shared with its dependents.
+   */
+  void complete(TargetKey target) {
+    Node node = nodes.get(target);
+    node.resources.complete = true;
+    node.libraryKeys.complete = true;
+    node.dependencies.complete = true;
+  }
+
+  /** Adds the transitive sets of a target to its resource module builder. */
+  void populate(TargetKey target, AndroidResourceModule.Builder builder) {
+    Node node = nodes.get(target);
+    node.resources.forEach(resourceIds, builder::addTransitiveResource);
+    node.libraryKeys.forEach(libraryIds, builder::addResourceLibraryKey);
+    node.dependencies.forEach(targetIds, builder::addTransitiveResourceDependency);
+  }
+
+  private static final class Node {
+    final IdSet resources = new IdSet();
+    final IdSet libraryKeys = new IdSet();
+    final IdSet dependencies = new IdSet();
+  }
+
+  /** Assigns consecutive ids to distinct values. */
+  private static final class IdTable<T> {
+    private final Map<T, Integer> ids = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    int getId(T value) {
+      return ids.computeIfAbsent(
+          value,
+          v -> {
+            values.add(v);
+            return values.size() - 1;
+          });
+    }
+
+    T getValue(int id) {
+      return values.get(id);
+    }
+  }
+
+  /**
+   * A set of ids, which may share its bits with a completed set it was copied from until it's
+   * modified.
+   */
+  private static final class IdSet {
+    private static final BitSet EMPTY = new BitSet();
+
+    private BitSet bits = EMPTY;
+    private boolean shared = true;
+    boolean complete;
+
+    void add(int id) {
+      if (!bits.get(id)) {
+        ensureOwned();
+        bits.set(id);
+      }
+    }
+
+    void remove(int id) {
+      if (bits.get(id)) {
+        ensureOwned();
+        bits.clear(id);
+      }
+    }
+
+    void addAll(IdSet other) {
+      if (other.bits.isEmpty() || other.bits == bits) {
+        return;
+      }
+      if (bits.isEmpty() && other.complete) {
+        bits = other.bits;
+        shared = true;
+        return;
+      }
+      if (shared && containsAll(other)) {
+        return;
+      }
+      ensureOwned();
+      bits.or(other.bits);
+    }
+
+    private boolean containsAll(IdSet other) {
+      BitSet missing = (BitSet) other.bits.clone();
+      missing.andNot(bits);
+      return missing.isEmpty();
+    }
+
+    private void ensureOwned() {
+      if (shared) {
+        bits = (BitSet) bits.clone();
+        shared = false;
+      }
+    }
+
+    <T> void forEach(IdTable<T> table, Consumer<T> consumer) {
+      for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+        consumer.accept(table.getValue(id));
+      }
+    }
+  }
+}
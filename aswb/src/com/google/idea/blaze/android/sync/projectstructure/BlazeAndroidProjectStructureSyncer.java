@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.android.sync.projectstructure;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.stream.Collectors.toSet;
 
 import com.android.annotations.VisibleForTesting;
@@ -81,6 +82,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.jetbrains.android.facet.AndroidFacet;
 
@@ -389,6 +391,30 @@ public class BlazeAndroidProjectStructureSyncer {
             .map(targetIdeInfo -> BlazeImportUtil.javaResourcePackageFor(targetIdeInfo, true))
             .collect(toSet());
 
+    Set<TargetKey> androidResourceModules =
+        syncData.importResult.androidResourceModules.stream()
+            .map(androidResourceModule -> androidResourceModule.targetKey)
+            .collect(toSet());
+    List<TargetIdeInfo> runConfigurationTargets =
+        getRunConfigurationTargets(
+            project, projectViewSet, blazeProjectData, androidResourceModules);
+
+    // Parse all the manifests read below in parallel, rather than one at a time
+    ParsedManifestService.getInstance(project)
+        .prefetchParsedManifests(
+            Stream.concat(
+                    androidResourceModules.stream().map(blazeProjectData.getTargetMap()::get),
+                    runConfigurationTargets.stream())
+                .filter(target -> target != null && target.getAndroidIdeInfo() != null)
+                .map(
+                    target ->
+                        manifestFileForAndroidTarget(
+                            project,
+                            artifactLocationDecoder,
+                            target.getAndroidIdeInfo(),
+                            moduleDirectoryForAndroidTarget(workspaceRoot, target)))
+                .collect(toImmutableList()));
+
     for (AndroidResourceModule androidResourceModule :
         syncData.importResult.androidResourceModules) {
       TargetIdeInfo target = blazeProjectData.getTargetMap().get(androidResourceModule.targetKey);
@@ -427,13 +453,6 @@ public class BlazeAndroidProjectStructureSyncer {
 
     rClassBuilder.addWorkspacePackages(sourcePackages);
 
-    Set<TargetKey> androidResourceModules =
-        syncData.importResult.androidResourceModules.stream()
-            .map(androidResourceModule -> androidResourceModule.targetKey)
-            .collect(toSet());
-    List<TargetIdeInfo> runConfigurationTargets =
-        getRunConfigurationTargets(
-            project, projectViewSet, blazeProjectData, androidResourceModules);
     for (TargetIdeInfo target : runConfigurationTargets) {
       String moduleName = moduleNameForAndroidModule(target.getKey());
       Module module = moduleFinder.findModuleByName(moduleName);
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.editor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.logging.EventLoggingService;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.SyncResult;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceFileFinder;
+import com.google.idea.blaze.base.sync.workspace.WorkspacePathResolverProvider;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.HighlightInfoType;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiReferenceExpression;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link ProjectUnresolvedResourceStatsCollector}. */
+@RunWith(JUnit4.class)
+public class ProjectUnresolvedResourceStatsCollectorTest extends BlazeTestCase {
+
+  private final DumbService dumbService = mock(DumbService.class);
+  private final EventLoggingService eventLoggingService = mock(EventLoggingService.class);
+  private ProjectUnresolvedResourceStatsCollector collector;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    applicationServices.register(EventLoggingService.class, eventLoggingService);
+    projectServices.register(DumbService.class, dumbService);
+
+    collector =
+        new ProjectUnresolvedResourceStatsCollector(
+            project,
+            mock(WorkspacePathResolverProvider.class),
+            mock(BlazeProjectDataManager.class),
+            mock(WorkspaceFileFinder.Provider.class),
+            mock(FileTypeRegistry.class));
+  }
+
+  @Test
+  public void testUnmodifiedFileIsOnlyProcessedOnce() {
+    PsiFile file = mockFile("/src/Foo.java", 1);
+    assertThat(collector.canProcessFile(file)).isTrue();
+
+    collector.onFileProcessed(file);
+
+    assertThat(collector.canProcessFile(file)).isFalse();
+    assertThat(collector.canProcessFile(mockFile("/src/Bar.java", 1))).isTrue();
+  }
+
+  @Test
+  public void testModifiedFileIsProcessedAgain() {
+    PsiFile file = mockFile("/src/Foo.java", 1);
+    collector.onFileProcessed(file);
+
+    when(file.getModificationStamp()).thenReturn(2L);
+
+    assertThat(collector.canProcessFile(file)).isTrue();
+  }
+
+  @Test
+  public void testStaleHighlightsAreDroppedWhenFileIsModified() {
+    PsiFile file = mockFile("/src/Foo.java", 1);
+    collector.processHighlight(mockResourceReference(file), wrongRef());
+    collector.onFileProcessed(file);
+    assertThat(collector.getHighlightInfos(file)).hasSize(1);
+
+    when(file.getModificationStamp()).thenReturn(2L);
+    collector.onFileProcessed(file);
+
+    assertThat(collector.getHighlightInfos(file)).isEmpty();
+  }
+
+  @Test
+  public void testHighlightsAreKeptWhileFileIsUnmodified() {
+    PsiFile file = mockFile("/src/Foo.java", 1);
+    collector.processHighlight(mockResourceReference(file), wrongRef());
+    collector.processHighlight(mockResourceReference(file), wrongRef());
+    collector.onFileProcessed(file);
+
+    assertThat(collector.getHighlightInfos(file)).hasSize(2);
+  }
+
+  @Test
+  public void testFilesAreNotProcessedWhileSyncing() {
+    PsiFile file = mockFile("/src/Foo.java", 1);
+
+    collector.onSyncStart(SyncMode.INCREMENTAL);
+    assertThat(collector.canProcessFile(file)).isFalse();
+    collector.onFileProcessed(file);
+
+    collector.onSyncComplete(SyncMode.INCREMENTAL, SyncResult.SUCCESS);
+    assertThat(collector.canProcessFile(file)).isTrue();
+  }
+
+  @Test
+  public void testFilesAreNotProcessedWhileIndexing() {
+    PsiFile file = mockFile("/src/Foo.java", 1);
+    when(dumbService.isDumb()).thenReturn(true);
+
+    assertThat(collector.canProcessFile(file)).isFalse();
+  }
+
+  @Test
+  public void testFlushLogsProcessedFilesAndClearsResults() {
+    collector.onSyncComplete(SyncMode.INCREMENTAL, SyncResult.SUCCESS);
+    PsiFile foo = mockFile("/src/Foo.java", 1);
+    PsiFile bar = mockFile("/src/Bar.java", 1);
+    collector.onFileProcessed(foo);
+    collector.onFileProcessed(bar);
+
+    collector.dispose();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<String, String>> keyValues = ArgumentCaptor.forClass(Map.class);
+    verify(eventLoggingService)
+        .logEvent(
+            eq(ProjectUnresolvedResourceStatsCollector.class),
+            eq("UnresolvedResourceStats"),
+            keyValues.capture(),
+            any());
+    assertThat(keyValues.getValue()).containsEntry("filesProcessed", "2");
+    assertThat(keyValues.getValue()).containsEntry("filesWithUnresolvedReferences", "0");
+    assertThat(collector.canProcessFile(foo)).isTrue();
+  }
+
+  @Test
+  public void testNothingIsLoggedBeforeFirstSync() {
+    collector.onFileProcessed(mockFile("/src/Foo.java", 1));
+
+    collector.dispose();
+
+    verify(eventLoggingService, never()).logEvent(any(), any(), anyMap(), any());
+  }
+
+  private PsiFile mockFile(String path, long modificationStamp) {
+    VirtualFile virtualFile = mock(VirtualFile.class);
+    when(virtualFile.getPath()).thenReturn(path);
+    PsiFile file = mock(PsiFile.class);
+    when(file.getVirtualFile()).thenReturn(virtualFile);
+    when(file.getModificationStamp()).thenReturn(modificationStamp);
+    when(file.getProject()).thenReturn(project);
+    return file;
+  }
+
+  /** Returns a mock of the java expression {@code R.string.foo}. */
+  private static PsiReferenceExpression mockResourceReference(PsiFile file) {
+    PsiReferenceExpression rClass = mock(PsiReferenceExpression.class);
+    when(rClass.getText()).thenReturn("R");
+    PsiReferenceExpression resourceType = mock(PsiReferenceExpression.class);
+    when(resourceType.getQualifier()).thenReturn(rClass);
+    when(resourceType.getReferenceName()).thenReturn("string");
+    PsiReferenceExpression reference = mock(PsiReferenceExpression.class);
+    when(reference.getQualifier()).thenReturn(resourceType);
+    when(reference.getText()).thenReturn("R.string.foo");
+    when(reference.getLanguage()).thenReturn(JavaLanguage.INSTANCE);
+    when(reference.getContainingFile()).thenReturn(file);
+    return reference;
+  }
+
+  private static HighlightInfo wrongRef() {
+    return HighlightInfo.newHighlightInfo(HighlightInfoType.WRONG_REF)
+        .range(0, 12)
+        .descriptionAndTooltip("Cannot resolve symbol 'foo'")
+        .createUnconditionally();
+  }
+}
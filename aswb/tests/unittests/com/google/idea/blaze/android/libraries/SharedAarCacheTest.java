@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.libraries;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.idea.blaze.base.command.buildresult.SourceArtifact;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SharedAarCache}. */
+@RunWith(JUnit4.class)
+public final class SharedAarCacheTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testEverythingButJarsIsExtracted() throws IOException {
+    String[] entries = {
+      "AndroidManifest.xml",
+      "res/values/strings.xml",
+      "R.txt",
+      "assets/data.bin",
+      "jni/x86/libfoo.so",
+      "proguard.txt",
+      "annotations.zip",
+      "classes.jar",
+      "libs/extra.jar"
+    };
+    byte[] aar = zip(entries);
+    Path destination = folder.newFolder("aar").toPath();
+
+    long bytesWritten = SharedAarCache.extract(new ByteArrayInputStream(aar), destination);
+
+    assertThat(Files.exists(destination.resolve("AndroidManifest.xml"))).isTrue();
+    assertThat(Files.exists(destination.resolve("res/values/strings.xml"))).isTrue();
+    assertThat(Files.exists(destination.resolve("R.txt"))).isTrue();
+    assertThat(Files.exists(destination.resolve("assets/data.bin"))).isTrue();
+    assertThat(Files.exists(destination.resolve("jni/x86/libfoo.so"))).isTrue();
+    assertThat(Files.exists(destination.resolve("proguard.txt"))).isTrue();
+    assertThat(Files.exists(destination.resolve("annotations.zip"))).isTrue();
+    assertThat(Files.exists(destination.resolve("classes.jar"))).isFalse();
+    assertThat(Files.exists(destination.resolve("libs"))).isFalse();
+    assertThat(bytesWritten)
+        .isEqualTo(
+            Arrays.stream(entries)
+                .filter(entry -> !entry.endsWith(".jar"))
+                .mapToLong(String::length)
+                .sum());
+  }
+
+  @Test
+  public void testLocalAarIsReusedUntilModified() throws IOException {
+    SharedAarCache cache = new SharedAarCache(folder.newFolder("cache"));
+    File aarFile = folder.newFile("lib.aar");
+    Files.write(aarFile.toPath(), zip("AndroidManifest.xml", "res/values/strings.xml"));
+    SharedAarCache.Stats stats = new SharedAarCache.Stats();
+
+    Path first = cache.getOrExtract(new SourceArtifact(aarFile), stats);
+    Path second = cache.getOrExtract(new SourceArtifact(aarFile), stats);
+
+    assertThat(second).isEqualTo(first);
+    assertThat(stats.aarsExtracted.get()).isEqualTo(1);
+    assertThat(stats.aarsReused.get()).isEqualTo(1);
+    assertThat(cache.localDigestCount()).isEqualTo(1);
+
+    Files.write(aarFile.toPath(), zip("AndroidManifest.xml", "res/values/colors.xml"));
+    Path modified = cache.getOrExtract(new SourceArtifact(aarFile), stats);
+
+    assertThat(modified).isNotEqualTo(first);
+    assertThat(Files.exists(modified.resolve("res/values/colors.xml"))).isTrue();
+    assertThat(stats.aarsExtracted.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testIncompleteEntryIsReplaced() throws IOException {
+    SharedAarCache cache = new SharedAarCache(folder.newFolder("cache"));
+    File aarFile = folder.newFile("lib.aar");
+    Files.write(aarFile.toPath(), zip("AndroidManifest.xml", "res/values/strings.xml"));
+    SharedAarCache.Stats stats = new SharedAarCache.Stats();
+
+    Path entry = cache.getOrExtract(new SourceArtifact(aarFile), stats);
+    // simulate an entry left behind by an interrupted cleanup
+    Files.delete(entry.resolve(".complete"));
+    Files.delete(entry.resolve("res/values/strings.xml"));
+
+    Path replaced = cache.getOrExtract(new SourceArtifact(aarFile), stats);
+
+    assertThat(replaced).isEqualTo(entry);
+    assertThat(Files.exists(replaced.resolve(".complete"))).isTrue();
+    assertThat(Files.exists(replaced.resolve("res/values/strings.xml"))).isTrue();
+    assertThat(stats.aarsExtracted.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEntryOutsideDestinationIsRejected() throws IOException {
+    byte[] aar = zip("res/../../escaped.xml");
+    Path destination = folder.newFolder("aar").toPath();
+
+    try {
+      SharedAarCache.extract(new ByteArrayInputStream(aar), destination);
+      fail("Expected an IOException");
+    } catch (IOException expected) {
+      assertThat(Files.exists(folder.getRoot().toPath().resolve("escaped.xml"))).isFalse();
+    }
+  }
+
+  /** Returns a zip holding the given entries, each containing its own name. */
+  private static byte[] zip(String... entries) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        out.write(entry.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -262,4 +262,44 @@ public class ManifestParserTest {
         ManifestParser.parseManifestFromInputStream(manifestInputStream);
     assertThat(parsedManifest).isNull();
   }
+
+  @Test
+  public void extractDefaultActivityFromAliasWithRelativeName() throws Exception {
+    @Language("XML")
+    String manifest =
+        "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"
+            + "    package=\"com.example\">\n"
+            + "  <application>\n"
+            + "    <activity android:name=\".Disabled\" android:enabled=\"false\">\n"
+            + "      <intent-filter>\n"
+            + "        <action android:name=\"android.intent.action.MAIN\"/>\n"
+            + "        <category android:name=\"android.intent.category.LAUNCHER\"/>\n"
+            + "      </intent-filter>\n"
+            + "    </activity>\n"
+            + "    <activity-alias android:name=\"Alias\" android:targetActivity=\".Main\">\n"
+            + "      <intent-filter>\n"
+            + "        <action android:name=\"android.intent.action.MAIN\"/>\n"
+            + "        <category android:name=\"android.intent.category.LAUNCHER\"/>\n"
+            + "      </intent-filter>\n"
+            + "    </activity-alias>\n"
+            + "  </application>\n"
+            + "</manifest>";
+
+    ManifestParser.ParsedManifest parsedManifest =
+        ManifestParser.parseManifestFromInputStream(
+            new ByteArrayInputStream(manifest.getBytes(UTF_8)));
+    assertThat(parsedManifest).isNotNull();
+    assertThat(parsedManifest.defaultActivityClassName).isEqualTo("com.example.Alias");
+  }
+
+  @Test
+  public void extractFromTruncatedManifestShouldYieldNull() throws Exception {
+    String truncated =
+        APP_MANIFEST_XML_CONTENTS.substring(0, APP_MANIFEST_XML_CONTENTS.length() / 2);
+
+    ManifestParser.ParsedManifest parsedManifest =
+        ManifestParser.parseManifestFromInputStream(
+            new ByteArrayInputStream(truncated.getBytes(UTF_8)));
+    assertThat(parsedManifest).isNull();
+  }
 }
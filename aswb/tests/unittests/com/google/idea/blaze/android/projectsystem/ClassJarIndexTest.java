@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.projectsystem;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ClassJarIndex}. */
+@RunWith(JUnit4.class)
+public final class ClassJarIndexTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFindsJarsByPackage() throws IOException {
+    File foo = writeJar("foo.jar", "com/google/foo/Foo.class", "com/google/foo/Foo$Inner.class");
+    File bar = writeJar("bar.jar", "com/google/bar/Bar.class", "com/google/foo/Split.class");
+    File empty = writeJar("empty.jar", "META-INF/MANIFEST.MF");
+
+    ClassJarIndex index = ClassJarIndex.create(ImmutableList.of(foo, bar, empty), null);
+
+    assertThat(index.getCandidateJars("com.google.foo.Foo$Inner")).containsExactly(foo, bar);
+    assertThat(index.getCandidateJars("com.google.bar.Bar")).containsExactly(bar);
+    assertThat(index.getCandidateJars("com.google.Missing")).isEmpty();
+    assertThat(index.getCandidateJars("Default")).isEmpty();
+  }
+
+  @Test
+  public void testMissingJarIsSearchedUntilIndexed() throws IOException {
+    File jar = new File(folder.getRoot(), "later.jar");
+    ClassJarIndex index = ClassJarIndex.create(ImmutableList.of(jar), null);
+    assertThat(index.getCandidateJars("com.google.Later")).containsExactly(jar);
+    assertThat(index.isUpToDate()).isTrue();
+
+    writeJar("later.jar", "com/google/Later.class");
+
+    assertThat(index.isUpToDate()).isFalse();
+    ClassJarIndex updated = ClassJarIndex.create(ImmutableList.of(jar), index);
+    assertThat(updated.getCandidateJars("com.google.Later")).containsExactly(jar);
+    assertThat(updated.getCandidateJars("com.google.other.Other")).isEmpty();
+    assertThat(updated.isUpToDate()).isTrue();
+  }
+
+  @Test
+  public void testUnreadableJarIsAlwaysACandidate() throws IOException {
+    File jar = folder.newFile("corrupt.jar");
+    Files.write(jar.toPath(), "not a jar".getBytes(StandardCharsets.UTF_8));
+
+    ClassJarIndex index = ClassJarIndex.create(ImmutableList.of(jar), null);
+
+    assertThat(index.getCandidateJars("com.google.Anything")).containsExactly(jar);
+  }
+
+  @Test
+  public void testGetPackagePath() {
+    assertThat(ClassJarIndex.getPackagePath("com.google.Foo$Bar")).isEqualTo("com/google");
+    assertThat(ClassJarIndex.getPackagePath("Foo")).isEmpty();
+  }
+
+  private File writeJar(String name, String... entries) throws IOException {
+    File jar = new File(folder.getRoot(), name);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
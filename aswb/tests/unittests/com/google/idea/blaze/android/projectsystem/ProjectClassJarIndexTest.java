@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.projectsystem;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.MockBlazeExecutor;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.JavaIdeInfo;
+import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataManager;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.google.idea.blaze.base.sync.workspace.MockArtifactLocationDecoder;
+import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
+import com.google.idea.blaze.java.AndroidBlazeRules;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ProjectClassJarIndex}. */
+@RunWith(JUnit4.class)
+public class ProjectClassJarIndexTest extends BlazeTestCase {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static final Label APP = Label.create("//java/com/google/app:app");
+  private static final Label LIBRARY = Label.create("//java/com/google/library:library");
+
+  private Container projectServices;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class)
+        .registerExtension(new AndroidBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+    applicationServices.register(BlazeExecutor.class, new MockBlazeExecutor());
+
+    this.projectServices = projectServices;
+    projectServices.register(SyncCache.class, new SyncCache(project));
+    projectServices.register(TransitiveDependencyMap.class, new TransitiveDependencyMap(project));
+  }
+
+  @Test
+  public void testNarrowsSearchToJarsContainingPackage() throws IOException {
+    File appJar = writeJar("app.jar", "com/google/app/App.class");
+    File libraryJar =
+        writeJar("library.jar", "com/google/library/Library.class", "com/google/app/Split.class");
+    TargetMap targetMap = setTargetMap(appJar, libraryJar);
+
+    ProjectClassJarIndex index = ProjectClassJarIndex.getInstance(project);
+    TargetIdeInfo app = targetMap.get(TargetKey.forPlainTarget(APP));
+
+    // The refresh runs synchronously on the mock executor, so the index is used straight away.
+    assertThat(index.getJarsToSearch(app, "com.google.app.App"))
+        .containsExactly(appJar, libraryJar)
+        .inOrder();
+    assertThat(index.getJarsToSearch(app, "com.google.library.Library"))
+        .containsExactly(libraryJar);
+    assertThat(index.getJarsToSearch(app, "com.google.unknown.Unknown")).isEmpty();
+  }
+
+  @Test
+  public void testMissingJarIsStillSearched() throws IOException {
+    File appJar = writeJar("app.jar", "com/google/app/App.class");
+    File missingJar = new File(folder.getRoot(), "missing.jar");
+    TargetMap targetMap = setTargetMap(appJar, missingJar);
+
+    ProjectClassJarIndex index = ProjectClassJarIndex.getInstance(project);
+    TargetIdeInfo app = targetMap.get(TargetKey.forPlainTarget(APP));
+
+    assertThat(index.getJarsToSearch(app, "com.google.library.Library"))
+        .containsExactly(missingJar);
+  }
+
+  @Test
+  public void testClosureIsSearchedWhenJarChangedSinceIndexing() throws IOException {
+    File appJar = writeJar("app.jar", "com/google/app/App.class");
+    File libraryJar = writeJar("library.jar", "com/google/library/Library.class");
+    TargetMap targetMap = setTargetMap(appJar, libraryJar);
+
+    ProjectClassJarIndex index = ProjectClassJarIndex.getInstance(project);
+    TargetIdeInfo app = targetMap.get(TargetKey.forPlainTarget(APP));
+    assertThat(index.getJarsToSearch(app, "com.google.generated.Generated")).isEmpty();
+
+    // rebuilt with a new package, before the index is next refreshed
+    writeJar(
+        "library.jar", "com/google/library/Library.class", "com/google/generated/Generated.class");
+    assertThat(libraryJar.setLastModified(libraryJar.lastModified() + 10_000)).isTrue();
+
+    assertThat(index.getJarsToSearch(app, "com.google.generated.Generated"))
+        .containsExactly(appJar, libraryJar)
+        .inOrder();
+  }
+
+  private TargetMap setTargetMap(File appJar, File libraryJar) {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(
+                TargetIdeInfo.builder()
+                    .setLabel(APP)
+                    .setKind(AndroidBlazeRules.RuleTypes.ANDROID_LIBRARY.getKind())
+                    .setJavaInfo(JavaIdeInfo.builder().addJar(classJar(appJar)))
+                    .addDependency(LIBRARY))
+            .addTarget(
+                TargetIdeInfo.builder()
+                    .setLabel(LIBRARY)
+                    .setKind(AndroidBlazeRules.RuleTypes.ANDROID_LIBRARY.getKind())
+                    .setJavaInfo(JavaIdeInfo.builder().addJar(classJar(libraryJar))))
+            .build();
+    projectServices.register(
+        BlazeProjectDataManager.class,
+        new MockBlazeProjectDataManager(
+            MockBlazeProjectDataBuilder.builder()
+                .setTargetMap(targetMap)
+                .setArtifactLocationDecoder(new MockArtifactLocationDecoder())
+                .build()));
+    return targetMap;
+  }
+
+  private static LibraryArtifact.Builder classJar(File jar) {
+    return LibraryArtifact.builder()
+        .setClassJar(ArtifactLocation.builder().setRelativePath(jar.getPath()).build());
+  }
+
+  private File writeJar(String name, String... entries) throws IOException {
+    File jar = new File(folder.getRoot(), name);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.resources;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BlazeLightResourceClassService}. */
+@RunWith(JUnit4.class)
+public class BlazeLightResourceClassServiceTest extends BlazeTestCase {
+
+  private final AtomicReference<AndroidFacet> workspaceFacet = new AtomicReference<>();
+  /** The facet each R class was created for. */
+  private final Map<BlazeRClass, AndroidFacet> rClassFacets = new HashMap<>();
+  private final GlobalSearchScope scope = mock(GlobalSearchScope.class);
+  private BlazeLightResourceClassService service;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    MockExperimentService experimentService = new MockExperimentService();
+    experimentService.setExperimentRaw("aswb.workspace.light.class.enabled", 100);
+    experimentService.setExperimentRaw("create.stub.resource.packages", false);
+    applicationServices.register(ExperimentService.class, experimentService);
+    projectServices.register(PsiManager.class, mock(PsiManager.class));
+
+    when(scope.isSearchInModuleContent(any())).thenReturn(true);
+    service =
+        new BlazeLightResourceClassService(
+            (psiManager, androidFacet, packageName) -> {
+              BlazeRClass rClass = mock(BlazeRClass.class);
+              when(rClass.getModule()).thenReturn(mock(Module.class));
+              rClassFacets.put(rClass, androidFacet);
+              return rClass;
+            },
+            workspaceFacet::get);
+  }
+
+  @Test
+  public void testUnchangedRClassIsReusedAcrossSyncs() {
+    AndroidFacet facet = mockFacet();
+    BlazeLightResourceClassService.Builder firstSync = newBuilder();
+    firstSync.addRClass("com.google.foo", facet);
+    service.installRClasses(firstSync);
+    PsiClass original = getOnlyRClass("com.google.foo.R");
+
+    BlazeLightResourceClassService.Builder secondSync = newBuilder();
+    secondSync.addRClass("com.google.foo", facet);
+    service.installRClasses(secondSync);
+
+    assertThat(getOnlyRClass("com.google.foo.R")).isSameAs(original);
+  }
+
+  @Test
+  public void testRClassIsRecreatedWhenFacetChanges() {
+    BlazeLightResourceClassService.Builder firstSync = newBuilder();
+    firstSync.addRClass("com.google.foo", mockFacet());
+    service.installRClasses(firstSync);
+    PsiClass original = getOnlyRClass("com.google.foo.R");
+
+    BlazeLightResourceClassService.Builder secondSync = newBuilder();
+    secondSync.addRClass("com.google.foo", mockFacet());
+    service.installRClasses(secondSync);
+
+    assertThat(getOnlyRClass("com.google.foo.R")).isNotSameAs(original);
+    assertThat(service.getAllLightRClasses()).doesNotContain(original);
+  }
+
+  @Test
+  public void testWorkspaceRClassFollowsCurrentWorkspaceFacet() {
+    workspaceFacet.set(mockFacet());
+    BlazeLightResourceClassService.Builder builder = newBuilder();
+    builder.addWorkspacePackages(ImmutableSet.of("com.google.workspace"));
+    service.installRClasses(builder);
+
+    PsiClass original = getOnlyRClass("com.google.workspace.R");
+    assertThat(getOnlyRClass("com.google.workspace.R")).isSameAs(original);
+
+    // the workspace facet is replaced by a re-sync, before the R classes are next installed
+    AndroidFacet newFacet = mockFacet();
+    workspaceFacet.set(newFacet);
+    BlazeRClass updated = (BlazeRClass) getOnlyRClass("com.google.workspace.R");
+
+    assertThat(updated).isNotSameAs(original);
+    assertThat(rClassFacets.get(updated)).isSameAs(newFacet);
+    assertThat(service.getAllLightRClasses()).containsExactly(updated);
+  }
+
+  @Test
+  public void testNoWorkspaceRClassWithoutWorkspaceFacet() {
+    BlazeLightResourceClassService.Builder builder = newBuilder();
+    builder.addWorkspacePackages(ImmutableSet.of("com.google.workspace"));
+    service.installRClasses(builder);
+
+    assertThat(service.getLightRClasses("com.google.workspace.R", scope)).isEmpty();
+  }
+
+  private BlazeLightResourceClassService.Builder newBuilder() {
+    return new BlazeLightResourceClassService.Builder(project);
+  }
+
+  private PsiClass getOnlyRClass(String qualifiedName) {
+    return Iterables.getOnlyElement(service.getLightRClasses(qualifiedName, scope));
+  }
+
+  private static AndroidFacet mockFacet() {
+    return mock(AndroidFacet.class);
+  }
+}
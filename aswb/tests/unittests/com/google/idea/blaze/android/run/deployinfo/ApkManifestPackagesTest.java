@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.run.deployinfo;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.android.run.deployinfo.ApkManifestPackages.ManifestPackageReader;
+import com.google.idea.blaze.base.BlazeTestCase;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ApkManifestPackages}. */
+@RunWith(JUnit4.class)
+public class ApkManifestPackagesTest extends BlazeTestCase {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The APKs read, in order. */
+  private final List<File> reads = new ArrayList<>();
+
+  private final ManifestPackageReader reader =
+      apk -> {
+        reads.add(apk);
+        return "com.google." + apk.getName().replace(".apk", "");
+      };
+
+  private ApkManifestPackages packages;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    packages = createPackages(/* maxCachedApks= */ 10);
+  }
+
+  @Test
+  public void testPackageIsReadOnceWhileApkIsUnchanged() throws Exception {
+    File apk = writeApk("app.apk", "contents");
+
+    assertThat(packages.get(apk, reader)).isEqualTo("com.google.app");
+    assertThat(packages.get(apk, reader)).isEqualTo("com.google.app");
+
+    assertThat(reads).containsExactly(apk);
+  }
+
+  @Test
+  public void testPackageIsReadAgainWhenApkChanges() throws Exception {
+    File apk = writeApk("app.apk", "contents");
+    packages.get(apk, reader);
+
+    writeApk("app.apk", "new contents");
+    packages.get(apk, reader);
+
+    assertThat(reads).containsExactly(apk, apk);
+  }
+
+  @Test
+  public void testPrefetchedPackageIsNotReadAgain() throws Exception {
+    File app = writeApk("app.apk", "app");
+    File test = writeApk("test.apk", "test");
+
+    packages.prefetch(ImmutableList.of(app, test), reader);
+    assertThat(reads).containsExactly(app, test).inOrder();
+
+    assertThat(packages.get(app, reader)).isEqualTo("com.google.app");
+    assertThat(packages.get(test, reader)).isEqualTo("com.google.test");
+    assertThat(reads).hasSize(2);
+  }
+
+  @Test
+  public void testPrefetchSkipsMissingApks() {
+    packages.prefetch(ImmutableList.of(new File(folder.getRoot(), "missing.apk")), reader);
+
+    assertThat(reads).isEmpty();
+  }
+
+  @Test
+  public void testFailedLookupIsRetried() throws Exception {
+    File apk = writeApk("app.apk", "contents");
+    ManifestPackageReader failingReader =
+        file -> {
+          reads.add(file);
+          throw new IllegalStateException("aapt crashed");
+        };
+
+    try {
+      packages.get(apk, failingReader);
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+
+    assertThat(packages.get(apk, reader)).isEqualTo("com.google.app");
+    assertThat(reads).containsExactly(apk, apk);
+  }
+
+  @Test
+  public void testOnlyMostRecentApksAreKept() throws Exception {
+    packages = createPackages(/* maxCachedApks= */ 1);
+    File app = writeApk("app.apk", "app");
+    File test = writeApk("test.apk", "test");
+
+    packages.get(app, reader);
+    packages.get(test, reader);
+    packages.get(app, reader);
+
+    assertThat(reads).containsExactly(app, test, app).inOrder();
+  }
+
+  private static ApkManifestPackages createPackages(int maxCachedApks) {
+    return new ApkManifestPackages(MoreExecutors.newDirectExecutorService(), maxCachedApks);
+  }
+
+  private File writeApk(String name, String contents) throws IOException {
+    File apk = new File(folder.getRoot(), name);
+    Files.write(apk.toPath(), contents.getBytes(UTF_8));
+    return apk;
+  }
+}
@@ -2016,7 +2016,6 @@ public class BlazeAndroidWorkspaceImporterTest extends BlazeTestCase {
     @Override
     protected void reduce(
         TargetKey targetKey,
-        AndroidResourceModule.Builder targetResourceModule,
         TargetKey depKey,
         TargetIdeInfo depIdeInfo,
         LibraryFactory libraryFactory,
@@ -2024,13 +2023,7 @@ public class BlazeAndroidWorkspaceImporterTest extends BlazeTestCase {
       if (depIdeInfo != null) {
         ++reduce;
       }
-      super.reduce(
-          targetKey,
-          targetResourceModule,
-          depKey,
-          depIdeInfo,
-          libraryFactory,
-          resourceModuleBuilderCache);
+      super.reduce(targetKey, depKey, depIdeInfo, libraryFactory, resourceModuleBuilderCache);
     }
 
     public int getCreateCount() {
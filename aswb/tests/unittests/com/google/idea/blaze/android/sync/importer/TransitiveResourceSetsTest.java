@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.sync.importer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.android.sync.model.AndroidResourceModule;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.model.primitives.Label;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TransitiveResourceSets}. */
+@RunWith(JUnit4.class)
+public class TransitiveResourceSetsTest {
+
+  private static final TargetKey BASE = target("//java/base");
+  private static final TargetKey MIDDLE = target("//java/middle");
+  private static final TargetKey APP = target("//java/app");
+
+  @Test
+  public void testSharedSetIsCopiedBeforeModification() {
+    TransitiveResourceSets sets = new TransitiveResourceSets();
+    sets.create(BASE, ImmutableList.of(source("base/res")), ImmutableList.of("base_aar"));
+    sets.complete(BASE);
+    // MIDDLE adds nothing of its own, so shares BASE's sets
+    sets.create(MIDDLE, ImmutableList.of(), ImmutableList.of());
+    sets.addDependency(MIDDLE, BASE, /* isResourceModule= */ true);
+    sets.complete(MIDDLE);
+    sets.create(APP, ImmutableList.of(source("app/res")), ImmutableList.of());
+    sets.addDependency(APP, MIDDLE, /* isResourceModule= */ false);
+    sets.complete(APP);
+
+    AndroidResourceModule base = build(sets, BASE);
+    AndroidResourceModule middle = build(sets, MIDDLE);
+    AndroidResourceModule app = build(sets, APP);
+
+    assertThat(base.transitiveResources).containsExactly(source("base/res"));
+    assertThat(base.transitiveResourceDependencies).isEmpty();
+    assertThat(middle.transitiveResources).containsExactly(source("base/res"));
+    assertThat(middle.resourceLibraryKeys).containsExactly("base_aar");
+    assertThat(middle.transitiveResourceDependencies).containsExactly(BASE);
+    assertThat(app.transitiveResources).containsExactly(source("app/res"), source("base/res"));
+    assertThat(app.resourceLibraryKeys).containsExactly("base_aar");
+    assertThat(app.transitiveResourceDependencies).containsExactly(BASE);
+  }
+
+  @Test
+  public void testTargetIsNotItsOwnDependency() {
+    TransitiveResourceSets sets = new TransitiveResourceSets();
+    sets.create(BASE, ImmutableList.of(source("base/res")), ImmutableList.of());
+    sets.create(APP, ImmutableList.of(source("app/res")), ImmutableList.of());
+    // a dependency cycle
+    sets.addDependency(BASE, APP, /* isResourceModule= */ true);
+    sets.addDependency(APP, BASE, /* isResourceModule= */ true);
+    sets.complete(APP);
+    sets.complete(BASE);
+
+    assertThat(build(sets, APP).transitiveResourceDependencies).containsExactly(BASE);
+    assertThat(build(sets, APP).transitiveResources)
+        .containsExactly(source("app/res"), source("base/res"));
+  }
+
+  private static AndroidResourceModule build(TransitiveResourceSets sets, TargetKey target) {
+    AndroidResourceModule.Builder builder = AndroidResourceModule.builder(target);
+    sets.populate(target, builder);
+    return builder.build();
+  }
+
+  private static TargetKey target(String label) {
+    return TargetKey.forPlainTarget(Label.create(label));
+  }
+
+  private static ArtifactLocation source(String relativePath) {
+    return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
+  }
+}
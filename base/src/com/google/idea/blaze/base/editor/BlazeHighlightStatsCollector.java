@@ -71,4 +71,10 @@ public interface BlazeHighlightStatsCollector {
    * by {@link #supportedHighlightInfoTypes()}.
    */
   void processHighlight(PsiElement psiElement, HighlightInfo highlightInfo);
+
+  /**
+   * Called once all highlights in the file have been passed to {@link #processHighlight}, after a
+   * whole-file highlighting pass. Only called if {@link #canProcessFile(PsiFile)} returned true.
+   */
+  default void onFileProcessed(PsiFile file) {}
 }
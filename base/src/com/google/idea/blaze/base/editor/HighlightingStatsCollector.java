@@ -48,6 +48,7 @@ public class HighlightingStatsCollector implements HighlightVisitor {
       new BoolExperiment("blaze.highlight.visitor.enabled", true);
 
   private HighlightInfoHolder highlightInfoHolder;
+  private Set<BlazeHighlightStatsCollector> collectors;
   private Multimap<HighlightInfoType, BlazeHighlightStatsCollector> infoTypesToCollectors;
 
   @Override
@@ -74,8 +75,7 @@ public class HighlightingStatsCollector implements HighlightVisitor {
       if (psiFile == null) {
         return;
       }
-      Set<BlazeHighlightStatsCollector> collectors =
-          BlazeHighlightStatsCollector.getCollectorsSupportingFile(psiFile);
+      collectors = BlazeHighlightStatsCollector.getCollectorsSupportingFile(psiFile);
       infoTypesToCollectors =
           BlazeHighlightStatsCollector.getCollectorsByHighlightInfoTypes(collectors);
     }
@@ -109,6 +109,9 @@ public class HighlightingStatsCollector implements HighlightVisitor {
 
     try {
       runnable.run();
+      if (updateWholeFile && collectors != null) {
+        collectors.forEach(c -> c.onFileProcessed(psiFile));
+      }
     } finally {
       this.highlightInfoHolder = null;
     }
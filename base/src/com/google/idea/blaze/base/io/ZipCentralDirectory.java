@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a zip file directly from its central directory, without opening any entry
+ * streams or reading the local file headers.
+ *
+ * <p>Only the end of central directory record and the central directory itself are read, which is
+ * considerably cheaper than {@link java.util.zip.ZipFile} when all that's needed is entry names or
+ * CRCs. Zip64 archives and archives prefixed with other data (e.g. a launcher script) are
+ * supported.
+ */
+public final class ZipCentralDirectory {
+
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int EOCD_MIN_SIZE = 22;
+  private static final int MAX_EOCD_SEARCH = EOCD_MIN_SIZE + 0xFFFF;
+  private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_EOCD_SIZE = 56;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+
+  private ZipCentralDirectory() {}
+
+  /** Receives the entries of a zip file, in central directory order. */
+  @FunctionalInterface
+  public interface EntryVisitor {
+    /** Returns false if no further entries should be visited. */
+    boolean visit(Entry entry);
+  }
+
+  /**
+   * A central directory entry. Only valid for the duration of the {@link EntryVisitor#visit} call
+   * it's passed to.
+   */
+  public static final class Entry {
+    private final ByteBuffer buffer;
+    private int position;
+    private int nameLength;
+
+    private Entry(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /** The entry's CRC-32, as stored in the central directory. */
+    public int getCrc() {
+      return buffer.getInt(position + 16);
+    }
+
+    public String getName() {
+      byte[] bytes = new byte[nameLength];
+      for (int i = 0; i < nameLength; i++) {
+        bytes[i] = buffer.get(nameStart() + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns true if the entry's name ends with the given ASCII suffix. Cheaper than {@link
+     * #getName()}, as the name isn't decoded.
+     */
+    public boolean nameEndsWith(String asciiSuffix) {
+      int suffixLength = asciiSuffix.length();
+      if (nameLength < suffixLength) {
+        return false;
+      }
+      int suffixStart = nameStart() + nameLength - suffixLength;
+      for (int i = 0; i < suffixLength; i++) {
+        if (buffer.get(suffixStart + i) != asciiSuffix.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public boolean isDirectory() {
+      return nameEndsWith("/");
+    }
+
+    private int nameStart() {
+      return position + CENTRAL_HEADER_SIZE;
+    }
+  }
+
+  /** Visits each entry of the given zip file. */
+  public static void read(File zip, EntryVisitor visitor) throws IOException {
+    try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+      visitEntries(readCentralDirectory(new ChannelSource(channel)), visitor);
+    }
+  }
+
+  /** Visits each entry of a zip file whose entire contents are held in the given buffer. */
+  public static void read(ByteBuffer zip, EntryVisitor visitor) throws IOException {
+    visitEntries(readCentralDirectory(new BufferSource(zip)), visitor);
+  }
+
+  private static ByteBuffer readCentralDirectory(Source source) throws IOException {
+    long fileSize = source.size();
+    if (fileSize < EOCD_MIN_SIZE) {
+      throw new ZipException("File too small to be a zip file");
+    }
+    int tailSize = (int) Math.min(fileSize, MAX_EOCD_SEARCH);
+    long tailStart = fileSize - tailSize;
+    ByteBuffer tail = source.read(tailStart, tailSize);
+
+    int eocd = -1;
+    for (int i = tailSize - EOCD_MIN_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == EOCD_SIGNATURE) {
+        eocd = i;
+        break;
+      }
+    }
+    if (eocd == -1) {
+      throw new ZipException("Couldn't find the end of central directory record");
+    }
+
+    long entryCount = Short.toUnsignedLong(tail.getShort(eocd + 10));
+    long size = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+    long offset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+    if (entryCount == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+      int locator = eocd - ZIP64_EOCD_LOCATOR_SIZE;
+      if (locator >= 0 && tail.getInt(locator) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+        ByteBuffer zip64Eocd = source.read(tail.getLong(locator + 8), ZIP64_EOCD_SIZE);
+        if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+          throw new ZipException("Invalid zip64 end of central directory record");
+        }
+        size = zip64Eocd.getLong(40);
+        offset = zip64Eocd.getLong(48);
+      }
+    } else {
+      // Trust the position of the end record over the stored offset, in case the zip has been
+      // prefixed with something.
+      offset = tailStart + eocd - size;
+    }
+    if (size > Integer.MAX_VALUE || offset < 0 || offset + size > fileSize) {
+      throw new ZipException("Invalid central directory");
+    }
+    return source.read(offset, (int) size);
+  }
+
+  private static void visitEntries(ByteBuffer buffer, EntryVisitor visitor) throws ZipException {
+    Entry entry = new Entry(buffer);
+    int position = 0;
+    while (position + CENTRAL_HEADER_SIZE <= buffer.limit()) {
+      if (buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory header");
+      }
+      int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+      int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+      int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+      int nameStart = position + CENTRAL_HEADER_SIZE;
+      if (nameStart + nameLength > buffer.limit()) {
+        throw new ZipException("Truncated central directory");
+      }
+      entry.position = position;
+      entry.nameLength = nameLength;
+      if (!visitor.visit(entry)) {
+        return;
+      }
+      position = nameStart + nameLength + extraLength + commentLength;
+    }
+  }
+
+  /** Random access to the bytes of a zip file. */
+  private interface Source {
+    long size() throws IOException;
+
+    /** Returns a little-endian buffer holding exactly the requested range. */
+    ByteBuffer read(long position, int length) throws IOException;
+  }
+
+  private static final class ChannelSource implements Source {
+    private final FileChannel channel;
+
+    ChannelSource(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return channel.size();
+    }
+
+    @Override
+    public ByteBuffer read(long position, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new EOFException("Unexpected end of zip file");
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+
+  private static final class BufferSource implements Source {
+    private final ByteBuffer zip;
+
+    BufferSource(ByteBuffer zip) {
+      this.zip = zip;
+    }
+
+    @Override
+    public long size() {
+      return zip.remaining();
+    }
+
+    @Override
+    public ByteBuffer read(long position, int length) throws IOException {
+      if (position < 0 || position + length > zip.remaining()) {
+        throw new EOFException("Unexpected end of zip file");
+      }
+      ByteBuffer slice = zip.duplicate();
+      slice.position(zip.position() + (int) position);
+      slice.limit(slice.position() + length);
+      return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+}
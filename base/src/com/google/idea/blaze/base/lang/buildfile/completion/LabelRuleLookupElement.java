@@ -16,10 +16,13 @@
 package com.google.idea.blaze.base.lang.buildfile.completion;
 
 import com.google.common.collect.Lists;
+import com.google.idea.blaze.base.lang.buildfile.index.BuildFileSummary;
+import com.google.idea.blaze.base.lang.buildfile.index.BuildFileSummary.Rule;
 import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
 import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
 import com.google.idea.blaze.base.lang.buildfile.references.LabelUtils;
 import com.google.idea.blaze.base.lang.buildfile.references.QuoteType;
+import icons.BlazeIcons;
 import java.util.List;
 import java.util.Objects;
 import javax.annotation.Nullable;
@@ -43,37 +46,56 @@ public class LabelRuleLookupElement extends BuildLookupElement {
 
     String ruleFragment = LabelUtils.getRuleComponent(originalString);
     List<BuildLookupElement> lookups = Lists.newArrayList();
-    for (FuncallExpression target : file.findChildrenByClass(FuncallExpression.class)) {
-      String targetName = target.getName();
-      if (targetName == null
-          || Objects.equals(target.getName(), excluded)
-          || !targetName.startsWith(ruleFragment)) {
-        continue;
+    BuildFileSummary summary = file.getIndexedSummary();
+    if (summary != null) {
+      // avoid parsing the referenced file
+      for (Rule rule : summary.getRules().values()) {
+        String targetName = rule.getName();
+        String ruleType = rule.getKind();
+        if (ruleType == null
+            || targetName.equals(excluded)
+            || !targetName.startsWith(ruleFragment)) {
+          continue;
+        }
+        // only calls with a name argument are indexed, and they're always shown as build rules
+        lookups.add(
+            new LabelRuleLookupElement(
+                packagePrefix, BlazeIcons.BuildRule, targetName, ruleType, quoteType));
       }
-      String ruleType = target.getFunctionName();
-      if (ruleType == null) {
-        continue;
+    } else {
+      for (FuncallExpression target : file.findChildrenByClass(FuncallExpression.class)) {
+        String targetName = target.getName();
+        if (targetName == null
+            || Objects.equals(target.getName(), excluded)
+            || !targetName.startsWith(ruleFragment)) {
+          continue;
+        }
+        String ruleType = target.getFunctionName();
+        if (ruleType == null) {
+          continue;
+        }
+        lookups.add(
+            new LabelRuleLookupElement(
+                packagePrefix, target.getIcon(0), targetName, ruleType, quoteType));
       }
-      lookups.add(
-          new LabelRuleLookupElement(packagePrefix, target, targetName, ruleType, quoteType));
     }
     return lookups.isEmpty()
         ? BuildLookupElement.EMPTY_ARRAY
         : lookups.toArray(new BuildLookupElement[lookups.size()]);
   }
 
-  private final FuncallExpression target;
+  @Nullable private final Icon icon;
   private final String targetName;
   private final String ruleType;
 
   private LabelRuleLookupElement(
       String packagePrefix,
-      FuncallExpression target,
+      @Nullable Icon icon,
       String targetName,
       String ruleType,
       QuoteType quoteType) {
     super(packagePrefix + targetName, quoteType);
-    this.target = target;
+    this.icon = icon;
     this.targetName = targetName;
     this.ruleType = ruleType;
 
@@ -82,7 +104,7 @@ public class LabelRuleLookupElement extends BuildLookupElement {
 
   @Override
   public Icon getIcon() {
-    return target.getIcon(0);
+    return icon;
   }
 
   @Override
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.lang.buildfile.index;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.lang.buildfile.index.BuildFileSummary.Rule;
+import com.google.idea.blaze.base.lang.buildfile.language.BuildFileType;
+import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Indexes the top-level declarations of BUILD and Skylark files, so they can be looked up without
+ * parsing the file.
+ */
+public class BuildFileIndex extends FileBasedIndexExtension<Integer, BuildFileSummary> {
+
+  private static final ID<Integer, BuildFileSummary> NAME =
+      ID.create("com.google.idea.blaze.BuildFileIndex");
+
+  // each file has a single summary
+  private static final int KEY = 0;
+
+  private static final int VERSION = 1;
+
+  /**
+   * Returns the indexed summary of the given file, or null if it's unavailable (e.g. during
+   * indexing, or if the file isn't in the project).
+   */
+  @Nullable
+  public static BuildFileSummary getSummary(Project project, VirtualFile file) {
+    if (!(file instanceof VirtualFileWithId) || DumbService.isDumb(project)) {
+      return null;
+    }
+    List<BuildFileSummary> values =
+        FileBasedIndex.getInstance()
+            .getValues(NAME, KEY, GlobalSearchScope.fileScope(project, file));
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  @Override
+  public ID<Integer, BuildFileSummary> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<Integer, BuildFileSummary, FileContent> getIndexer() {
+    return fileContent -> {
+      PsiFile psiFile = fileContent.getPsiFile();
+      if (!(psiFile instanceof BuildFile)) {
+        return ImmutableMap.of();
+      }
+      return ImmutableMap.of(KEY, BuildFileSummary.create((BuildFile) psiFile));
+    };
+  }
+
+  @Override
+  public KeyDescriptor<Integer> getKeyDescriptor() {
+    return EnumeratorIntegerDescriptor.INSTANCE;
+  }
+
+  @Override
+  public DataExternalizer<BuildFileSummary> getValueExternalizer() {
+    return new SummaryExternalizer();
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(BuildFileType.INSTANCE);
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  private static class SummaryExternalizer implements DataExternalizer<BuildFileSummary> {
+    @Override
+    public void save(DataOutput out, BuildFileSummary summary) throws IOException {
+      DataInputOutputUtil.writeINT(out, summary.getRules().size());
+      for (Rule rule : summary.getRules().values()) {
+        IOUtil.writeUTF(out, rule.getName());
+        out.writeBoolean(rule.getKind() != null);
+        if (rule.getKind() != null) {
+          IOUtil.writeUTF(out, rule.getKind());
+        }
+      }
+      writeStrings(out, summary.getFunctions());
+      writeStrings(out, summary.getLoadedSymbols());
+    }
+
+    @Override
+    public BuildFileSummary read(DataInput in) throws IOException {
+      ImmutableMap.Builder<String, Rule> rules = ImmutableMap.builder();
+      int ruleCount = DataInputOutputUtil.readINT(in);
+      for (int i = 0; i < ruleCount; i++) {
+        String name = IOUtil.readUTF(in);
+        String kind = in.readBoolean() ? IOUtil.readUTF(in) : null;
+        rules.put(name, new Rule(name, kind));
+      }
+      ImmutableSet<String> functions = ImmutableSet.copyOf(readStrings(in));
+      ImmutableSet<String> loadedSymbols = ImmutableSet.copyOf(readStrings(in));
+      return new BuildFileSummary(rules.build(), functions, loadedSymbols);
+    }
+
+    private static void writeStrings(DataOutput out, Iterable<String> strings)
+        throws IOException {
+      ImmutableList<String> list = ImmutableList.copyOf(strings);
+      DataInputOutputUtil.writeINT(out, list.size());
+      for (String string : list) {
+        IOUtil.writeUTF(out, string);
+      }
+    }
+
+    private static ImmutableList<String> readStrings(DataInput in) throws IOException {
+      int count = DataInputOutputUtil.readINT(in);
+      ImmutableList.Builder<String> strings = ImmutableList.builder();
+      for (int i = 0; i < count; i++) {
+        strings.add(IOUtil.readUTF(in));
+      }
+      return strings.build();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.lang.buildfile.index;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
+import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
+import com.google.idea.blaze.base.lang.buildfile.psi.FunctionStatement;
+import com.google.idea.blaze.base.lang.buildfile.psi.LoadStatement;
+import com.google.idea.blaze.base.lang.buildfile.psi.LoadedSymbol;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * The top-level declarations of a BUILD or Skylark file: named rules, function definitions and
+ * loaded symbols.
+ */
+public final class BuildFileSummary {
+
+  /** A top-level function call with a "name" keyword argument. */
+  public static final class Rule {
+    private final String name;
+    @Nullable private final String kind;
+
+    Rule(String name, @Nullable String kind) {
+      this.name = name;
+      this.kind = kind;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** The name of the called function, or null if it's not a simple reference. */
+    @Nullable
+    public String getKind() {
+      return kind;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Rule)) {
+        return false;
+      }
+      Rule other = (Rule) o;
+      return name.equals(other.name) && Objects.equals(kind, other.kind);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, kind);
+    }
+  }
+
+  private final ImmutableMap<String, Rule> rules;
+  private final ImmutableSet<String> functions;
+  private final ImmutableSet<String> loadedSymbols;
+
+  BuildFileSummary(
+      ImmutableMap<String, Rule> rules,
+      ImmutableSet<String> functions,
+      ImmutableSet<String> loadedSymbols) {
+    this.rules = rules;
+    this.functions = functions;
+    this.loadedSymbols = loadedSymbols;
+  }
+
+  /** Summarizes a parsed file. Mirrors the lookups in {@link BuildFile}. */
+  static BuildFileSummary create(BuildFile file) {
+    Map<String, Rule> rules = new LinkedHashMap<>();
+    for (FuncallExpression expr : file.findChildrenByClass(FuncallExpression.class)) {
+      String name = expr.getNameArgumentValue();
+      if (name != null) {
+        // the first rule with a given name wins, as in BuildFile#findRule
+        rules.putIfAbsent(name, new Rule(name, expr.getFunctionName()));
+      }
+    }
+    ImmutableSet.Builder<String> functions = ImmutableSet.builder();
+    for (FunctionStatement fn : file.getFunctionDeclarations()) {
+      if (fn.getName() != null) {
+        functions.add(fn.getName());
+      }
+    }
+    ImmutableSet.Builder<String> loadedSymbols = ImmutableSet.builder();
+    for (LoadStatement load : file.findChildrenByClass(LoadStatement.class)) {
+      for (LoadedSymbol symbol : load.getImportedSymbolElements()) {
+        String symbolString = symbol.getSymbolString();
+        if (symbolString != null) {
+          loadedSymbols.add(symbolString);
+        }
+      }
+    }
+    return new BuildFileSummary(
+        ImmutableMap.copyOf(rules), functions.build(), loadedSymbols.build());
+  }
+
+  /** The named top-level rules, in file order. */
+  public ImmutableMap<String, Rule> getRules() {
+    return rules;
+  }
+
+  /** The names of the functions defined in this file. */
+  public ImmutableSet<String> getFunctions() {
+    return functions;
+  }
+
+  /** The names of the symbols loaded from other extensions. */
+  public ImmutableSet<String> getLoadedSymbols() {
+    return loadedSymbols;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BuildFileSummary)) {
+      return false;
+    }
+    BuildFileSummary other = (BuildFileSummary) o;
+    return rules.equals(other.rules)
+        && functions.equals(other.functions)
+        && loadedSymbols.equals(other.loadedSymbols);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(rules, functions, loadedSymbols);
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.idea.blaze.base.lang.buildfile.psi;
 
+import com.google.idea.blaze.base.lang.buildfile.index.BuildFileIndex;
+import com.google.idea.blaze.base.lang.buildfile.index.BuildFileSummary;
 import com.google.idea.blaze.base.lang.buildfile.language.BuildFileType;
 import com.google.idea.blaze.base.lang.buildfile.references.QuoteType;
 import com.google.idea.blaze.base.lang.buildfile.search.BlazePackage;
@@ -24,6 +26,7 @@ import com.intellij.extapi.psi.PsiFileBase;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.FileViewProvider;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiNamedElement;
@@ -128,9 +131,26 @@ public class BuildFile extends PsiFileBase implements BuildElement, DocStringOwn
         : null;
   }
 
+  /**
+   * Returns the indexed top-level declarations of this file, or null if the file has already been
+   * parsed (in which case the PSI is just as cheap to search) or the index is unavailable.
+   */
+  @Nullable
+  public BuildFileSummary getIndexedSummary() {
+    if (isContentsLoaded()) {
+      return null;
+    }
+    VirtualFile vf = getOriginalFile().getVirtualFile();
+    return vf != null ? BuildFileIndex.getSummary(getProject(), vf) : null;
+  }
+
   /** Finds a top-level rule with a "name" keyword argument with the given value. */
   @Nullable
   public FuncallExpression findRule(String name) {
+    BuildFileSummary summary = getIndexedSummary();
+    if (summary != null && !summary.getRules().containsKey(name)) {
+      return null;
+    }
     for (FuncallExpression expr : findChildrenByClass(FuncallExpression.class)) {
       String ruleName = expr.getNameArgumentValue();
       if (name.equals(ruleName)) {
@@ -142,6 +162,10 @@ public class BuildFile extends PsiFileBase implements BuildElement, DocStringOwn
 
   @Nullable
   public FunctionStatement findDeclaredFunction(String name) {
+    BuildFileSummary summary = getIndexedSummary();
+    if (summary != null && !summary.getFunctions().contains(name)) {
+      return null;
+    }
     for (FunctionStatement fn : getFunctionDeclarations()) {
       if (name.equals(fn.getName())) {
         return fn;
@@ -152,6 +176,10 @@ public class BuildFile extends PsiFileBase implements BuildElement, DocStringOwn
 
   @Nullable
   public FunctionStatement findLoadedFunction(String name) {
+    BuildFileSummary summary = getIndexedSummary();
+    if (summary != null && !summary.getLoadedSymbols().contains(name)) {
+      return null;
+    }
     for (LoadStatement loadStatement : findChildrenByClass(LoadStatement.class)) {
       for (LoadedSymbol loadedSymbol : loadStatement.getImportedSymbolElements()) {
         if (name.equals(loadedSymbol.getSymbolString())) {
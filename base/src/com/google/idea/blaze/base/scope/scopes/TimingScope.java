@@ -88,6 +88,18 @@ public class TimingScope implements BlazeScope {
     }
   }
 
+  /**
+   * Records a child event which wasn't timed by its own scope, e.g. one of several tasks
+   * interleaved on multiple threads. The caller must keep the children's durations within this
+   * scope's own duration.
+   */
+  public void addChild(String name, EventType eventType, Duration duration) {
+    TimingScope child = new TimingScope(name, eventType);
+    child.parentScope = this;
+    child.duration = Optional.of(duration);
+    children.add(child);
+  }
+
   private TimedEvent getTimedEvent() {
     return new TimedEvent(name, eventType, duration.orElse(Duration.ZERO), children.isEmpty());
   }
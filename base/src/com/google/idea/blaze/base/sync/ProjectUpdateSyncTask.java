@@ -170,6 +170,8 @@ final class ProjectUpdateSyncTask {
                   /* clearCache= */ syncMode == SyncMode.FULL);
         });
 
+    TargetMapVisitors.visitAll(context, targetMap, projectState.getLanguageSettings());
+
     SyncState.Builder syncStateBuilder = new SyncState.Builder();
     Scope.push(
         context,
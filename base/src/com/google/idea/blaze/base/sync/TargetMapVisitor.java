@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync;
+
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.intellij.openapi.extensions.ExtensionPointName;
+import java.util.stream.Collector;
+
+/**
+ * Derives a value from the targets in a {@link TargetMap}.
+ *
+ * <p>All registered visitors are run together during sync, in a single parallel pass over the
+ * target map, and their results are retrieved via {@link TargetMapVisitors#getResult}.
+ */
+public interface TargetMapVisitor<R> {
+
+  ExtensionPointName<TargetMapVisitor<?>> EP_NAME =
+      ExtensionPointName.create("com.google.idea.blaze.TargetMapVisitor");
+
+  /** A name for this visitor, used in the sync timing summary. */
+  String getName();
+
+  /** Whether this visitor should be run during sync. */
+  default boolean isActive(WorkspaceLanguageSettings languageSettings) {
+    return true;
+  }
+
+  /**
+   * Whether targets of the given kind should be passed to this visitor. Only called once per kind.
+   */
+  boolean visitsKind(Kind kind);
+
+  /**
+   * Collects the targets of the visited kinds. Chunks of the target map may be collected
+   * concurrently, so the collector must support combining partial results. The result must not be
+   * null.
+   */
+  Collector<TargetIdeInfo, ?, R> collector();
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.Scope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.intellij.openapi.diagnostic.Logger;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+
+/** Runs {@link TargetMapVisitor}s over a {@link TargetMap}, and caches their results. */
+public final class TargetMapVisitors {
+  private static final Logger logger = Logger.getInstance(TargetMapVisitors.class);
+
+  private static final int TARGETS_PER_TASK = 500;
+
+  // keyed by target map identity, so results are dropped along with the target map
+  private static final Cache<TargetMap, Map<Class<?>, Object>> results =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  private TargetMapVisitors() {}
+
+  /**
+   * Returns the result of the given visitor for this target map. If the visitor wasn't run as part
+   * of the sync which produced the target map, it's run now on its own.
+   */
+  @SuppressWarnings("unchecked")
+  public static <R> R getResult(TargetMap targetMap, TargetMapVisitor<R> visitor) {
+    Map<Class<?>, Object> visitorResults = getResults(targetMap);
+    Object result = visitorResults.get(visitor.getClass());
+    if (result != null) {
+      return (R) result;
+    }
+    VisitorState<?, R> state = VisitorState.create(visitor, /* chunks= */ 1);
+    state.collect(0, ImmutableList.copyOf(targetMap.targets()));
+    R newResult = state.finish();
+    visitorResults.put(visitor.getClass(), newResult);
+    return newResult;
+  }
+
+  /**
+   * Runs all active visitors in a single parallel pass over the target map. Each visitor's share of
+   * the pass's wall-clock time is recorded in the sync timing summary.
+   */
+  static void visitAll(
+      BlazeContext context, TargetMap targetMap, WorkspaceLanguageSettings languageSettings) {
+    ImmutableList<TargetMapVisitor<?>> visitors =
+        Arrays.stream(TargetMapVisitor.EP_NAME.getExtensions())
+            .filter(visitor -> visitor.isActive(languageSettings))
+            .collect(toImmutableList());
+    if (visitors.isEmpty()) {
+      return;
+    }
+    TimingScope timingScope = new TimingScope("VisitTargetMap", EventType.Other);
+    Scope.push(
+        context,
+        childContext -> {
+          childContext.push(timingScope);
+          Stopwatch stopwatch = Stopwatch.createStarted();
+          List<List<TargetIdeInfo>> chunks =
+              Lists.partition(ImmutableList.copyOf(targetMap.targets()), TARGETS_PER_TASK);
+          ImmutableList<VisitorState<?, ?>> states =
+              visitors.stream()
+                  .map(visitor -> VisitorState.create(visitor, chunks.size()))
+                  .collect(toImmutableList());
+          List<ListenableFuture<?>> futures = Lists.newArrayListWithCapacity(chunks.size());
+          for (int i = 0; i < chunks.size(); i++) {
+            int chunk = i;
+            futures.add(
+                BlazeExecutor.getInstance()
+                    .submit(
+                        () -> {
+                          states.forEach(state -> state.collect(chunk, chunks.get(chunk)));
+                          return null;
+                        }));
+          }
+          Futures.getUnchecked(Futures.allAsList(futures));
+          Duration wallTime = stopwatch.elapsed();
+
+          Map<Class<?>, Object> visitorResults = getResults(targetMap);
+          long totalNanos = states.stream().mapToLong(state -> state.nanos.get()).sum();
+          for (VisitorState<?, ?> state : states) {
+            visitorResults.put(state.visitor.getClass(), state.finish());
+            long nanos = state.nanos.get();
+            logger.info(
+                String.format(
+                    "%s: %sms (summed over threads)",
+                    state.visitor.getName(), Duration.ofNanos(nanos).toMillis()));
+            // The visitors run interleaved on several threads, so their summed times can exceed
+            // the pass's wall-clock time. Each is recorded as its share of the wall-clock time
+            // instead, so that the children add up to the pass.
+            double share = totalNanos > 0 ? (double) nanos / totalNanos : 0;
+            timingScope.addChild(
+                state.visitor.getName(),
+                EventType.Other,
+                Duration.ofNanos((long) (wallTime.toNanos() * share)));
+          }
+        });
+  }
+
+  private static Map<Class<?>, Object> getResults(TargetMap targetMap) {
+    try {
+      return results.get(targetMap, ConcurrentHashMap::new);
+    } catch (ExecutionException e) {
+      // the loader can't throw
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** The partial results of a visitor, one per chunk of the target map. */
+  private static final class VisitorState<A, R> {
+    private final TargetMapVisitor<R> visitor;
+    private final Collector<TargetIdeInfo, A, R> collector;
+    private final Object[] containers;
+    private final Map<Kind, Boolean> visitedKinds = new ConcurrentHashMap<>();
+    private final AtomicLong nanos = new AtomicLong();
+
+    private VisitorState(
+        TargetMapVisitor<R> visitor, Collector<TargetIdeInfo, A, R> collector, int chunks) {
+      this.visitor = visitor;
+      this.collector = collector;
+      this.containers = new Object[chunks];
+    }
+
+    private static <R> VisitorState<?, R> create(TargetMapVisitor<R> visitor, int chunks) {
+      return new VisitorState<>(visitor, visitor.collector(), chunks);
+    }
+
+    private void collect(int chunk, List<TargetIdeInfo> targets) {
+      long start = System.nanoTime();
+      A container = collector.supplier().get();
+      BiConsumer<A, TargetIdeInfo> accumulator = collector.accumulator();
+      for (TargetIdeInfo target : targets) {
+        if (visitedKinds.computeIfAbsent(target.getKind(), visitor::visitsKind)) {
+          accumulator.accept(container, target);
+        }
+      }
+      containers[chunk] = container;
+      nanos.addAndGet(System.nanoTime() - start);
+    }
+
+    @SuppressWarnings("unchecked")
+    private R finish() {
+      A result = collector.supplier().get();
+      for (Object container : containers) {
+        result = collector.combiner().apply(result, (A) container);
+      }
+      return collector.finisher().apply(result);
+    }
+  }
+}
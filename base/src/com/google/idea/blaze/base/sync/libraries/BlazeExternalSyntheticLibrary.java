@@ -23,9 +23,12 @@ import com.google.idea.blaze.base.io.VfsUtils;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.roots.SyntheticLibrary;
 import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import icons.BlazeIcons;
 import java.io.File;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.Set;
@@ -35,12 +38,17 @@ import javax.swing.Icon;
 /**
  * A {@link SyntheticLibrary} pointing to a list of external files for a language. Only supports one
  * instance per value of presentableText.
+ *
+ * <p>Membership checks are answered from a bitset of {@link VirtualFileWithId} ids, rather than by
+ * hashing each of the file's ancestors into the set of source roots.
  */
 public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
     implements ItemPresentation {
   private final String presentableText;
   private final ImmutableSet<File> files;
   private final Set<VirtualFile> validFiles;
+  // an immutable snapshot of the ids of validFiles, replaced whenever validFiles changes
+  private volatile BitSet validFileIds;
 
   /**
    * Constructs library with an initial set of valid {@link VirtualFile}s.
@@ -59,6 +67,7 @@ public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
                 .map(f -> VfsUtils.resolveVirtualFile(f, /* refreshIfNeeded= */ false))
                 .filter(Objects::nonNull)
                 .collect(toImmutableSet()));
+    this.validFileIds = toIds(validFiles);
   }
 
   @Nullable
@@ -67,16 +76,31 @@ public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
     return presentableText;
   }
 
-  void removeInvalidFiles(Collection<VirtualFile> deletedFiles) {
+  synchronized void removeInvalidFiles(Collection<VirtualFile> deletedFiles) {
     if (deletedFiles.stream().anyMatch(VirtualFile::isDirectory)) {
-      validFiles.removeIf(f -> !f.isValid());
-    } else {
-      validFiles.removeAll(deletedFiles);
+      if (validFiles.removeIf(f -> !f.isValid())) {
+        validFileIds = toIds(validFiles);
+      }
+      return;
+    }
+    BitSet ids = null;
+    for (VirtualFile file : deletedFiles) {
+      if (!validFiles.remove(file) || !(file instanceof VirtualFileWithId)) {
+        continue;
+      }
+      if (ids == null) {
+        ids = (BitSet) validFileIds.clone();
+      }
+      ids.clear(((VirtualFileWithId) file).getId());
+    }
+    if (ids != null) {
+      validFileIds = ids;
     }
   }
 
-  void restoreMissingFiles() {
+  synchronized void restoreMissingFiles() {
     if (validFiles.size() < files.size()) {
+      BitSet ids = (BitSet) validFileIds.clone();
       Sets.difference(
               files,
               validFiles.stream()
@@ -86,7 +110,40 @@ public final class BlazeExternalSyntheticLibrary extends SyntheticLibrary
           .stream()
           .map(file -> VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ false))
           .filter(Objects::nonNull)
-          .forEach(validFiles::add);
+          .filter(validFiles::add)
+          .forEach(f -> addId(ids, f));
+      validFileIds = ids;
+    }
+  }
+
+  @Override
+  public boolean contains(VirtualFile file) {
+    BitSet ids = validFileIds;
+    for (VirtualFile f = file; f != null; f = f.getParent()) {
+      // files outside the persistent VFS aren't in the bitset, and neither are their children
+      if (!(f instanceof VirtualFileWithId)) {
+        return VfsUtilCore.isUnder(f, validFiles);
+      }
+      int id = ((VirtualFileWithId) f).getId();
+      if (id > 0 && ids.get(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static BitSet toIds(Collection<VirtualFile> files) {
+    BitSet ids = new BitSet();
+    files.forEach(file -> addId(ids, file));
+    return ids;
+  }
+
+  private static void addId(BitSet ids, VirtualFile file) {
+    if (file instanceof VirtualFileWithId) {
+      int id = ((VirtualFileWithId) file).getId();
+      if (id > 0) {
+        ids.set(id);
+      }
     }
   }
 
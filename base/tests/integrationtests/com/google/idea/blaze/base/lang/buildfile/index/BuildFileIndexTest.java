@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.lang.buildfile.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.lang.buildfile.BuildFileIntegrationTestCase;
+import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.impl.file.impl.FileManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BuildFileIndex}. */
+@RunWith(JUnit4.class)
+public class BuildFileIndexTest extends BuildFileIntegrationTestCase {
+
+  @Test
+  public void testBuildFileDeclarationsIndexed() {
+    BuildFile file =
+        createBuildFile(
+            new WorkspacePath("java/com/google/BUILD"),
+            "load('//java/com/google:macros.bzl', 'my_macro')",
+            "java_library(name = 'lib')",
+            "my_macro(name = 'gen')");
+
+    BuildFileSummary summary = BuildFileIndex.getSummary(getProject(), file.getVirtualFile());
+    assertThat(summary).isNotNull();
+    assertThat(summary.getRules().keySet()).containsExactly("lib", "gen").inOrder();
+    assertThat(summary.getRules().get("lib").getKind()).isEqualTo("java_library");
+    assertThat(summary.getLoadedSymbols()).containsExactly("my_macro");
+    assertThat(summary.getFunctions()).isEmpty();
+  }
+
+  @Test
+  public void testSkylarkFunctionsIndexed() {
+    BuildFile file =
+        createBuildFile(
+            new WorkspacePath("java/com/google/macros.bzl"),
+            "def my_macro(name):",
+            "  native.java_library(name = name)");
+
+    BuildFileSummary summary = BuildFileIndex.getSummary(getProject(), file.getVirtualFile());
+    assertThat(summary).isNotNull();
+    assertThat(summary.getFunctions()).containsExactly("my_macro");
+    assertThat(summary.getRules()).isEmpty();
+  }
+
+  @Test
+  public void testLookupsConsistentWithIndex() {
+    BuildFile file =
+        createBuildFile(
+            new WorkspacePath("java/com/google/BUILD"),
+            "load('//java/com/google:macros.bzl', 'my_macro')",
+            "java_library(name = 'lib')");
+
+    assertThat(file.findRule("lib")).isNotNull();
+    assertThat(file.findRule("missing")).isNull();
+    assertThat(file.findDeclaredFunction("my_macro")).isNull();
+    assertThat(file.findLoadedFunction("other_macro")).isNull();
+  }
+
+  @Test
+  public void testLookupsInUnparsedFileUseIndex() {
+    VirtualFile vf =
+        createBuildFile(
+                new WorkspacePath("java/com/google/BUILD"),
+                "load('//java/com/google:macros.bzl', 'my_macro')",
+                "java_library(name = 'lib')")
+            .getVirtualFile();
+    assertThat(BuildFileIndex.getSummary(getProject(), vf)).isNotNull();
+
+    BuildFile file = reloadPsi(vf);
+    assertThat(file.isContentsLoaded()).isFalse();
+    assertThat(file.getIndexedSummary()).isNotNull();
+
+    // missing names are answered from the index, without parsing the file
+    assertThat(file.findRule("missing")).isNull();
+    assertThat(file.findDeclaredFunction("my_macro")).isNull();
+    assertThat(file.findLoadedFunction("other_macro")).isNull();
+    assertThat(file.isContentsLoaded()).isFalse();
+
+    assertThat(file.findRule("lib")).isNotNull();
+    assertThat(file.isContentsLoaded()).isTrue();
+    assertThat(file.getIndexedSummary()).isNull();
+  }
+
+  /** Returns a new PSI file for the given file, which hasn't been parsed yet. */
+  private BuildFile reloadPsi(VirtualFile vf) {
+    FileManager fileManager =
+        ((PsiManagerEx) PsiManager.getInstance(getProject())).getFileManager();
+    fileManager.setViewProvider(vf, fileManager.createFileViewProvider(vf, true));
+    PsiFile psiFile = fileManager.findFile(vf);
+    assertThat(psiFile).isInstanceOf(BuildFile.class);
+    return (BuildFile) psiFile;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.editor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.HighlightInfoType;
+import com.intellij.codeInsight.daemon.impl.HighlightVisitor;
+import com.intellij.codeInsight.daemon.impl.analysis.HighlightInfoHolder;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link HighlightingStatsCollector}. */
+@RunWith(JUnit4.class)
+public class HighlightingStatsCollectorTest extends BlazeTestCase {
+
+  private final PsiFile file = mock(PsiFile.class);
+  private final PsiElement element = mock(PsiElement.class);
+  private HighlightInfo wrongRef;
+  private HighlightInfo unusedSymbol;
+  private ExtensionPointImpl<BlazeHighlightStatsCollector> collectors;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+    collectors =
+        registerExtensionPoint(
+            BlazeHighlightStatsCollector.EP_NAME, BlazeHighlightStatsCollector.class);
+    when(element.getContainingFile()).thenReturn(file);
+    wrongRef = highlight(HighlightInfoType.WRONG_REF);
+    unusedSymbol = highlight(HighlightInfoType.UNUSED_SYMBOL);
+  }
+
+  @Test
+  public void testWholeFilePassNotifiesCollectorOfHighlightsThenCompletion() {
+    RecordingCollector collector = new RecordingCollector(/* canProcessFile= */ true);
+    collectors.registerExtension(collector);
+
+    analyze(/* updateWholeFile= */ true, holder(wrongRef, unusedSymbol));
+
+    assertThat(collector.events).containsExactly("highlight", "processed").inOrder();
+    assertThat(collector.highlights).containsExactly(wrongRef);
+    assertThat(collector.processedFiles).containsExactly(file);
+  }
+
+  @Test
+  public void testFileWithoutHighlightsIsStillReportedAsProcessed() {
+    RecordingCollector collector = new RecordingCollector(/* canProcessFile= */ true);
+    collectors.registerExtension(collector);
+
+    analyze(/* updateWholeFile= */ true, holder());
+
+    assertThat(collector.highlights).isEmpty();
+    assertThat(collector.processedFiles).containsExactly(file);
+  }
+
+  @Test
+  public void testPartialPassIsIgnored() {
+    RecordingCollector collector = new RecordingCollector(/* canProcessFile= */ true);
+    collectors.registerExtension(collector);
+
+    analyze(/* updateWholeFile= */ false, holder(wrongRef));
+
+    assertThat(collector.events).isEmpty();
+  }
+
+  @Test
+  public void testCollectorThatCannotProcessFileIsNotNotified() {
+    RecordingCollector accepting = new RecordingCollector(/* canProcessFile= */ true);
+    RecordingCollector rejecting = new RecordingCollector(/* canProcessFile= */ false);
+    collectors.registerExtension(accepting);
+    collectors.registerExtension(rejecting);
+
+    analyze(/* updateWholeFile= */ true, holder(wrongRef));
+
+    assertThat(accepting.processedFiles).containsExactly(file);
+    assertThat(rejecting.events).isEmpty();
+  }
+
+  private void analyze(boolean updateWholeFile, HighlightInfoHolder holder) {
+    HighlightVisitor visitor = new HighlightingStatsCollector();
+    assertThat(visitor.suitableForFile(file)).isTrue();
+    boolean result = visitor.analyze(file, updateWholeFile, holder, () -> visitor.visit(element));
+    assertThat(result).isTrue();
+  }
+
+  private static HighlightInfoHolder holder(HighlightInfo... highlights) {
+    HighlightInfoHolder holder = mock(HighlightInfoHolder.class);
+    when(holder.size()).thenReturn(highlights.length);
+    for (int i = 0; i < highlights.length; i++) {
+      when(holder.get(i)).thenReturn(highlights[i]);
+    }
+    return holder;
+  }
+
+  private static HighlightInfo highlight(HighlightInfoType type) {
+    return HighlightInfo.newHighlightInfo(type).range(0, 1).createUnconditionally();
+  }
+
+  /** Records the calls made to it, and only supports {@link HighlightInfoType#WRONG_REF}. */
+  private static class RecordingCollector implements BlazeHighlightStatsCollector {
+    private final boolean canProcessFile;
+    final List<String> events = new ArrayList<>();
+    final List<HighlightInfo> highlights = new ArrayList<>();
+    final List<PsiFile> processedFiles = new ArrayList<>();
+
+    RecordingCollector(boolean canProcessFile) {
+      this.canProcessFile = canProcessFile;
+    }
+
+    @Override
+    public Set<HighlightInfoType> supportedHighlightInfoTypes() {
+      return ImmutableSet.of(HighlightInfoType.WRONG_REF);
+    }
+
+    @Override
+    public boolean canProcessFile(PsiFile file) {
+      return canProcessFile;
+    }
+
+    @Override
+    public void processHighlight(PsiElement psiElement, HighlightInfo highlightInfo) {
+      events.add("highlight");
+      highlights.add(highlightInfo);
+    }
+
+    @Override
+    public void onFileProcessed(PsiFile file) {
+      events.add("processed");
+      processedFiles.add(file);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ZipCentralDirectory}. */
+@RunWith(JUnit4.class)
+public final class ZipCentralDirectoryTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static final ImmutableMap<String, String> CONTENTS =
+      ImmutableMap.of(
+          "META-INF/MANIFEST.MF", "manifest",
+          "com/google/Foo.class", "foo",
+          "com/google/Bar.class", "bar",
+          "com/google/resource.txt", "text");
+
+  @Test
+  public void testVisitsEntriesInOrderWithCrcs() throws IOException {
+    File zip = folder.newFile("lib.jar");
+    Files.write(zip.toPath(), zipBytes(CONTENTS));
+
+    assertThat(readCrcs(zip)).containsExactlyEntriesIn(expectedCrcs(CONTENTS)).inOrder();
+  }
+
+  @Test
+  public void testReadsFromBuffer() throws IOException {
+    Map<String, Integer> crcs = new LinkedHashMap<>();
+    ZipCentralDirectory.read(
+        ByteBuffer.wrap(zipBytes(CONTENTS)),
+        entry -> {
+          crcs.put(entry.getName(), entry.getCrc());
+          return true;
+        });
+
+    assertThat(crcs).containsExactlyEntriesIn(expectedCrcs(CONTENTS)).inOrder();
+  }
+
+  @Test
+  public void testStopsWhenVisitorReturnsFalse() throws IOException {
+    File zip = folder.newFile("lib.jar");
+    Files.write(zip.toPath(), zipBytes(CONTENTS));
+
+    List<String> visited = new ArrayList<>();
+    ZipCentralDirectory.read(
+        zip,
+        entry -> {
+          visited.add(entry.getName());
+          return !entry.nameEndsWith(".class");
+        });
+
+    assertThat(visited).containsExactly("META-INF/MANIFEST.MF", "com/google/Foo.class").inOrder();
+  }
+
+  @Test
+  public void testMatchesNameSuffixesAndDirectories() throws IOException {
+    File zip = folder.newFile("lib.jar");
+    Files.write(zip.toPath(), zipBytes(ImmutableMap.of("com/", "", "com/Foo.class", "foo")));
+
+    List<String> directories = new ArrayList<>();
+    List<String> classes = new ArrayList<>();
+    ZipCentralDirectory.read(
+        zip,
+        entry -> {
+          if (entry.isDirectory()) {
+            directories.add(entry.getName());
+          }
+          if (entry.nameEndsWith(".class")) {
+            classes.add(entry.getName());
+          }
+          return true;
+        });
+
+    assertThat(directories).containsExactly("com/");
+    assertThat(classes).containsExactly("com/Foo.class");
+  }
+
+  @Test
+  public void testReadsPrefixedZip() throws IOException {
+    File zip = folder.newFile("launcher.jar");
+    try (OutputStream out = new FileOutputStream(zip)) {
+      out.write("#!/bin/sh\nexec java -jar \"$0\"\n".getBytes(StandardCharsets.UTF_8));
+      out.write(zipBytes(CONTENTS));
+    }
+
+    assertThat(readCrcs(zip)).containsExactlyEntriesIn(expectedCrcs(CONTENTS)).inOrder();
+  }
+
+  @Test
+  public void testReadsZip64() throws IOException {
+    // More than 65535 entries forces the zip64 end of central directory record.
+    File zip = folder.newFile("large.jar");
+    int entryCount = 70000;
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (int i = 0; i < entryCount; i++) {
+        out.putNextEntry(new ZipEntry("com/google/Class" + i + ".class"));
+        out.closeEntry();
+      }
+    }
+
+    assertThat(readCrcs(zip)).hasSize(entryCount);
+  }
+
+  @Test
+  public void testRejectsNonZipFile() throws IOException {
+    File notZip = folder.newFile("not.jar");
+    Files.write(notZip.toPath(), new byte[1024]);
+
+    try {
+      ZipCentralDirectory.read(notZip, entry -> true);
+      fail("Expected a ZipException");
+    } catch (ZipException expected) {
+      // expected
+    }
+  }
+
+  private static Map<String, Integer> readCrcs(File zip) throws IOException {
+    Map<String, Integer> crcs = new LinkedHashMap<>();
+    ZipCentralDirectory.read(
+        zip,
+        entry -> {
+          crcs.put(entry.getName(), entry.getCrc());
+          return true;
+        });
+    return crcs;
+  }
+
+  private static Map<String, Integer> expectedCrcs(Map<String, String> contents) {
+    Map<String, Integer> crcs = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : contents.entrySet()) {
+      CRC32 crc = new CRC32();
+      crc.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+      crcs.put(entry.getKey(), (int) crc.getValue());
+    }
+    return crcs;
+  }
+
+  private static byte[] zipBytes(Map<String, String> contents) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+      for (Map.Entry<String, String> entry : contents.entrySet()) {
+        out.putNextEntry(new ZipEntry(entry.getKey()));
+        out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+}
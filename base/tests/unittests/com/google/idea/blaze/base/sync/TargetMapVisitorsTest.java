@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.MockBlazeExecutor;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.base.model.primitives.RuleType;
+import com.google.idea.blaze.base.model.primitives.WorkspaceType;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.scopes.TimingScope;
+import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.google.idea.blaze.base.scope.scopes.TimingScopeListener.TimedEvent;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TargetMapVisitors}. */
+@RunWith(JUnit4.class)
+public class TargetMapVisitorsTest extends BlazeTestCase {
+
+  private final LibraryVisitor registeredVisitor = new LibraryVisitor();
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void initTest(
+      @NotNull Container applicationServices, @NotNull Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(BlazeExecutor.class, new MockBlazeExecutor());
+    registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class)
+        .registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+    Class<TargetMapVisitor<?>> visitorType =
+        (Class<TargetMapVisitor<?>>) (Class<?>) TargetMapVisitor.class;
+    registerExtensionPoint(TargetMapVisitor.EP_NAME, visitorType)
+        .registerExtension(registeredVisitor);
+  }
+
+  @Test
+  public void testOnlyVisitedKindsAreCollected() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(target("//foo:lib", "sh_library"))
+            .addTarget(target("//foo:bin", "sh_binary"))
+            .addTarget(target("//bar:lib", "sh_library"))
+            .build();
+    LibraryVisitor visitor = new LibraryVisitor();
+
+    assertThat(TargetMapVisitors.getResult(targetMap, visitor))
+        .containsExactly(Label.create("//foo:lib"), Label.create("//bar:lib"));
+    assertThat(visitor.visitedKinds).containsExactly("sh_library", "sh_binary");
+  }
+
+  @Test
+  public void testResultIsCachedPerTargetMap() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder().addTarget(target("//foo:lib", "sh_library")).build();
+    ImmutableList<Label> result = TargetMapVisitors.getResult(targetMap, new LibraryVisitor());
+
+    assertThat(TargetMapVisitors.getResult(targetMap, new LibraryVisitor())).isSameAs(result);
+    TargetMap otherTargetMap =
+        TargetMapBuilder.builder().addTarget(target("//foo:lib", "sh_library")).build();
+    assertThat(TargetMapVisitors.getResult(otherTargetMap, new LibraryVisitor()))
+        .isNotSameAs(result);
+  }
+
+  @Test
+  public void testVisitAllCombinesChunksInOrder() {
+    TargetMapBuilder builder = TargetMapBuilder.builder();
+    List<Label> libraries = new ArrayList<>();
+    // enough targets for several chunks
+    for (int i = 0; i < 1234; i++) {
+      String kind = i % 3 == 0 ? "sh_binary" : "sh_library";
+      builder.addTarget(target("//pkg" + i + ":target", kind));
+      if (kind.equals("sh_library")) {
+        libraries.add(Label.create("//pkg" + i + ":target"));
+      }
+    }
+    TargetMap targetMap = builder.build();
+
+    TargetMapVisitors.visitAll(new BlazeContext(), targetMap, languageSettings());
+
+    // the target map preserves insertion order
+    assertThat(TargetMapVisitors.getResult(targetMap, registeredVisitor))
+        .containsExactlyElementsIn(libraries)
+        .inOrder();
+  }
+
+  @Test
+  public void testVisitAllResultIsReturnedLater() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder().addTarget(target("//foo:lib", "sh_library")).build();
+
+    TargetMapVisitors.visitAll(new BlazeContext(), targetMap, languageSettings());
+    assertThat(registeredVisitor.collectors).isEqualTo(1);
+
+    ImmutableList<Label> result = TargetMapVisitors.getResult(targetMap, new LibraryVisitor());
+    assertThat(result).containsExactly(Label.create("//foo:lib"));
+    assertThat(TargetMapVisitors.getResult(targetMap, registeredVisitor)).isSameAs(result);
+    assertThat(registeredVisitor.collectors).isEqualTo(1);
+  }
+
+  @Test
+  public void testVisitorTimesAreReportedToTimingScope() {
+    TargetMap targetMap =
+        TargetMapBuilder.builder().addTarget(target("//foo:lib", "sh_library")).build();
+    List<TimedEvent> events = new ArrayList<>();
+    BlazeContext context = new BlazeContext();
+    context.push(
+        new TimingScope("Sync", EventType.Other)
+            .addScopeListener((timedEvents, totalTime) -> events.addAll(timedEvents)));
+
+    TargetMapVisitors.visitAll(context, targetMap, languageSettings());
+    context.endScope();
+
+    TimedEvent visitor =
+        events.stream().filter(e -> e.name.equals("Libraries")).findFirst().orElse(null);
+    assertThat(visitor).isNotNull();
+    assertThat(visitor.isLeafEvent).isTrue();
+    Duration visitorsTotal =
+        events.stream()
+            .filter(e -> e.isLeafEvent)
+            .map(e -> e.duration)
+            .reduce(Duration.ZERO, Duration::plus);
+    TimedEvent pass =
+        events.stream().filter(e -> e.name.equals("VisitTargetMap")).findFirst().get();
+    assertThat(visitorsTotal).isAtMost(pass.duration);
+  }
+
+  private static WorkspaceLanguageSettings languageSettings() {
+    return new WorkspaceLanguageSettings(WorkspaceType.JAVA, ImmutableSet.of(LanguageClass.JAVA));
+  }
+
+  private static TargetIdeInfo.Builder target(String label, String kind) {
+    return TargetIdeInfo.builder().setLabel(label).setKind(kind);
+  }
+
+  private static class LibraryVisitor implements TargetMapVisitor<ImmutableList<Label>> {
+    private final List<String> visitedKinds = new ArrayList<>();
+    private int collectors;
+
+    @Override
+    public String getName() {
+      return "Libraries";
+    }
+
+    @Override
+    public boolean visitsKind(Kind kind) {
+      visitedKinds.add(kind.getKindString());
+      return kind.getRuleType() == RuleType.LIBRARY;
+    }
+
+    @Override
+    public Collector<TargetIdeInfo, ?, ImmutableList<Label>> collector() {
+      collectors++;
+      return Collectors.collectingAndThen(
+          Collectors.mapping(target -> target.getKey().getLabel(), Collectors.toList()),
+          ImmutableList::copyOf);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.libraries;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BlazeExternalSyntheticLibrary}. */
+@RunWith(JUnit4.class)
+public class BlazeExternalSyntheticLibraryTest extends BlazeTestCase {
+
+  /** The files known to the VFS, by path. */
+  private final Map<String, VirtualFile> vfs = new HashMap<>();
+
+  private int nextId = 1;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    LocalFileSystem fileSystem = mock(LocalFileSystem.class);
+    when(fileSystem.findFileByPathIfCached(anyString()))
+        .thenAnswer(invocation -> vfs.get((String) invocation.getArguments()[0]));
+    applicationServices.register(
+        VirtualFileSystemProvider.class, mock(VirtualFileSystemProvider.class));
+    when(VirtualFileSystemProvider.getInstance().getSystem()).thenReturn(fileSystem);
+  }
+
+  @Test
+  public void testDirectoryCoversItsChildren() {
+    VirtualFile directory = fileWithId("/external/lib", null, /* isDirectory= */ true);
+    VirtualFile child = fileWithId("/external/lib/a.go", directory, /* isDirectory= */ false);
+    VirtualFile nested =
+        fileWithId(
+            "/external/lib/sub/b.go",
+            fileWithId("/external/lib/sub", directory, /* isDirectory= */ true),
+            /* isDirectory= */ false);
+    VirtualFile other = fileWithId("/external/other.go", null, /* isDirectory= */ false);
+
+    BlazeExternalSyntheticLibrary library = createLibrary("/external/lib");
+
+    assertThat(library.contains(directory)).isTrue();
+    assertThat(library.contains(child)).isTrue();
+    assertThat(library.contains(nested)).isTrue();
+    assertThat(library.contains(other)).isFalse();
+  }
+
+  @Test
+  public void testRemovedFileNoLongerMatches() {
+    VirtualFile removed = fileWithId("/external/a.go", null, /* isDirectory= */ false);
+    VirtualFile kept = fileWithId("/external/b.go", null, /* isDirectory= */ false);
+    BlazeExternalSyntheticLibrary library = createLibrary("/external/a.go", "/external/b.go");
+
+    delete(removed);
+    library.removeInvalidFiles(ImmutableList.of(removed));
+
+    assertThat(library.contains(removed)).isFalse();
+    assertThat(library.contains(kept)).isTrue();
+    assertThat(library.getSourceRoots()).containsExactly(kept);
+  }
+
+  @Test
+  public void testRemovedDirectoryNoLongerCoversItsChildren() {
+    VirtualFile directory = fileWithId("/external/lib", null, /* isDirectory= */ true);
+    VirtualFile child = fileWithId("/external/lib/a.go", directory, /* isDirectory= */ false);
+    VirtualFile kept = fileWithId("/external/b.go", null, /* isDirectory= */ false);
+    BlazeExternalSyntheticLibrary library = createLibrary("/external/lib", "/external/b.go");
+
+    delete(directory);
+    library.removeInvalidFiles(ImmutableList.of(directory));
+
+    assertThat(library.contains(child)).isFalse();
+    assertThat(library.contains(kept)).isTrue();
+  }
+
+  @Test
+  public void testRestoreAddsBackIdOfRecreatedFile() {
+    VirtualFile removed = fileWithId("/external/a.go", null, /* isDirectory= */ false);
+    fileWithId("/external/b.go", null, /* isDirectory= */ false);
+    BlazeExternalSyntheticLibrary library = createLibrary("/external/a.go", "/external/b.go");
+    delete(removed);
+    library.removeInvalidFiles(ImmutableList.of(removed));
+
+    // the recreated file gets a new id
+    VirtualFile recreated = fileWithId("/external/a.go", null, /* isDirectory= */ false);
+    library.restoreMissingFiles();
+
+    assertThat(library.contains(recreated)).isTrue();
+    assertThat(library.contains(removed)).isFalse();
+  }
+
+  @Test
+  public void testFilesWithoutIdsFallBackToSourceRoots() {
+    VirtualFile directory = fileWithoutId("/jar/lib", null);
+    VirtualFile child = fileWithoutId("/jar/lib/a.go", directory);
+    VirtualFile other = fileWithoutId("/jar/other.go", null);
+    BlazeExternalSyntheticLibrary library = createLibrary("/jar/lib");
+
+    assertThat(library.contains(directory)).isTrue();
+    assertThat(library.contains(child)).isTrue();
+    assertThat(library.contains(other)).isFalse();
+  }
+
+  private static BlazeExternalSyntheticLibrary createLibrary(String... paths) {
+    ImmutableList.Builder<File> files = ImmutableList.builder();
+    for (String path : paths) {
+      files.add(new File(path));
+    }
+    return new BlazeExternalSyntheticLibrary("test library", files.build());
+  }
+
+  /** Returns a file in the persistent VFS, with a new id. */
+  private VirtualFile fileWithId(String path, @Nullable VirtualFile parent, boolean isDirectory) {
+    FileWithId file = mock(FileWithId.class);
+    when(file.getId()).thenReturn(nextId++);
+    stubFile(file, path, parent);
+    when(file.isDirectory()).thenReturn(isDirectory);
+    return file;
+  }
+
+  /** Returns a file outside the persistent VFS, e.g. inside a jar. */
+  private VirtualFile fileWithoutId(String path, @Nullable VirtualFile parent) {
+    VirtualFile file = mock(VirtualFile.class);
+    stubFile(file, path, parent);
+    return file;
+  }
+
+  private void stubFile(VirtualFile file, String path, @Nullable VirtualFile parent) {
+    when(file.getPath()).thenReturn(path);
+    when(file.getUrl()).thenReturn("file://" + path);
+    when(file.getParent()).thenReturn(parent);
+    when(file.isValid()).thenReturn(true);
+    vfs.put(path, file);
+  }
+
+  private void delete(VirtualFile file) {
+    when(file.isValid()).thenReturn(false);
+    vfs.remove(file.getPath());
+  }
+
+  /** A file in the persistent VFS. */
+  private abstract static class FileWithId extends VirtualFile implements VirtualFileWithId {}
+}
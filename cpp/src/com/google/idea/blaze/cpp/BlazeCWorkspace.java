@@ -20,7 +20,9 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.model.BlazeProjectData;
@@ -50,7 +52,6 @@ import com.intellij.util.containers.MultiMap;
 import com.jetbrains.cidr.lang.CLanguageKind;
 import com.jetbrains.cidr.lang.OCLanguageKind;
 import com.jetbrains.cidr.lang.toolchains.CidrCompilerSwitches;
-import com.jetbrains.cidr.lang.toolchains.CidrSwitchBuilder;
 import com.jetbrains.cidr.lang.toolchains.CidrToolEnvironment;
 import com.jetbrains.cidr.lang.workspace.OCCompilerSettings;
 import com.jetbrains.cidr.lang.workspace.OCResolveConfiguration;
@@ -71,9 +72,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /** Main entry point for C/CPP configuration data. */
 public final class BlazeCWorkspace implements ProjectComponent {
@@ -89,6 +92,9 @@ public final class BlazeCWorkspace implements ProjectComponent {
 
   private final Project project;
   private final CidrToolEnvironment toolEnvironment = new CidrToolEnvironment();
+  // The compiler options calculated by the last update, reused for unchanged configurations.
+  private volatile ImmutableMap<BlazeResolveConfigurationData, ComputedConfiguration>
+      computedConfigurations = ImmutableMap.of();
 
   private BlazeCWorkspace(Project project) {
     this.configurationResolver = new BlazeConfigurationResolver(project);
@@ -171,126 +177,191 @@ public final class BlazeCWorkspace implements ProjectComponent {
             workspaceRoot,
             blazeProjectData.getBlazeInfo().getExecutionRoot(),
             blazeProjectData.getWorkspacePathResolver());
+    CompilerSwitchInterner interner =
+        new CompilerSwitchInterner(executionRootPathResolver::resolveToIncludeDirectories);
 
+    Map<BlazeResolveConfigurationData, ComputedConfiguration> previousConfigurations =
+        computedConfigurations;
+    Map<BlazeResolveConfigurationData, ComputedConfiguration> newConfigurations =
+        new HashMap<>();
     int progress = 0;
+    int reused = 0;
 
     for (BlazeResolveConfiguration resolveConfiguration : configurations) {
       indicator.setText2(resolveConfiguration.getDisplayName());
       indicator.setFraction(((double) progress) / configurations.size());
-      BlazeCompilerSettings compilerSettings = resolveConfiguration.getCompilerSettings();
-      Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages = new HashMap<>();
-      Map<VirtualFile, PerFileCompilerOpts> configSourceFiles = new HashMap<>();
-      for (TargetKey targetKey : resolveConfiguration.getTargets()) {
-        TargetIdeInfo targetIdeInfo = blazeProjectData.getTargetMap().get(targetKey);
-        if (targetIdeInfo == null || targetIdeInfo.getcIdeInfo() == null) {
-          continue;
-        }
+      TargetOptions targetOptions =
+          computeTargetOptions(blazeProjectData, interner, configResolveData, resolveConfiguration);
+      ComputedConfiguration computed =
+          previousConfigurations.get(resolveConfiguration.getConfigurationData());
+      if (computed != null && computed.canBeReusedFor(resolveConfiguration, targetOptions)) {
+        reused++;
+      } else {
+        computed = computeConfiguration(resolveConfiguration, targetOptions, interner);
+      }
+      newConfigurations.put(resolveConfiguration.getConfigurationData(), computed);
 
-        // defines and include directories are the same for all sources in a given target, so lets
-        // collect them once and reuse for each source file's options
-
-        UnfilteredCompilerOptions coptsExtractor =
-            UnfilteredCompilerOptions.builder()
-                .registerSingleOrSplitOption("-I")
-                .build(targetIdeInfo.getcIdeInfo().getLocalCopts());
-        ImmutableList<String> plainLocalCopts =
-            filterIncompatibleFlags(coptsExtractor.getUninterpretedOptions());
-        ImmutableList<ExecutionRootPath> localIncludes =
-            coptsExtractor.getExtractedOptionValues("-I").stream()
-                .map(ExecutionRootPath::new)
-                .collect(toImmutableList());
-
-        // transitiveDefines are sourced from a target's (and transitive deps) "defines" attribute
-        ImmutableList<String> transitiveDefineOptions =
-            targetIdeInfo.getcIdeInfo().getTransitiveDefines().stream()
-                .map(s -> "-D" + s)
-                .collect(toImmutableList());
-
-        Function<ExecutionRootPath, Stream<File>> resolver =
-            executionRootPath ->
-                executionRootPathResolver.resolveToIncludeDirectories(executionRootPath).stream();
-        // localIncludes are sourced from -I options in a target's "copts" attribute. They  can be
-        // arbitrarily declared and may not exist in configResolveData.
-        // transitiveIncludeDirectories are sourced from CcSkylarkApiProvider.include_directories
-
-        ImmutableList<String> iOptionIncludeDirectories =
-            Stream.concat(
-                    localIncludes.stream().flatMap(resolver),
-                    targetIdeInfo.getcIdeInfo().getTransitiveIncludeDirectories().stream()
-                        .flatMap(resolver)
-                        .filter(configResolveData::isValidHeaderRoot))
-                .map(file -> "-I" + file.getAbsolutePath())
-                .collect(toImmutableList());
-
-        // transitiveQuoteIncludeDirectories are sourced from
-        // CcSkylarkApiProvider.quote_include_directories
-        ImmutableList<String> iquoteOptionIncludeDirectories =
-            targetIdeInfo.getcIdeInfo().getTransitiveQuoteIncludeDirectories().stream()
-                .flatMap(resolver)
-                .filter(configResolveData::isValidHeaderRoot)
-                .map(file -> "-iquote" + file.getAbsolutePath())
-                .collect(toImmutableList());
-        // transitiveSystemIncludeDirectories are sourced from
-        // CcSkylarkApiProvider.system_include_directories
-        // Note: We would ideally use -isystem here, but it interacts badly with the switches
-        // that get built by ClangUtils::addIncludeDirectories (it uses -I for system libraries).
-        ImmutableList<String> isystemOptionIncludeDirectories =
-            targetIdeInfo.getcIdeInfo().getTransitiveSystemIncludeDirectories().stream()
-                .flatMap(resolver)
-                .filter(configResolveData::isValidHeaderRoot)
-                .map(file -> "-I" + file.getAbsolutePath())
-                .collect(toImmutableList());
+      String id = resolveConfiguration.getDisplayName();
 
+      addConfiguration(
+          workspaceModifiable,
+          id,
+          id,
+          workspaceRoot.directory(),
+          computed.configLanguages,
+          computed.configSourceFiles);
+      progress++;
+    }
+    computedConfigurations = ImmutableMap.copyOf(newConfigurations);
+    logger.info(
+        String.format(
+            "Calculated C configurations: %d reused, %d rebuilt, %d removed",
+            reused,
+            configurations.size() - reused,
+            Sets.difference(previousConfigurations.keySet(), newConfigurations.keySet()).size()));
+    logger.info("Compiler switches: " + interner);
+    return workspaceModifiable;
+  }
+
+  /**
+   * Returns the copts, defines and include options for the targets in a resolve configuration.
+   *
+   * <p>These are derived from the parts of {@link com.google.idea.blaze.base.ideinfo.CIdeInfo}
+   * which make up the {@link BlazeResolveConfigurationData}, so are the same for all of its
+   * targets.
+   */
+  @Nullable
+  private static TargetOptions computeTargetOptions(
+      BlazeProjectData blazeProjectData,
+      CompilerSwitchInterner interner,
+      BlazeConfigurationResolverResult configResolveData,
+      BlazeResolveConfiguration resolveConfiguration) {
+    TargetIdeInfo targetIdeInfo =
+        resolveConfiguration.getTargets().stream()
+            .map(targetKey -> blazeProjectData.getTargetMap().get(targetKey))
+            .filter(target -> target != null && target.getcIdeInfo() != null)
+            .findFirst()
+            .orElse(null);
+    if (targetIdeInfo == null) {
+      return null;
+    }
+
+    // defines and include directories are the same for all sources in a given target, so lets
+    // collect them once and reuse for each source file's options
+
+    UnfilteredCompilerOptions coptsExtractor =
+        UnfilteredCompilerOptions.builder()
+            .registerSingleOrSplitOption("-I")
+            .build(targetIdeInfo.getcIdeInfo().getLocalCopts());
+    ImmutableList<String> plainLocalCopts =
+        filterIncompatibleFlags(coptsExtractor.getUninterpretedOptions());
+    ImmutableList<ExecutionRootPath> localIncludes =
+        coptsExtractor.getExtractedOptionValues("-I").stream()
+            .map(ExecutionRootPath::new)
+            .collect(toImmutableList());
+
+    // transitiveDefines are sourced from a target's (and transitive deps) "defines" attribute
+    ImmutableList<String> transitiveDefineOptions =
+        targetIdeInfo.getcIdeInfo().getTransitiveDefines().stream()
+            .map(s -> "-D" + s)
+            .collect(toImmutableList());
+
+    Function<ExecutionRootPath, Stream<File>> resolver =
+        executionRootPath -> interner.resolveToIncludeDirectories(executionRootPath).stream();
+    // localIncludes are sourced from -I options in a target's "copts" attribute. They  can be
+    // arbitrarily declared and may not exist in configResolveData.
+    // transitiveIncludeDirectories are sourced from CcSkylarkApiProvider.include_directories
+
+    ImmutableList<String> iOptionIncludeDirectories =
+        Stream.concat(
+                localIncludes.stream().flatMap(resolver),
+                targetIdeInfo.getcIdeInfo().getTransitiveIncludeDirectories().stream()
+                    .flatMap(resolver)
+                    .filter(configResolveData::isValidHeaderRoot))
+            .map(file -> interner.includeOption("-I", file))
+            .collect(toImmutableList());
+
+    // transitiveQuoteIncludeDirectories are sourced from
+    // CcSkylarkApiProvider.quote_include_directories
+    ImmutableList<String> iquoteOptionIncludeDirectories =
+        targetIdeInfo.getcIdeInfo().getTransitiveQuoteIncludeDirectories().stream()
+            .flatMap(resolver)
+            .filter(configResolveData::isValidHeaderRoot)
+            .map(file -> interner.includeOption("-iquote", file))
+            .collect(toImmutableList());
+    // transitiveSystemIncludeDirectories are sourced from
+    // CcSkylarkApiProvider.system_include_directories
+    // Note: We would ideally use -isystem here, but it interacts badly with the switches
+    // that get built by ClangUtils::addIncludeDirectories (it uses -I for system libraries).
+    ImmutableList<String> isystemOptionIncludeDirectories =
+        targetIdeInfo.getcIdeInfo().getTransitiveSystemIncludeDirectories().stream()
+            .flatMap(resolver)
+            .filter(configResolveData::isValidHeaderRoot)
+            .map(file -> interner.includeOption("-I", file))
+            .collect(toImmutableList());
+
+    return new TargetOptions(
+        plainLocalCopts,
+        transitiveDefineOptions,
+        iOptionIncludeDirectories,
+        iquoteOptionIncludeDirectories,
+        isystemOptionIncludeDirectories);
+  }
+
+  private ComputedConfiguration computeConfiguration(
+      BlazeResolveConfiguration resolveConfiguration,
+      @Nullable TargetOptions targetOptions,
+      CompilerSwitchInterner interner) {
+    BlazeCompilerSettings compilerSettings = resolveConfiguration.getCompilerSettings();
+    Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages = new HashMap<>();
+    Map<VirtualFile, PerFileCompilerOpts> configSourceFiles = new HashMap<>();
+    // the switches only depend on the language, so all sources of a kind share the same options
+    Map<OCLanguageKind, PerFileCompilerOpts> kindCompilerOpts = new HashMap<>();
+    if (targetOptions != null) {
+      for (TargetKey targetKey : resolveConfiguration.getTargets()) {
         for (VirtualFile vf : resolveConfiguration.getSources(targetKey)) {
           OCLanguageKind kind = resolveConfiguration.getDeclaredLanguageKind(vf);
           if (kind == null) {
             kind = CLanguageKind.CPP;
           }
 
-          CidrSwitchBuilder fileSpecificSwitchBuilder = new CidrSwitchBuilder();
-
-          ImmutableList<String> baseSwitches = compilerSettings.getCompilerSwitches(kind, vf);
-          fileSpecificSwitchBuilder.addAllRaw(baseSwitches);
-          fileSpecificSwitchBuilder.addAllRaw(transitiveDefineOptions);
-          fileSpecificSwitchBuilder.addAllRaw(iquoteOptionIncludeDirectories);
-          fileSpecificSwitchBuilder.addAllRaw(iOptionIncludeDirectories);
-          fileSpecificSwitchBuilder.addAllRaw(isystemOptionIncludeDirectories);
-          fileSpecificSwitchBuilder.addAllRaw(plainLocalCopts);
-
           PerFileCompilerOpts perFileCompilerOpts =
-              new PerFileCompilerOpts(kind, fileSpecificSwitchBuilder.build());
+              kindCompilerOpts.computeIfAbsent(
+                  kind,
+                  k ->
+                      new PerFileCompilerOpts(
+                          k,
+                          interner.getSwitches(
+                              ImmutableList.<String>builder()
+                                  .addAll(compilerSettings.getCompilerSwitches(k, vf))
+                                  .addAll(targetOptions.transitiveDefineOptions)
+                                  .addAll(targetOptions.iquoteOptionIncludeDirectories)
+                                  .addAll(targetOptions.iOptionIncludeDirectories)
+                                  .addAll(targetOptions.isystemOptionIncludeDirectories)
+                                  .addAll(targetOptions.plainLocalCopts)
+                                  .build())));
           configSourceFiles.put(vf, perFileCompilerOpts);
           if (!configLanguages.containsKey(kind)) {
             addConfigLanguageSwitches(
-                configLanguages, compilerSettings,
+                configLanguages, compilerSettings, interner,
                 // If a file isn't found in configSourceFiles (newly created files), CLion uses the
                 // configLanguages switches. We want some basic header search roots (genfiles),
                 // which are part of every target's iquote directories. See:
                 // https://github.com/bazelbuild/bazel/blob/2c493e8a2132d54f4b2fb8046f6bcef11e92cd22/src/main/java/com/google/devtools/build/lib/rules/cpp/CcCompilationHelper.java#L911
-                iquoteOptionIncludeDirectories, kind);
+                targetOptions.iquoteOptionIncludeDirectories, kind);
           }
         }
       }
+    }
 
-      for (OCLanguageKind language : supportedLanguages) {
-        if (!configLanguages.containsKey(language)) {
-          addConfigLanguageSwitches(
-              configLanguages, compilerSettings, ImmutableList.of(), language);
-        }
+    for (OCLanguageKind language : supportedLanguages) {
+      if (!configLanguages.containsKey(language)) {
+        addConfigLanguageSwitches(
+            configLanguages, compilerSettings, interner, ImmutableList.of(), language);
       }
-
-      String id = resolveConfiguration.getDisplayName();
-
-      addConfiguration(
-          workspaceModifiable,
-          id,
-          id,
-          workspaceRoot.directory(),
-          configLanguages,
-          configSourceFiles);
-      progress++;
     }
-    return workspaceModifiable;
+    return new ComputedConfiguration(
+        resolveConfiguration, targetOptions, configLanguages, configSourceFiles);
   }
 
   private static void addConfiguration(
@@ -320,6 +391,88 @@ public final class BlazeCWorkspace implements ProjectComponent {
     }
   }
 
+  /** The copts, defines and include options shared by the targets of a resolve configuration. */
+  private static final class TargetOptions {
+    final ImmutableList<String> plainLocalCopts;
+    final ImmutableList<String> transitiveDefineOptions;
+    final ImmutableList<String> iOptionIncludeDirectories;
+    final ImmutableList<String> iquoteOptionIncludeDirectories;
+    final ImmutableList<String> isystemOptionIncludeDirectories;
+
+    private TargetOptions(
+        ImmutableList<String> plainLocalCopts,
+        ImmutableList<String> transitiveDefineOptions,
+        ImmutableList<String> iOptionIncludeDirectories,
+        ImmutableList<String> iquoteOptionIncludeDirectories,
+        ImmutableList<String> isystemOptionIncludeDirectories) {
+      this.plainLocalCopts = plainLocalCopts;
+      this.transitiveDefineOptions = transitiveDefineOptions;
+      this.iOptionIncludeDirectories = iOptionIncludeDirectories;
+      this.iquoteOptionIncludeDirectories = iquoteOptionIncludeDirectories;
+      this.isystemOptionIncludeDirectories = isystemOptionIncludeDirectories;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof TargetOptions)) {
+        return false;
+      }
+      TargetOptions that = (TargetOptions) other;
+      return plainLocalCopts.equals(that.plainLocalCopts)
+          && transitiveDefineOptions.equals(that.transitiveDefineOptions)
+          && iOptionIncludeDirectories.equals(that.iOptionIncludeDirectories)
+          && iquoteOptionIncludeDirectories.equals(that.iquoteOptionIncludeDirectories)
+          && isystemOptionIncludeDirectories.equals(that.isystemOptionIncludeDirectories);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          plainLocalCopts,
+          transitiveDefineOptions,
+          iOptionIncludeDirectories,
+          iquoteOptionIncludeDirectories,
+          isystemOptionIncludeDirectories);
+    }
+  }
+
+  /**
+   * The compiler options calculated for a resolve configuration, kept so that they can be reused
+   * by the next sync if the configuration is unchanged.
+   */
+  private static final class ComputedConfiguration {
+    final BlazeResolveConfiguration resolveConfiguration;
+    @Nullable final TargetOptions targetOptions;
+    final Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages;
+    final Map<VirtualFile, PerFileCompilerOpts> configSourceFiles;
+
+    private ComputedConfiguration(
+        BlazeResolveConfiguration resolveConfiguration,
+        @Nullable TargetOptions targetOptions,
+        Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages,
+        Map<VirtualFile, PerFileCompilerOpts> configSourceFiles) {
+      this.resolveConfiguration = resolveConfiguration;
+      this.targetOptions = targetOptions;
+      this.configLanguages = configLanguages;
+      this.configSourceFiles = configSourceFiles;
+    }
+
+    /**
+     * Returns true if the given configuration has the same targets and sources, and its options
+     * resolve to the same flags (e.g. the execution root and valid header roots haven't changed).
+     * Compiler settings are only recreated when the toolchain or compiler version changes.
+     */
+    boolean canBeReusedFor(
+        BlazeResolveConfiguration configuration, @Nullable TargetOptions targetOptions) {
+      return configuration.getCompilerSettings() == resolveConfiguration.getCompilerSettings()
+          && configuration.isEquivalentConfigurations(resolveConfiguration)
+          && Objects.equals(targetOptions, this.targetOptions);
+    }
+  }
+
   /** Group compiler options for a specific file. */
   private static class PerFileCompilerOpts {
     final OCLanguageKind kind;
@@ -348,16 +501,18 @@ public final class BlazeCWorkspace implements ProjectComponent {
   private void addConfigLanguageSwitches(
       Map<OCLanguageKind, PerLanguageCompilerOpts> configLanguages,
       BlazeCompilerSettings compilerSettings,
+      CompilerSwitchInterner interner,
       List<String> additionalSwitches,
       OCLanguageKind language) {
     OCCompilerKind compilerKind = compilerSettings.getCompiler(language);
     File executable = compilerSettings.getCompilerExecutable(language);
-    CidrSwitchBuilder switchBuilder = new CidrSwitchBuilder();
-    ImmutableList<String> switches = compilerSettings.getCompilerSwitches(language, null);
-    switchBuilder.addAllRaw(switches);
-    switchBuilder.addAllRaw(additionalSwitches);
+    ImmutableList<String> switches =
+        ImmutableList.<String>builder()
+            .addAll(compilerSettings.getCompilerSwitches(language, null))
+            .addAll(additionalSwitches)
+            .build();
     PerLanguageCompilerOpts perLanguageCompilerOpts =
-        new PerLanguageCompilerOpts(compilerKind, executable, switchBuilder.build());
+        new PerLanguageCompilerOpts(compilerKind, executable, interner.getSwitches(switches));
     configLanguages.put(language, perLanguageCompilerOpts);
   }
 
@@ -16,8 +16,10 @@
 package com.google.idea.blaze.cpp;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.Futures;
@@ -51,17 +53,23 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 final class BlazeConfigurationResolver {
   private static final Logger logger = Logger.getInstance(BlazeConfigurationResolver.class);
+  private static final int TARGETS_PER_TASK = 500;
 
   private final Project project;
+  private final HeaderRootTrimmer.GenRootCache genRootCache;
+  private final BlazeConfigurationToolchainResolver.ToolchainLookupCache toolchainLookupCache =
+      new BlazeConfigurationToolchainResolver.ToolchainLookupCache();
 
   BlazeConfigurationResolver(Project project) {
     this.project = project;
+    this.genRootCache = HeaderRootTrimmer.GenRootCache.forProject(project);
   }
 
   public BlazeConfigurationResolverResult update(
@@ -78,7 +86,7 @@ final class BlazeConfigurationResolver {
             blazeProjectData.getWorkspacePathResolver());
     ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap =
         BlazeConfigurationToolchainResolver.buildToolchainLookupMap(
-            context, blazeProjectData.getTargetMap());
+            context, blazeProjectData.getTargetMap(), toolchainLookupCache);
     ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings =
         BlazeConfigurationToolchainResolver.buildCompilerSettingsMap(
             context,
@@ -92,11 +100,22 @@ final class BlazeConfigurationResolver {
     Predicate<TargetIdeInfo> targetFilter = getTargetFilter(projectViewFilter);
     BlazeConfigurationResolverResult.Builder builder = BlazeConfigurationResolverResult.builder();
     buildBlazeConfigurationData(
-        context, blazeProjectData, toolchainLookupMap, compilerSettings, targetFilter, builder);
+        context,
+        blazeProjectData,
+        toolchainLookupMap,
+        compilerSettings,
+        targetFilter,
+        oldResult,
+        builder);
     builder.setCompilerSettings(compilerSettings);
     ImmutableSet<File> validHeaderRoots =
         HeaderRootTrimmer.getValidRoots(
-            context, blazeProjectData, toolchainLookupMap, targetFilter, executionRootPathResolver);
+            context,
+            blazeProjectData,
+            toolchainLookupMap,
+            targetFilter,
+            executionRootPathResolver,
+            genRootCache);
     builder.setValidHeaderRoots(validHeaderRoots);
     return builder.build();
   }
@@ -127,6 +146,7 @@ final class BlazeConfigurationResolver {
       ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
       ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings,
       Predicate<TargetIdeInfo> targetFilter,
+      BlazeConfigurationResolverResult oldResult,
       BlazeConfigurationResolverResult.Builder builder) {
     // Type specification needed to avoid incorrect type inference during command line build.
     Scope.push(
@@ -137,18 +157,31 @@ final class BlazeConfigurationResolver {
 
               ConcurrentMap<TargetKey, BlazeResolveConfigurationData> targetToData =
                   Maps.newConcurrentMap();
+              AtomicInteger reused = new AtomicInteger();
+              // targets are processed in chunks, as the work per target is small
               List<ListenableFuture<?>> targetToDataFutures =
-                  blazeProjectData.getTargetMap().targets().stream()
-                      .filter(targetFilter)
+                  Lists.partition(
+                          ImmutableList.copyOf(blazeProjectData.getTargetMap().targets()),
+                          TARGETS_PER_TASK)
+                      .stream()
                       .map(
-                          target ->
+                          targets ->
                               submit(
                                   () -> {
-                                    BlazeResolveConfigurationData data =
-                                        createResolveConfiguration(
-                                            target, toolchainLookupMap, compilerSettings);
-                                    if (data != null) {
-                                      targetToData.put(target.getKey(), data);
+                                    for (TargetIdeInfo target : targets) {
+                                      if (!targetFilter.test(target)) {
+                                        continue;
+                                      }
+                                      BlazeResolveConfigurationData data =
+                                          createResolveConfiguration(
+                                              target,
+                                              toolchainLookupMap,
+                                              compilerSettings,
+                                              oldResult,
+                                              reused);
+                                      if (data != null) {
+                                        targetToData.put(target.getKey(), data);
+                                      }
                                     }
                                     return null;
                                   }))
@@ -164,6 +197,11 @@ final class BlazeConfigurationResolver {
                 logger.error("Could not build C resolve configurations", e);
                 return;
               }
+              logger.info(
+                  String.format(
+                      "Reused C configuration data for %d of %d targets",
+                      reused.get(), targetToData.size()));
+              builder.setTargetToData(ImmutableMap.copyOf(targetToData));
               findEquivalenceClasses(context, project, blazeProjectData, targetToData, builder);
             });
   }
@@ -208,7 +246,9 @@ final class BlazeConfigurationResolver {
   private BlazeResolveConfigurationData createResolveConfiguration(
       TargetIdeInfo target,
       ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
-      ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettingsMap) {
+      ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettingsMap,
+      BlazeConfigurationResolverResult oldResult,
+      AtomicInteger reused) {
     TargetKey targetKey = target.getKey();
     CIdeInfo cIdeInfo = target.getcIdeInfo();
     if (cIdeInfo == null) {
@@ -222,6 +262,11 @@ final class BlazeConfigurationResolver {
     if (compilerSettings == null) {
       return null;
     }
+    BlazeResolveConfigurationData oldData = oldResult.getConfigurationData(targetKey);
+    if (oldData != null && oldData.isCreatedFrom(cIdeInfo, toolchainIdeInfo, compilerSettings)) {
+      reused.incrementAndGet();
+      return oldData;
+    }
     return BlazeResolveConfigurationData.create(cIdeInfo, toolchainIdeInfo, compilerSettings);
   }
 }
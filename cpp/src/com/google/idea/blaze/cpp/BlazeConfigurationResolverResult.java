@@ -19,8 +19,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.idea.blaze.base.ideinfo.CToolchainIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
 import java.io.File;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -33,15 +35,18 @@ final class BlazeConfigurationResolverResult {
       uniqueResolveConfigurations;
   final ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings;
   private final ImmutableSet<File> validHeaderRoots;
+  private final ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData;
 
   private BlazeConfigurationResolverResult(
       ImmutableMap<BlazeResolveConfigurationData, BlazeResolveConfiguration>
           uniqueResolveConfigurations,
       ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings,
-      ImmutableSet<File> validHeaderRoots) {
+      ImmutableSet<File> validHeaderRoots,
+      ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData) {
     this.uniqueResolveConfigurations = uniqueResolveConfigurations;
     this.compilerSettings = compilerSettings;
     this.validHeaderRoots = validHeaderRoots;
+    this.targetToData = targetToData;
   }
 
   static Builder builder() {
@@ -56,6 +61,12 @@ final class BlazeConfigurationResolverResult {
     return uniqueResolveConfigurations.values().asList();
   }
 
+  /** Returns the configuration data created for the given target, for reuse by the next sync. */
+  @Nullable
+  BlazeResolveConfigurationData getConfigurationData(TargetKey target) {
+    return targetToData.get(target);
+  }
+
   boolean isValidHeaderRoot(File absolutePath) {
     return validHeaderRoots.contains(absolutePath);
   }
@@ -81,12 +92,13 @@ final class BlazeConfigurationResolverResult {
         ImmutableMap.of();
     ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings = ImmutableMap.of();
     ImmutableSet<File> validHeaderRoots = ImmutableSet.of();
+    ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData = ImmutableMap.of();
 
     public Builder() {}
 
     BlazeConfigurationResolverResult build() {
       return new BlazeConfigurationResolverResult(
-          uniqueConfigurations, compilerSettings, validHeaderRoots);
+          uniqueConfigurations, compilerSettings, validHeaderRoots, targetToData);
     }
 
     void setUniqueConfigurations(
@@ -103,5 +115,9 @@ final class BlazeConfigurationResolverResult {
     void setValidHeaderRoots(ImmutableSet<File> validHeaderRoots) {
       this.validHeaderRoots = validHeaderRoots;
     }
+
+    void setTargetToData(ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData) {
+      this.targetToData = targetToData;
+    }
   }
 }
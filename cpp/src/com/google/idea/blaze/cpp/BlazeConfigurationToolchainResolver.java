@@ -44,6 +44,8 @@ import com.intellij.pom.NavigatableAdapter;
 import java.io.File;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +69,15 @@ public final class BlazeConfigurationToolchainResolver {
   @VisibleForTesting
   public static ImmutableMap<TargetKey, CToolchainIdeInfo> buildToolchainLookupMap(
       BlazeContext context, TargetMap targetMap) {
+    return buildToolchainLookupMap(context, targetMap, new ToolchainLookupCache());
+  }
+
+  /**
+   * Returns the C toolchain used by each C target, reusing the lookups from the previous sync for
+   * targets whose dependencies are unchanged.
+   */
+  static ImmutableMap<TargetKey, CToolchainIdeInfo> buildToolchainLookupMap(
+      BlazeContext context, TargetMap targetMap, ToolchainLookupCache cache) {
     return Scope.push(
         context,
         childContext -> {
@@ -79,6 +90,10 @@ public final class BlazeConfigurationToolchainResolver {
               toolchains.put(target.getKey(), cToolchainIdeInfo);
             }
           }
+          // lookups can only be reused if the toolchains themselves are unchanged
+          Map<TargetKey, ToolchainLookup> oldLookups =
+              cache.toolchains.equals(toolchains) ? cache.lookups : ImmutableMap.of();
+          Map<TargetKey, ToolchainLookup> lookups = new HashMap<>();
 
           ImmutableMap.Builder<TargetKey, CToolchainIdeInfo> lookupTable = ImmutableMap.builder();
           for (TargetIdeInfo target : targetMap.targets()) {
@@ -86,29 +101,60 @@ public final class BlazeConfigurationToolchainResolver {
                 || target.getcToolchainIdeInfo() != null) {
               continue;
             }
-            List<TargetKey> toolchainDeps =
-                target.getDependencies().stream()
-                    .map(Dependency::getTargetKey)
-                    .filter(toolchains::containsKey)
-                    .collect(Collectors.toList());
-            if (toolchainDeps.size() != 1) {
-              issueToolchainWarning(context, target, toolchainDeps);
+            ToolchainLookup lookup = oldLookups.get(target.getKey());
+            if (lookup == null || lookup.dependencies != target.getDependencies()) {
+              lookup = lookupToolchain(target, toolchains);
+            }
+            lookups.put(target.getKey(), lookup);
+            if (lookup.toolchainDeps.size() != 1) {
+              issueToolchainWarning(context, target, lookup.toolchainDeps);
             }
-            if (!toolchainDeps.isEmpty()) {
-              TargetKey toolchainKey = toolchainDeps.get(0);
-              CToolchainIdeInfo toolchainInfo = toolchains.get(toolchainKey);
-              lookupTable.put(target.getKey(), toolchainInfo);
-            } else {
-              CToolchainIdeInfo arbitraryToolchain = Iterables.getFirst(toolchains.values(), null);
-              if (arbitraryToolchain != null) {
-                lookupTable.put(target.getKey(), arbitraryToolchain);
-              }
+            if (lookup.toolchain != null) {
+              lookupTable.put(target.getKey(), lookup.toolchain);
             }
           }
+          cache.toolchains = ImmutableMap.copyOf(toolchains);
+          cache.lookups = ImmutableMap.copyOf(lookups);
           return lookupTable.build();
         });
   }
 
+  private static ToolchainLookup lookupToolchain(
+      TargetIdeInfo target, Map<TargetKey, CToolchainIdeInfo> toolchains) {
+    List<TargetKey> toolchainDeps =
+        target.getDependencies().stream()
+            .map(Dependency::getTargetKey)
+            .filter(toolchains::containsKey)
+            .collect(Collectors.toList());
+    CToolchainIdeInfo toolchain =
+        !toolchainDeps.isEmpty()
+            ? toolchains.get(toolchainDeps.get(0))
+            : Iterables.getFirst(toolchains.values(), null);
+    return new ToolchainLookup(target.getDependencies(), toolchainDeps, toolchain);
+  }
+
+  /** The toolchain lookups from the last sync. */
+  static final class ToolchainLookupCache {
+    private volatile ImmutableMap<TargetKey, CToolchainIdeInfo> toolchains = ImmutableMap.of();
+    private volatile ImmutableMap<TargetKey, ToolchainLookup> lookups = ImmutableMap.of();
+  }
+
+  /** The toolchain found for a target, along with the dependencies it was found from. */
+  private static final class ToolchainLookup {
+    final Collection<Dependency> dependencies;
+    final List<TargetKey> toolchainDeps;
+    @Nullable final CToolchainIdeInfo toolchain;
+
+    ToolchainLookup(
+        Collection<Dependency> dependencies,
+        List<TargetKey> toolchainDeps,
+        @Nullable CToolchainIdeInfo toolchain) {
+      this.dependencies = dependencies;
+      this.toolchainDeps = toolchainDeps;
+      this.toolchain = toolchain;
+    }
+  }
+
   private static void issueToolchainWarning(
       BlazeContext context, TargetIdeInfo target, List<TargetKey> toolchainDeps) {
     String warningMessage =
@@ -79,6 +79,10 @@ final class BlazeResolveConfiguration {
     return targets;
   }
 
+  BlazeResolveConfigurationData getConfigurationData() {
+    return configurationData;
+  }
+
   private static String computeDisplayName(Collection<TargetKey> targets) {
     TargetKey minTargetKey = targets.stream().min(TargetKey::compareTo).orElse(null);
     Preconditions.checkNotNull(minTargetKey);
@@ -21,7 +21,12 @@ import com.google.idea.blaze.base.ideinfo.CToolchainIdeInfo;
 import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
 import java.util.Objects;
 
-/** Data for clustering {@link BlazeResolveConfiguration} by "equivalence". */
+/**
+ * Data for clustering {@link BlazeResolveConfiguration} by "equivalence".
+ *
+ * <p>The flag and path lists can be long, so the hash code is computed once up front and used as a
+ * fingerprint to reject unequal data before comparing the lists themselves.
+ */
 final class BlazeResolveConfigurationData {
 
   final BlazeCompilerSettings compilerSettings;
@@ -37,6 +42,10 @@ final class BlazeResolveConfigurationData {
   private final ImmutableList<String> transitiveDefines;
   final ImmutableList<ExecutionRootPath> transitiveSystemIncludeDirectories;
 
+  // The target info this was created from, to check whether it can be reused by the next sync.
+  private final CIdeInfo cIdeInfo;
+  private final int fingerprint;
+
   static BlazeResolveConfigurationData create(
       CIdeInfo cIdeInfo,
       CToolchainIdeInfo toolchainIdeInfo,
@@ -56,6 +65,29 @@ final class BlazeResolveConfigurationData {
     this.transitiveQuoteIncludeDirectories = cIdeInfo.getTransitiveQuoteIncludeDirectories();
     this.transitiveDefines = cIdeInfo.getTransitiveDefines();
     this.localCopts = cIdeInfo.getLocalCopts();
+    this.cIdeInfo = cIdeInfo;
+    this.fingerprint =
+        Objects.hash(
+            transitiveIncludeDirectories,
+            transitiveSystemIncludeDirectories,
+            transitiveQuoteIncludeDirectories,
+            localCopts,
+            transitiveDefines,
+            toolchainIdeInfo,
+            compilerSettings.getCompilerVersion());
+  }
+
+  /**
+   * Returns true if this was created from the same target and compiler info, in which case it can
+   * be reused rather than recreated.
+   */
+  boolean isCreatedFrom(
+      CIdeInfo cIdeInfo,
+      CToolchainIdeInfo toolchainIdeInfo,
+      BlazeCompilerSettings compilerSettings) {
+    return this.cIdeInfo == cIdeInfo
+        && this.compilerSettings == compilerSettings
+        && this.toolchainIdeInfo.equals(toolchainIdeInfo);
   }
 
   @Override
@@ -67,7 +99,8 @@ final class BlazeResolveConfigurationData {
       return false;
     }
     BlazeResolveConfigurationData otherData = (BlazeResolveConfigurationData) other;
-    return this.transitiveIncludeDirectories.equals(otherData.transitiveIncludeDirectories)
+    return this.fingerprint == otherData.fingerprint
+        && this.transitiveIncludeDirectories.equals(otherData.transitiveIncludeDirectories)
         && this.transitiveSystemIncludeDirectories.equals(
             otherData.transitiveSystemIncludeDirectories)
         && this.transitiveQuoteIncludeDirectories.equals(
@@ -82,13 +115,6 @@ final class BlazeResolveConfigurationData {
 
   @Override
   public int hashCode() {
-    return Objects.hash(
-        transitiveIncludeDirectories,
-        transitiveSystemIncludeDirectories,
-        transitiveQuoteIncludeDirectories,
-        localCopts,
-        transitiveDefines,
-        toolchainIdeInfo,
-        compilerSettings.getCompilerVersion());
+    return fingerprint;
   }
 }
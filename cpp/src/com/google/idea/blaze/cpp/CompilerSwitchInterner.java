@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
+import com.jetbrains.cidr.lang.toolchains.CidrCompilerSwitches;
+import com.jetbrains.cidr.lang.toolchains.CidrSwitchBuilder;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shares the include directories and compiler switches calculated by {@link BlazeCWorkspace}.
+ *
+ * <p>Large projects have many more source files than distinct sets of include directories, so
+ * each execution root path is only resolved once, each include option string is only created
+ * once, and files with identical switches share a single {@link CidrCompilerSwitches}.
+ *
+ * <p>Not thread-safe; an instance is used for a single configuration update.
+ */
+final class CompilerSwitchInterner {
+
+  private final Function<ExecutionRootPath, ImmutableList<File>> includeDirectoryResolver;
+  private final Map<ExecutionRootPath, ImmutableList<File>> includeDirectories = new HashMap<>();
+  private final Map<String, String> options = new HashMap<>();
+  private final Map<List<String>, CidrCompilerSwitches> switches = new HashMap<>();
+  private int switchRequests;
+
+  CompilerSwitchInterner(
+      Function<ExecutionRootPath, ImmutableList<File>> includeDirectoryResolver) {
+    this.includeDirectoryResolver = includeDirectoryResolver;
+  }
+
+  /** Returns the include directories for the given path, resolving it if not yet seen. */
+  ImmutableList<File> resolveToIncludeDirectories(ExecutionRootPath path) {
+    return includeDirectories.computeIfAbsent(path, includeDirectoryResolver);
+  }
+
+  /** Returns a shared instance of the option formed by the given flag and directory. */
+  String includeOption(String flag, File directory) {
+    String option = flag + directory.getAbsolutePath();
+    return options.computeIfAbsent(option, o -> o);
+  }
+
+  /** Returns a shared instance of the switches built from the given raw switches. */
+  CidrCompilerSwitches getSwitches(List<String> rawSwitches) {
+    switchRequests++;
+    return switches.computeIfAbsent(
+        ImmutableList.copyOf(rawSwitches),
+        list -> {
+          CidrSwitchBuilder builder = new CidrSwitchBuilder();
+          builder.addAllRaw(list);
+          return builder.build();
+        });
+  }
+
+  int getSwitchRequests() {
+    return switchRequests;
+  }
+
+  int getDistinctSwitches() {
+    return switches.size();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d distinct switch lists for %d requests, %d include paths resolved, %d include options",
+        switches.size(), switchRequests, includeDirectories.size(), options.size());
+  }
+}
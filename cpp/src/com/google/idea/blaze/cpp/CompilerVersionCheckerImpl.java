@@ -15,13 +15,53 @@
  */
 package com.google.idea.blaze.cpp;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.idea.blaze.base.async.process.ExternalTask;
+import com.google.idea.blaze.base.util.SerializationUtil;
 import com.google.idea.blaze.cpp.CompilerVersionChecker.VersionCheckException.IssueKind;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** Runs a compiler to check its version. */
+/**
+ * Runs a compiler to check its version.
+ *
+ * <p>Versions are cached on disk, keyed by the execution root and the compiler's path, and are
+ * only reused while the compiler's size and modification time are unchanged.
+ */
 public class CompilerVersionCheckerImpl implements CompilerVersionChecker {
+  private static final Logger logger = Logger.getInstance(CompilerVersionCheckerImpl.class);
+
+  /** Runs the compiler to find its version. */
+  @VisibleForTesting
+  interface VersionRunner {
+    String run(File executionRoot, File cppExecutable) throws VersionCheckException;
+  }
+
+  private final File cacheFile;
+  private final VersionRunner versionRunner;
+  private final Map<CompilerKey, CachedVersion> cachedVersions = new ConcurrentHashMap<>();
+  private volatile boolean loadedFromDisk = false;
+
+  public CompilerVersionCheckerImpl() {
+    this(
+        new File(PathManager.getSystemPath(), "blaze/compiler_versions.dat"),
+        CompilerVersionCheckerImpl::runCompilerVersionCheck);
+  }
+
+  @VisibleForTesting
+  CompilerVersionCheckerImpl(File cacheFile, VersionRunner versionRunner) {
+    this.cacheFile = cacheFile;
+    this.versionRunner = versionRunner;
+  }
 
   @Override
   public String checkCompilerVersion(File executionRoot, File cppExecutable)
@@ -32,6 +72,20 @@ public class CompilerVersionCheckerImpl implements CompilerVersionChecker {
     if (!cppExecutable.exists()) {
       throw new VersionCheckException(IssueKind.MISSING_COMPILER, "");
     }
+    loadFromDiskIfNecessary();
+    CompilerKey key = new CompilerKey(executionRoot, cppExecutable);
+    CachedVersion cached = cachedVersions.get(key);
+    if (cached != null && cached.isUpToDate(cppExecutable)) {
+      return cached.version;
+    }
+    String version = versionRunner.run(executionRoot, cppExecutable);
+    cachedVersions.put(key, new CachedVersion(cppExecutable, version));
+    saveToDisk();
+    return version;
+  }
+
+  private static String runCompilerVersionCheck(File executionRoot, File cppExecutable)
+      throws VersionCheckException {
     ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     ByteArrayOutputStream errStream = new ByteArrayOutputStream();
     int result =
@@ -50,4 +104,91 @@ public class CompilerVersionCheckerImpl implements CompilerVersionChecker {
     }
     return outputStream.toString();
   }
+
+  private void loadFromDiskIfNecessary() {
+    if (loadedFromDisk) {
+      return;
+    }
+    synchronized (this) {
+      if (loadedFromDisk) {
+        return;
+      }
+      loadedFromDisk = true;
+      try {
+        @SuppressWarnings("unchecked")
+        Map<CompilerKey, CachedVersion> cached =
+            (Map<CompilerKey, CachedVersion>)
+                SerializationUtil.loadFromDisk(
+                    cacheFile, ImmutableList.of(CompilerVersionCheckerImpl.class.getClassLoader()));
+        if (cached != null) {
+          cached.forEach(cachedVersions::putIfAbsent);
+        }
+      } catch (IOException e) {
+        logger.info("Failed to load cached compiler versions", e);
+      }
+    }
+  }
+
+  private synchronized void saveToDisk() {
+    // don't persist compilers which no longer exist
+    cachedVersions.keySet().removeIf(key -> !key.cppExecutable.exists());
+    try {
+      SerializationUtil.saveToDisk(cacheFile, new HashMap<>(cachedVersions));
+    } catch (IOException e) {
+      logger.warn("Failed to save cached compiler versions", e);
+    }
+  }
+
+  /**
+   * Identifies a compiler. The same compiler path can resolve to different compilers in different
+   * execution roots, e.g. a checked-in toolchain wrapper.
+   */
+  private static class CompilerKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final File executionRoot;
+    private final File cppExecutable;
+
+    CompilerKey(File executionRoot, File cppExecutable) {
+      this.executionRoot = executionRoot;
+      this.cppExecutable = cppExecutable;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CompilerKey)) {
+        return false;
+      }
+      CompilerKey other = (CompilerKey) o;
+      return executionRoot.equals(other.executionRoot)
+          && cppExecutable.equals(other.cppExecutable);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(executionRoot, cppExecutable);
+    }
+  }
+
+  /** A compiler version, along with the state of the compiler it was checked for. */
+  private static class CachedVersion implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final long modifiedTime;
+    private final long size;
+    private final String version;
+
+    CachedVersion(File cppExecutable, String version) {
+      this.modifiedTime = cppExecutable.lastModified();
+      this.size = cppExecutable.length();
+      this.version = version;
+    }
+
+    boolean isUpToDate(File cppExecutable) {
+      return modifiedTime == cppExecutable.lastModified() && size == cppExecutable.length();
+    }
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.cpp;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -39,19 +40,34 @@ import com.google.idea.blaze.base.scope.ScopedFunction;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
 import com.google.idea.blaze.base.scope.scopes.TimingScope;
 import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
 import com.google.idea.blaze.base.sync.workspace.ExecutionRootPathResolver;
+import com.google.idea.blaze.base.util.SerializationUtil;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
 
 /**
  * Collects possible -I, -isystem, -iquote search roots and determines which are actually viable.
@@ -60,6 +76,10 @@ import java.util.function.Predicate;
  * but may contain no more than aspect files or .cppmaps (does not actually contain headers). In
  * such cases, there is no reason to actually search those roots, and they won't change until the
  * next build/sync (unlike source directories).
+ *
+ * <p>Checking output directories means loading them into the VFS, so the verdict for each is kept
+ * in a {@link GenRootCache} and reused by later syncs while the directories it scanned are
+ * unmodified. The cache is saved to disk, so it survives restarting the IDE.
  */
 final class HeaderRootTrimmer {
 
@@ -73,7 +93,8 @@ final class HeaderRootTrimmer {
       BlazeProjectData blazeProjectData,
       ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
       Predicate<TargetIdeInfo> targetFilter,
-      ExecutionRootPathResolver executionRootPathResolver) {
+      ExecutionRootPathResolver executionRootPathResolver,
+      GenRootCache genRootCache) {
     // Type specification needed to avoid incorrect type inference during command line build.
     return Scope.push(
         parentContext,
@@ -84,7 +105,7 @@ final class HeaderRootTrimmer {
                   collectExecutionRootPaths(
                       blazeProjectData.getTargetMap(), targetFilter, toolchainLookupMap);
               return doCollectHeaderRoots(
-                  context, blazeProjectData, paths, executionRootPathResolver);
+                  context, blazeProjectData, paths, executionRootPathResolver, genRootCache);
             });
   }
 
@@ -92,11 +113,16 @@ final class HeaderRootTrimmer {
       BlazeContext context,
       BlazeProjectData projectData,
       Set<ExecutionRootPath> rootPaths,
-      ExecutionRootPathResolver pathResolver) {
+      ExecutionRootPathResolver pathResolver,
+      GenRootCache genRootCache) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ImmutableMap<File, GenRootVerdict> previousVerdicts = genRootCache.getVerdicts();
     Set<File> validRoots = Sets.newConcurrentHashSet();
+    Map<File, GenRootVerdict> genRootVerdicts = new ConcurrentHashMap<>();
     List<ListenableFuture<File>> futures = Lists.newArrayListWithCapacity(rootPaths.size());
     AtomicInteger genRootsWithHeaders = new AtomicInteger();
     AtomicInteger genRootsWithoutHeaders = new AtomicInteger();
+    AtomicInteger genRootVerdictsReused = new AtomicInteger();
     for (ExecutionRootPath path : rootPaths) {
       futures.add(
           submit(
@@ -106,22 +132,41 @@ final class HeaderRootTrimmer {
                 if (possibleDirectories.isEmpty()) {
                   logger.info(String.format("Couldn't resolve include root: %s", path));
                 }
+                boolean isOutputArtifact = isOutputArtifact(projectData.getBlazeInfo(), path);
                 for (File file : possibleDirectories) {
+                  if (isOutputArtifact) {
+                    GenRootVerdict verdict = previousVerdicts.get(file);
+                    if (verdict != null && verdict.isUpToDate(file)) {
+                      genRootVerdictsReused.incrementAndGet();
+                      genRootVerdicts.put(file, verdict);
+                      if (verdict.mayContainHeaders) {
+                        genRootsWithHeaders.incrementAndGet();
+                        validRoots.add(file);
+                      } else {
+                        genRootsWithoutHeaders.incrementAndGet();
+                      }
+                      continue;
+                    }
+                  }
                   VirtualFile vf = VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ true);
                   if (vf != null) {
                     // Check gen directories to see if they actually contain headers and not just
                     // other random generated files (like .s, .cc, or module maps).
                     // Also checks bin directories to see if they actually contain headers vs
                     // just aspect files.
-                    if (!isOutputArtifact(projectData.getBlazeInfo(), path)) {
+                    if (!isOutputArtifact) {
                       validRoots.add(file);
-                    } else if (genRootMayContainHeaders(vf)) {
+                      continue;
+                    }
+                    GenRootVerdict verdict = checkGenRoot(file);
+                    genRootVerdicts.put(file, verdict);
+                    if (verdict.mayContainHeaders) {
                       genRootsWithHeaders.incrementAndGet();
                       validRoots.add(file);
                     } else {
                       genRootsWithoutHeaders.incrementAndGet();
                     }
-                  } else if (!isOutputArtifact(projectData.getBlazeInfo(), path)
+                  } else if (!isOutputArtifact
                       && FileOperationProvider.getInstance().exists(file)) {
                     // If it's not a blaze output file, we expect it to always resolve.
                     logger.info(String.format("Unresolved header root %s", file.getAbsolutePath()));
@@ -133,10 +178,17 @@ final class HeaderRootTrimmer {
     try {
       Futures.allAsList(futures).get();
       ImmutableSet<File> result = ImmutableSet.copyOf(validRoots);
+      // only keep verdicts for roots still in the project
+      genRootCache.update(ImmutableMap.copyOf(genRootVerdicts));
       logger.info(
           String.format(
-              "CollectHeaderRoots: %s roots, (%s, %s) genroots with/without headers",
-              result.size(), genRootsWithHeaders.get(), genRootsWithoutHeaders.get()));
+              "CollectHeaderRoots: %s roots, (%s, %s) genroots with/without headers, "
+                  + "%s genroot verdicts reused, took %d ms",
+              result.size(),
+              genRootsWithHeaders.get(),
+              genRootsWithoutHeaders.get(),
+              genRootVerdictsReused.get(),
+              stopwatch.elapsed(TimeUnit.MILLISECONDS)));
       return result;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
@@ -148,22 +200,46 @@ final class HeaderRootTrimmer {
     return ImmutableSet.of();
   }
 
-  private static boolean genRootMayContainHeaders(VirtualFile directory) {
+  /**
+   * Checks the given output directory for headers. The directory is listed on disk rather than
+   * through the VFS, which may not have caught up with a build yet, because the verdict is stamped
+   * with the on-disk modification times and reused until they change.
+   */
+  private static GenRootVerdict checkGenRoot(File root) {
+    Map<File, Long> scannedDirectories = new HashMap<>();
+    boolean mayContainHeaders = genRootMayContainHeaders(root, scannedDirectories);
+    if (mayContainHeaders) {
+      // a stale positive verdict only costs an extra search root, so just check the root itself
+      scannedDirectories.keySet().retainAll(ImmutableSet.of(root));
+    }
+    scannedDirectories.putIfAbsent(root, getModifiedTime(root));
+    return new GenRootVerdict(mayContainHeaders, ImmutableMap.copyOf(scannedDirectories));
+  }
+
+  private static boolean genRootMayContainHeaders(
+      File directory, Map<File, Long> scannedDirectories) {
+    FileOperationProvider fileOperations = FileOperationProvider.getInstance();
     int totalDirectoriesChecked = 0;
-    Queue<VirtualFile> worklist = new ArrayDeque<>();
+    Queue<File> worklist = new ArrayDeque<>();
     worklist.add(directory);
     while (!worklist.isEmpty()) {
       totalDirectoriesChecked++;
       if (totalDirectoriesChecked > GEN_HEADER_ROOT_SEARCH_LIMIT) {
         return true;
       }
-      VirtualFile dir = worklist.poll();
-      for (VirtualFile child : dir.getChildren()) {
-        if (child.isDirectory()) {
+      File dir = worklist.poll();
+      // stamp the directory before listing it, so a file added in between invalidates the verdict
+      scannedDirectories.put(dir, getModifiedTime(dir));
+      File[] children = fileOperations.listFiles(dir);
+      if (children == null) {
+        continue;
+      }
+      for (File child : children) {
+        if (fileOperations.isDirectory(child)) {
           worklist.add(child);
           continue;
         }
-        String fileExtension = child.getExtension();
+        String fileExtension = FileUtilRt.getExtension(child.getName());
         if (Strings.isNullOrEmpty(fileExtension)) {
           // Conservatively allow extension-less headers (though hopefully rare for generated srcs
           // vs the standard library). Could count extension-less binaries in bin/ directory.
@@ -201,7 +277,126 @@ final class HeaderRootTrimmer {
     return paths;
   }
 
+  private static long getModifiedTime(File file) {
+    return FileOperationProvider.getInstance().getFileModifiedTime(file);
+  }
+
   static <T> ListenableFuture<T> submit(Callable<T> callable) {
     return BlazeExecutor.getInstance().submit(callable);
   }
+
+  /**
+   * The verdicts for output directories checked by the last sync, which are also saved to disk so
+   * that the first sync after restarting the IDE can reuse them.
+   */
+  static final class GenRootCache {
+    private static final String CACHE_FILE_NAME = "header_root_verdicts.dat";
+
+    /** Returns the file the verdicts are saved to, or null if they shouldn't be saved. */
+    private final Supplier<File> cacheFile;
+
+    /** Null until loaded from disk. */
+    @Nullable private volatile ImmutableMap<File, GenRootVerdict> verdicts;
+
+    GenRootCache(Supplier<File> cacheFile) {
+      this.cacheFile = cacheFile;
+    }
+
+    /** Creates a cache saved in the project's cache directory. */
+    static GenRootCache forProject(Project project) {
+      return new GenRootCache(
+          () -> {
+            BlazeImportSettings importSettings =
+                BlazeImportSettingsManager.getInstance(project).getImportSettings();
+            return importSettings != null
+                ? new File(
+                    BlazeDataStorage.getProjectCacheDir(project, importSettings), CACHE_FILE_NAME)
+                : null;
+          });
+    }
+
+    synchronized ImmutableMap<File, GenRootVerdict> getVerdicts() {
+      if (verdicts == null) {
+        verdicts = loadFromDisk();
+      }
+      return verdicts;
+    }
+
+    synchronized void update(ImmutableMap<File, GenRootVerdict> newVerdicts) {
+      if (newVerdicts.equals(verdicts)) {
+        return;
+      }
+      verdicts = newVerdicts;
+      File file = cacheFile.get();
+      if (file == null) {
+        return;
+      }
+      try {
+        SerializationUtil.saveToDisk(file, new HashMap<>(newVerdicts));
+      } catch (IOException e) {
+        logger.warn("Failed to save header root verdicts", e);
+      }
+    }
+
+    private ImmutableMap<File, GenRootVerdict> loadFromDisk() {
+      File file = cacheFile.get();
+      if (file == null) {
+        return ImmutableMap.of();
+      }
+      try {
+        @SuppressWarnings("unchecked")
+        Map<File, GenRootVerdict> loaded =
+            (Map<File, GenRootVerdict>)
+                SerializationUtil.loadFromDisk(
+                    file, ImmutableList.of(HeaderRootTrimmer.class.getClassLoader()));
+        return loaded != null ? ImmutableMap.copyOf(loaded) : ImmutableMap.of();
+      } catch (IOException e) {
+        logger.info("Failed to load header root verdicts", e);
+        return ImmutableMap.of();
+      }
+    }
+  }
+
+  /**
+   * Whether an output directory may contain headers, along with the modification times of the
+   * directories which were scanned to decide. Any new file in a scanned directory changes its
+   * modification time, so the verdict can be reused while they're all unchanged.
+   */
+  private static final class GenRootVerdict implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final boolean mayContainHeaders;
+    final ImmutableMap<File, Long> directoryStamps;
+
+    GenRootVerdict(boolean mayContainHeaders, ImmutableMap<File, Long> directoryStamps) {
+      this.mayContainHeaders = mayContainHeaders;
+      this.directoryStamps = directoryStamps;
+    }
+
+    boolean isUpToDate(File root) {
+      if (!directoryStamps.containsKey(root)) {
+        return false;
+      }
+      return directoryStamps.entrySet().stream()
+          .allMatch(entry -> getModifiedTime(entry.getKey()) == entry.getValue());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof GenRootVerdict)) {
+        return false;
+      }
+      GenRootVerdict other = (GenRootVerdict) o;
+      return mayContainHeaders == other.mayContainHeaders
+          && directoryStamps.equals(other.directoryStamps);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mayContainHeaders, directoryStamps);
+    }
+  }
 }
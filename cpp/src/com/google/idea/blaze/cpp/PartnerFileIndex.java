@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.CIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.base.projectview.ProjectViewSet;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.sync.SyncListener;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.SyncResult;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.text.StringUtil;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * An index of the C/C++ headers and sources in the target map, by path without extension. Used to
+ * find a file's partner header or source (see {@link PartnerFilePatterns}) without probing the file
+ * system, which can be slow on network file systems.
+ *
+ * <p>Files listed by several targets are only indexed once. The index is built on the sync thread
+ * once each sync completes, so navigation never has to wait for it.
+ */
+public final class PartnerFileIndex {
+  private static final Logger logger = Logger.getInstance(PartnerFileIndex.class);
+  private static final Key<PartnerFileIndex> INDEX_KEY = Key.create("blaze.cpp.partner.file.index");
+
+  private final ImmutableSetMultimap<String, File> headers;
+  private final ImmutableSetMultimap<String, File> sources;
+
+  private PartnerFileIndex(
+      ImmutableSetMultimap<String, File> headers, ImmutableSetMultimap<String, File> sources) {
+    this.headers = headers;
+    this.sources = sources;
+  }
+
+  /**
+   * Returns the index for the most recent sync, or null if the project hasn't been synced with
+   * C/C++ support enabled.
+   */
+  @Nullable
+  public static PartnerFileIndex getInstance(Project project) {
+    return project.getUserData(INDEX_KEY);
+  }
+
+  @VisibleForTesting
+  static PartnerFileIndex build(TargetMap targetMap, Function<ArtifactLocation, File> decoder) {
+    ImmutableSetMultimap.Builder<String, File> headers = ImmutableSetMultimap.builder();
+    ImmutableSetMultimap.Builder<String, File> sources = ImmutableSetMultimap.builder();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      CIdeInfo cIdeInfo = target.getcIdeInfo();
+      if (cIdeInfo == null) {
+        continue;
+      }
+      for (ArtifactLocation artifact :
+          Iterables.concat(
+              cIdeInfo.getSources(), cIdeInfo.getHeaders(), cIdeInfo.getTextualHeaders())) {
+        String extension = FileUtilRt.getExtension(artifact.getRelativePath());
+        if (CFileExtensions.HEADER_EXTENSIONS.contains(extension)) {
+          File file = decoder.apply(artifact);
+          headers.put(getPathWithoutExtension(file), file);
+        } else if (CFileExtensions.SOURCE_EXTENSIONS.contains(extension)) {
+          File file = decoder.apply(artifact);
+          sources.put(getPathWithoutExtension(file), file);
+        }
+      }
+    }
+    return new PartnerFileIndex(headers.build(), sources.build());
+  }
+
+  /**
+   * Returns the headers for the given source, e.g. foo.h for foo.cc. For tests (e.g. foo_test.cc),
+   * returns the headers of the file under test.
+   */
+  public ImmutableList<File> getHeaders(File source) {
+    String path = getPathWithoutExtension(source);
+    ImmutableList<File> result = headers.get(path).asList();
+    if (!result.isEmpty()) {
+      return result;
+    }
+    for (String testSuffix : PartnerFilePatterns.DEFAULT_PARTNER_SUFFIXES) {
+      if (path.endsWith(testSuffix)) {
+        return headers.get(StringUtil.trimEnd(path, testSuffix)).asList();
+      }
+    }
+    return ImmutableList.of();
+  }
+
+  /** Returns the sources for the given header, e.g. foo.cc for foo.h. */
+  public ImmutableList<File> getSources(File header) {
+    return sources.get(getPathWithoutExtension(header)).asList();
+  }
+
+  private static String getPathWithoutExtension(File file) {
+    return FileUtil.getNameWithoutExtension(file.getPath());
+  }
+
+  /** Rebuilds the index after each sync, before any navigation can ask for it. */
+  static class IndexBuilder implements SyncListener {
+    @Override
+    public void onSyncComplete(
+        Project project,
+        BlazeContext context,
+        BlazeImportSettings importSettings,
+        ProjectViewSet projectViewSet,
+        ImmutableSet<Integer> buildIds,
+        BlazeProjectData blazeProjectData,
+        SyncMode syncMode,
+        SyncResult syncResult) {
+      if (!blazeProjectData.getWorkspaceLanguageSettings().isLanguageActive(LanguageClass.C)) {
+        project.putUserData(INDEX_KEY, null);
+        return;
+      }
+      Stopwatch timer = Stopwatch.createStarted();
+      PartnerFileIndex index =
+          build(
+              blazeProjectData.getTargetMap(),
+              blazeProjectData.getArtifactLocationDecoder()::decode);
+      project.putUserData(INDEX_KEY, index);
+      logger.info(
+          String.format(
+              "Indexed %d C/C++ headers and %d sources in %d ms",
+              index.headers.size(), index.sources.size(), timer.elapsed(TimeUnit.MILLISECONDS)));
+    }
+  }
+}
@@ -39,6 +39,7 @@ import com.jetbrains.cidr.lang.psi.OCFile;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Wrapper around {@link OCSwitchToHeaderOrSourceRelatedProvider} to work around freezes when symbol
@@ -79,9 +80,7 @@ public class DelegatingSwitchToHeaderOrSourceProvider extends GotoRelatedProvide
       logger.info("Timed out without a fallback.");
       return ImmutableList.of();
     }
-    return ImmutableList.of(
-        new GotoRelatedItem(
-            correspondingFile, correspondingFile.isHeader() ? "Headers" : "Sources"));
+    return ImmutableList.of(newItem(correspondingFile));
   }
 
   @Override
@@ -91,13 +90,35 @@ public class DelegatingSwitchToHeaderOrSourceProvider extends GotoRelatedProvide
     if (!(psiFile instanceof OCFile) || project == null || !Blaze.isBlazeProject(project)) {
       return ImmutableList.of();
     }
+    // files known to the sync can be answered from memory, even if the delegate times out
+    OCFile indexedPartner = SwitchToHeaderOrSourceSearch.findIndexedPartner((OCFile) psiFile);
     Optional<List<? extends GotoRelatedItem>> fromDelegate =
         getItemsWithTimeout(() -> DELEGATE.getItems(context));
     if (!fromDelegate.isPresent()) {
+      if (indexedPartner != null) {
+        return ImmutableList.of(newItem(indexedPartner));
+      }
       logger.info("Timed out: Trying fallback for .h <-> .cc");
       return getItemsFallback((OCFile) psiFile);
     }
-    return fromDelegate.get();
+    return withPartner(fromDelegate.get(), indexedPartner);
+  }
+
+  /**
+   * Adds the indexed partner file to the delegate's items (which may also include related symbols),
+   * unless the delegate already found it.
+   */
+  private static List<? extends GotoRelatedItem> withPartner(
+      List<? extends GotoRelatedItem> items, @Nullable OCFile partner) {
+    if (partner == null
+        || items.stream().anyMatch(item -> partner.equals(item.getElement()))) {
+      return items;
+    }
+    return ImmutableList.<GotoRelatedItem>builder().add(newItem(partner)).addAll(items).build();
+  }
+
+  private static GotoRelatedItem newItem(OCFile file) {
+    return new GotoRelatedItem(file, file.isHeader() ? "Headers" : "Sources");
   }
 
   /**
@@ -129,7 +150,7 @@ public class DelegatingSwitchToHeaderOrSourceProvider extends GotoRelatedProvide
     if (target == null) {
       return ImmutableList.of();
     }
-    return ImmutableList.of(new GotoRelatedItem(target, target.isHeader() ? "Headers" : "Sources"));
+    return ImmutableList.of(newItem(target));
   }
 
   /**
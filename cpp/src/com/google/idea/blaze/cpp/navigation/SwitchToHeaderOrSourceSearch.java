@@ -15,6 +15,8 @@
  */
 package com.google.idea.blaze.cpp.navigation;
 
+import com.google.idea.blaze.base.io.VfsUtils;
+import com.google.idea.blaze.cpp.PartnerFileIndex;
 import com.google.idea.blaze.cpp.PartnerFilePatterns;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
@@ -24,6 +26,7 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.jetbrains.cidr.lang.psi.OCFile;
 import java.io.File;
+import java.util.List;
 import javax.annotation.Nullable;
 
 class SwitchToHeaderOrSourceSearch {
@@ -32,13 +35,47 @@ class SwitchToHeaderOrSourceSearch {
 
   @Nullable
   static OCFile getCorrespondingFile(OCFile file) {
-    OCFile target = file.getAssociatedFileWithSameName();
+    OCFile target = findIndexedPartner(file);
+    if (target != null) {
+      return target;
+    }
+    target = file.getAssociatedFileWithSameName();
     if (target == null && !file.isHeader() && file.getVirtualFile() != null) {
       target = correlateTestToHeader(file);
     }
     return target;
   }
 
+  /**
+   * Looks up the partner file in the {@link PartnerFileIndex}, so that the file system isn't
+   * probed for the common case of files known to the sync.
+   */
+  @Nullable
+  static OCFile findIndexedPartner(OCFile file) {
+    VirtualFile virtualFile = file.getVirtualFile();
+    if (virtualFile == null) {
+      return null;
+    }
+    PartnerFileIndex index = PartnerFileIndex.getInstance(file.getProject());
+    if (index == null) {
+      return null;
+    }
+    File ioFile = new File(virtualFile.getPath());
+    List<File> partners = file.isHeader() ? index.getSources(ioFile) : index.getHeaders(ioFile);
+    PsiManager psiManager = PsiManager.getInstance(file.getProject());
+    for (File partner : partners) {
+      VirtualFile partnerFile = VfsUtils.resolveVirtualFile(partner, /* refreshIfNeeded= */ false);
+      if (partnerFile == null) {
+        continue;
+      }
+      PsiFile psiFile = psiManager.findFile(partnerFile);
+      if (psiFile instanceof OCFile) {
+        return (OCFile) psiFile;
+      }
+    }
+    return null;
+  }
+
   @Nullable
   private static OCFile correlateTestToHeader(OCFile file) {
     // Quickly check foo_test.cc -> foo.h as well. "getAssociatedFileWithSameName" only does
@@ -33,6 +33,7 @@ import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.CIdeInfo;
 import com.google.idea.blaze.base.ideinfo.CToolchainIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
 import com.google.idea.blaze.base.io.FileOperationProvider;
@@ -41,6 +42,7 @@ import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
 import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
 import com.google.idea.blaze.base.model.primitives.Kind;
 import com.google.idea.blaze.base.model.primitives.Kind.Provider;
+import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
@@ -513,6 +515,37 @@ public class BlazeResolveConfigurationEquivalenceTest extends BlazeTestCase {
     assertThat(get(newConfigurations, "//foo/bar:a and 3 other target(s)")).isNotNull();
   }
 
+  @Test
+  public void unchangedTargets_reuseConfigurationData() {
+    ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:...:all"));
+    TargetMap targetMap = incrementalUpdateTestCaseInitialTargetMap();
+    resolve(projectView, targetMap);
+    TargetKey a = TargetKey.forPlainTarget(Label.create("//foo/bar:a"));
+    TargetKey d = TargetKey.forPlainTarget(Label.create("//foo/bar:d"));
+    BlazeResolveConfigurationData dataA = resolverResult.getConfigurationData(a);
+    BlazeResolveConfigurationData dataD = resolverResult.getConfigurationData(d);
+
+    TargetMapBuilder targetMapBuilder = TargetMapBuilder.builder().addTarget(createCcToolchain());
+    for (TargetIdeInfo target : targetMap.targets()) {
+      if (target.getKey().equals(d)) {
+        targetMapBuilder.addTarget(
+            createCcTarget(
+                "//foo/bar:d",
+                CppBlazeRules.RuleTypes.CC_BINARY.getKind(),
+                sources("foo/bar/d.cc"),
+                copts("-DCHANGED=1"),
+                includes()));
+      } else if (target.getcIdeInfo() != null) {
+        targetMapBuilder.addTarget(target);
+      }
+    }
+    resolve(projectView, targetMapBuilder.build());
+
+    assertThat(resolverResult.getConfigurationData(a)).isSameAs(dataA);
+    assertThat(resolverResult.getConfigurationData(d)).isNotSameAs(dataD);
+    assertThat(resolverResult.getConfigurationData(d)).isNotEqualTo(dataD);
+  }
+
   private static List<ArtifactLocation> sources(String... paths) {
     return Arrays.stream(paths)
         .map(path -> ArtifactLocation.builder().setRelativePath(path).setIsSource(true).build())
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CompilerSwitchInterner}. */
+@RunWith(JUnit4.class)
+public class CompilerSwitchInternerTest {
+
+  @Test
+  public void testIncludeDirectoriesAreOnlyResolvedOnce() {
+    List<ExecutionRootPath> resolved = new ArrayList<>();
+    CompilerSwitchInterner interner =
+        new CompilerSwitchInterner(
+            path -> {
+              resolved.add(path);
+              File file = path.getAbsoluteOrRelativeFile();
+              return ImmutableList.of(new File("/execroot", file.getPath()));
+            });
+
+    interner.resolveToIncludeDirectories(new ExecutionRootPath("foo/include"));
+    interner.resolveToIncludeDirectories(new ExecutionRootPath("foo/include"));
+    interner.resolveToIncludeDirectories(new ExecutionRootPath("bar/include"));
+
+    assertThat(resolved)
+        .containsExactly(
+            new ExecutionRootPath("foo/include"), new ExecutionRootPath("bar/include"));
+  }
+
+  @Test
+  public void testIdenticalOptionsAndSwitchesAreShared() {
+    CompilerSwitchInterner interner = new CompilerSwitchInterner(path -> ImmutableList.of());
+
+    String option = interner.includeOption("-I", new File("/execroot/foo"));
+    assertThat(option).isEqualTo("-I/execroot/foo");
+    assertThat(interner.includeOption("-I", new File("/execroot/foo"))).isSameAs(option);
+
+    assertThat(interner.getSwitches(ImmutableList.of("-DFOO", option)))
+        .isSameAs(interner.getSwitches(ImmutableList.of("-DFOO", option)));
+    assertThat(interner.getSwitches(ImmutableList.of("-DBAR")))
+        .isNotSameAs(interner.getSwitches(ImmutableList.of("-DFOO", option)));
+    assertThat(interner.getSwitchRequests()).isEqualTo(4);
+    assertThat(interner.getDistinctSwitches()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.idea.blaze.cpp.CompilerVersionChecker.VersionCheckException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CompilerVersionCheckerImpl}. */
+@RunWith(JUnit4.class)
+public class CompilerVersionCheckerImplTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** The (execution root, compiler) pairs the compiler was run for, in order. */
+  private final List<String> runs = new ArrayList<>();
+
+  private final CompilerVersionCheckerImpl.VersionRunner versionRunner =
+      (executionRoot, cppExecutable) -> {
+        runs.add(executionRoot.getName() + ":" + cppExecutable.getName());
+        return "version of " + cppExecutable.getName() + " in " + executionRoot.getName();
+      };
+
+  private File cacheFile;
+  private File executionRoot;
+  private File compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheFile = new File(folder.getRoot(), "blaze/compiler_versions.dat");
+    executionRoot = folder.newFolder("execroot");
+    compiler = writeCompiler(executionRoot, "gcc", "#!/bin/sh");
+  }
+
+  @Test
+  public void testVersionIsCachedWhileCompilerIsUnchanged() throws VersionCheckException {
+    CompilerVersionCheckerImpl checker = newChecker();
+
+    assertThat(checker.checkCompilerVersion(executionRoot, compiler))
+        .isEqualTo("version of gcc in execroot");
+    assertThat(checker.checkCompilerVersion(executionRoot, compiler))
+        .isEqualTo("version of gcc in execroot");
+
+    assertThat(runs).containsExactly("execroot:gcc");
+  }
+
+  @Test
+  public void testVersionIsCheckedAgainWhenCompilerChanges() throws Exception {
+    CompilerVersionCheckerImpl checker = newChecker();
+    checker.checkCompilerVersion(executionRoot, compiler);
+
+    writeCompiler(executionRoot, "gcc", "#!/bin/sh\nexec gcc-10 \"$@\"");
+    checker.checkCompilerVersion(executionRoot, compiler);
+
+    assertThat(runs).containsExactly("execroot:gcc", "execroot:gcc");
+  }
+
+  @Test
+  public void testVersionIsCachedPerExecutionRoot() throws Exception {
+    File otherExecutionRoot = folder.newFolder("other_execroot");
+    CompilerVersionCheckerImpl checker = newChecker();
+
+    assertThat(checker.checkCompilerVersion(executionRoot, compiler))
+        .isEqualTo("version of gcc in execroot");
+    assertThat(checker.checkCompilerVersion(otherExecutionRoot, compiler))
+        .isEqualTo("version of gcc in other_execroot");
+    assertThat(checker.checkCompilerVersion(executionRoot, compiler))
+        .isEqualTo("version of gcc in execroot");
+
+    assertThat(runs).containsExactly("execroot:gcc", "other_execroot:gcc").inOrder();
+  }
+
+  @Test
+  public void testVersionIsReadBackFromDisk() throws VersionCheckException {
+    newChecker().checkCompilerVersion(executionRoot, compiler);
+    assertThat(cacheFile.exists()).isTrue();
+
+    // e.g. after restarting the IDE
+    assertThat(newChecker().checkCompilerVersion(executionRoot, compiler))
+        .isEqualTo("version of gcc in execroot");
+
+    assertThat(runs).containsExactly("execroot:gcc");
+  }
+
+  @Test
+  public void testVersionReadFromDiskIsCheckedAgainWhenCompilerChanges() throws Exception {
+    newChecker().checkCompilerVersion(executionRoot, compiler);
+
+    writeCompiler(executionRoot, "gcc", "#!/bin/sh\nexec gcc-10 \"$@\"");
+    newChecker().checkCompilerVersion(executionRoot, compiler);
+
+    assertThat(runs).containsExactly("execroot:gcc", "execroot:gcc");
+  }
+
+  @Test
+  public void testCorruptCacheFileIsIgnored() throws Exception {
+    Files.createDirectories(cacheFile.getParentFile().toPath());
+    Files.write(cacheFile.toPath(), "not a serialized map".getBytes(UTF_8));
+
+    assertThat(newChecker().checkCompilerVersion(executionRoot, compiler))
+        .isEqualTo("version of gcc in execroot");
+    assertThat(runs).containsExactly("execroot:gcc");
+  }
+
+  private CompilerVersionCheckerImpl newChecker() {
+    return new CompilerVersionCheckerImpl(cacheFile, versionRunner);
+  }
+
+  private static File writeCompiler(File directory, String name, String contents)
+      throws IOException {
+    File compiler = new File(directory, name);
+    Files.write(compiler.toPath(), contents.getBytes(UTF_8));
+    return compiler;
+  }
+}
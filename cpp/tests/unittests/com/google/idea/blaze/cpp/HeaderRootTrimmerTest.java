@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.MockBlazeExecutor;
+import com.google.idea.blaze.base.bazel.BazelBuildSystemProvider;
+import com.google.idea.blaze.base.bazel.BuildSystemProvider;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
+import com.google.idea.blaze.base.ideinfo.CIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
+import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.blaze.base.sync.workspace.ExecutionRootPathResolver;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link HeaderRootTrimmer}. */
+@RunWith(JUnit4.class)
+public class HeaderRootTrimmerTest extends BlazeTestCase {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final BlazeContext context = new BlazeContext();
+  /** The directories listed on disk, in order. */
+  private final List<File> scannedDirectories = new ArrayList<>();
+
+  private File executionRoot;
+  private File genRootWithHeaders;
+  private File genRootWithoutHeaders;
+  private BlazeProjectData projectData;
+  private ExecutionRootPathResolver pathResolver;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    applicationServices.register(BlazeExecutor.class, new MockBlazeExecutor());
+    applicationServices.register(
+        FileOperationProvider.class,
+        new FileOperationProvider() {
+          @Override
+          public File[] listFiles(File file) {
+            scannedDirectories.add(file);
+            return super.listFiles(file);
+          }
+        });
+    LocalFileSystem fileSystem = mock(LocalFileSystem.class);
+    when(fileSystem.findFileByIoFile(any()))
+        .thenAnswer(invocation -> virtualFile((File) invocation.getArguments()[0]));
+    applicationServices.register(
+        VirtualFileSystemProvider.class, mock(VirtualFileSystemProvider.class));
+    when(VirtualFileSystemProvider.getInstance().getSystem()).thenReturn(fileSystem);
+
+    registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class)
+        .registerExtension(new CppBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+    registerExtensionPoint(BuildSystemProvider.EP_NAME, BuildSystemProvider.class)
+        .registerExtension(new BazelBuildSystemProvider());
+
+    try {
+      WorkspaceRoot workspaceRoot = new WorkspaceRoot(folder.newFolder("workspace"));
+      executionRoot = folder.newFolder("execroot");
+      genRootWithHeaders = createFile("bazel-out/gen/headers/lib.h").getParentFile();
+      genRootWithoutHeaders = createFile("bazel-out/gen/maps/lib.cppmap").getParentFile();
+      projectData =
+          MockBlazeProjectDataBuilder.builder(workspaceRoot)
+              .setBlazeInfo(
+                  BlazeInfo.createMockBlazeInfo(
+                      folder.getRoot().getPath(),
+                      executionRoot.getPath(),
+                      executionRoot.getPath() + "/bazel-out/bin",
+                      executionRoot.getPath() + "/bazel-out/gen",
+                      executionRoot.getPath() + "/bazel-out/testlogs"))
+              .setTargetMap(
+                  TargetMapBuilder.builder()
+                      .addTarget(
+                          TargetIdeInfo.builder()
+                              .setLabel("//foo:lib")
+                              .setKind(CppBlazeRules.RuleTypes.CC_LIBRARY.getKind())
+                              .setCInfo(
+                                  CIdeInfo.builder()
+                                      .addTransitiveIncludeDirectories(
+                                          ImmutableList.of(
+                                              new ExecutionRootPath("bazel-out/gen/headers"),
+                                              new ExecutionRootPath("bazel-out/gen/maps")))))
+                      .build())
+              .build();
+      pathResolver =
+          new ExecutionRootPathResolver(
+              BuildSystem.Bazel,
+              workspaceRoot,
+              executionRoot,
+              projectData.getWorkspacePathResolver());
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Test
+  public void testOnlyGenRootsWithHeadersAreValid() {
+    assertThat(getValidRoots(newCache())).containsExactly(genRootWithHeaders);
+  }
+
+  @Test
+  public void testHeadersMissingFromVfsAreFound() throws IOException {
+    // e.g. generated by a build the VFS hasn't been refreshed for
+    createFile("bazel-out/gen/maps/nested/generated.h");
+
+    assertThat(getValidRoots(newCache()))
+        .containsExactly(genRootWithHeaders, genRootWithoutHeaders);
+  }
+
+  @Test
+  public void testVerdictsAreReusedWhileGenRootsAreUnmodified() {
+    HeaderRootTrimmer.GenRootCache cache = newCache();
+    getValidRoots(cache);
+    assertThat(scannedDirectories).containsExactly(genRootWithHeaders, genRootWithoutHeaders);
+
+    assertThat(getValidRoots(cache)).containsExactly(genRootWithHeaders);
+    assertThat(scannedDirectories).hasSize(2);
+  }
+
+  @Test
+  public void testVerdictIsRecomputedWhenHeaderIsAdded() throws IOException {
+    HeaderRootTrimmer.GenRootCache cache = newCache();
+    getValidRoots(cache);
+
+    createFile("bazel-out/gen/maps/generated.h");
+    touch(genRootWithoutHeaders);
+
+    assertThat(getValidRoots(cache)).containsExactly(genRootWithHeaders, genRootWithoutHeaders);
+    assertThat(scannedDirectories)
+        .containsExactly(genRootWithHeaders, genRootWithoutHeaders, genRootWithoutHeaders);
+  }
+
+  @Test
+  public void testVerdictIsRecomputedWhenNestedDirectoryChanges() throws IOException {
+    File nested = createFile("bazel-out/gen/maps/nested/lib.cppmap").getParentFile();
+    HeaderRootTrimmer.GenRootCache cache = newCache();
+    assertThat(getValidRoots(cache)).containsExactly(genRootWithHeaders);
+
+    createFile("bazel-out/gen/maps/nested/generated.h");
+    touch(nested);
+
+    assertThat(getValidRoots(cache)).containsExactly(genRootWithHeaders, genRootWithoutHeaders);
+  }
+
+  @Test
+  public void testVerdictsAreReadBackFromDisk() throws IOException {
+    File cacheFile = new File(folder.newFolder("cache"), "verdicts.dat");
+    getValidRoots(new HeaderRootTrimmer.GenRootCache(() -> cacheFile));
+    assertThat(cacheFile.exists()).isTrue();
+
+    // e.g. after restarting the IDE
+    assertThat(getValidRoots(new HeaderRootTrimmer.GenRootCache(() -> cacheFile)))
+        .containsExactly(genRootWithHeaders);
+    assertThat(scannedDirectories).hasSize(2);
+  }
+
+  private ImmutableSet<File> getValidRoots(HeaderRootTrimmer.GenRootCache cache) {
+    return HeaderRootTrimmer.getValidRoots(
+        context, projectData, ImmutableMap.of(), target -> true, pathResolver, cache);
+  }
+
+  private static HeaderRootTrimmer.GenRootCache newCache() {
+    return new HeaderRootTrimmer.GenRootCache(() -> null);
+  }
+
+  private File createFile(String executionRootPath) throws IOException {
+    File file = new File(executionRoot, executionRootPath);
+    if (!file.getParentFile().mkdirs() && !file.getParentFile().isDirectory()) {
+      throw new IOException("Couldn't create " + file.getParent());
+    }
+    if (!file.createNewFile()) {
+      throw new IOException("Couldn't create " + file);
+    }
+    return file;
+  }
+
+  /** Moves the directory's modification time on, in case the file system's resolution is low. */
+  private static void touch(File directory) {
+    assertThat(directory.setLastModified(directory.lastModified() + 10_000)).isTrue();
+  }
+
+  /**
+   * Returns a virtual file for the given file, as seen by a VFS which hasn't been refreshed since
+   * the file was created: it has no children.
+   */
+  private static VirtualFile virtualFile(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    VirtualFile virtualFile = mock(VirtualFile.class);
+    when(virtualFile.getPath()).thenReturn(file.getPath());
+    when(virtualFile.isValid()).thenReturn(true);
+    when(virtualFile.isDirectory()).thenReturn(file.isDirectory());
+    when(virtualFile.getChildren()).thenReturn(VirtualFile.EMPTY_ARRAY);
+    return virtualFile;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.cpp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.CIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import java.io.File;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PartnerFileIndex}. */
+@RunWith(JUnit4.class)
+public class PartnerFileIndexTest {
+
+  private static final PartnerFileIndex INDEX =
+      PartnerFileIndex.build(
+          TargetMapBuilder.builder()
+              .addTarget(
+                  TargetIdeInfo.builder()
+                      .setLabel("//foo:lib")
+                      .setCInfo(
+                          CIdeInfo.builder()
+                              .addSource(source("foo/lib.cc"))
+                              .addHeader(source("foo/lib.h"))
+                              .addTextualHeader(source("foo/lib_impl.inc"))))
+              .addTarget(
+                  TargetIdeInfo.builder()
+                      .setLabel("//foo:lib_test")
+                      .setCInfo(
+                          CIdeInfo.builder()
+                              .addSource(source("foo/lib_test.cc"))
+                              // also listed by //foo:lib
+                              .addHeader(source("foo/lib.h"))))
+              .build(),
+          artifact -> new File("/root", artifact.getRelativePath()));
+
+  @Test
+  public void testSourceToHeader() {
+    assertThat(INDEX.getHeaders(new File("/root/foo/lib.cc")))
+        .containsExactly(new File("/root/foo/lib.h"));
+  }
+
+  @Test
+  public void testTestToHeader() {
+    assertThat(INDEX.getHeaders(new File("/root/foo/lib_test.cc")))
+        .containsExactly(new File("/root/foo/lib.h"));
+  }
+
+  @Test
+  public void testHeaderToSource() {
+    assertThat(INDEX.getSources(new File("/root/foo/lib.h")))
+        .containsExactly(new File("/root/foo/lib.cc"));
+  }
+
+  @Test
+  public void testUnknownFile() {
+    assertThat(INDEX.getHeaders(new File("/root/bar/other.cc"))).isEmpty();
+    assertThat(INDEX.getSources(new File("/root/foo/lib_impl.h"))).isEmpty();
+  }
+
+  private static ArtifactLocation source(String relativePath) {
+    return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
+  }
+}
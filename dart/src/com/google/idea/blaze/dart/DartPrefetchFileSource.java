@@ -23,10 +23,13 @@ import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.OutputsProvider;
+import com.google.idea.blaze.base.model.primitives.Kind;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.prefetch.PrefetchFileSource;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
+import com.google.idea.blaze.base.sync.TargetMapVisitor;
+import com.google.idea.blaze.base.sync.TargetMapVisitors;
 import com.google.idea.blaze.base.sync.projectview.ImportRoots;
 import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
@@ -38,6 +41,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /** Declare that dart files should be prefetched. */
@@ -80,9 +84,8 @@ public class DartPrefetchFileSource implements PrefetchFileSource, OutputsProvid
         };
     ArtifactLocationDecoder decoder = blazeProjectData.getArtifactLocationDecoder();
     List<File> sourceFiles =
-        blazeProjectData.getTargetMap().targets().stream()
-            .map(DartPrefetchFileSource::getDartSources)
-            .flatMap(Collection::stream)
+        TargetMapVisitors.getResult(blazeProjectData.getTargetMap(), SourcesVisitor.INSTANCE)
+            .stream()
             .filter(outsideProject)
             .map(a -> OutputArtifactResolver.resolve(project, decoder, a))
             .filter(Objects::nonNull)
@@ -100,4 +103,35 @@ public class DartPrefetchFileSource implements PrefetchFileSource, OutputsProvid
         ? target.getDartIdeInfo().getSources()
         : ImmutableList.of();
   }
+
+  /** Collects the sources of all dart targets, as part of the shared target map pass. */
+  static class SourcesVisitor implements TargetMapVisitor<ImmutableList<ArtifactLocation>> {
+    private static final SourcesVisitor INSTANCE = new SourcesVisitor();
+
+    @Override
+    public String getName() {
+      return "DartSources";
+    }
+
+    @Override
+    public boolean isActive(WorkspaceLanguageSettings languageSettings) {
+      return languageSettings.isLanguageActive(LanguageClass.DART)
+          && prefetchAllDartSources.getValue();
+    }
+
+    @Override
+    public boolean visitsKind(Kind kind) {
+      // dart info comes from the aspect's "dart" provider, which isn't tied to a rule kind
+      return true;
+    }
+
+    @Override
+    public Collector<TargetIdeInfo, ?, ImmutableList<ArtifactLocation>> collector() {
+      return Collector.of(
+          ImmutableList::<ArtifactLocation>builder,
+          (builder, target) -> builder.addAll(getDartSources(target)),
+          (left, right) -> left.addAll(right.build()),
+          ImmutableList.Builder::build);
+    }
+  }
 }
@@ -22,30 +22,15 @@ import com.goide.psi.impl.GoPackage;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
-import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
-import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
-import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
-import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
-import com.google.idea.blaze.base.ideinfo.TargetKey;
-import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.io.VfsUtils;
 import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
 import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
 import com.google.idea.blaze.base.lang.buildfile.references.BuildReferenceManager;
-import com.google.idea.blaze.base.model.BlazeProjectData;
-import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
 import com.google.idea.blaze.base.model.primitives.Label;
-import com.google.idea.blaze.base.model.primitives.LanguageClass;
-import com.google.idea.blaze.base.model.primitives.RuleType;
-import com.google.idea.blaze.base.sync.SyncCache;
 import com.google.idea.blaze.base.sync.workspace.WorkspaceHelper;
-import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
-import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.project.Project;
@@ -67,7 +52,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import one.util.streamex.StreamEx;
 
@@ -85,27 +69,28 @@ import one.util.streamex.StreamEx;
  * Exactly one {@link BlazeGoPackage} per go rule.
  */
 public class BlazeGoPackage extends GoPackage {
-  private static final Logger logger = Logger.getInstance(BlazeGoPackage.class);
-  private static final String GO_TARGET_TO_FILE_MAP_KEY = "BlazeGoTargetToFileMap";
-
   private final Label label;
   private final String importPath;
   private final ConcurrentMap<File, Optional<PsiFile>> files;
   private final ConcurrentMap<File, Optional<VirtualFile>> directories;
+  // set once every file/directory has been resolved, so later calls only need to validate them
+  @Nullable private volatile ImmutableSet<PsiFile> resolvedFiles;
+  @Nullable private volatile ImmutableSet<VirtualFile> resolvedDirectories;
   @Nullable private volatile PsiElement navigableElement;
   @Nullable private volatile PsiElement[] importReferences;
 
-  BlazeGoPackage(
-      Project project, BlazeProjectData projectData, String importPath, TargetIdeInfo target) {
+  BlazeGoPackage(Project project, String importPath, Label label, Collection<File> files) {
     this(
-        project,
-        importPath,
-        replaceProtoLibrary(project, projectData, target.getKey()).getLabel(),
-        getTargetToFileMap(project, projectData).get(target.getKey().getLabel()));
+        project, importPath, label, files, BlazeGoPackageIndex.readPackageName(files, importPath));
   }
 
-  BlazeGoPackage(Project project, String importPath, Label label, Collection<File> files) {
-    super(project, getPackageName(project, files, importPath));
+  BlazeGoPackage(
+      Project project,
+      String importPath,
+      Label label,
+      Collection<File> files,
+      String packageName) {
+    super(project, packageName);
     this.importPath = importPath;
     this.label = label;
     this.files = new ConcurrentHashMap<>();
@@ -117,152 +102,26 @@ public class BlazeGoPackage extends GoPackage {
         .forEach(f -> directories.put(f, Optional.empty()));
   }
 
-  /**
-   * The import path for proto_library doesn't match the target name, we need to replace the
-   * proto_library with the corresponding go_proto_library for them to match.
-   */
-  private static TargetKey replaceProtoLibrary(
-      Project project, BlazeProjectData projectData, TargetKey targetKey) {
-    TargetMap targetMap = projectData.getTargetMap();
-    TargetIdeInfo target = targetMap.get(targetKey);
-    if (target == null || target.getKind() != GenericBlazeRules.RuleTypes.PROTO_LIBRARY.getKind()) {
-      return targetKey;
-    }
-    return ReverseDependencyMap.get(project).get(targetKey).stream()
-        .map(targetMap::get)
-        .filter(Objects::nonNull)
-        .filter(t -> t.getKind() == RuleTypes.GO_PROTO_LIBRARY.getKind())
-        .map(TargetIdeInfo::getKey)
-        .findFirst()
-        .orElse(targetKey);
-  }
-
-  static ImmutableMultimap<Label, File> getTargetToFileMap(
-      Project project, BlazeProjectData projectData) {
-    ImmutableMultimap<Label, File> map =
-        SyncCache.getInstance(project)
-            .get(GO_TARGET_TO_FILE_MAP_KEY, BlazeGoPackage::getUncachedTargetToFileMap);
-    if (map == null) {
-      logger.error("Unexpected null target to file map from SyncCache.");
-      return getUncachedTargetToFileMap(project, projectData);
-    }
-    return map;
-  }
-
-  public static ImmutableMultimap<Label, File> getUncachedTargetToFileMap(
-      Project project, BlazeProjectData projectData) {
-    ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap = buildLibraryToTestMap(projectData);
-    ImmutableMultimap.Builder<Label, File> builder = ImmutableMultimap.builder();
-    for (TargetIdeInfo target : projectData.getTargetMap().targets()) {
-      if (target.getGoIdeInfo() == null) {
-        continue;
-      }
-      builder.putAll(
-          target.getKey().getLabel(),
-          getSourceFiles(target, project, projectData, libraryToTestMap));
-    }
-    return builder.build();
-  }
-
-  private static ImmutableSet<File> getSourceFiles(
-      TargetIdeInfo target,
-      Project project,
-      BlazeProjectData projectData,
-      ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap) {
-    if (target.getKind() == RuleTypes.GO_WRAP_CC.getKind()) {
-      return getWrapCcGoFiles(project, projectData, target);
-    }
-    return Stream.concat(
-            Stream.of(target.getGoIdeInfo()),
-            libraryToTestMap.get(target.getKey().getLabel()).stream())
-        .map(GoIdeInfo::getSources)
-        .flatMap(Collection::stream)
-        .map(a -> resolveArtifact(project, projectData, a))
-        .filter(Objects::nonNull)
-        .collect(toImmutableSet());
-  }
-
-  private static ImmutableMultimap<Label, GoIdeInfo> buildLibraryToTestMap(
-      BlazeProjectData projectData) {
-    TargetMap targetMap = projectData.getTargetMap();
-    ImmutableMultimap.Builder<Label, GoIdeInfo> builder = ImmutableMultimap.builder();
-    for (TargetIdeInfo target : targetMap.targets()) {
-      if (target.getKind().getLanguageClass() != LanguageClass.GO
-          || target.getKind().getRuleType() != RuleType.TEST
-          || target.getGoIdeInfo() == null
-          || target.getGoIdeInfo().getLibraryLabels().isEmpty()) {
-        continue;
-      }
-      for (Label label : target.getGoIdeInfo().getLibraryLabels()) {
-        builder.put(label, target.getGoIdeInfo());
-      }
-    }
-    return builder.build();
-  }
-
-  @Nullable
-  private static File resolveArtifact(
-      Project project, BlazeProjectData data, ArtifactLocation artifact) {
-    return OutputArtifactResolver.resolve(project, data.getArtifactLocationDecoder(), artifact);
-  }
-
-  private static ImmutableSet<File> getWrapCcGoFiles(
-      Project project, BlazeProjectData projectData, TargetIdeInfo target) {
-    if (!target.getGoIdeInfo().getSources().isEmpty()) {
-      return target.getGoIdeInfo().getSources().stream()
-          .map(a -> resolveArtifact(project, projectData, a))
-          .filter(Objects::nonNull)
-          .collect(toImmutableSet());
-    }
-    // older versions of blaze don't expose the .go genfile
-    // in that case, look directly in blaze-out
-    String blazePackage = target.getKey().getLabel().blazePackage().relativePath();
-    File directory = new File(projectData.getBlazeInfo().getGenfilesDirectory(), blazePackage);
-    String filename = blazePackage + '/' + target.getKey().getLabel().targetName() + ".go";
-    filename = filename.replace("_", "__");
-    filename = filename.replace('/', '_');
-    return ImmutableSet.of(new File(directory, filename));
-  }
-
-  /**
-   * Package name is determined by package declaration in the source files (must all be the same).
-   *
-   * <ul>
-   *   <li>for {@link RuleTypes#GO_BINARY}, it will always be {@code main}.
-   *   <li>for {@link RuleTypes#GO_LIBRARY}, it is usually the last component of the import path
-   *       (though not at all enforced).
-   *   <li>for {@link RuleTypes#GO_TEST} it will be the same as the {@link
-   *       RuleTypes#GO_BINARY}/{@link RuleTypes#GO_LIBRARY} under test, otherwise similar to a
-   *       {@link RuleTypes#GO_LIBRARY} if no test subject is specified.
-   *   <li>for {@link RuleTypes#GO_PROTO_LIBRARY}, it's either declared via the {@code go_package}
-   *       option, or automatically generated from the target name.
-   * </ul>
-   */
-  private static String getPackageName(Project project, Collection<File> files, String importPath) {
-    PsiManager psiManager = PsiManager.getInstance(project);
-    return files.stream()
-        .map(file -> VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ false))
-        .filter(Objects::nonNull)
-        .map(psiManager::findFile)
-        .filter(GoFile.class::isInstance)
-        .map(GoFile.class::cast)
-        .map(GoFile::getCanonicalPackageName) // strips _test suffix from test packages
-        .filter(Objects::nonNull)
-        .findFirst() // short circuit
-        .orElseGet(() -> importPath.substring(importPath.lastIndexOf('/') + 1));
-  }
-
   @Override
   public Set<VirtualFile> getDirectories() {
+    ImmutableSet<VirtualFile> resolved = resolvedDirectories;
+    if (resolved != null && resolved.stream().allMatch(VirtualFile::isValid)) {
+      return resolved;
+    }
     directories.replaceAll(
         (file, oldVirtualFile) ->
             oldVirtualFile.filter(VirtualFile::isValid).isPresent()
                 ? oldVirtualFile
                 : Optional.ofNullable(VfsUtils.resolveVirtualFile(file, false)));
-    return directories.values().stream()
-        .flatMap(Streams::stream)
-        .filter(VirtualFile::isValid)
-        .collect(toImmutableSet());
+    resolved =
+        directories.values().stream()
+            .flatMap(Streams::stream)
+            .filter(VirtualFile::isValid)
+            .collect(toImmutableSet());
+    if (resolved.size() == directories.size()) {
+      resolvedDirectories = resolved;
+    }
+    return resolved;
   }
 
   @Override
@@ -276,6 +135,10 @@ public class BlazeGoPackage extends GoPackage {
 
   @Override
   public Collection<PsiFile> files() {
+    ImmutableSet<PsiFile> resolved = resolvedFiles;
+    if (resolved != null && resolved.stream().allMatch(PsiFile::isValid)) {
+      return resolved;
+    }
     PsiManager psiManager = PsiManager.getInstance(getProject());
     files.replaceAll(
         (file, oldGoFile) ->
@@ -284,10 +147,15 @@ public class BlazeGoPackage extends GoPackage {
                 : Optional.ofNullable(VfsUtils.resolveVirtualFile(file, false))
                     .map(psiManager::findFile)
                     .filter(GoFile.class::isInstance));
-    return files.values().stream()
-        .flatMap(Streams::stream)
-        .filter(PsiFile::isValid)
-        .collect(toImmutableSet());
+    resolved =
+        files.values().stream()
+            .flatMap(Streams::stream)
+            .filter(PsiFile::isValid)
+            .collect(toImmutableSet());
+    if (resolved.size() == files.size()) {
+      resolvedFiles = resolved;
+    }
+    return resolved;
   }
 
   /**
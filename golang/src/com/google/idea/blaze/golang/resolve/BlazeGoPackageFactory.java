@@ -18,22 +18,10 @@ package com.google.idea.blaze.golang.resolve;
 import com.goide.project.GoPackageFactory;
 import com.goide.psi.GoFile;
 import com.goide.psi.impl.GoPackage;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
-import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
-import com.google.idea.blaze.base.ideinfo.TargetKey;
-import com.google.idea.blaze.base.ideinfo.TargetMap;
-import com.google.idea.blaze.base.model.BlazeProjectData;
-import com.google.idea.blaze.base.model.primitives.Label;
-import com.google.idea.blaze.base.sync.SyncCache;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
-import java.io.File;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
 
 class BlazeGoPackageFactory implements GoPackageFactory {
@@ -45,51 +33,14 @@ class BlazeGoPackageFactory implements GoPackageFactory {
       return null;
     }
     Project project = goFile.getProject();
-    ConcurrentMap<File, String> fileToImportPathMap = getFileToImportPathMap(project);
-    if (fileToImportPathMap == null) {
+    BlazeGoTargetFileIndex fileIndex = BlazeGoTargetFileIndex.getInstance(project);
+    if (fileIndex == null) {
       return null;
     }
-    String importPath = fileToImportPathMap.get(VfsUtil.virtualToIoFile(virtualFile));
+    String importPath = fileIndex.getImportPath(VfsUtil.virtualToIoFile(virtualFile));
     return importPath != null ? BlazeGoImportResolver.doResolve(importPath, project) : null;
   }
 
-  @Nullable
-  static ConcurrentMap<File, String> getFileToImportPathMap(Project project) {
-    return SyncCache.getInstance(project)
-        .get(BlazeGoPackageFactory.class, BlazeGoPackageFactory::buildFileToImportPathMap);
-  }
-
-  private static ConcurrentMap<File, String> buildFileToImportPathMap(
-      Project project, BlazeProjectData projectData) {
-    TargetMap targetMap = projectData.getTargetMap();
-    ConcurrentMap<File, String> map = new ConcurrentHashMap<>();
-    ImmutableMultimap<Label, File> targetToFile =
-        BlazeGoPackage.getTargetToFileMap(project, projectData);
-    for (TargetIdeInfo target : targetMap.targets()) {
-      if (target.getGoIdeInfo() == null) {
-        continue;
-      }
-      String importPath =
-          target.getGoIdeInfo().getLibraryLabels().stream()
-              .map(TargetKey::forPlainTarget)
-              .map(targetMap::get)
-              .filter(Objects::nonNull)
-              .map(TargetIdeInfo::getGoIdeInfo)
-              .filter(Objects::nonNull)
-              .map(GoIdeInfo::getImportPath)
-              .filter(Objects::nonNull)
-              .findFirst()
-              .orElse(target.getGoIdeInfo().getImportPath());
-      if (importPath == null) {
-        continue;
-      }
-      for (File file : targetToFile.get(target.getKey().getLabel())) {
-        map.putIfAbsent(file, importPath);
-      }
-    }
-    return map;
-  }
-
   @Nullable
   @Override
   public GoPackage createPackage(String packageName, PsiDirectory... directories) {
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.io.VfsUtils;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.SyncListener;
+import com.google.idea.blaze.base.sync.SyncMode;
+import com.google.idea.blaze.base.sync.SyncResult;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
+import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Per-sync index of the go targets in the {@link TargetMap}, by import path.
+ *
+ * <p>Holds everything needed to create a {@link BlazeGoPackage}: the target label, source files
+ * (from the {@link BlazeGoTargetFileIndex}) and package name. Package names are read from the
+ * package clause of the first readable source file rather than from PSI, and are filled in on a
+ * background thread after each sync so import resolution doesn't need to parse any files.
+ */
+final class BlazeGoPackageIndex {
+  private static final Logger logger = Logger.getInstance(BlazeGoPackageIndex.class);
+
+  private final ImmutableMap<String, Entry> entries;
+
+  private BlazeGoPackageIndex(ImmutableMap<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /** Returns the index for the current sync, or null if the project hasn't been synced. */
+  @Nullable
+  static BlazeGoPackageIndex getInstance(Project project) {
+    return SyncCache.getInstance(project)
+        .get(BlazeGoPackageIndex.class, BlazeGoPackageIndex::build);
+  }
+
+  @Nullable
+  Entry get(String importPath) {
+    return entries.get(importPath);
+  }
+
+  private static BlazeGoPackageIndex build(Project project, BlazeProjectData projectData) {
+    Stopwatch timer = Stopwatch.createStarted();
+    TargetMap targetMap = projectData.getTargetMap();
+    Map<String, TargetKey> importPathToTarget = getImportPathToTargetMap(targetMap);
+    BlazeGoTargetFileIndex fileIndex = BlazeGoTargetFileIndex.getInstance(project);
+    if (fileIndex == null) {
+      logger.error("Unexpected null go target file index from SyncCache.");
+      fileIndex = BlazeGoTargetFileIndex.build(project, projectData);
+    }
+    ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+    for (Map.Entry<String, TargetKey> mapping : importPathToTarget.entrySet()) {
+      String importPath = mapping.getKey();
+      TargetKey targetKey = mapping.getValue();
+      entries.put(
+          importPath,
+          new Entry(
+              importPath,
+              replaceProtoLibrary(project, targetMap, targetKey).getLabel(),
+              targetKey.getLabel(),
+              fileIndex));
+    }
+    BlazeGoPackageIndex index = new BlazeGoPackageIndex(entries.build());
+    logger.info(
+        String.format(
+            "Indexed %d go packages in %d ms",
+            index.entries.size(), timer.elapsed(TimeUnit.MILLISECONDS)));
+    return index;
+  }
+
+  private static ImmutableMap<String, TargetKey> getImportPathToTargetMap(TargetMap targetMap) {
+    return targetMap.targets().stream()
+        .filter(t -> t.getGoIdeInfo() != null && t.getGoIdeInfo().getImportPath() != null)
+        .collect(
+            ImmutableMap.toImmutableMap(
+                t -> t.getGoIdeInfo().getImportPath(),
+                TargetIdeInfo::getKey,
+                // duplicates are possible (e.g., same target with different aspects)
+                // choose the one with the most sources (though they're probably the same)
+                (first, second) ->
+                    targetMap.get(first).getGoIdeInfo().getSources().size()
+                            >= targetMap.get(second).getGoIdeInfo().getSources().size()
+                        ? first
+                        : second));
+  }
+
+  /**
+   * The import path for proto_library doesn't match the target name, we need to replace the
+   * proto_library with the corresponding go_proto_library for them to match.
+   */
+  private static TargetKey replaceProtoLibrary(
+      Project project, TargetMap targetMap, TargetKey targetKey) {
+    TargetIdeInfo target = targetMap.get(targetKey);
+    if (target == null || target.getKind() != GenericBlazeRules.RuleTypes.PROTO_LIBRARY.getKind()) {
+      return targetKey;
+    }
+    return ReverseDependencyMap.get(project).get(targetKey).stream()
+        .map(targetMap::get)
+        .filter(Objects::nonNull)
+        .filter(t -> t.getKind() == RuleTypes.GO_PROTO_LIBRARY.getKind())
+        .map(TargetIdeInfo::getKey)
+        .findFirst()
+        .orElse(targetKey);
+  }
+
+  /** Reads the package names of all indexed packages which haven't been read yet. */
+  private void readPackageNames(Project project) {
+    Stopwatch timer = Stopwatch.createStarted();
+    for (Entry entry : entries.values()) {
+      if (project.isDisposed()) {
+        return;
+      }
+      entry.getPackageName();
+    }
+    logger.info(
+        String.format(
+            "Read package names of %d go packages in %d ms",
+            entries.size(), timer.elapsed(TimeUnit.MILLISECONDS)));
+  }
+
+  /**
+   * Returns the package name declared by the given files (which must all be the same), or the last
+   * component of the import path if none of them can be read.
+   *
+   * <ul>
+   *   <li>for {@link RuleTypes#GO_BINARY}, it will always be {@code main}.
+   *   <li>for {@link RuleTypes#GO_LIBRARY}, it is usually the last component of the import path
+   *       (though not at all enforced).
+   *   <li>for {@link RuleTypes#GO_TEST} it will be the same as the {@link
+   *       RuleTypes#GO_BINARY}/{@link RuleTypes#GO_LIBRARY} under test, otherwise similar to a
+   *       {@link RuleTypes#GO_LIBRARY} if no test subject is specified.
+   *   <li>for {@link RuleTypes#GO_PROTO_LIBRARY}, it's either declared via the {@code go_package}
+   *       option, or automatically generated from the target name.
+   * </ul>
+   */
+  static String readPackageName(Collection<File> files, String importPath) {
+    for (File file : files) {
+      String packageName = readPackageName(file);
+      if (packageName != null) {
+        return packageName;
+      }
+    }
+    return importPath.substring(importPath.lastIndexOf('/') + 1);
+  }
+
+  @Nullable
+  private static String readPackageName(File file) {
+    VirtualFile virtualFile = VfsUtils.resolveVirtualFile(file, /* refreshIfNeeded= */ false);
+    if (virtualFile == null || !virtualFile.isValid() || virtualFile.isDirectory()) {
+      return null;
+    }
+    try (InputStream in = virtualFile.getInputStream()) {
+      return GoPackageClauseReader.readCanonicalPackageName(in);
+    } catch (IOException e) {
+      logger.debug("Failed to read package clause of " + file, e);
+      return null;
+    }
+  }
+
+  /** The indexed data for a single go package. */
+  static final class Entry {
+    private final String importPath;
+    private final Label label;
+    private final Label targetLabel;
+    private final BlazeGoTargetFileIndex fileIndex;
+    @Nullable private volatile String packageName;
+
+    private Entry(
+        String importPath, Label label, Label targetLabel, BlazeGoTargetFileIndex fileIndex) {
+      this.importPath = importPath;
+      this.label = label;
+      this.targetLabel = targetLabel;
+      this.fileIndex = fileIndex;
+    }
+
+    /** The label of the go rule, used for navigation. */
+    Label getLabel() {
+      return label;
+    }
+
+    ImmutableList<File> getFiles() {
+      return fileIndex.getFiles(targetLabel);
+    }
+
+    String getPackageName() {
+      String name = packageName;
+      if (name == null) {
+        name = packageName = readPackageName(getFiles(), importPath);
+      }
+      return name;
+    }
+  }
+
+  /** Builds the index and reads all package names in the background after each sync. */
+  static class IndexWarmer implements SyncListener {
+    @Override
+    public void afterSync(
+        Project project,
+        BlazeContext context,
+        SyncMode syncMode,
+        SyncResult syncResult,
+        ImmutableSet<Integer> buildIds) {
+      if (!syncResult.successful()) {
+        return;
+      }
+      BlazeProjectData projectData =
+          BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
+      if (projectData == null
+          || !projectData.getWorkspaceLanguageSettings().isLanguageActive(LanguageClass.GO)) {
+        return;
+      }
+      @SuppressWarnings("unused")
+      Future<?> ignored =
+          ApplicationManager.getApplication()
+              .executeOnPooledThread(
+                  () -> {
+                    if (project.isDisposed()) {
+                      return;
+                    }
+                    BlazeGoPackageIndex index = getInstance(project);
+                    if (index != null) {
+                      index.readPackageNames(project);
+                    }
+                  });
+    }
+  }
+}
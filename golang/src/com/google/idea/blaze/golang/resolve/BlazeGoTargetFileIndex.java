@@ -0,0 +1,367 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.base.model.primitives.RuleType;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
+import com.google.idea.blaze.golang.resolve.FilePathTrie.Node;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * The source files of each go target in the {@link TargetMap}, and the import path of each source
+ * file. Shared by everything which needs to map between go targets and files.
+ *
+ * <p>Paths are stored in a {@link FilePathTrie} rather than as {@link File}s. Targets are resolved
+ * in parallel, and the files of targets which haven't changed since the previous build of the
+ * index (e.g. after a partial sync) are reused rather than resolved again, provided all of their
+ * sources could be resolved last time.
+ */
+public final class BlazeGoTargetFileIndex {
+  private static final Logger logger = Logger.getInstance(BlazeGoTargetFileIndex.class);
+  private static final Key<BlazeGoTargetFileIndex> LAST_INDEX_KEY =
+      Key.create("blaze.go.target.file.index");
+  private static final int TARGETS_PER_TASK = 500;
+
+  private final BlazeInfo blazeInfo;
+  private final FilePathTrie trie;
+  private final ImmutableMap<Label, TargetFiles> targetFiles;
+  private final ImmutableMap<Node, String> fileToImportPath;
+
+  private BlazeGoTargetFileIndex(
+      BlazeInfo blazeInfo,
+      FilePathTrie trie,
+      ImmutableMap<Label, TargetFiles> targetFiles,
+      ImmutableMap<Node, String> fileToImportPath) {
+    this.blazeInfo = blazeInfo;
+    this.trie = trie;
+    this.targetFiles = targetFiles;
+    this.fileToImportPath = fileToImportPath;
+  }
+
+  /** Returns the index for the current sync, or null if the project hasn't been synced. */
+  @Nullable
+  static BlazeGoTargetFileIndex getInstance(Project project) {
+    return SyncCache.getInstance(project)
+        .get(BlazeGoTargetFileIndex.class, BlazeGoTargetFileIndex::build);
+  }
+
+  /**
+   * Builds the index for the given project data, without going through the {@link SyncCache}. Can
+   * be used during sync, before the project data is saved; the later cached index will reuse the
+   * result.
+   */
+  public static BlazeGoTargetFileIndex build(Project project, BlazeProjectData projectData) {
+    return build(
+        project,
+        projectData,
+        artifact ->
+            OutputArtifactResolver.resolve(
+                project, projectData.getArtifactLocationDecoder(), artifact));
+  }
+
+  /**
+   * Builds the index, resolving source artifacts with the given function, which returns null for
+   * artifacts without a local file.
+   */
+  @VisibleForTesting
+  static BlazeGoTargetFileIndex build(
+      Project project,
+      BlazeProjectData projectData,
+      Function<ArtifactLocation, File> resolver) {
+    Stopwatch timer = Stopwatch.createStarted();
+    BlazeGoTargetFileIndex lastIndex = project.getUserData(LAST_INDEX_KEY);
+    // resolved paths depend on the output directories
+    BlazeGoTargetFileIndex previous =
+        lastIndex != null && lastIndex.blazeInfo.equals(projectData.getBlazeInfo())
+            ? lastIndex
+            : null;
+    TargetMap targetMap = projectData.getTargetMap();
+    ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap = buildLibraryToTestMap(targetMap);
+    FilePathTrie trie = new FilePathTrie();
+    ConcurrentMap<Label, TargetFiles> targetFiles = Maps.newConcurrentMap();
+    AtomicInteger reused = new AtomicInteger();
+    // targets are processed in chunks, as the work per target is small
+    List<ListenableFuture<?>> futures =
+        Lists.partition(ImmutableList.copyOf(targetMap.targets()), TARGETS_PER_TASK).stream()
+            .map(
+                targets ->
+                    BlazeExecutor.getInstance()
+                        .submit(
+                            () -> {
+                              for (TargetIdeInfo target : targets) {
+                                if (target.getGoIdeInfo() == null) {
+                                  continue;
+                                }
+                                TargetFiles files =
+                                    getTargetFiles(
+                                        projectData,
+                                        resolver,
+                                        target,
+                                        libraryToTestMap,
+                                        trie,
+                                        previous,
+                                        reused);
+                                targetFiles.merge(
+                                    target.getKey().getLabel(), files, TargetFiles::merge);
+                              }
+                              return null;
+                            }))
+            .collect(Collectors.toList());
+    Futures.getUnchecked(Futures.allAsList(futures));
+
+    BlazeGoTargetFileIndex index =
+        new BlazeGoTargetFileIndex(
+            projectData.getBlazeInfo(),
+            trie,
+            ImmutableMap.copyOf(targetFiles),
+            buildFileToImportPathMap(targetMap, targetFiles));
+    project.putUserData(LAST_INDEX_KEY, index);
+    logger.info(
+        String.format(
+            "Indexed files of %d go targets (%d reused) in %d ms",
+            targetFiles.size(), reused.get(), timer.elapsed(TimeUnit.MILLISECONDS)));
+    return index;
+  }
+
+  /** Returns the source files of the given go target. */
+  ImmutableList<File> getFiles(Label label) {
+    TargetFiles files = targetFiles.get(label);
+    return files != null
+        ? files.files.stream().map(Node::toFile).collect(toImmutableList())
+        : ImmutableList.of();
+  }
+
+  /** Returns the source files of all go targets. */
+  public ImmutableList<File> getAllFiles() {
+    return targetFiles.values().stream()
+        .flatMap(files -> files.files.stream())
+        .distinct()
+        .map(Node::toFile)
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Returns the import path of the given source file. For test sources this is the import path of
+   * the library under test.
+   */
+  @Nullable
+  String getImportPath(File file) {
+    Node node = trie.find(file);
+    return node != null ? fileToImportPath.get(node) : null;
+  }
+
+  private static TargetFiles getTargetFiles(
+      BlazeProjectData projectData,
+      Function<ArtifactLocation, File> resolver,
+      TargetIdeInfo target,
+      ImmutableMultimap<Label, GoIdeInfo> libraryToTestMap,
+      FilePathTrie trie,
+      @Nullable BlazeGoTargetFileIndex previous,
+      AtomicInteger reused) {
+    Label label = target.getKey().getLabel();
+    ImmutableList<GoIdeInfo> testInfos = libraryToTestMap.get(label).asList();
+    if (previous != null) {
+      TargetFiles previousFiles = previous.targetFiles.get(label);
+      if (previousFiles != null && previousFiles.isCreatedFrom(target, testInfos)) {
+        reused.incrementAndGet();
+        return previousFiles.copyTo(trie);
+      }
+    }
+    List<File> sources = getSourceFiles(target, projectData, resolver, testInfos);
+    ImmutableList<Node> files =
+        sources.stream()
+            .filter(Objects::nonNull)
+            .distinct()
+            .map(trie::intern)
+            .collect(toImmutableList());
+    // unresolved sources (e.g. remote outputs which haven't been cached yet) may resolve next time
+    boolean reusable = !sources.contains(null);
+    return new TargetFiles(target.getKind(), target.getGoIdeInfo(), testInfos, files, reusable);
+  }
+
+  /**
+   * Returns the source files of the given target, with a null element for each source which
+   * couldn't be resolved to a local file.
+   */
+  private static List<File> getSourceFiles(
+      TargetIdeInfo target,
+      BlazeProjectData projectData,
+      Function<ArtifactLocation, File> resolver,
+      ImmutableList<GoIdeInfo> testInfos) {
+    if (target.getKind() == RuleTypes.GO_WRAP_CC.getKind()) {
+      return getWrapCcGoFiles(projectData, resolver, target);
+    }
+    return Stream.concat(Stream.of(target.getGoIdeInfo()), testInfos.stream())
+        .map(GoIdeInfo::getSources)
+        .flatMap(Collection::stream)
+        .map(resolver)
+        .collect(Collectors.toList());
+  }
+
+  private static ImmutableMultimap<Label, GoIdeInfo> buildLibraryToTestMap(TargetMap targetMap) {
+    ImmutableMultimap.Builder<Label, GoIdeInfo> builder = ImmutableMultimap.builder();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      if (target.getKind().getLanguageClass() != LanguageClass.GO
+          || target.getKind().getRuleType() != RuleType.TEST
+          || target.getGoIdeInfo() == null
+          || target.getGoIdeInfo().getLibraryLabels().isEmpty()) {
+        continue;
+      }
+      for (Label label : target.getGoIdeInfo().getLibraryLabels()) {
+        builder.put(label, target.getGoIdeInfo());
+      }
+    }
+    return builder.build();
+  }
+
+  private static List<File> getWrapCcGoFiles(
+      BlazeProjectData projectData,
+      Function<ArtifactLocation, File> resolver,
+      TargetIdeInfo target) {
+    if (!target.getGoIdeInfo().getSources().isEmpty()) {
+      return target.getGoIdeInfo().getSources().stream()
+          .map(resolver)
+          .collect(Collectors.toList());
+    }
+    // older versions of blaze don't expose the .go genfile
+    // in that case, look directly in blaze-out
+    String blazePackage = target.getKey().getLabel().blazePackage().relativePath();
+    File directory = new File(projectData.getBlazeInfo().getGenfilesDirectory(), blazePackage);
+    String filename = blazePackage + '/' + target.getKey().getLabel().targetName() + ".go";
+    filename = filename.replace("_", "__");
+    filename = filename.replace('/', '_');
+    return ImmutableList.of(new File(directory, filename));
+  }
+
+  private static ImmutableMap<Node, String> buildFileToImportPathMap(
+      TargetMap targetMap, Map<Label, TargetFiles> targetFiles) {
+    Map<Node, String> map = new HashMap<>();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      if (target.getGoIdeInfo() == null) {
+        continue;
+      }
+      String importPath =
+          target.getGoIdeInfo().getLibraryLabels().stream()
+              .map(TargetKey::forPlainTarget)
+              .map(targetMap::get)
+              .filter(Objects::nonNull)
+              .map(TargetIdeInfo::getGoIdeInfo)
+              .filter(Objects::nonNull)
+              .map(GoIdeInfo::getImportPath)
+              .filter(Objects::nonNull)
+              .findFirst()
+              .orElse(target.getGoIdeInfo().getImportPath());
+      TargetFiles files = targetFiles.get(target.getKey().getLabel());
+      if (importPath == null || files == null) {
+        continue;
+      }
+      for (Node file : files.files) {
+        map.putIfAbsent(file, importPath);
+      }
+    }
+    return ImmutableMap.copyOf(map);
+  }
+
+  /** The source files of a single go target, and the data they were resolved from. */
+  private static final class TargetFiles {
+    private final Kind kind;
+    private final GoIdeInfo goIdeInfo;
+    private final ImmutableList<GoIdeInfo> testInfos;
+    private final ImmutableList<Node> files;
+    private final boolean reusable;
+
+    private TargetFiles(
+        Kind kind,
+        GoIdeInfo goIdeInfo,
+        ImmutableList<GoIdeInfo> testInfos,
+        ImmutableList<Node> files,
+        boolean reusable) {
+      this.kind = kind;
+      this.goIdeInfo = goIdeInfo;
+      this.testInfos = testInfos;
+      this.files = files;
+      this.reusable = reusable;
+    }
+
+    boolean isCreatedFrom(TargetIdeInfo target, ImmutableList<GoIdeInfo> testInfos) {
+      return reusable
+          && kind == target.getKind()
+          && goIdeInfo.equals(target.getGoIdeInfo())
+          && this.testInfos.equals(testInfos);
+    }
+
+    TargetFiles copyTo(FilePathTrie trie) {
+      return new TargetFiles(
+          kind,
+          goIdeInfo,
+          testInfos,
+          files.stream().map(trie::intern).collect(toImmutableList()),
+          reusable);
+    }
+
+    /**
+     * The same label can appear with several target keys (e.g., with different aspects). Their
+     * files are combined, and the result is never reused.
+     */
+    static TargetFiles merge(TargetFiles first, TargetFiles second) {
+      ImmutableList<Node> files =
+          Stream.concat(first.files.stream(), second.files.stream())
+              .distinct()
+              .collect(toImmutableList());
+      return new TargetFiles(
+          first.kind, first.goIdeInfo, first.testInfos, files, /* reusable= */ false);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Stores file paths as a tree of path components, so the common directory prefixes of many files
+ * are only stored once. Each distinct path maps to a single {@link Node}, which can be compared by
+ * identity.
+ *
+ * <p>Safe to use from several threads at once without locking the whole trie, so that targets can
+ * be indexed in parallel.
+ */
+final class FilePathTrie {
+  private static final Splitter PATH_SPLITTER = Splitter.on(File.separatorChar);
+
+  private final Node root = new Node(this, null, "");
+
+  /** Returns the node for the given path, adding it to the trie if necessary. */
+  Node intern(File file) {
+    return intern(PATH_SPLITTER.split(file.getPath()));
+  }
+
+  /** Returns the node in this trie with the same path as the given node from another trie. */
+  Node intern(Node node) {
+    return node.trie == this ? node : intern(node.getComponents());
+  }
+
+  /** Returns the node for the given path, or null if it's not in the trie. */
+  @Nullable
+  Node find(File file) {
+    Node node = root;
+    for (String component : PATH_SPLITTER.split(file.getPath())) {
+      Map<String, Node> children = node.children;
+      node = children != null ? children.get(component) : null;
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  private Node intern(Iterable<String> components) {
+    Node node = root;
+    for (String component : components) {
+      Node parent = node;
+      node =
+          parent
+              .getOrCreateChildren()
+              .computeIfAbsent(component, name -> new Node(this, parent, name));
+    }
+    return node;
+  }
+
+  /** A path in the trie. */
+  static final class Node {
+    private final FilePathTrie trie;
+    @Nullable private final Node parent;
+    private final String name;
+    // most nodes are files, so the children are only allocated when needed
+    @Nullable private volatile Map<String, Node> children;
+
+    private Node(FilePathTrie trie, @Nullable Node parent, String name) {
+      this.trie = trie;
+      this.parent = parent;
+      this.name = name.intern();
+    }
+
+    private Map<String, Node> getOrCreateChildren() {
+      Map<String, Node> children = this.children;
+      if (children != null) {
+        return children;
+      }
+      synchronized (this) {
+        if (this.children == null) {
+          this.children = new ConcurrentHashMap<>();
+        }
+        return this.children;
+      }
+    }
+
+    File toFile() {
+      return new File(String.join(File.separator, getComponents()));
+    }
+
+    private List<String> getComponents() {
+      List<String> components = new ArrayList<>();
+      for (Node node = this; node.parent != null; node = node.parent) {
+        components.add(node.name);
+      }
+      return Lists.reverse(components);
+    }
+
+    @Override
+    public String toString() {
+      return toFile().getPath();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the package name from the package clause at the top of a Go file, without parsing the rest
+ * of the file. Only comments and whitespace may precede the clause.
+ */
+final class GoPackageClauseReader {
+  private static final String PACKAGE_KEYWORD = "package";
+  private static final String TEST_SUFFIX = "_test";
+
+  private GoPackageClauseReader() {}
+
+  /**
+   * Returns the package name declared by the given Go source, with any {@code _test} suffix
+   * stripped (like {@link com.goide.psi.GoFile#getCanonicalPackageName}), or null if there's no
+   * valid package clause.
+   */
+  @Nullable
+  static String readCanonicalPackageName(InputStream in) throws IOException {
+    String packageName =
+        readPackageName(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    if (packageName != null
+        && packageName.endsWith(TEST_SUFFIX)
+        && packageName.length() > TEST_SUFFIX.length()) {
+      return packageName.substring(0, packageName.length() - TEST_SUFFIX.length());
+    }
+    return packageName;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static String readPackageName(Reader reader) throws IOException {
+    int c = skipWhitespaceAndComments(reader);
+    for (int i = 0; i < PACKAGE_KEYWORD.length(); i++) {
+      if (c != PACKAGE_KEYWORD.charAt(i)) {
+        return null;
+      }
+      c = reader.read();
+    }
+    if (c == -1 || !Character.isWhitespace(c)) {
+      return null;
+    }
+    c = skipWhitespaceAndComments(reader);
+    StringBuilder name = new StringBuilder();
+    while (c != -1 && (Character.isLetterOrDigit(c) || c == '_')) {
+      name.append((char) c);
+      c = reader.read();
+    }
+    return name.length() > 0 && !Character.isDigit(name.charAt(0)) ? name.toString() : null;
+  }
+
+  /** Returns the first character which isn't whitespace or part of a comment, or -1. */
+  private static int skipWhitespaceAndComments(Reader reader) throws IOException {
+    int c = reader.read();
+    while (c != -1) {
+      if (Character.isWhitespace(c)) {
+        c = reader.read();
+        continue;
+      }
+      if (c != '/') {
+        return c;
+      }
+      int next = reader.read();
+      if (next == '/') {
+        // line comment
+        do {
+          c = reader.read();
+        } while (c != -1 && c != '\n');
+      } else if (next == '*') {
+        // block comment
+        int previous = 0;
+        c = reader.read();
+        while (c != -1 && !(previous == '*' && c == '/')) {
+          previous = c;
+          c = reader.read();
+        }
+        if (c != -1) {
+          c = reader.read();
+        }
+      } else {
+        return c;
+      }
+    }
+    return -1;
+  }
+}
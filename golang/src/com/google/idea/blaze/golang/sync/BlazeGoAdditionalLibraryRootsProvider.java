@@ -24,7 +24,7 @@ import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.sync.libraries.BlazeExternalLibraryProvider;
 import com.google.idea.blaze.base.sync.projectview.ImportRoots;
-import com.google.idea.blaze.golang.resolve.BlazeGoPackage;
+import com.google.idea.blaze.golang.resolve.BlazeGoTargetFileIndex;
 import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.project.Project;
 import java.io.File;
@@ -68,10 +68,9 @@ public final class BlazeGoAdditionalLibraryRootsProvider extends BlazeExternalLi
     // don't use sync cache, because
     // 1. this is used during sync before project data is saved
     // 2. the roots provider is its own cache
-    return BlazeGoPackage.getUncachedTargetToFileMap(project, projectData).values().stream()
+    return BlazeGoTargetFileIndex.build(project, projectData).getAllFiles().stream()
         .filter(isExternal)
         .filter(f -> f.getName().endsWith(".go"))
-        .distinct()
         .collect(toImmutableList());
   }
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.MockBlazeExecutor;
+import com.google.idea.blaze.base.command.info.BlazeInfo;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.GoIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.golang.GoBlazeRules;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BlazeGoTargetFileIndex}. */
+@RunWith(JUnit4.class)
+public class BlazeGoTargetFileIndexTest extends BlazeTestCase {
+  private static final WorkspaceRoot WORKSPACE_ROOT = new WorkspaceRoot(new File("/root"));
+  private static final BlazeInfo BLAZE_INFO = createBlazeInfo("/execroot");
+
+  /** The artifacts resolved, in order. */
+  private final List<String> resolved = new ArrayList<>();
+  /** Artifacts which have no local file yet, e.g. remote outputs which haven't been cached. */
+  private final Set<String> unresolvable = new HashSet<>();
+
+  private final Function<ArtifactLocation, File> resolver =
+      artifact -> {
+        resolved.add(artifact.getRelativePath());
+        return unresolvable.contains(artifact.getRelativePath())
+            ? null
+            : new File("/root", artifact.getRelativePath());
+      };
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    applicationServices.register(BlazeExecutor.class, new MockBlazeExecutor());
+    registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class)
+        .registerExtension(new GoBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void testFilesAndImportPaths() {
+    BlazeGoTargetFileIndex index =
+        build(
+            projectData(
+                BLAZE_INFO,
+                goLibrary("//foo:lib", "foo/lib.go"),
+                goTest("//foo:lib_test", "//foo:lib", "foo/lib_test.go")));
+
+    assertThat(index.getFiles(Label.create("//foo:lib")))
+        .containsExactly(new File("/root/foo/lib.go"), new File("/root/foo/lib_test.go"));
+    assertThat(index.getImportPath(new File("/root/foo/lib_test.go")))
+        .isEqualTo("example.com/foo/lib");
+    assertThat(index.getImportPath(new File("/root/bar/other.go"))).isNull();
+  }
+
+  @Test
+  public void testUnchangedTargetsAreReused() {
+    build(projectData(BLAZE_INFO, goLibrary("//foo:lib", "foo/lib.go")));
+    resolved.clear();
+
+    BlazeGoTargetFileIndex index =
+        build(
+            projectData(
+                BLAZE_INFO,
+                goLibrary("//foo:lib", "foo/lib.go"),
+                goLibrary("//bar:lib", "bar/lib.go")));
+
+    assertThat(resolved).containsExactly("bar/lib.go");
+    assertThat(index.getFiles(Label.create("//foo:lib")))
+        .containsExactly(new File("/root/foo/lib.go"));
+    assertThat(index.getImportPath(new File("/root/foo/lib.go"))).isEqualTo("example.com/foo/lib");
+  }
+
+  @Test
+  public void testChangedTargetIsResolvedAgain() {
+    build(projectData(BLAZE_INFO, goLibrary("//foo:lib", "foo/lib.go")));
+    resolved.clear();
+
+    BlazeGoTargetFileIndex index =
+        build(projectData(BLAZE_INFO, goLibrary("//foo:lib", "foo/lib.go", "foo/util.go")));
+
+    assertThat(resolved).containsExactly("foo/lib.go", "foo/util.go");
+    assertThat(index.getFiles(Label.create("//foo:lib")))
+        .containsExactly(new File("/root/foo/lib.go"), new File("/root/foo/util.go"));
+  }
+
+  @Test
+  public void testTargetWithUnresolvedSourcesIsNotReused() {
+    unresolvable.add("foo/generated.go");
+    BlazeGoTargetFileIndex index =
+        build(projectData(BLAZE_INFO, goLibrary("//foo:lib", "foo/lib.go", "foo/generated.go")));
+    assertThat(index.getFiles(Label.create("//foo:lib")))
+        .containsExactly(new File("/root/foo/lib.go"));
+
+    unresolvable.clear();
+    resolved.clear();
+    index =
+        build(projectData(BLAZE_INFO, goLibrary("//foo:lib", "foo/lib.go", "foo/generated.go")));
+
+    assertThat(resolved).containsExactly("foo/lib.go", "foo/generated.go");
+    assertThat(index.getFiles(Label.create("//foo:lib")))
+        .containsExactly(new File("/root/foo/lib.go"), new File("/root/foo/generated.go"));
+  }
+
+  @Test
+  public void testNothingIsReusedWhenOutputDirectoriesChange() {
+    build(projectData(BLAZE_INFO, goLibrary("//foo:lib", "foo/lib.go")));
+    resolved.clear();
+
+    build(projectData(createBlazeInfo("/other_execroot"), goLibrary("//foo:lib", "foo/lib.go")));
+
+    assertThat(resolved).containsExactly("foo/lib.go");
+  }
+
+  @Test
+  public void testTargetsAreIndexedInSeveralChunks() {
+    TargetIdeInfo.Builder[] targets = new TargetIdeInfo.Builder[1234];
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = goLibrary("//pkg" + i + ":lib", "pkg" + i + "/lib.go");
+    }
+
+    BlazeGoTargetFileIndex index = build(projectData(BLAZE_INFO, targets));
+
+    assertThat(index.getAllFiles()).hasSize(targets.length);
+    assertThat(index.getImportPath(new File("/root/pkg1000/lib.go")))
+        .isEqualTo("example.com/pkg1000/lib");
+  }
+
+  private BlazeGoTargetFileIndex build(BlazeProjectData projectData) {
+    return BlazeGoTargetFileIndex.build(project, projectData, resolver);
+  }
+
+  private static BlazeProjectData projectData(
+      BlazeInfo blazeInfo, TargetIdeInfo.Builder... targets) {
+    TargetMapBuilder targetMap = TargetMapBuilder.builder();
+    for (TargetIdeInfo.Builder target : targets) {
+      targetMap.addTarget(target);
+    }
+    return MockBlazeProjectDataBuilder.builder(WORKSPACE_ROOT)
+        .setBlazeInfo(blazeInfo)
+        .setTargetMap(targetMap.build())
+        .build();
+  }
+
+  private static TargetIdeInfo.Builder goLibrary(String label, String... sources) {
+    return TargetIdeInfo.builder()
+        .setLabel(label)
+        .setKind(GoBlazeRules.RuleTypes.GO_LIBRARY.getKind())
+        .setGoInfo(goInfo(sources).setImportPath(importPath(label)));
+  }
+
+  private static TargetIdeInfo.Builder goTest(String label, String library, String... sources) {
+    return TargetIdeInfo.builder()
+        .setLabel(label)
+        .setKind(GoBlazeRules.RuleTypes.GO_TEST.getKind())
+        .setGoInfo(goInfo(sources).setImportPath(importPath(label)).addLibraryLabel(library));
+  }
+
+  private static GoIdeInfo.Builder goInfo(String... sources) {
+    GoIdeInfo.Builder builder = GoIdeInfo.builder();
+    for (String source : sources) {
+      builder.addSource(
+          ArtifactLocation.builder().setRelativePath(source).setIsSource(true).build());
+    }
+    return builder;
+  }
+
+  private static String importPath(String label) {
+    return "example.com/" + label.substring(2).replace(':', '/');
+  }
+
+  private static BlazeInfo createBlazeInfo(String executionRoot) {
+    return BlazeInfo.createMockBlazeInfo(
+        "/output_base",
+        executionRoot,
+        executionRoot + "/bin",
+        executionRoot + "/genfiles",
+        executionRoot + "/testlogs");
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.golang.resolve.FilePathTrie.Node;
+import java.io.File;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FilePathTrie}. */
+@RunWith(JUnit4.class)
+public class FilePathTrieTest {
+
+  @Test
+  public void testInternedPathsRoundTrip() {
+    FilePathTrie trie = new FilePathTrie();
+    File file = new File("/root/foo/bar.go");
+    Node node = trie.intern(file);
+    assertThat(node.toFile()).isEqualTo(file);
+    assertThat(trie.intern(new File("/root/foo/bar.go"))).isSameAs(node);
+    assertThat(trie.intern(new File("/root/foo/baz.go"))).isNotSameAs(node);
+  }
+
+  @Test
+  public void testFindDoesNotAddPaths() {
+    FilePathTrie trie = new FilePathTrie();
+    Node node = trie.intern(new File("/root/foo/bar.go"));
+    assertThat(trie.find(new File("/root/foo/bar.go"))).isSameAs(node);
+    assertThat(trie.find(new File("/root/foo/baz.go"))).isNull();
+    assertThat(trie.find(new File("/root/foo/baz.go"))).isNull();
+  }
+
+  @Test
+  public void testInternNodeFromOtherTrie() {
+    FilePathTrie oldTrie = new FilePathTrie();
+    FilePathTrie newTrie = new FilePathTrie();
+    Node oldNode = oldTrie.intern(new File("/root/foo/bar.go"));
+    Node newNode = newTrie.intern(oldNode);
+    assertThat(newNode).isNotSameAs(oldNode);
+    assertThat(newTrie.find(new File("/root/foo/bar.go"))).isSameAs(newNode);
+    assertThat(newTrie.intern(newNode)).isSameAs(newNode);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.golang.resolve;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link GoPackageClauseReader}. */
+@RunWith(JUnit4.class)
+public class GoPackageClauseReaderTest {
+
+  @Test
+  public void testSimplePackageClause() throws IOException {
+    assertThat(read("package foo\n\nimport \"fmt\"\n")).isEqualTo("foo");
+  }
+
+  @Test
+  public void testLeadingComments() throws IOException {
+    assertThat(
+            read(
+                "// Copyright notice\n"
+                    + "/* block\n * comment */\n"
+                    + "// +build linux\n\n"
+                    + "package  bar_baz // trailing comment\n"))
+        .isEqualTo("bar_baz");
+  }
+
+  @Test
+  public void testTestSuffixIsStripped() throws IOException {
+    assertThat(read("package foo_test\n")).isEqualTo("foo");
+  }
+
+  @Test
+  public void testMissingPackageClause() throws IOException {
+    assertThat(read("")).isNull();
+    assertThat(read("// only a comment\n")).isNull();
+    assertThat(read("import \"fmt\"\npackage foo\n")).isNull();
+    assertThat(read("packagefoo\n")).isNull();
+  }
+
+  @Nullable
+  private static String read(String contents) throws IOException {
+    return GoPackageClauseReader.readCanonicalPackageName(
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * The classes referenced by a single class file, read directly from its constant pool.
+ *
+ * <p>Only the constant pool and the class-level attributes are parsed; method bodies are skipped.
+ */
+final class ClassFileReferences {
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  /** The internal name of this class, e.g. "com/google/Foo$Bar". */
+  final String className;
+
+  /** The value of the SourceFile attribute (e.g. "Foo.java"), if present. */
+  @Nullable final String sourceFileName;
+
+  /** The internal names of all classes referenced from this class, excluding itself. */
+  final ImmutableSet<String> referencedClasses;
+
+  private ClassFileReferences(
+      String className,
+      @Nullable String sourceFileName,
+      ImmutableSet<String> referencedClasses) {
+    this.className = className;
+    this.sourceFileName = sourceFileName;
+    this.referencedClasses = referencedClasses;
+  }
+
+  /** Returns the internal name of the top-level class enclosing the given class. */
+  static String topLevelClassName(String className) {
+    int dollar = className.indexOf('$', className.lastIndexOf('/') + 1);
+    return dollar == -1 ? className : className.substring(0, dollar);
+  }
+
+  static ClassFileReferences read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    in.readUnsignedShort(); // minor version
+    in.readUnsignedShort(); // major version
+
+    int constantPoolCount = in.readUnsignedShort();
+    String[] utf8 = new String[constantPoolCount];
+    // For each CONSTANT_Class entry, the index of the UTF8 entry holding its name.
+    int[] classNameIndices = new int[constantPoolCount];
+    for (int i = 1; i < constantPoolCount; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case CONSTANT_UTF8:
+          utf8[i] = in.readUTF();
+          break;
+        case CONSTANT_CLASS:
+          classNameIndices[i] = in.readUnsignedShort();
+          break;
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+          in.readUnsignedShort();
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          in.readUnsignedByte();
+          in.readUnsignedShort();
+          break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELDREF:
+        case CONSTANT_METHODREF:
+        case CONSTANT_INTERFACE_METHODREF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+          in.readInt();
+          break;
+        case CONSTANT_LONG:
+        case CONSTANT_DOUBLE:
+          in.readLong();
+          // 8-byte constants take up two slots in the constant pool
+          i++;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    in.readUnsignedShort(); // access flags
+    int thisClassIndex = in.readUnsignedShort();
+    in.readUnsignedShort(); // super class
+    skipFully(in, 2L * in.readUnsignedShort()); // interfaces
+    skipMembers(in); // fields
+    skipMembers(in); // methods
+
+    String sourceFileName = null;
+    int attributeCount = in.readUnsignedShort();
+    for (int i = 0; i < attributeCount; i++) {
+      String attributeName = utf8[in.readUnsignedShort()];
+      int length = in.readInt();
+      if ("SourceFile".equals(attributeName)) {
+        sourceFileName = utf8[in.readUnsignedShort()];
+        skipFully(in, length - 2);
+      } else {
+        skipFully(in, length);
+      }
+    }
+
+    String className = utf8[classNameIndices[thisClassIndex]];
+    if (className == null) {
+      throw new IOException("Missing this_class constant");
+    }
+    ImmutableSet.Builder<String> referencedClasses = ImmutableSet.builder();
+    for (int i = 1; i < constantPoolCount; i++) {
+      if (classNameIndices[i] != 0) {
+        addClassNamesFromDescriptor(utf8[classNameIndices[i]], referencedClasses);
+      }
+    }
+    // Field and method descriptors name types which don't necessarily have a CONSTANT_Class entry.
+    for (String value : utf8) {
+      if (value != null && isDescriptor(value)) {
+        addClassNamesFromDescriptor(value, referencedClasses);
+      }
+    }
+    return new ClassFileReferences(
+        className,
+        sourceFileName,
+        referencedClasses.build().stream()
+            .filter(name -> !name.equals(className))
+            .collect(ImmutableSet.toImmutableSet()));
+  }
+
+  private static void skipMembers(DataInputStream in) throws IOException {
+    int count = in.readUnsignedShort();
+    for (int i = 0; i < count; i++) {
+      skipFully(in, 6); // access flags, name, descriptor
+      int attributeCount = in.readUnsignedShort();
+      for (int j = 0; j < attributeCount; j++) {
+        in.readUnsignedShort(); // attribute name
+        skipFully(in, in.readInt() & 0xFFFFFFFFL);
+      }
+    }
+  }
+
+  private static void skipFully(DataInputStream in, long bytes) throws IOException {
+    while (bytes > 0) {
+      int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        throw new IOException("Unexpected end of class file");
+      }
+      bytes -= skipped;
+    }
+  }
+
+  private static boolean isDescriptor(String value) {
+    if (value.isEmpty() || value.indexOf(';') == -1) {
+      return false;
+    }
+    char first = value.charAt(0);
+    return first == '(' || first == '[' || first == 'L' || first == '<';
+  }
+
+  /**
+   * Adds the class names mentioned in a field/method descriptor or generic signature, an array
+   * class name, or a plain internal class name.
+   */
+  private static void addClassNamesFromDescriptor(
+      String descriptor, ImmutableSet.Builder<String> classNames) {
+    if (descriptor.isEmpty()) {
+      return;
+    }
+    char first = descriptor.charAt(0);
+    if (first != '(' && first != '[' && first != 'L' && first != '<') {
+      classNames.add(descriptor);
+      return;
+    }
+    int length = descriptor.length();
+    int i = 0;
+    while (i < length) {
+      char c = descriptor.charAt(i);
+      if (c == 'L') {
+        int end = indexOfNameEnd(descriptor, i + 1);
+        if (end == length) {
+          if (i == 0) {
+            // Not a descriptor after all, just a class whose name starts with 'L'.
+            classNames.add(descriptor);
+          }
+          return;
+        }
+        classNames.add(descriptor.substring(i + 1, end));
+        // continue inside any type arguments
+        i = end + 1;
+      } else if (c == 'T' || c == '.') {
+        // skip type variables and the simple names of parameterized inner classes
+        i = indexOfNameEnd(descriptor, i + 1) + 1;
+      } else {
+        i++;
+      }
+    }
+  }
+
+  private static int indexOfNameEnd(String descriptor, int start) {
+    int i = start;
+    while (i < descriptor.length() && descriptor.charAt(i) != ';' && descriptor.charAt(i) != '<') {
+      i++;
+    }
+    return i;
+  }
+}
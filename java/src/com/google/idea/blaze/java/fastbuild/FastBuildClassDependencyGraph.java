@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * A class-level dependency graph between the Java sources of a fast build target's transitive
+ * closure, derived from the compiled class files.
+ *
+ * <p>Seeded from the deploy jar produced by blaze, and updated from the javac output directory after
+ * each incremental compilation, so that a change to a class also recompiles the sources which
+ * reference it.
+ */
+final class FastBuildClassDependencyGraph {
+
+  private static final Logger logger = Logger.getInstance(FastBuildClassDependencyGraph.class);
+
+  private final FastBuildSourceIndex sourceIndex;
+
+  /** Source file -> internal names of the classes compiled from it. */
+  private final SetMultimap<File, String> declaredClasses = HashMultimap.create();
+
+  /** Internal class name -> source files whose classes reference it. */
+  private final SetMultimap<String, File> referencingSources = HashMultimap.create();
+
+  /** Source file -> internal class names referenced by it. */
+  private final SetMultimap<File, String> referencedClasses = HashMultimap.create();
+
+  private FastBuildClassDependencyGraph(FastBuildSourceIndex sourceIndex) {
+    this.sourceIndex = sourceIndex;
+  }
+
+  /** Builds the graph from the class files in a deploy jar. */
+  static FastBuildClassDependencyGraph create(FastBuildSourceIndex sourceIndex, File deployJar)
+      throws IOException {
+    FastBuildClassDependencyGraph graph = new FastBuildClassDependencyGraph(sourceIndex);
+    try (ZipFile zipFile = new ZipFile(deployJar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String className = getClassName(entry.getName());
+        if (className == null || !sourceIndex.mayContainClass(className)) {
+          continue;
+        }
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          graph.addClass(ClassFileReferences.read(in));
+        }
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Updates the graph with the class files written to the compiler output directory by a
+   * compilation of the given sources.
+   */
+  synchronized void update(Set<File> compiledSources, File outputDirectory, long compileStartMillis)
+      throws IOException {
+    for (File source : compiledSources) {
+      removeSource(source);
+    }
+    Path root = outputDirectory.toPath();
+    try (Stream<Path> files = Files.walk(root)) {
+      for (Path path : (Iterable<Path>) files::iterator) {
+        if (!path.toString().endsWith(".class")
+            || Files.getLastModifiedTime(path).toMillis() < compileStartMillis) {
+          continue;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+          addClass(ClassFileReferences.read(in));
+        } catch (IOException e) {
+          logger.warn("Couldn't read class file " + path, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the indexed sources which reference a class compiled from any of the given sources,
+   * excluding the given sources themselves.
+   */
+  synchronized Set<File> getDependentSources(Set<File> sources) {
+    Set<File> dependents = new HashSet<>();
+    for (File source : sources) {
+      for (String className : declaredClasses.get(source)) {
+        dependents.addAll(referencingSources.get(className));
+      }
+    }
+    dependents.removeAll(sources);
+    return dependents;
+  }
+
+  private synchronized void addClass(ClassFileReferences classFile) {
+    if (classFile.sourceFileName == null) {
+      return;
+    }
+    File source = sourceIndex.getSourceForClass(classFile.className, classFile.sourceFileName);
+    if (source == null) {
+      return;
+    }
+    declaredClasses.put(source, classFile.className);
+    for (String referencedClass : classFile.referencedClasses) {
+      referencedClasses.put(source, referencedClass);
+      referencingSources.put(referencedClass, source);
+    }
+  }
+
+  private void removeSource(File source) {
+    declaredClasses.removeAll(source);
+    for (String referencedClass : referencedClasses.removeAll(source)) {
+      referencingSources.remove(referencedClass, source);
+    }
+  }
+
+  @Nullable
+  private static String getClassName(String entryName) {
+    if (!entryName.endsWith(".class") || entryName.endsWith("module-info.class")) {
+      return null;
+    }
+    return entryName.substring(0, entryName.length() - ".class".length());
+  }
+}
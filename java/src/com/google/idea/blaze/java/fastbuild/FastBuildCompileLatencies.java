@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.java.fastbuild.FastBuildLogDataScope.FastBuildLogOutput;
+import java.time.Duration;
+import java.util.Arrays;
+
+/** Tracks the latencies of the most recent javac invocations, to report percentiles. */
+final class FastBuildCompileLatencies {
+
+  private static final int MAX_SAMPLES = 100;
+
+  private final long[] samplesMillis;
+  private int count = 0;
+  private int next = 0;
+
+  FastBuildCompileLatencies() {
+    this(MAX_SAMPLES);
+  }
+
+  FastBuildCompileLatencies(int maxSamples) {
+    this.samplesMillis = new long[maxSamples];
+  }
+
+  synchronized void record(Duration latency) {
+    samplesMillis[next] = latency.toMillis();
+    next = (next + 1) % samplesMillis.length;
+    count = Math.min(count + 1, samplesMillis.length);
+  }
+
+  /**
+   * Returns the given percentile (nearest-rank) of the recorded latencies in milliseconds, or -1 if
+   * nothing has been recorded.
+   */
+  synchronized long percentileMillis(int percentile) {
+    if (count == 0) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(samplesMillis, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100.0 * count);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  synchronized int sampleCount() {
+    return count;
+  }
+
+  /** Outputs the latency percentiles to the {@link FastBuildLogDataScope}. */
+  void output(BlazeContext context) {
+    context.output(
+        FastBuildLogOutput.keyValue("javac_latency_samples", Integer.toString(sampleCount())));
+    context.output(
+        FastBuildLogOutput.keyValue("javac_time_p50_ms", Long.toString(percentileMillis(50))));
+    context.output(
+        FastBuildLogOutput.keyValue("javac_time_p90_ms", Long.toString(percentileMillis(90))));
+    context.output(
+        FastBuildLogOutput.keyValue("javac_time_p99_ms", Long.toString(percentileMillis(99))));
+  }
+}
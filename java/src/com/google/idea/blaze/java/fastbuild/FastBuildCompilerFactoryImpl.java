@@ -20,9 +20,15 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.Reflection;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.idea.blaze.base.logging.EventLoggingService;
 import com.google.idea.blaze.base.logging.EventLoggingService.Command;
 import com.google.idea.blaze.base.logging.NoopEventLoggingService;
@@ -46,6 +52,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.serviceContainer.NonInjectable;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
@@ -60,6 +67,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
@@ -72,9 +83,26 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
       "com.google.idea.blaze.java.fastbuild.FastBuildJavacImpl";
   private static final Path FAST_BUILD_JAVAC_JAR = Paths.get("lib", "libfast_build_javac.jar");
 
+  private static final int MAX_POOLED_COMPILERS = 2;
+  private static final long POOLED_COMPILER_EXPIRY_MINUTES = 30;
+
   private final BlazeProjectDataManager projectDataManager;
   private final Supplier<EventLoggingService> eventLoggerSupplier;
   private final Supplier<File> fastBuildJavacJarSupplier;
+  private final FastBuildCompileLatencies compileLatencies = new FastBuildCompileLatencies();
+
+  /**
+   * Compilers which have already been loaded, keyed by their javac jars. Keeping them around means
+   * we don't pay for class loading and JIT warm-up on every compile, and lets javac reuse its
+   * indexes of the classpath jars. The key includes each jar's timestamp and size, so a jar
+   * rebuilt in place gets a fresh compiler.
+   */
+  private final Cache<ImmutableList<JavacJar>, PooledJavac> javacPool =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_POOLED_COMPILERS)
+          .expireAfterAccess(POOLED_COMPILER_EXPIRY_MINUTES, TimeUnit.MINUTES)
+          .removalListener(FastBuildCompilerFactoryImpl::closeEvictedJavac)
+          .build();
 
   @NonInjectable
   private FastBuildCompilerFactoryImpl(
@@ -148,43 +176,167 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
   }
 
   private Javac createCompiler(List<File> javacJars) throws FastBuildException {
+    ImmutableList<File> jars =
+        ImmutableList.<File>builder()
+            .addAll(javacJars)
+            .add(fastBuildJavacJarSupplier.get())
+            .build();
+    ImmutableList<JavacJar> key = jars.stream().map(JavacJar::create).collect(toImmutableList());
+    // load the compiler up front, so any failure is reported before compiling
+    AtomicBoolean loaded = new AtomicBoolean();
+    getPooledJavac(
+        key,
+        () -> {
+          loaded.set(true);
+          return loadJavac(jars);
+        });
+    boolean reused = !loaded.get();
+    return (context, javacArgs, files, writer) -> {
+      Stopwatch timer = Stopwatch.createStarted();
+      PooledJavac pooledCompiler = acquireJavac(key, jars);
+      CompilerOutput output;
+      try {
+        output = CompilerOutput.decode(pooledCompiler.javac.compile(javacArgs, files));
+      } finally {
+        pooledCompiler.release();
+      }
+      processDiagnostics(context, output);
+      boolean result = output.result;
+      Command command =
+          Command.builder()
+              .setExecutable(javacJars.get(0).getPath())
+              .setArguments(javacArgs)
+              .setExitCode(result ? 0 : 1)
+              .setSubcommandName("javac")
+              .setDuration(timer.elapsed())
+              .build();
+      eventLoggerSupplier.get().logCommand(getClass(), command);
+      compileLatencies.record(timer.elapsed());
+      context.output(FastBuildLogOutput.keyValue("javac_reused", Boolean.toString(reused)));
+      compileLatencies.output(context);
+      return result;
+    };
+  }
+
+  /**
+   * Returns the pooled compiler for the given jars, loading it if necessary. The compiler won't be
+   * closed until it's been released, even if it's evicted from the pool in the meantime.
+   */
+  private PooledJavac acquireJavac(ImmutableList<JavacJar> key, List<File> jars)
+      throws FastBuildException {
+    while (true) {
+      PooledJavac pooledCompiler = getPooledJavac(key, () -> loadJavac(jars));
+      if (pooledCompiler.acquire()) {
+        return pooledCompiler;
+      }
+      // it was evicted and closed since the lookup, so the next lookup loads a new one
+    }
+  }
+
+  private PooledJavac getPooledJavac(
+      ImmutableList<JavacJar> key, Callable<PooledJavac> loader) throws FastBuildException {
     try {
-      Class<?> javacClass =
-          loadJavacClass(
-              FAST_BUILD_JAVAC_CLASS,
-              ImmutableList.<File>builder()
-                  .addAll(javacJars)
-                  .add(fastBuildJavacJarSupplier.get())
-                  .build());
+      // only one compiler is loaded per key, even if several compiles start together
+      return javacPool.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), FastBuildException.class);
+      throw new FastBuildIncrementalCompileException(e.getCause());
+    }
+  }
+
+  private static PooledJavac loadJavac(List<File> jars) throws FastBuildException {
+    try {
+      URLClassLoader classLoader = createClassLoader(jars);
+      Class<?> javacClass = classLoader.loadClass(FAST_BUILD_JAVAC_CLASS);
 
       Constructor<?> createMethod = javacClass.getConstructor();
       Object javacInstance = createMethod.newInstance();
 
-      FastBuildJavac javaCompiler =
+      return new PooledJavac(
           Reflection.newProxy(
-              FastBuildJavac.class, new MatchingMethodInvocationHandler(javacClass, javacInstance));
-      return (context, javacArgs, files, writer) -> {
-        Stopwatch timer = Stopwatch.createStarted();
-        Object[] rawOutput = javaCompiler.compile(javacArgs, files);
-        CompilerOutput output = CompilerOutput.decode(rawOutput);
-        processDiagnostics(context, output);
-        boolean result = output.result;
-        Command command =
-            Command.builder()
-                .setExecutable(javacJars.get(0).getPath())
-                .setArguments(javacArgs)
-                .setExitCode(result ? 0 : 1)
-                .setSubcommandName("javac")
-                .setDuration(timer.elapsed())
-                .build();
-        eventLoggerSupplier.get().logCommand(getClass(), command);
-        return result;
-      };
+              FastBuildJavac.class, new MatchingMethodInvocationHandler(javacClass, javacInstance)),
+          classLoader);
     } catch (MalformedURLException | ReflectiveOperationException e) {
       throw new FastBuildIncrementalCompileException(e);
     }
   }
 
+  private static void closeEvictedJavac(
+      RemovalNotification<ImmutableList<JavacJar>, PooledJavac> notification) {
+    notification.getValue().evict();
+  }
+
+  /** A javac jar, along with enough metadata to notice when it's been rebuilt in place. */
+  @AutoValue
+  abstract static class JavacJar {
+    abstract File file();
+
+    abstract long lastModified();
+
+    abstract long length();
+
+    static JavacJar create(File file) {
+      return new AutoValue_FastBuildCompilerFactoryImpl_JavacJar(
+          file, file.lastModified(), file.length());
+    }
+  }
+
+  /**
+   * A loaded compiler, along with the class loader which must be closed once it's evicted. It's
+   * only closed once all compiles using it have finished.
+   */
+  private static class PooledJavac {
+    private final FastBuildJavac javac;
+    private final URLClassLoader classLoader;
+
+    private int activeCompiles;
+    private boolean evicted;
+    private boolean closed;
+
+    private PooledJavac(FastBuildJavac javac, URLClassLoader classLoader) {
+      this.javac = javac;
+      this.classLoader = classLoader;
+    }
+
+    /** Registers a compile using this compiler. Returns false if it's already been closed. */
+    private synchronized boolean acquire() {
+      if (closed) {
+        return false;
+      }
+      activeCompiles++;
+      return true;
+    }
+
+    private synchronized void release() {
+      activeCompiles--;
+      if (evicted && activeCompiles == 0) {
+        close();
+      }
+    }
+
+    private synchronized void evict() {
+      evicted = true;
+      if (activeCompiles == 0) {
+        close();
+      }
+    }
+
+    private void close() {
+      closed = true;
+      try {
+        // releases the classpath jars held open by the compiler's file manager
+        javac.close();
+      } catch (RuntimeException e) {
+        logger.warn("Failed to close javac file manager", e);
+      }
+      try {
+        classLoader.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close javac class loader", e);
+      }
+    }
+  }
+
   private static File findFastBuildJavacJar() {
     IdeaPluginDescriptor blazePlugin =
         PluginManager.getPlugin(
@@ -194,14 +346,12 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         .toFile();
   }
 
-  private Class<?> loadJavacClass(String javaCompilerClass, List<File> jars)
-      throws MalformedURLException, ClassNotFoundException {
+  private static URLClassLoader createClassLoader(List<File> jars) throws MalformedURLException {
     URL[] urls = new URL[jars.size()];
     for (int i = 0; i < jars.size(); ++i) {
       urls[i] = jars.get(i).toURI().toURL();
     }
-    URLClassLoader urlClassLoader = new URLClassLoader(urls, /* parent= */ null);
-    return urlClassLoader.loadClass(javaCompilerClass);
+    return new URLClassLoader(urls, /* parent= */ null);
   }
 
   private static class JavacRunner implements FastBuildCompiler {
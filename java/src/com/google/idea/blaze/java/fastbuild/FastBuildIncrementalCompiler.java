@@ -40,4 +40,7 @@ interface FastBuildIncrementalCompiler {
    */
   ListenableFuture<BuildOutput> compile(
       BlazeContext context, Label label, FastBuildState buildState, Set<File> modifiedFiles);
+
+  /** Discards any state kept for incremental compiles of the label's build. */
+  void resetBuild(Label label);
 }
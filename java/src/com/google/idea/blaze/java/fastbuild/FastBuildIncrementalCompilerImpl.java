@@ -35,20 +35,35 @@ import com.google.idea.blaze.java.fastbuild.FastBuildCompiler.CompileInstruction
 import com.google.idea.blaze.java.fastbuild.FastBuildLogDataScope.FastBuildLogOutput;
 import com.google.idea.blaze.java.fastbuild.FastBuildState.BuildOutput;
 import com.google.idea.common.concurrency.ConcurrencyUtil;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import java.io.File;
+import java.io.IOException;
 import java.io.Writer;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 
 final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalCompiler {
 
+  private static final Logger logger = Logger.getInstance(FastBuildIncrementalCompilerImpl.class);
+
+  /**
+   * Whether to also recompile the sources which reference classes in the modified files, so that
+   * changes to (e.g.) an interface are picked up by its implementations.
+   */
+  private static final BoolExperiment recompileDependents =
+      new BoolExperiment("fast.build.recompile.dependents", true);
+
   private final BlazeProjectDataManager projectDataManager;
   private final FastBuildCompilerFactory compilerFactory;
   private final BlazeConsoleService blazeConsoleService;
+  private final Map<Label, TargetIndex> targetIndices = new ConcurrentHashMap<>();
 
   FastBuildIncrementalCompilerImpl(Project project) {
     this.projectDataManager = BlazeProjectDataManager.getInstance(project);
@@ -68,8 +83,9 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
             () -> {
               BlazeConsoleWriter writer = new BlazeConsoleWriter(blazeConsoleService);
 
+              TargetIndex targetIndex = getTargetIndex(context, label, buildOutput);
               ChangedSourceInfo changedSourceInfo =
-                  getPathsToCompile(context, label, buildOutput.blazeData(), modifiedFiles);
+                  getPathsToCompile(context, targetIndex, modifiedFiles);
 
               if (!changedSourceInfo.pathsToCompile.isEmpty()) {
                 CompileInstructions instructions =
@@ -89,9 +105,15 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
                   instructions = modification.modifyInstructions(instructions);
                 }
 
+                // Some filesystems only store modification times to the nearest second.
+                long compileStartMillis = System.currentTimeMillis() - 1000;
                 compilerFactory
                     .getCompilerFor(label, buildOutput.blazeData())
                     .compile(context, instructions);
+                targetIndex.updateClassDependencies(
+                    changedSourceInfo.pathsToCompile,
+                    buildState.compilerOutputDirectory(),
+                    compileStartMillis);
               } else {
                 context.output(new PrintOutput("No modified files to compile."));
               }
@@ -99,96 +121,133 @@ final class FastBuildIncrementalCompilerImpl implements FastBuildIncrementalComp
             });
   }
 
+  @Override
+  public void resetBuild(Label label) {
+    targetIndices.remove(label);
+  }
+
   private ChangedSourceInfo getPathsToCompile(
-      BlazeContext context,
-      Label label,
-      Map<Label, FastBuildBlazeData> blazeData,
-      Set<File> modifiedSinceBuild) {
+      BlazeContext context, TargetIndex targetIndex, Set<File> modifiedSinceBuild) {
 
     Stopwatch timer = Stopwatch.createStarted();
 
-    BlazeProjectData projectData = projectDataManager.getBlazeProjectData();
+    FastBuildSourceIndex sourceIndex = targetIndex.sourceIndex;
     Set<File> sourceFiles = new HashSet<>();
+    for (File file : modifiedSinceBuild) {
+      if (!sourceIndex.getOwningTargets(file).isEmpty() && file.exists()) {
+        sourceFiles.add(file);
+      }
+    }
+
+    int dependentSources = 0;
+    if (recompileDependents.getValue() && !sourceFiles.isEmpty()) {
+      FastBuildClassDependencyGraph classDependencies =
+          targetIndex.getClassDependencies(context);
+      if (classDependencies != null) {
+        for (File dependent : classDependencies.getDependentSources(sourceFiles)) {
+          if (dependent.exists() && sourceFiles.add(dependent)) {
+            dependentSources++;
+          }
+        }
+      }
+    }
+
+    Set<Label> affectedTargets = new LinkedHashSet<>();
+    for (File sourceFile : sourceFiles) {
+      affectedTargets.addAll(sourceIndex.getOwningTargets(sourceFile));
+    }
     Set<String> annotationProcessorClassNames = new HashSet<>();
     // Use ImmutableSet.Builder because it will preserve the classpath order.
     ImmutableSet.Builder<File> annotationProcessorsClasspath = ImmutableSet.builder();
-    Set<Label> seenTargets = new HashSet<>();
-    AtomicInteger affectedTargets = new AtomicInteger(0);
-    recursivelyAddModifiedJavaSources(
-        projectData.getArtifactLocationDecoder(),
-        blazeData,
-        label,
-        seenTargets,
-        sourceFiles,
-        annotationProcessorClassNames,
-        annotationProcessorsClasspath,
-        modifiedSinceBuild,
-        affectedTargets);
+    ArtifactLocationDecoder artifactLocationDecoder = targetIndex.artifactLocationDecoder;
+    for (Label target : affectedTargets) {
+      JavaInfo javaInfo = sourceIndex.getJavaInfo(target);
+      annotationProcessorClassNames.addAll(javaInfo.annotationProcessorClassNames());
+      for (ArtifactLocation artifactLocation : javaInfo.annotationProcessorClasspath()) {
+        annotationProcessorsClasspath.add(artifactLocationDecoder.decode(artifactLocation));
+      }
+    }
 
     context.output(new StatusOutput("Calculated compilation paths in " + timer));
     context.output(FastBuildLogOutput.milliseconds("calculate_changed_sources_time_ms", timer));
-    context.output(FastBuildLogOutput.keyValue("affected_targets", affectedTargets.toString()));
+    context.output(
+        FastBuildLogOutput.keyValue("affected_targets", Integer.toString(affectedTargets.size())));
+    context.output(
+        FastBuildLogOutput.keyValue("dependent_sources", Integer.toString(dependentSources)));
 
     return new ChangedSourceInfo(
         sourceFiles, annotationProcessorClassNames, annotationProcessorsClasspath.build());
   }
 
-  private void recursivelyAddModifiedJavaSources(
-      ArtifactLocationDecoder artifactLocationDecoder,
-      Map<Label, FastBuildBlazeData> blazeData,
-      Label label,
-      Set<Label> seenTargets,
-      Set<File> sourceFiles,
-      Set<String> annotationProcessorClassNames,
-      ImmutableSet.Builder<File> annotationProcessorsClasspath,
-      Set<File> modifiedSinceBuild,
-      AtomicInteger affectedTargets) {
-    if (seenTargets.contains(label)) {
-      return;
+  private TargetIndex getTargetIndex(BlazeContext context, Label label, BuildOutput buildOutput) {
+    TargetIndex existing = targetIndices.get(label);
+    if (existing != null && existing.buildOutput == buildOutput) {
+      return existing;
     }
+    Stopwatch timer = Stopwatch.createStarted();
+    BlazeProjectData projectData = projectDataManager.getBlazeProjectData();
+    checkState(projectData != null, "not a blaze project");
+    ArtifactLocationDecoder decoder = projectData.getArtifactLocationDecoder();
+    TargetIndex targetIndex =
+        new TargetIndex(
+            buildOutput,
+            decoder,
+            FastBuildSourceIndex.create(decoder, buildOutput.blazeData(), label));
+    targetIndices.put(label, targetIndex);
+    context.output(FastBuildLogOutput.milliseconds("source_index_time_ms", timer));
+    return targetIndex;
+  }
 
-    seenTargets.add(label);
+  /**
+   * The source index and class dependency graph for a single fast build target, valid for as long
+   * as the blaze-built deploy jar is reused.
+   */
+  private static class TargetIndex {
+    final BuildOutput buildOutput;
+    final ArtifactLocationDecoder artifactLocationDecoder;
+    final FastBuildSourceIndex sourceIndex;
 
-    FastBuildBlazeData targetIdeInfo = blazeData.get(label);
-    if (targetIdeInfo == null || !targetIdeInfo.javaInfo().isPresent()) {
-      return;
-    }
+    @Nullable private FastBuildClassDependencyGraph classDependencies;
+    private boolean classDependenciesFailed;
 
-    JavaInfo javaInfo = targetIdeInfo.javaInfo().get();
+    TargetIndex(
+        BuildOutput buildOutput,
+        ArtifactLocationDecoder artifactLocationDecoder,
+        FastBuildSourceIndex sourceIndex) {
+      this.buildOutput = buildOutput;
+      this.artifactLocationDecoder = artifactLocationDecoder;
+      this.sourceIndex = sourceIndex;
+    }
 
-    boolean addedSources = false;
-    for (ArtifactLocation sourceArtifact : javaInfo.sources()) {
-      File sourceFile = artifactLocationDecoder.decode(sourceArtifact);
-      if (sourceFile.getName().endsWith(".java")
-          && modifiedSinceBuild.contains(sourceFile)
-          && sourceFile.exists()) {
-        sourceFiles.add(sourceFile);
-        addedSources = true;
+    /** Returns the class dependency graph, reading it from the deploy jar on first use. */
+    @Nullable
+    synchronized FastBuildClassDependencyGraph getClassDependencies(BlazeContext context) {
+      if (classDependencies == null && !classDependenciesFailed) {
+        Stopwatch timer = Stopwatch.createStarted();
+        try {
+          classDependencies =
+              FastBuildClassDependencyGraph.create(sourceIndex, buildOutput.deployJar());
+        } catch (IOException e) {
+          logger.warn("Couldn't read class dependencies from " + buildOutput.deployJar(), e);
+          classDependenciesFailed = true;
+        }
+        context.output(FastBuildLogOutput.milliseconds("class_dependency_graph_time_ms", timer));
       }
+      return classDependencies;
     }
 
-    if (addedSources) {
-      affectedTargets.incrementAndGet();
-      annotationProcessorClassNames.addAll(javaInfo.annotationProcessorClassNames());
-      for (ArtifactLocation artifactLocation : javaInfo.annotationProcessorClasspath()) {
-        annotationProcessorsClasspath.add(artifactLocationDecoder.decode(artifactLocation));
+    /** Records the class files produced by a successful compilation. */
+    synchronized void updateClassDependencies(
+        Set<File> compiledSources, File outputDirectory, long compileStartMillis) {
+      if (classDependencies == null) {
+        return;
+      }
+      try {
+        classDependencies.update(compiledSources, outputDirectory, compileStartMillis);
+      } catch (IOException e) {
+        logger.warn("Couldn't update class dependencies from " + outputDirectory, e);
       }
     }
-
-    targetIdeInfo
-        .dependencies()
-        .forEach(
-            dep ->
-                recursivelyAddModifiedJavaSources(
-                    artifactLocationDecoder,
-                    blazeData,
-                    dep,
-                    seenTargets,
-                    sourceFiles,
-                    annotationProcessorClassNames,
-                    annotationProcessorsClasspath,
-                    modifiedSinceBuild,
-                    affectedTargets));
   }
 
   private static class BlazeConsoleWriter extends Writer {
@@ -25,11 +25,15 @@ import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.JavacMessages;
 import com.sun.tools.javac.util.Log;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
@@ -48,27 +52,107 @@ import javax.tools.JavaFileObject;
  */
 public final class FastBuildJavacImpl implements FastBuildJavac {
 
+  /** Options whose values are paths to jars that the file manager caches. */
+  private static final List<String> PATH_OPTIONS =
+      Arrays.asList("-cp", "-classpath", "-bootclasspath", "-processorpath");
+
+  private final JavacTool javacTool = JavacTool.create();
+  private final ForwardingDiagnosticListener fileManagerListener =
+      new ForwardingDiagnosticListener();
+
+  // The file manager keeps the classpath jars open and indexed between compilations. It's reused
+  // until any of those jars change on disk.
+  private JavacFileManager fileManager;
+  private Map<String, List<Long>> pathStamps = new HashMap<>();
+
   @Override
-  public Object[] compile(List<String> args, Collection<File> sources) {
+  public synchronized Object[] compile(List<String> args, Collection<File> sources) {
     Context context = new Context();
     DiagnosticsCollector collector = new DiagnosticsCollector(context);
-    JavacTool javacTool = JavacTool.create();
-    JavacFileManager fileManager =
-        javacTool.getStandardFileManager(collector, Locale.ENGLISH, StandardCharsets.UTF_8);
-    Iterable<? extends JavaFileObject> filesToCompile =
-        fileManager.getJavaFileObjects(sources.toArray(new File[] {}));
-    JavacTask task =
-        javacTool.getTask(
-            /* writer (ignored if a diagnosticListener is set) */ null,
-            fileManager,
-            collector,
-            args,
-            /* classes= */ null,
-            filesToCompile,
-            context);
-    boolean result = task.call();
-    CompilerOutput results = new CompilerOutput(result, collector.diagnostics);
-    return results.encode();
+    JavacFileManager fileManager = getFileManager(args);
+    fileManagerListener.delegate = collector;
+    try {
+      Iterable<? extends JavaFileObject> filesToCompile =
+          fileManager.getJavaFileObjects(sources.toArray(new File[] {}));
+      JavacTask task =
+          javacTool.getTask(
+              /* writer (ignored if a diagnosticListener is set) */ null,
+              fileManager,
+              collector,
+              args,
+              /* classes= */ null,
+              filesToCompile,
+              context);
+      boolean result = task.call();
+      CompilerOutput results = new CompilerOutput(result, collector.diagnostics);
+      return results.encode();
+    } finally {
+      fileManagerListener.delegate = null;
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (fileManager != null) {
+      try {
+        fileManager.close();
+      } catch (IOException e) {
+        // We're discarding it anyway.
+      }
+      fileManager = null;
+    }
+  }
+
+  private JavacFileManager getFileManager(List<String> args) {
+    Map<String, List<Long>> currentStamps = getPathStamps(args);
+    if (fileManager != null && !currentStamps.equals(pathStamps)) {
+      try {
+        fileManager.close();
+      } catch (IOException e) {
+        // We're discarding it anyway.
+      }
+      fileManager = null;
+    }
+    if (fileManager == null) {
+      fileManager =
+          javacTool.getStandardFileManager(
+              fileManagerListener, Locale.ENGLISH, StandardCharsets.UTF_8);
+    }
+    pathStamps = currentStamps;
+    return fileManager;
+  }
+
+  private static Map<String, List<Long>> getPathStamps(List<String> args) {
+    Map<String, List<Long>> stamps = new HashMap<>();
+    for (int i = 0; i < args.size() - 1; i++) {
+      if (!PATH_OPTIONS.contains(args.get(i))) {
+        continue;
+      }
+      for (String path : args.get(i + 1).split(File.pathSeparator)) {
+        File file = new File(path);
+        stamps.put(path, Arrays.asList(file.lastModified(), file.length()));
+      }
+    }
+    return stamps;
+  }
+
+  /**
+   * Forwards diagnostics reported by the (long-lived) file manager to the collector of the current
+   * compilation.
+   */
+  @Trusted
+  private static final class ForwardingDiagnosticListener
+      implements DiagnosticListener<JavaFileObject> {
+
+    private volatile DiagnosticListener<JavaFileObject> delegate;
+
+    @Override
+    public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+      DiagnosticListener<JavaFileObject> delegate = this.delegate;
+      if (delegate != null) {
+        delegate.report(diagnostic);
+      }
+    }
   }
 
   @Trusted
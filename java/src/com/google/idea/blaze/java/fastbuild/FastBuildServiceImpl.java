@@ -118,6 +118,7 @@ final class FastBuildServiceImpl implements FastBuildService, ProjectComponent {
     if (build != null) {
       FileUtil.delete(build.compilerOutputDirectory());
       changedFilesManager.resetBuild(label);
+      incrementalCompiler.resetBuild(label);
     }
   }
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.java.fastbuild.FastBuildBlazeData.JavaInfo;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An index from Java source files to the targets which own them, covering the transitive closure of
+ * a single fast build target.
+ *
+ * <p>Built once per {@link FastBuildState.BuildOutput}, so that finding the targets affected by a
+ * set of modified files is proportional to the number of modified files rather than the size of
+ * the dependency graph.
+ */
+final class FastBuildSourceIndex {
+
+  private final ImmutableSetMultimap<File, Label> sourceToTargets;
+  private final ImmutableMap<Label, JavaInfo> javaTargets;
+  private final ImmutableListMultimap<String, File> sourcesByFileName;
+
+  private FastBuildSourceIndex(
+      ImmutableSetMultimap<File, Label> sourceToTargets,
+      ImmutableMap<Label, JavaInfo> javaTargets,
+      ImmutableListMultimap<String, File> sourcesByFileName) {
+    this.sourceToTargets = sourceToTargets;
+    this.javaTargets = javaTargets;
+    this.sourcesByFileName = sourcesByFileName;
+  }
+
+  static FastBuildSourceIndex create(
+      ArtifactLocationDecoder decoder, Map<Label, FastBuildBlazeData> blazeData, Label label) {
+    ImmutableSetMultimap.Builder<File, Label> sourceToTargets = ImmutableSetMultimap.builder();
+    Set<File> sources = new HashSet<>();
+    ImmutableMap.Builder<Label, JavaInfo> javaTargets = ImmutableMap.builder();
+    ImmutableListMultimap.Builder<String, File> sourcesByFileName = ImmutableListMultimap.builder();
+
+    Set<Label> seenTargets = new HashSet<>();
+    Deque<Label> toVisit = new ArrayDeque<>();
+    toVisit.add(label);
+    while (!toVisit.isEmpty()) {
+      Label target = toVisit.pop();
+      if (!seenTargets.add(target)) {
+        continue;
+      }
+      FastBuildBlazeData targetData = blazeData.get(target);
+      // as in a regular fast build, the closure doesn't extend through non-java targets
+      if (targetData == null || !targetData.javaInfo().isPresent()) {
+        continue;
+      }
+      JavaInfo javaInfo = targetData.javaInfo().get();
+      javaTargets.put(target, javaInfo);
+      for (ArtifactLocation sourceArtifact : javaInfo.sources()) {
+        File sourceFile = decoder.decode(sourceArtifact);
+        if (!sourceFile.getName().endsWith(".java")) {
+          continue;
+        }
+        sourceToTargets.put(sourceFile, target);
+        if (sources.add(sourceFile)) {
+          sourcesByFileName.put(sourceFile.getName(), sourceFile);
+        }
+      }
+      toVisit.addAll(targetData.dependencies());
+    }
+    return new FastBuildSourceIndex(
+        sourceToTargets.build(), javaTargets.build(), sourcesByFileName.build());
+  }
+
+  /**
+   * Returns the targets owning the given Java source, or an empty set if it's not in the closure.
+   */
+  ImmutableSet<Label> getOwningTargets(File sourceFile) {
+    return sourceToTargets.get(sourceFile);
+  }
+
+  /** Returns the {@link JavaInfo} for a Java target in the closure. */
+  @Nullable
+  JavaInfo getJavaInfo(Label target) {
+    return javaTargets.get(target);
+  }
+
+  /**
+   * Returns the source file which a class was compiled from, or null if it doesn't belong to any
+   * target in the closure.
+   *
+   * @param className the internal name of the class, e.g. "com/google/Foo$Bar"
+   * @param sourceFileName the value of the class's SourceFile attribute, e.g. "Foo.java"
+   */
+  @Nullable
+  File getSourceForClass(String className, String sourceFileName) {
+    int lastSlash = className.lastIndexOf('/');
+    String relativePath =
+        lastSlash == -1
+            ? sourceFileName
+            : className.substring(0, lastSlash + 1) + sourceFileName;
+    for (File candidate : sourcesByFileName.get(sourceFileName)) {
+      if (candidate.getPath().replace(File.separatorChar, '/').endsWith(relativePath)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A cheap check for whether a class file might have been compiled from one of the indexed
+   * sources, assuming the usual convention of a file per top-level class.
+   */
+  boolean mayContainClass(String className) {
+    String topLevelClass = ClassFileReferences.topLevelClassName(className);
+    String simpleName = topLevelClass.substring(topLevelClass.lastIndexOf('/') + 1);
+    return sourcesByFileName.containsKey(simpleName + ".java");
+  }
+
+  int sourceCount() {
+    return sourceToTargets.keySet().size();
+  }
+}
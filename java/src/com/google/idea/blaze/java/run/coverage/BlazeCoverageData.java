@@ -17,33 +17,162 @@ package com.google.idea.blaze.java.run.coverage;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.intellij.openapi.diagnostic.Logger;
-import gnu.trove.TIntIntHashMap;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 
-/** Blaze coverage data class. Parsed from LCOV-formatted blaze output. */
+/**
+ * Blaze coverage data class. Parsed from LCOV-formatted blaze output.
+ *
+ * <p>If a source file has more than one record (e.g. because it's covered by several test targets),
+ * the hits from each record are summed.
+ */
 class BlazeCoverageData {
 
   private static final Logger logger = Logger.getInstance(BlazeCoverageData.class);
 
+  /** Tracefiles smaller than this are parsed on a single thread. */
+  private static final long BYTES_PER_CHUNK = 16 * 1024 * 1024;
+
   static BlazeCoverageData parse(InputStream inputStream) throws IOException {
-    return LcovParser.parse(inputStream);
+    LcovParser parser = new LcovParser();
+    parser.parse(inputStream);
+    return fromBuilders(parser.files);
+  }
+
+  /**
+   * Parses a tracefile, splitting large files into chunks of whole records which are parsed in
+   * parallel on the given executor.
+   */
+  static BlazeCoverageData parse(File file, ExecutorService executor) throws IOException {
+    long size = file.length();
+    int chunks =
+        (int)
+            Math.max(
+                1, Math.min(Runtime.getRuntime().availableProcessors(), size / BYTES_PER_CHUNK));
+    return parse(file, executor, chunks);
+  }
+
+  @VisibleForTesting
+  static BlazeCoverageData parse(File file, ExecutorService executor, int chunks)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (chunks <= 1 || size > Integer.MAX_VALUE) {
+        return parse(Channels.newInputStream(channel));
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      List<Future<Map<String, LineHitsBuilder>>> futures = new ArrayList<>();
+      for (ByteBuffer chunk : splitIntoRecords(buffer, chunks)) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  LcovParser parser = new LcovParser();
+                  parser.parse(new ByteBufferInputStream(chunk));
+                  return parser.files;
+                }));
+      }
+      Map<String, LineHitsBuilder> merged = new HashMap<>();
+      for (Future<Map<String, LineHitsBuilder>> future : futures) {
+        for (LineHitsBuilder hits : future.get().values()) {
+          LineHitsBuilder existing = merged.putIfAbsent(hits.source, hits);
+          if (existing != null) {
+            existing.merge(hits);
+          }
+        }
+      }
+      return fromBuilders(merged);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing coverage data");
+    } catch (ExecutionException e) {
+      throw new IOException("Error parsing coverage data", e.getCause());
+    }
+  }
+
+  /**
+   * Splits the buffer into roughly equal chunks, each starting at the beginning of an SF: line, so
+   * that no record spans two chunks.
+   */
+  private static List<ByteBuffer> splitIntoRecords(ByteBuffer buffer, int chunks) {
+    int size = buffer.limit();
+    List<ByteBuffer> result = new ArrayList<>();
+    int start = 0;
+    for (int i = 1; i <= chunks && start < size; i++) {
+      int end = i == chunks ? size : nextRecordStart(buffer, (int) ((long) size * i / chunks));
+      if (end <= start) {
+        continue;
+      }
+      ByteBuffer chunk = buffer.duplicate();
+      chunk.position(start);
+      chunk.limit(end);
+      result.add(chunk.slice());
+      start = end;
+    }
+    return result;
+  }
+
+  private static int nextRecordStart(ByteBuffer buffer, int from) {
+    int size = buffer.limit();
+    for (int i = Math.max(from, 1); i + 3 < size; i++) {
+      if (buffer.get(i - 1) == '\n'
+          && buffer.get(i) == 'S'
+          && buffer.get(i + 1) == 'F'
+          && buffer.get(i + 2) == ':') {
+        return i;
+      }
+    }
+    return size;
+  }
+
+  private static BlazeCoverageData fromBuilders(Map<String, LineHitsBuilder> builders) {
+    ImmutableMap.Builder<String, FileData> map = ImmutableMap.builder();
+    for (LineHitsBuilder builder : builders.values()) {
+      if (builder.maxLine >= 0) {
+        map.put(builder.source, new FileData(builder.source, builder.build()));
+      }
+    }
+    return new BlazeCoverageData(map.build());
   }
 
   static class FileData {
+    /** The value in {@link #lineHits} for lines with no coverage data. */
+    static final int NO_DATA = -1;
+
     final String source;
-    final TIntIntHashMap lineHits;
 
-    private FileData(String source, TIntIntHashMap lineHits) {
+    /**
+     * The number of hits for each line, indexed by line number, or {@link #NO_DATA} for lines
+     * without coverage data. The last element always has data.
+     */
+    final int[] lineHits;
+
+    private FileData(String source, int[] lineHits) {
       this.source = source;
       this.lineHits = lineHits;
     }
+
+    int maxLineNumber() {
+      return lineHits.length - 1;
+    }
   }
 
   final ImmutableMap<String, FileData> perFileData;
@@ -52,48 +181,174 @@ class BlazeCoverageData {
     this.perFileData = perFileData;
   }
 
+  /** Accumulates the line hits for a single source file. */
+  private static class LineHitsBuilder {
+    final String source;
+    int[] hits = new int[0];
+    int maxLine = -1;
+
+    LineHitsBuilder(String source) {
+      this.source = source;
+    }
+
+    void add(int line, int count) {
+      if (line >= hits.length) {
+        int newLength = Math.max(line + 1, hits.length * 2);
+        int oldLength = hits.length;
+        hits = Arrays.copyOf(hits, newLength);
+        Arrays.fill(hits, oldLength, newLength, FileData.NO_DATA);
+      }
+      hits[line] = hits[line] == FileData.NO_DATA ? count : saturatedAdd(hits[line], count);
+      maxLine = Math.max(maxLine, line);
+    }
+
+    void merge(LineHitsBuilder other) {
+      for (int line = 0; line <= other.maxLine; line++) {
+        if (other.hits[line] != FileData.NO_DATA) {
+          add(line, other.hits[line]);
+        }
+      }
+    }
+
+    int[] build() {
+      return Arrays.copyOf(hits, maxLine + 1);
+    }
+
+    private static int saturatedAdd(int a, int b) {
+      long sum = (long) a + b;
+      return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+  }
+
+  /**
+   * A byte-level LCOV parser. Only the SF:, DA: and end_of_record lines are read; the others are
+   * skipped without being decoded.
+   */
   private static class LcovParser {
-    // there are other valid lcov tracefile prefixes, but they're all ignored here
-    static final String SF = "SF:";
-    static final String DA = "DA:";
-    static final String END_OF_RECORD = "end_of_record";
-
-    private static BlazeCoverageData parse(InputStream inputStream) throws IOException {
-      Map<String, FileData> map = new HashMap<>();
-      BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
-      String line;
-      while ((line = reader.readLine()) != null) {
-        if (line.startsWith(SF)) {
-          String source = line.substring(SF.length());
-          TIntIntHashMap hits = parseHits(reader);
-          if (!hits.isEmpty()) {
-            map.put(source, new FileData(source, hits));
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] SF = "SF:".getBytes(UTF_8);
+    private static final byte[] DA = "DA:".getBytes(UTF_8);
+    private static final byte[] END_OF_RECORD = "end_of_record".getBytes(UTF_8);
+
+    final Map<String, LineHitsBuilder> files = new HashMap<>();
+    @Nullable private LineHitsBuilder current;
+
+    void parse(InputStream inputStream) throws IOException {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int end = 0;
+      int read;
+      while ((read = inputStream.read(buffer, end, buffer.length - end)) != -1) {
+        int scanFrom = end;
+        end += read;
+        int lineStart = 0;
+        for (int i = scanFrom; i < end; i++) {
+          if (buffer[i] == '\n') {
+            parseLine(buffer, lineStart, i);
+            lineStart = i + 1;
           }
         }
+        // move any partial line to the start of the buffer, growing it if a line doesn't fit
+        end -= lineStart;
+        System.arraycopy(buffer, lineStart, buffer, 0, end);
+        if (end == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+      }
+      if (end > 0) {
+        parseLine(buffer, 0, end);
+      }
+    }
+
+    private void parseLine(byte[] buffer, int start, int end) {
+      if (end > start && buffer[end - 1] == '\r') {
+        end--;
+      }
+      if (startsWith(buffer, start, end, SF)) {
+        String source = new String(buffer, start + SF.length, end - start - SF.length, UTF_8);
+        current = files.computeIfAbsent(source, LineHitsBuilder::new);
+      } else if (startsWith(buffer, start, end, END_OF_RECORD)) {
+        current = null;
+      } else if (current != null && startsWith(buffer, start, end, DA)) {
+        parseLineHits(buffer, start + DA.length, end);
+      }
+    }
+
+    /** Parses 'line,hits[,checksum]'. */
+    private void parseLineHits(byte[] buffer, int start, int end) {
+      int comma = indexOf(buffer, start, end, (byte) ',');
+      long line = -1;
+      long hits = -1;
+      if (comma != -1) {
+        int checksumComma = indexOf(buffer, comma + 1, end, (byte) ',');
+        line = parseNonNegative(buffer, start, comma);
+        hits = parseNonNegative(buffer, comma + 1, checksumComma == -1 ? end : checksumComma);
+      }
+      if (line < 0 || line > Integer.MAX_VALUE - 1 || hits < 0) {
+        logger.warn("Cannot parse LCOV line: DA:" + new String(buffer, start, end - start, UTF_8));
+        return;
+      }
+      current.add((int) line, (int) Math.min(hits, Integer.MAX_VALUE));
+    }
+
+    /** Returns the parsed number, or -1 if it isn't a valid non-negative integer. */
+    private static long parseNonNegative(byte[] buffer, int start, int end) {
+      if (start >= end || end - start > 18) {
+        return -1;
+      }
+      long value = 0;
+      for (int i = start; i < end; i++) {
+        int digit = buffer[i] - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        value = value * 10 + digit;
       }
-      return new BlazeCoverageData(ImmutableMap.copyOf(map));
+      return value;
     }
 
-    private static TIntIntHashMap parseHits(BufferedReader reader) throws IOException {
-      TIntIntHashMap hits = new TIntIntHashMap();
-      String line;
-      while ((line = reader.readLine()) != null) {
-        if (line.startsWith(END_OF_RECORD)) {
-          return hits;
+    private static int indexOf(byte[] buffer, int start, int end, byte b) {
+      for (int i = start; i < end; i++) {
+        if (buffer[i] == b) {
+          return i;
         }
-        if (line.startsWith(DA)) {
-          // DA:line,hits
-          int comma = line.indexOf(',');
-          try {
-            hits.put(
-                Integer.parseInt(line.substring(DA.length(), comma)),
-                Integer.parseInt(line.substring(comma + 1)));
-          } catch (NumberFormatException e) {
-            logger.warn("Cannot parse LCOV line: " + line, e);
-          }
+      }
+      return -1;
+    }
+
+    private static boolean startsWith(byte[] buffer, int start, int end, byte[] prefix) {
+      if (end - start < prefix.length) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+        if (buffer[start + i] != prefix[i]) {
+          return false;
         }
       }
-      return hits;
+      return true;
+    }
+  }
+
+  /** Reads a (possibly memory-mapped) {@link ByteBuffer} as an input stream. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
     }
   }
 }
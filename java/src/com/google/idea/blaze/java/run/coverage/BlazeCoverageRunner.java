@@ -16,7 +16,7 @@
 package com.google.idea.blaze.java.run.coverage;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.primitives.Ints;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
@@ -30,7 +30,6 @@ import com.intellij.rt.coverage.data.ClassData;
 import com.intellij.rt.coverage.data.LineData;
 import com.intellij.rt.coverage.data.ProjectData;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import javax.annotation.Nullable;
@@ -51,8 +50,10 @@ public class BlazeCoverageRunner extends CoverageRunner {
     if (blazeProjectData == null) {
       return null;
     }
-    try (FileInputStream stream = new FileInputStream(sessionDataFile)) {
-      return parseCoverage(blazeProjectData.getWorkspacePathResolver(), stream);
+    try {
+      BlazeCoverageData blazeData =
+          BlazeCoverageData.parse(sessionDataFile, BlazeExecutor.getInstance().getExecutor());
+      return toProjectData(blazeProjectData.getWorkspacePathResolver(), blazeData);
     } catch (IOException e) {
       logger.warn(e);
     }
@@ -62,8 +63,12 @@ public class BlazeCoverageRunner extends CoverageRunner {
   @VisibleForTesting
   static ProjectData parseCoverage(WorkspacePathResolver pathResolver, InputStream stream)
       throws IOException {
+    return toProjectData(pathResolver, BlazeCoverageData.parse(stream));
+  }
+
+  private static ProjectData toProjectData(
+      WorkspacePathResolver pathResolver, BlazeCoverageData blazeData) {
     ProjectData data = new ProjectData();
-    BlazeCoverageData blazeData = BlazeCoverageData.parse(stream);
     for (String filePath : blazeData.perFileData.keySet()) {
       File file = pathResolver.resolveToFile(filePath);
       ClassData classData = data.getOrCreateClassData(file.getPath());
@@ -73,21 +78,18 @@ public class BlazeCoverageRunner extends CoverageRunner {
   }
 
   private static LineData[] fromFileData(FileData fileData) {
-    LineData[] lines = new LineData[maxLineNumber(fileData) + 1];
-    fileData.lineHits.forEachEntry(
-        (line, hits) -> {
-          LineData newLine = new LineData(line, null);
-          newLine.setHits(hits);
-          lines[line] = newLine;
-          return true;
-        });
+    LineData[] lines = new LineData[fileData.maxLineNumber() + 1];
+    for (int line = 0; line < fileData.lineHits.length; line++) {
+      int hits = fileData.lineHits[line];
+      if (hits != FileData.NO_DATA) {
+        LineData newLine = new LineData(line, null);
+        newLine.setHits(hits);
+        lines[line] = newLine;
+      }
+    }
     return lines;
   }
 
-  private static int maxLineNumber(FileData fileData) {
-    return Ints.max(fileData.lineHits.keys());
-  }
-
   @Override
   public String getPresentableName() {
     return Blaze.defaultBuildSystemName();
@@ -83,6 +83,8 @@ public final class BlazeHotSwapManager {
             session.session, MessageCategory.ERROR, "Modified classes could not be determined.");
         return;
       }
+      progress.addMessage(
+          session.session, MessageCategory.INFORMATION, manifestDiff.stats.toString());
       Map<String, File> localFiles = copyClassFilesLocally(manifestDiff);
       Map<String, HotSwapFile> files =
           localFiles
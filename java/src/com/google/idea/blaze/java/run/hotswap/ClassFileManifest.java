@@ -15,9 +15,9 @@
  */
 package com.google.idea.blaze.java.run.hotswap;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
-
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
@@ -29,15 +29,13 @@ import com.intellij.execution.RunCanceledByUserException;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
 import javax.annotation.Nullable;
 
 /** A manifest of .class file hashes for jars needed at runtime. Used for HotSwapping. */
@@ -45,12 +43,41 @@ public class ClassFileManifest {
 
   private static final Logger logger = Logger.getInstance(ClassFileManifest.class);
 
+  /**
+   * Manifests of recently read jars, shared between debug sessions. Keyed by the jar's path,
+   * timestamp and size, so a rebuilt jar is always re-read.
+   */
+  private static final Cache<JarKey, JarManifest> jarManifestCache =
+      CacheBuilder.newBuilder().softValues().build();
+
   /** A per-jar map of .class files changed between manifests */
   public static class Diff {
     public final ImmutableMultimap<File, String> perJarModifiedClasses;
+    public final Stats stats;
 
-    public Diff(ImmutableMultimap<File, String> perJarModifiedClasses) {
+    public Diff(ImmutableMultimap<File, String> perJarModifiedClasses, Stats stats) {
       this.perJarModifiedClasses = perJarModifiedClasses;
+      this.stats = stats;
+    }
+  }
+
+  /** Statistics about building a manifest. */
+  public static class Stats {
+    public final int jarsRead;
+    public final int jarsReused;
+    public final Duration buildTime;
+
+    Stats(int jarsRead, int jarsReused, Duration buildTime) {
+      this.jarsRead = jarsRead;
+      this.jarsReused = jarsReused;
+      this.buildTime = buildTime;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "Built .class file manifest in %d ms (%d jars read, %d unchanged)",
+          buildTime.toMillis(), jarsRead, jarsReused);
     }
   }
 
@@ -58,11 +85,15 @@ public class ClassFileManifest {
   private final ImmutableMap<File, Long> jarFileState;
   // per-jar manifest of .class file hashes
   private final ImmutableMap<File, JarManifest> jarManifests;
+  private final Stats stats;
 
   private ClassFileManifest(
-      ImmutableMap<File, Long> jarFileState, ImmutableMap<File, JarManifest> jarManifests) {
+      ImmutableMap<File, Long> jarFileState,
+      ImmutableMap<File, JarManifest> jarManifests,
+      Stats stats) {
     this.jarFileState = jarFileState;
     this.jarManifests = jarManifests;
+    this.stats = stats;
   }
 
   /** Returns a per-jar map of .class files changed in the new manifest */
@@ -79,7 +110,7 @@ public class ClassFileManifest {
         map.putAll(entry.getKey(), changedClasses);
       }
     }
-    return new Diff(map.build());
+    return new Diff(map.build(), newManifest.stats);
   }
 
   @Nullable
@@ -87,21 +118,36 @@ public class ClassFileManifest {
       Collection<File> jars, @Nullable ClassFileManifest previousManifest)
       throws ExecutionException {
     try {
+      Stopwatch timer = Stopwatch.createStarted();
       FilesDiff<File, File> diff =
           FilesDiff.diffFileTimestamps(
               previousManifest != null ? previousManifest.jarFileState : null, jars);
+      ImmutableMap<File, Long> newFileState = diff.getNewFileState();
 
       ImmutableMap.Builder<File, JarManifest> jarManifests = ImmutableMap.builder();
-      jars.forEach(
-          f -> {
-            if (!diff.getUpdatedFiles().contains(f) && previousManifest != null) {
-              jarManifests.put(f, previousManifest.jarManifests.get(f));
-            }
-          });
-      buildJarManifests(diff.getUpdatedFiles()).stream()
+      List<File> jarsToRead = new ArrayList<>();
+      int jarsReused = 0;
+      for (File jar : jars) {
+        JarManifest manifest = null;
+        if (!diff.getUpdatedFiles().contains(jar) && previousManifest != null) {
+          manifest = previousManifest.jarManifests.get(jar);
+        } else if (newFileState.containsKey(jar)) {
+          manifest =
+              jarManifestCache.getIfPresent(new JarKey(jar, newFileState.get(jar), jar.length()));
+        }
+        if (manifest != null) {
+          jarManifests.put(jar, manifest);
+          jarsReused++;
+        } else {
+          jarsToRead.add(jar);
+        }
+      }
+      buildJarManifests(jarsToRead, newFileState).stream()
           .filter(Objects::nonNull)
           .forEach(m -> jarManifests.put(m.jar, m));
-      return new ClassFileManifest(diff.getNewFileState(), jarManifests.build());
+      Stats stats = new Stats(jarsToRead.size(), jarsReused, timer.elapsed());
+      logger.info(stats.toString());
+      return new ClassFileManifest(newFileState, jarManifests.build(), stats);
     } catch (InterruptedException e) {
       throw new RunCanceledByUserException();
     } catch (java.util.concurrent.ExecutionException e) {
@@ -109,51 +155,79 @@ public class ClassFileManifest {
     }
   }
 
-  private static List<JarManifest> buildJarManifests(Collection<File> jars)
+  private static List<JarManifest> buildJarManifests(
+      Collection<File> jars, ImmutableMap<File, Long> fileState)
       throws java.util.concurrent.ExecutionException, InterruptedException {
     BlazeExecutor executor = BlazeExecutor.getInstance();
     return Futures.allAsList(
             jars.stream()
-                .map(f -> executor.submit(() -> JarManifest.build(f)))
+                .map(f -> executor.submit(() -> buildAndCache(f, fileState.get(f))))
                 .collect(Collectors.toList()))
         .get();
   }
 
+  @Nullable
+  private static JarManifest buildAndCache(File jar, @Nullable Long timestamp) {
+    JarManifest manifest = JarManifest.build(jar);
+    if (manifest != null && timestamp != null) {
+      jarManifestCache.put(new JarKey(jar, timestamp, jar.length()), manifest);
+    }
+    return manifest;
+  }
+
+  /** Identifies a particular version of a jar on disk. */
+  private static class JarKey {
+    private final File jar;
+    private final long timestamp;
+    private final long size;
+
+    JarKey(File jar, long timestamp, long size) {
+      this.jar = jar;
+      this.timestamp = timestamp;
+      this.size = size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof JarKey)) {
+        return false;
+      }
+      JarKey other = (JarKey) o;
+      return jar.equals(other.jar) && timestamp == other.timestamp && size == other.size;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(jar, timestamp, size);
+    }
+  }
+
   /** .class file manifest for a single jar. */
   private static class JarManifest {
     private final File jar;
-    private final ImmutableMap<String, Long> nameToHash;
+    private final JarClassEntries classEntries;
 
     @Nullable
     static JarManifest build(File file) {
       try {
-        JarFile jar = new JarFile(file);
-        return new JarManifest(
-            file,
-            jar.stream()
-                .filter(e -> e.getName().endsWith(".class"))
-                .collect(
-                    toImmutableMap(JarEntry::getName, ZipEntry::getCrc, (first, second) -> first)));
+        return new JarManifest(file, JarClassEntries.read(file));
       } catch (IOException e) {
         logger.warn("Error reading jar file: " + file, e);
         return null;
       }
     }
 
-    private JarManifest(File jar, ImmutableMap<String, Long> nameToHash) {
+    private JarManifest(File jar, JarClassEntries classEntries) {
       this.jar = jar;
-      this.nameToHash = nameToHash;
+      this.classEntries = classEntries;
     }
 
     /** Returns the list of classes changed in the new manifest. */
     static ImmutableList<String> diff(JarManifest oldManifest, JarManifest newManifest) {
-      return newManifest
-          .nameToHash
-          .entrySet()
-          .stream()
-          .filter(e -> !Objects.equals(e.getValue(), oldManifest.nameToHash.get(e.getKey())))
-          .map(Entry::getKey)
-          .collect(toImmutableList());
+      return JarClassEntries.diff(oldManifest.classEntries, newManifest.classEntries);
     }
   }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.run.hotswap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.idea.blaze.base.io.ZipCentralDirectory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The .class entries of a jar and their CRCs, stored as parallel arrays sorted by entry name.
+ *
+ * <p>Read directly from the zip central directory, without opening any entry streams.
+ */
+final class JarClassEntries {
+
+  private final String[] names;
+  private final int[] crcs;
+
+  private JarClassEntries(String[] names, int[] crcs) {
+    this.names = names;
+    this.crcs = crcs;
+  }
+
+  int size() {
+    return names.length;
+  }
+
+  /**
+   * Returns the names of the classes which are new or have a different CRC in {@code newEntries},
+   * compared to {@code oldEntries}.
+   */
+  static ImmutableList<String> diff(JarClassEntries oldEntries, JarClassEntries newEntries) {
+    ImmutableList.Builder<String> changed = ImmutableList.builder();
+    String[] oldNames = oldEntries.names;
+    int oldIndex = 0;
+    for (int i = 0; i < newEntries.names.length; i++) {
+      String name = newEntries.names[i];
+      while (oldIndex < oldNames.length && oldNames[oldIndex].compareTo(name) < 0) {
+        oldIndex++;
+      }
+      if (oldIndex == oldNames.length
+          || !oldNames[oldIndex].equals(name)
+          || oldEntries.crcs[oldIndex] != newEntries.crcs[i]) {
+        changed.add(name);
+      }
+    }
+    return changed.build();
+  }
+
+  static JarClassEntries read(File jar) throws IOException {
+    List<String> names = new ArrayList<>();
+    List<Integer> crcs = new ArrayList<>();
+    ZipCentralDirectory.read(
+        jar,
+        entry -> {
+          if (entry.nameEndsWith(".class")) {
+            names.add(entry.getName());
+            crcs.add(entry.getCrc());
+          }
+          return true;
+        });
+    return sorted(names.toArray(new String[0]), Ints.toArray(crcs), names.size());
+  }
+
+  private static JarClassEntries sorted(String[] names, int[] crcs, int count) {
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    // A stable sort, so the first of any duplicate entries wins, as with JarFile.
+    Arrays.sort(order, Comparator.comparing(i -> names[i]));
+    String[] sortedNames = new String[count];
+    int[] sortedCrcs = new int[count];
+    int size = 0;
+    for (int i : order) {
+      if (size > 0 && sortedNames[size - 1].equals(names[i])) {
+        continue;
+      }
+      sortedNames[size] = names[i];
+      sortedCrcs[size] = crcs[i];
+      size++;
+    }
+    return new JarClassEntries(
+        size == count ? sortedNames : Arrays.copyOf(sortedNames, size),
+        size == count ? sortedCrcs : Arrays.copyOf(sortedCrcs, size));
+  }
+}
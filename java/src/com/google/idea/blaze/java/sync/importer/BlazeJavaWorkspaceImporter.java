@@ -16,7 +16,6 @@
 package com.google.idea.blaze.java.sync.importer;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.util.stream.Collectors.toList;
 
 import com.google.common.collect.ArrayListMultimap;
@@ -28,6 +27,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.Dependency.DependencyType;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
@@ -39,7 +39,6 @@ import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.LibraryKey;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
-import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.Scope;
@@ -71,9 +70,10 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
@@ -256,11 +256,16 @@ public final class BlazeJavaWorkspaceImporter {
         context -> {
           context.push(new TimingScope("FilterEmptyJars", EventType.Other));
           context.output(new StatusOutput("Filtering empty jars..."));
+          EmptyLibraryFilter filter = new EmptyLibraryFilter(locationDecoder);
           ImmutableMap<LibraryKey, BlazeJarLibrary> result;
           try {
             result =
                 filterByValueInParallel(
-                    allLibraries, new EmptyLibraryFilter(locationDecoder), FetchExecutor.EXECUTOR);
+                    context,
+                    allLibraries,
+                    filter,
+                    EmptyLibraryFilter.EXECUTOR,
+                    EmptyLibraryFilter.getTimeoutSeconds());
           } catch (ExecutionException e) {
             String warning = "Failed to filter out empty jars";
             if (e.getCause() != null) {
@@ -276,23 +281,53 @@ public final class BlazeJavaWorkspaceImporter {
           context.output(
               PrintOutput.log(
                   String.format(
-                      "Filtered out %d empty jars", allLibraries.size() - result.size())));
+                      "Filtered out %d empty jars (%s)",
+                      allLibraries.size() - result.size(), filter.getStats())));
           return result;
         });
   }
 
+  /**
+   * Filters the given map in parallel. Entries which haven't been checked before the timeout are
+   * kept.
+   */
   private static <K, V> ImmutableMap<K, V> filterByValueInParallel(
-      Map<K, V> map, Predicate<? super V> predicate, ListeningExecutorService executor)
+      BlazeContext context,
+      Map<K, V> map,
+      Predicate<? super V> predicate,
+      ListeningExecutorService executor,
+      int timeoutSeconds)
       throws ExecutionException, InterruptedException {
-    return Futures.allAsList(
-            map.entrySet().stream()
-                .map(
-                    entry -> executor.submit(() -> predicate.test(entry.getValue()) ? entry : null))
-                .collect(toImmutableList()))
-        .get()
-        .stream()
-        .filter(Objects::nonNull)
-        .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+    ImmutableList<Map.Entry<K, V>> entries = ImmutableList.copyOf(map.entrySet());
+    ImmutableList<ListenableFuture<Boolean>> futures =
+        entries.stream()
+            .map(entry -> executor.submit(() -> predicate.test(entry.getValue())))
+            .collect(toImmutableList());
+    ListenableFuture<List<Boolean>> allFutures = Futures.allAsList(futures);
+    try {
+      allFutures.get(timeoutSeconds, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      allFutures.cancel(true);
+    }
+    ImmutableMap.Builder<K, V> result = ImmutableMap.builder();
+    int timedOut = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      ListenableFuture<Boolean> future = futures.get(i);
+      boolean finished = future.isDone() && !future.isCancelled();
+      if (!finished) {
+        timedOut++;
+      }
+      if (!finished || Futures.getDone(future)) {
+        result.put(entries.get(i));
+      }
+    }
+    if (timedOut > 0) {
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Timed out after %ds, keeping %d unchecked entries", timeoutSeconds, timedOut)));
+    }
+    return result.build();
   }
 
   private void addLibraryToJdeps(
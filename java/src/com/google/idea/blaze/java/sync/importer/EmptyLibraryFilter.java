@@ -17,19 +17,36 @@
 package com.google.idea.blaze.java.sync.importer;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
+import com.google.idea.blaze.base.command.buildresult.BlazeArtifact.LocalFileArtifact;
+import com.google.idea.blaze.base.command.buildresult.RemoteOutputArtifact;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.io.ZipCentralDirectory;
 import com.google.idea.blaze.base.model.BlazeLibrary;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.google.idea.blaze.java.sync.model.BlazeJarLibrary;
 import com.google.idea.common.experiments.FeatureRolloutExperiment;
 import com.google.idea.common.experiments.IntExperiment;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
 
 /**
  * Filters out any {@link BlazeJarLibrary} whose corresponding IntelliJ library would reference only
@@ -38,11 +55,19 @@ import java.util.jar.JarInputStream;
  * <p>Since this filter is used, in part, to determine which remote output JARs should be copied to
  * a local cache, checking the contents of those JARs can involve expensive network operations. We
  * try to minimize this cost by checking the JAR's size first and applying heuristics to avoid doing
- * extra work in the more obvious cases.
+ * extra work in the more obvious cases. Otherwise only the zip central directory is inspected, and
+ * the verdict is remembered across syncs until the JAR changes.
  */
 public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
   private static final String FN_MANIFEST = "MANIFEST.MF";
 
+  private static final int MAX_THREADS = 32;
+
+  /** Bounds the number of JARs checked concurrently. */
+  static final ListeningExecutorService EXECUTOR =
+      MoreExecutors.listeningDecorator(
+          AppExecutorUtil.createBoundedApplicationPoolExecutor("EmptyJarFilter", MAX_THREADS));
+
   @VisibleForTesting
   public static final FeatureRolloutExperiment filterExperiment =
       new FeatureRolloutExperiment("blaze.empty.jar.filter");
@@ -66,10 +91,21 @@ public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
    */
   private static final IntExperiment presumedNonEmptyThresholdBytes =
       new IntExperiment("blaze.nonempty.jar.threshold", 470);
+  /** JARs which haven't been checked within this many seconds are kept. */
+  private static final IntExperiment timeoutSeconds =
+      new IntExperiment("blaze.empty.jar.filter.timeout.seconds", 120);
+
+  /**
+   * Whether each previously checked JAR should be kept, keyed by its path and state. Lives for the
+   * lifetime of the application, so unchanged JARs aren't checked again on the next sync.
+   */
+  private static final Cache<String, Boolean> verdictCache =
+      CacheBuilder.newBuilder().maximumSize(100_000).build();
 
   private static final Logger logger = Logger.getInstance(EmptyLibraryFilter.class);
 
   private final ArtifactLocationDecoder locationDecoder;
+  private final Stats stats = new Stats();
 
   EmptyLibraryFilter(ArtifactLocationDecoder locationDecoder) {
     this.locationDecoder = locationDecoder;
@@ -79,6 +115,14 @@ public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
     return filterExperiment.isEnabled();
   }
 
+  static int getTimeoutSeconds() {
+    return timeoutSeconds.getValue();
+  }
+
+  Stats getStats() {
+    return stats;
+  }
+
   @Override
   public boolean test(BlazeLibrary blazeLibrary) {
     if (!isEnabled() || !(blazeLibrary instanceof BlazeJarLibrary)) {
@@ -87,12 +131,46 @@ public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
     ArtifactLocation location =
         ((BlazeJarLibrary) blazeLibrary).libraryArtifact.jarForIntellijLibrary();
     BlazeArtifact artifact = locationDecoder.resolveOutput(location);
+    String cacheKey = getCacheKey(artifact);
+    Boolean cachedVerdict = cacheKey != null ? verdictCache.getIfPresent(cacheKey) : null;
+    if (cachedVerdict != null) {
+      stats.skippedJars.incrementAndGet();
+      return cachedVerdict;
+    }
+    boolean keep;
     try {
-      return !isEmpty(artifact);
+      keep = !isEmpty(artifact, stats);
     } catch (IOException e) {
       logger.warn(e);
       return true;
     }
+    if (cacheKey != null) {
+      verdictCache.put(cacheKey, keep);
+    }
+    return keep;
+  }
+
+  /**
+   * Returns a key identifying both the artifact and its current contents, or null if its verdict
+   * shouldn't be cached.
+   */
+  @Nullable
+  private static String getCacheKey(BlazeArtifact artifact) {
+    if (artifact instanceof RemoteOutputArtifact) {
+      RemoteOutputArtifact remoteArtifact = (RemoteOutputArtifact) artifact;
+      return remoteArtifact.getRelativePath() + '@' + remoteArtifact.getHashId();
+    }
+    if (artifact instanceof LocalFileArtifact) {
+      File file = ((LocalFileArtifact) artifact).getFile();
+      long lastModified = FileOperationProvider.getInstance().getFileModifiedTime(file);
+      return lastModified == 0 ? null : file.getPath() + '@' + lastModified;
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  static void clearCache() {
+    verdictCache.invalidateAll();
   }
 
   /**
@@ -100,6 +178,10 @@ public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
    * and directories).
    */
   static boolean isEmpty(BlazeArtifact artifact) throws IOException {
+    return isEmpty(artifact, new Stats());
+  }
+
+  private static boolean isEmpty(BlazeArtifact artifact, Stats stats) throws IOException {
     long length = artifact.getLength();
     if (length <= presumedEmptyThresholdBytes.getValue()) {
       // Note: this implicitly includes files that can't be found (length -1 or 0).
@@ -108,9 +190,47 @@ public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
     if (length >= presumedNonEmptyThresholdBytes.getValue()) {
       return false;
     }
-    try (InputStream inputStream = artifact.getInputStream();
-        JarInputStream jarInputStream = new JarInputStream(inputStream)) {
-      return isEmpty(jarInputStream);
+    stats.inspectedJars.incrementAndGet();
+    stats.bytesRead.addAndGet(length);
+    if (artifact instanceof LocalFileArtifact) {
+      File jar = ((LocalFileArtifact) artifact).getFile();
+      try {
+        EmptyJarVisitor visitor = new EmptyJarVisitor();
+        ZipCentralDirectory.read(jar, visitor);
+        return visitor.empty;
+      } catch (ZipException e) {
+        logger.warn("Failed to read the central directory of " + jar, e);
+      }
+      try (InputStream inputStream = artifact.getInputStream();
+          JarInputStream jarInputStream = new JarInputStream(inputStream)) {
+        return isEmpty(jarInputStream);
+      }
+    }
+    // Remote artifacts can only be streamed, but anything in this size band is small enough to
+    // read in one go.
+    byte[] bytes;
+    try (InputStream inputStream = artifact.getInputStream()) {
+      bytes = ByteStreams.toByteArray(inputStream);
+    }
+    try {
+      EmptyJarVisitor visitor = new EmptyJarVisitor();
+      ZipCentralDirectory.read(ByteBuffer.wrap(bytes), visitor);
+      return visitor.empty;
+    } catch (ZipException e) {
+      return isEmpty(new JarInputStream(new ByteArrayInputStream(bytes)));
+    }
+  }
+
+  /** Checks whether a jar's central directory has nothing but a manifest and directories. */
+  private static class EmptyJarVisitor implements ZipCentralDirectory.EntryVisitor {
+    boolean empty = true;
+
+    @Override
+    public boolean visit(ZipCentralDirectory.Entry entry) {
+      if (!entry.isDirectory() && !entry.nameEndsWith(FN_MANIFEST)) {
+        empty = false;
+      }
+      return empty;
     }
   }
 
@@ -122,4 +242,21 @@ public class EmptyLibraryFilter implements Predicate<BlazeLibrary> {
     }
     return true;
   }
+
+  /** Counters describing the work done by a filter. */
+  static final class Stats {
+    /** JARs whose verdict was reused from a previous check. */
+    final AtomicInteger skippedJars = new AtomicInteger();
+    /** JARs whose size alone wasn't enough to decide. */
+    final AtomicInteger inspectedJars = new AtomicInteger();
+
+    final AtomicLong bytesRead = new AtomicLong();
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d reused from previous syncs, %d inspected, %d bytes read",
+          skippedJars.get(), inspectedJars.get(), bytesRead.get());
+    }
+  }
 }
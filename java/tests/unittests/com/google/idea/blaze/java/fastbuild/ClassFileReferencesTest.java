@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ClassFileReferences}. */
+@RunWith(JUnit4.class)
+public final class ClassFileReferencesTest {
+
+  /** A class with references in its fields, method signatures and method bodies. */
+  private static class Referencing {
+    List<StringBuilder> field;
+
+    ImmutableMap<String, Integer> method(Thread thread) {
+      return ImmutableMap.of(thread.getName(), Math.abs(-1));
+    }
+  }
+
+  @Test
+  public void testReadsClassNameAndSourceFile() throws IOException {
+    ClassFileReferences references = read(Referencing.class);
+
+    assertThat(references.className)
+        .isEqualTo("com/google/idea/blaze/java/fastbuild/ClassFileReferencesTest$Referencing");
+    assertThat(references.sourceFileName).isEqualTo("ClassFileReferencesTest.java");
+  }
+
+  @Test
+  public void testReadsReferencedClasses() throws IOException {
+    ClassFileReferences references = read(Referencing.class);
+
+    assertThat(references.referencedClasses)
+        .containsAllOf(
+            "java/util/List",
+            "java/lang/StringBuilder",
+            "com/google/common/collect/ImmutableMap",
+            "java/lang/Thread",
+            "java/lang/Math",
+            "com/google/idea/blaze/java/fastbuild/ClassFileReferencesTest");
+    assertThat(references.referencedClasses).doesNotContain(references.className);
+  }
+
+  @Test
+  public void testTopLevelClassName() {
+    assertThat(ClassFileReferences.topLevelClassName("com/google/Foo$Bar$Baz"))
+        .isEqualTo("com/google/Foo");
+    assertThat(ClassFileReferences.topLevelClassName("com/google/Foo")).isEqualTo("com/google/Foo");
+    assertThat(ClassFileReferences.topLevelClassName("com/go$gle/Foo")).isEqualTo("com/go$gle/Foo");
+  }
+
+  private static ClassFileReferences read(Class<?> clazz) throws IOException {
+    String resource = "/" + clazz.getName().replace('.', '/') + ".class";
+    try (InputStream in = clazz.getResourceAsStream(resource)) {
+      return ClassFileReferences.read(in);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FastBuildCompileLatencies}. */
+@RunWith(JUnit4.class)
+public final class FastBuildCompileLatenciesTest {
+
+  @Test
+  public void testNoSamples() {
+    FastBuildCompileLatencies latencies = new FastBuildCompileLatencies();
+
+    assertThat(latencies.sampleCount()).isEqualTo(0);
+    assertThat(latencies.percentileMillis(50)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testPercentiles() {
+    FastBuildCompileLatencies latencies = new FastBuildCompileLatencies();
+    for (int i = 100; i >= 1; i--) {
+      latencies.record(Duration.ofMillis(i));
+    }
+
+    assertThat(latencies.percentileMillis(50)).isEqualTo(50);
+    assertThat(latencies.percentileMillis(90)).isEqualTo(90);
+    assertThat(latencies.percentileMillis(99)).isEqualTo(99);
+    assertThat(latencies.percentileMillis(100)).isEqualTo(100);
+  }
+
+  @Test
+  public void testOnlyKeepsMostRecentSamples() {
+    FastBuildCompileLatencies latencies = new FastBuildCompileLatencies(/* maxSamples= */ 3);
+    latencies.record(Duration.ofMillis(1000));
+    latencies.record(Duration.ofMillis(1));
+    latencies.record(Duration.ofMillis(2));
+    latencies.record(Duration.ofMillis(3));
+
+    assertThat(latencies.sampleCount()).isEqualTo(3);
+    assertThat(latencies.percentileMillis(100)).isEqualTo(3);
+  }
+}
@@ -43,6 +43,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -334,6 +338,51 @@ public final class FastBuildCompilerFactoryImplTest {
     }
   }
 
+  @Test
+  public void testCompilersSharingJavacCanCompileConcurrently() throws Exception {
+    String java =
+        ""
+            + "package com.google.idea.blaze.java.fastbuild;\n"
+            + "\n"
+            + "final class Main {\n"
+            + "  private static void main(String[] args) {\n"
+            + "    System.out.println(\"success\");\n"
+            + "  }\n"
+            + "}\n";
+    // both use the same pooled javac
+    FastBuildCompiler first = getCompiler();
+    FastBuildCompiler second = getCompiler();
+    StringWriter firstOutput = new StringWriter();
+    StringWriter secondOutput = new StringWriter();
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> firstCompile =
+          executor.submit(
+              () -> {
+                first.compile(
+                    createBlazeContext(firstOutput),
+                    createCompileInstructions(java, firstOutput).build());
+                return null;
+              });
+      Future<?> secondCompile =
+          executor.submit(
+              () -> {
+                second.compile(
+                    createBlazeContext(secondOutput),
+                    createCompileInstructions(java, secondOutput).build());
+                return null;
+              });
+      firstCompile.get();
+      secondCompile.get();
+    } catch (ExecutionException e) {
+      throw new AssertionError(
+          "Compilation failed:\n" + firstOutput + "\n" + secondOutput, e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private void compile(String source, Writer javacOutput, File... classpath)
       throws IOException, FastBuildException {
     getCompiler()
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.fastbuild;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.sync.workspace.MockArtifactLocationDecoder;
+import com.google.idea.blaze.java.fastbuild.FastBuildBlazeData.JavaInfo;
+import java.io.File;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FastBuildSourceIndex}. */
+@RunWith(JUnit4.class)
+public final class FastBuildSourceIndexTest {
+
+  private static final Label TEST = Label.create("//java/com/google/foo:test");
+  private static final Label LIBRARY = Label.create("//java/com/google/foo:library");
+  private static final Label UNRELATED = Label.create("//java/com/google/bar:bar");
+  private static final Label GENRULE = Label.create("//java/com/google/baz:genrule");
+  private static final Label BEHIND_GENRULE = Label.create("//java/com/google/baz:baz");
+
+  private final Map<Label, FastBuildBlazeData> blazeData =
+      ImmutableMap.of(
+          TEST,
+          javaTarget(TEST, ImmutableSet.of(LIBRARY), "java/com/google/foo/FooTest.java"),
+          LIBRARY,
+          javaTarget(
+              LIBRARY,
+              ImmutableSet.of(),
+              "java/com/google/foo/Foo.java",
+              "java/com/google/foo/Bar.java",
+              "java/com/google/foo/README.md"),
+          UNRELATED,
+          javaTarget(UNRELATED, ImmutableSet.of(), "java/com/google/bar/Bar.java"));
+
+  @Test
+  public void testMapsSourcesInTransitiveClosureToTargets() {
+    FastBuildSourceIndex index =
+        FastBuildSourceIndex.create(new MockArtifactLocationDecoder(), blazeData, TEST);
+
+    assertThat(index.getOwningTargets(new File("java/com/google/foo/FooTest.java")))
+        .containsExactly(TEST);
+    assertThat(index.getOwningTargets(new File("java/com/google/foo/Foo.java")))
+        .containsExactly(LIBRARY);
+    assertThat(index.getOwningTargets(new File("java/com/google/foo/README.md"))).isEmpty();
+    assertThat(index.getOwningTargets(new File("java/com/google/bar/Bar.java"))).isEmpty();
+    assertThat(index.sourceCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testSourceSharedByTargetsIsOwnedByAll() {
+    Label otherLibrary = Label.create("//java/com/google/foo:other_library");
+    Map<Label, FastBuildBlazeData> blazeData =
+        ImmutableMap.of(
+            TEST,
+            javaTarget(
+                TEST, ImmutableSet.of(LIBRARY, otherLibrary), "java/com/google/foo/FooTest.java"),
+            LIBRARY,
+            javaTarget(LIBRARY, ImmutableSet.of(), "java/com/google/foo/Foo.java"),
+            otherLibrary,
+            javaTarget(otherLibrary, ImmutableSet.of(), "java/com/google/foo/Foo.java"));
+
+    FastBuildSourceIndex index =
+        FastBuildSourceIndex.create(new MockArtifactLocationDecoder(), blazeData, TEST);
+
+    assertThat(index.getOwningTargets(new File("java/com/google/foo/Foo.java")))
+        .containsExactly(LIBRARY, otherLibrary);
+    assertThat(index.sourceCount()).isEqualTo(2);
+    assertThat(index.getSourceForClass("com/google/foo/Foo", "Foo.java"))
+        .isEqualTo(new File("java/com/google/foo/Foo.java"));
+  }
+
+  @Test
+  public void testDoesNotTraverseThroughNonJavaTargets() {
+    Map<Label, FastBuildBlazeData> blazeData =
+        ImmutableMap.of(
+            TEST,
+            javaTarget(TEST, ImmutableSet.of(GENRULE), "java/com/google/foo/FooTest.java"),
+            GENRULE,
+            FastBuildBlazeData.builder()
+                .setLabel(GENRULE)
+                .setWorkspaceName("io_bazel")
+                .setDependencies(ImmutableSet.of(BEHIND_GENRULE))
+                .build(),
+            BEHIND_GENRULE,
+            javaTarget(BEHIND_GENRULE, ImmutableSet.of(), "java/com/google/baz/Baz.java"));
+
+    FastBuildSourceIndex index =
+        FastBuildSourceIndex.create(new MockArtifactLocationDecoder(), blazeData, TEST);
+
+    assertThat(index.getOwningTargets(new File("java/com/google/baz/Baz.java"))).isEmpty();
+    assertThat(index.getJavaInfo(BEHIND_GENRULE)).isNull();
+    assertThat(index.sourceCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFindsSourceForClass() {
+    FastBuildSourceIndex index =
+        FastBuildSourceIndex.create(new MockArtifactLocationDecoder(), blazeData, TEST);
+
+    assertThat(index.getSourceForClass("com/google/foo/Bar$Inner", "Bar.java"))
+        .isEqualTo(new File("java/com/google/foo/Bar.java"));
+    assertThat(index.getSourceForClass("com/google/bar/Bar", "Bar.java")).isNull();
+    assertThat(index.mayContainClass("com/google/foo/Foo$1")).isTrue();
+    assertThat(index.mayContainClass("com/google/common/collect/ImmutableList")).isFalse();
+  }
+
+  private static FastBuildBlazeData javaTarget(
+      Label label, ImmutableSet<Label> dependencies, String... sources) {
+    ImmutableList.Builder<ArtifactLocation> sourceArtifacts = ImmutableList.builder();
+    for (String source : sources) {
+      sourceArtifacts.add(ArtifactLocation.builder().setRelativePath(source).build());
+    }
+    return FastBuildBlazeData.builder()
+        .setLabel(label)
+        .setWorkspaceName("io_bazel")
+        .setDependencies(dependencies)
+        .setJavaInfo(JavaInfo.builder().setSources(sourceArtifacts.build()).build())
+        .build();
+  }
+}
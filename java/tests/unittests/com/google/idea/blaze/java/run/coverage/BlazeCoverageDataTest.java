@@ -19,15 +19,19 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.idea.blaze.java.run.coverage.BlazeCoverageData.FileData;
-import gnu.trove.TIntIntHashMap;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.function.Function;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -35,6 +39,8 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class BlazeCoverageDataTest {
 
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void testParseSingleFile() throws IOException {
     BlazeCoverageData data =
@@ -81,10 +87,75 @@ public class BlazeCoverageDataTest {
     assertThat(data.perFileData.keySet()).containsExactly("path/to/another/file.txt");
   }
 
-  private static ImmutableMap<Integer, Integer> toMap(TIntIntHashMap troveMap) {
-    return Arrays.stream(troveMap.keys())
-        .boxed()
-        .collect(ImmutableMap.toImmutableMap(Function.identity(), troveMap::get));
+  @Test
+  public void testRecordsForSameFileAreMerged() throws IOException {
+    BlazeCoverageData data =
+        BlazeCoverageData.parse(
+            inputStream(
+                "SF:path/to/file.txt",
+                "DA:1,1",
+                "DA:2,0",
+                "end_of_record",
+                "SF:path/to/file.txt",
+                "DA:2,3",
+                "DA:7,0",
+                "end_of_record"));
+    assertThat(toMap(data.perFileData.get("path/to/file.txt").lineHits))
+        .containsExactly(1, 1, 2, 3, 7, 0);
+  }
+
+  @Test
+  public void testChecksumsAndCarriageReturnsIgnored() throws IOException {
+    BlazeCoverageData data =
+        BlazeCoverageData.parse(
+            inputStream(
+                "SF:path/to/file.txt\r",
+                "DA:4,2,PWIEB7KbmoNg1cUGvTbtYQ\r",
+                "DA:5,0\r",
+                "DA:x,0",
+                "end_of_record\r"));
+    FileData fileData = data.perFileData.get("path/to/file.txt");
+    assertThat(toMap(fileData.lineHits)).containsExactly(4, 2, 5, 0);
+    assertThat(fileData.maxLineNumber()).isEqualTo(5);
+  }
+
+  @Test
+  public void testParallelParseMatchesSequentialParse() throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int file = 0; file < 50; file++) {
+      // every file appears in two records, as if covered by two test targets
+      for (int shard = 0; shard < 2; shard++) {
+        lines.add("SF:path/to/file" + file + ".txt");
+        for (int line = 1; line <= 20; line++) {
+          lines.add("DA:" + (line * (shard + 1)) + "," + (file + line));
+        }
+        lines.add("end_of_record");
+      }
+    }
+    File tracefile = temporaryFolder.newFile("coverage.dat");
+    Files.write(tracefile.toPath(), lines, StandardCharsets.UTF_8);
+
+    BlazeCoverageData sequential =
+        BlazeCoverageData.parse(inputStream(lines.toArray(new String[0])));
+    BlazeCoverageData parallel =
+        BlazeCoverageData.parse(
+            tracefile, MoreExecutors.newDirectExecutorService(), /* chunks= */ 7);
+
+    assertThat(parallel.perFileData.keySet()).isEqualTo(sequential.perFileData.keySet());
+    for (String source : sequential.perFileData.keySet()) {
+      assertThat(parallel.perFileData.get(source).lineHits)
+          .isEqualTo(sequential.perFileData.get(source).lineHits);
+    }
+  }
+
+  private static ImmutableMap<Integer, Integer> toMap(int[] lineHits) {
+    ImmutableMap.Builder<Integer, Integer> map = ImmutableMap.builder();
+    for (int line = 0; line < lineHits.length; line++) {
+      if (lineHits[line] != FileData.NO_DATA) {
+        map.put(line, lineHits[line]);
+      }
+    }
+    return map.build();
   }
 
   private static InputStream inputStream(String... lines) {
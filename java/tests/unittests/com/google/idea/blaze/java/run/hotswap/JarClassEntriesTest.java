@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.run.hotswap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link JarClassEntries}. */
+@RunWith(JUnit4.class)
+public final class JarClassEntriesTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReadsOnlyClassEntries() throws IOException {
+    File jar =
+        writeJar(
+            "lib.jar",
+            ImmutableMap.of(
+                "com/google/Foo.class", "foo",
+                "com/google/Bar.class", "bar",
+                "META-INF/MANIFEST.MF", "manifest",
+                "com/google/resource.txt", "text"));
+
+    JarClassEntries entries = JarClassEntries.read(jar);
+
+    assertThat(entries.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testDiffFindsModifiedAndAddedClasses() throws IOException {
+    JarClassEntries oldEntries =
+        JarClassEntries.read(
+            writeJar(
+                "old.jar",
+                ImmutableMap.of(
+                    "com/google/A.class", "a",
+                    "com/google/B.class", "b",
+                    "com/google/C.class", "c")));
+    JarClassEntries newEntries =
+        JarClassEntries.read(
+            writeJar(
+                "new.jar",
+                ImmutableMap.of(
+                    "com/google/A.class", "a",
+                    "com/google/B.class", "modified b",
+                    "com/google/D.class", "d")));
+
+    assertThat(JarClassEntries.diff(oldEntries, newEntries))
+        .containsExactly("com/google/B.class", "com/google/D.class");
+    assertThat(JarClassEntries.diff(newEntries, newEntries)).isEmpty();
+  }
+
+  private File writeJar(String name, Map<String, String> contents) throws IOException {
+    File jar = folder.newFile(name);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (Map.Entry<String, String> entry : contents.entrySet()) {
+        out.putNextEntry(new ZipEntry(entry.getKey()));
+        out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
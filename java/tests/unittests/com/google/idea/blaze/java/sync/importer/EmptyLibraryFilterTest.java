@@ -19,12 +19,19 @@ package com.google.idea.blaze.java.sync.importer;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.command.buildresult.BlazeArtifact;
 import com.google.idea.blaze.base.command.buildresult.SourceArtifact;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.LibraryArtifact;
 import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.blaze.java.sync.model.BlazeJarLibrary;
 import com.google.idea.common.experiments.ExperimentService;
 import com.google.idea.common.experiments.MockExperimentService;
 import com.intellij.testFramework.rules.TempDirectory;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import org.junit.Rule;
 import org.junit.Test;
@@ -43,6 +50,7 @@ public class EmptyLibraryFilterTest extends BlazeTestCase {
     MockExperimentService experimentService = new MockExperimentService();
     applicationServices.register(ExperimentService.class, experimentService);
     experimentService.setFeatureRolloutExperiment(EmptyLibraryFilter.filterExperiment, 100);
+    EmptyLibraryFilter.clearCache();
   }
 
   @Test
@@ -97,4 +105,98 @@ public class EmptyLibraryFilterTest extends BlazeTestCase {
             .build();
     assertThat(EmptyLibraryFilter.isEmpty(new SourceArtifact(jar))).isFalse();
   }
+
+  @Test
+  public void isEmpty_streamedArtifact() throws IOException {
+    File emptyJar =
+        JarBuilder.newEmptyJar(tempDirectory)
+            .addDirectory("dir1/")
+            .addDirectory("dir2/")
+            .addManifest()
+            .build();
+    File nonEmptyJar =
+        JarBuilder.newEmptyJar(tempDirectory)
+            .addManifest()
+            .addFile("com/google/example/A.java", "package com.google.example; class A {}")
+            .build();
+    assertThat(EmptyLibraryFilter.isEmpty(new StreamedArtifact(emptyJar))).isTrue();
+    assertThat(EmptyLibraryFilter.isEmpty(new StreamedArtifact(nonEmptyJar))).isFalse();
+  }
+
+  @Test
+  public void test_reusesVerdictUntilJarChanges() throws IOException {
+    File jar =
+        JarBuilder.newEmptyJar(tempDirectory)
+            .addManifest()
+            .addFile("com/google/example/A.java", "package com.google.example; class A {}")
+            .build();
+    BlazeJarLibrary library = libraryFor(jar);
+
+    EmptyLibraryFilter firstSync = new EmptyLibraryFilter(new SourceDecoder(jar));
+    assertThat(firstSync.test(library)).isTrue();
+    assertThat(firstSync.getStats().inspectedJars.get()).isEqualTo(1);
+    assertThat(firstSync.getStats().bytesRead.get()).isEqualTo(jar.length());
+
+    EmptyLibraryFilter secondSync = new EmptyLibraryFilter(new SourceDecoder(jar));
+    assertThat(secondSync.test(library)).isTrue();
+    assertThat(secondSync.getStats().skippedJars.get()).isEqualTo(1);
+    assertThat(secondSync.getStats().inspectedJars.get()).isEqualTo(0);
+
+    assertThat(jar.setLastModified(jar.lastModified() + 10_000)).isTrue();
+    EmptyLibraryFilter thirdSync = new EmptyLibraryFilter(new SourceDecoder(jar));
+    assertThat(thirdSync.test(library)).isTrue();
+    assertThat(thirdSync.getStats().skippedJars.get()).isEqualTo(0);
+    assertThat(thirdSync.getStats().inspectedJars.get()).isEqualTo(1);
+  }
+
+  private static BlazeJarLibrary libraryFor(File jar) {
+    ArtifactLocation location =
+        ArtifactLocation.builder().setRelativePath(jar.getName()).setIsSource(true).build();
+    return new BlazeJarLibrary(
+        LibraryArtifact.builder().setInterfaceJar(location).setClassJar(location).build(),
+        /* targetKey= */ null);
+  }
+
+  /** Resolves every artifact to the same local file. */
+  private static class SourceDecoder implements ArtifactLocationDecoder {
+    private final File file;
+
+    SourceDecoder(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public File decode(ArtifactLocation artifactLocation) {
+      return file;
+    }
+
+    @Override
+    public File resolveSource(ArtifactLocation artifact) {
+      return file;
+    }
+
+    @Override
+    public BlazeArtifact resolveOutput(ArtifactLocation artifact) {
+      return new SourceArtifact(file);
+    }
+  }
+
+  /** An artifact which, like a remote output, can only be read as a stream. */
+  private static class StreamedArtifact implements BlazeArtifact {
+    private final File file;
+
+    StreamedArtifact(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public long getLength() {
+      return file.length();
+    }
+
+    @Override
+    public BufferedInputStream getInputStream() throws IOException {
+      return new BufferedInputStream(new FileInputStream(file));
+    }
+  }
 }
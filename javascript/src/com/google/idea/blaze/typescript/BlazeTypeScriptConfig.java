@@ -83,6 +83,8 @@ class BlazeTypeScriptConfig implements TypeScriptConfig {
   private final Project project;
   private final Label label;
   private final VirtualFile configFile;
+  private final File tsconfigEditor;
+  private final Map<File, File> resolvedSymlinks;
   private final String workspaceRelativePathPrefix;
   private final String workspaceRelativePathReplacement;
 
@@ -118,50 +120,20 @@ class BlazeTypeScriptConfig implements TypeScriptConfig {
   private final List<String> filesStrings = new ArrayList<>();
   private final NotNullLazyValue<List<VirtualFile>> files;
 
+  /**
+   * Creates a config from the given tsconfig contents. Everything derived from the VFS is resolved
+   * lazily by the new config, so a config should not be kept across updates.
+   *
+   * @param resolvedSymlinks a cache of resolved symlinks, which may be shared between configs
+   */
   @Nullable
-  static TypeScriptConfig getInstance(Project project, Label label, File tsconfig) {
-    WorkspaceRoot workspaceRoot = WorkspaceRoot.fromProject(project);
-
+  static BlazeTypeScriptConfig getInstance(
+      Project project, Contents contents, Map<File, File> resolvedSymlinks) {
     // as seen by the project
-    VirtualFile configFile = VfsUtils.resolveVirtualFile(tsconfig, /* refreshIfNeeded= */ false);
-    if (configFile == null) {
-      return null;
-    }
-
-    File tsconfigEditor;
-    try {
-      JsonObject object =
-          new JsonParser()
-              .parse(
-                  new InputStreamReader(
-                      InputStreamProvider.getInstance().forFile(tsconfig), Charsets.UTF_8))
-              .getAsJsonObject();
-      tsconfigEditor =
-          FileOperationProvider.getInstance()
-              .getCanonicalFile(
-                  new File(tsconfig.getParentFile(), object.get("extends").getAsString()));
-    } catch (IOException e) {
-      logger.warn(e);
-      return null;
-    }
-
-    // When a path in the tsconfig_editor refers to a file in the workspace, they'll have this
-    // prefix. This assumes that blaze-bin is just a subdirectory in the workspace root.
-    String workspacePrefix = buildWorkspacePrefix(label.blazePackage().relativePath());
-
-    // We must use this prefix instead after resolving the location of the tsconfig_editor. In this
-    // case blaze-bin is a completely unrelated directory to the workspace root. This prefix will ..
-    // all the way to the system root directory, then follow the absolute path to the workspace.
-    String workspaceRelativePath =
-        tsconfigEditor
-            .getParentFile()
-            .toPath()
-            .relativize(workspaceRoot.directory().toPath())
-            .toString();
-
-    return FileOperationProvider.getInstance().exists(tsconfigEditor)
-        ? new BlazeTypeScriptConfig(
-            project, label, configFile, tsconfigEditor, workspacePrefix, workspaceRelativePath)
+    VirtualFile configFile =
+        VfsUtils.resolveVirtualFile(contents.tsconfig, /* refreshIfNeeded= */ false);
+    return configFile != null
+        ? new BlazeTypeScriptConfig(project, configFile, contents, resolvedSymlinks)
         : null;
   }
 
@@ -195,16 +167,17 @@ class BlazeTypeScriptConfig implements TypeScriptConfig {
 
   private BlazeTypeScriptConfig(
       Project project,
-      Label label,
       VirtualFile configFile,
-      File tsconfigEditor,
-      String workspaceRelativePathPrefix,
-      String workspaceRelativePathReplacement) {
+      Contents contents,
+      Map<File, File> resolvedSymlinks) {
     this.project = project;
-    this.label = label;
+    this.label = contents.label;
     this.configFile = configFile;
-    this.workspaceRelativePathPrefix = workspaceRelativePathPrefix;
-    this.workspaceRelativePathReplacement = workspaceRelativePathReplacement;
+    File tsconfigEditor = contents.tsconfigEditor;
+    this.tsconfigEditor = tsconfigEditor;
+    this.resolvedSymlinks = resolvedSymlinks;
+    this.workspaceRelativePathPrefix = contents.workspaceRelativePathPrefix;
+    this.workspaceRelativePathReplacement = contents.workspaceRelativePathReplacement;
 
     this.baseUrlFile =
         NullableLazyValue.createValue(
@@ -248,16 +221,7 @@ class BlazeTypeScriptConfig implements TypeScriptConfig {
     this.importStructure =
         NotNullLazyValue.createValue(() -> new TypeScriptFileImportsImpl(project, this));
 
-    try {
-      parseJson(
-          new JsonParser()
-              .parse(
-                  new InputStreamReader(
-                      InputStreamProvider.getInstance().forFile(tsconfigEditor), Charsets.UTF_8))
-              .getAsJsonObject());
-    } catch (IOException e) {
-      logger.warn(e);
-    }
+    parseJson(contents.tsconfigEditorJson);
   }
 
   private void parseJson(JsonObject json) {
@@ -470,23 +434,31 @@ class BlazeTypeScriptConfig implements TypeScriptConfig {
       return ImmutableList.of();
     }
     File baseFile = VfsUtil.virtualToIoFile(base);
-    FileOperationProvider fOps = FileOperationProvider.getInstance();
-    return filesStrings.stream()
+    // file lists can have tens of thousands of entries, many of them shared with other configs
+    return filesStrings.parallelStream()
         .map(f -> new File(baseFile, f))
-        .map(
-            f -> {
-              try {
-                return fOps.isSymbolicLink(f) ? fOps.readSymbolicLink(f) : f;
-              } catch (IOException e) {
-                logger.warn(e);
-                return f;
-              }
-            })
+        .map(this::resolveSymlink)
         .map(f -> VfsUtils.resolveVirtualFile(f, /* refreshIfNeeded= */ false))
         .filter(Objects::nonNull)
         .collect(ImmutableList.toImmutableList());
   }
 
+  private File resolveSymlink(File file) {
+    File resolved = resolvedSymlinks.get(file);
+    if (resolved != null) {
+      return resolved;
+    }
+    FileOperationProvider fOps = FileOperationProvider.getInstance();
+    try {
+      resolved = fOps.isSymbolicLink(file) ? fOps.readSymbolicLink(file) : file;
+    } catch (IOException e) {
+      logger.warn(e);
+      return file;
+    }
+    resolvedSymlinks.put(file, resolved);
+    return resolved;
+  }
+
   @Override
   public boolean isDirectoryBased() {
     return false;
@@ -779,4 +751,127 @@ class BlazeTypeScriptConfig implements TypeScriptConfig {
       return false;
     }
   }
+
+  /**
+   * The parsed tsconfig file and the tsconfig_editor file it extends. Unlike {@link
+   * BlazeTypeScriptConfig}, this only depends on the contents of those two files, so it can be kept
+   * until either of them is modified.
+   */
+  static final class Contents {
+    private final Label label;
+    private final File tsconfig;
+    private final File tsconfigEditor;
+    private final long tsconfigModifiedTime;
+    private final long tsconfigEditorModifiedTime;
+    private final String workspaceRelativePathPrefix;
+    private final String workspaceRelativePathReplacement;
+    private final JsonObject tsconfigEditorJson;
+
+    private Contents(
+        Label label,
+        File tsconfig,
+        File tsconfigEditor,
+        long tsconfigModifiedTime,
+        long tsconfigEditorModifiedTime,
+        String workspaceRelativePathPrefix,
+        String workspaceRelativePathReplacement,
+        JsonObject tsconfigEditorJson) {
+      this.label = label;
+      this.tsconfig = tsconfig;
+      this.tsconfigEditor = tsconfigEditor;
+      this.tsconfigModifiedTime = tsconfigModifiedTime;
+      this.tsconfigEditorModifiedTime = tsconfigEditorModifiedTime;
+      this.workspaceRelativePathPrefix = workspaceRelativePathPrefix;
+      this.workspaceRelativePathReplacement = workspaceRelativePathReplacement;
+      this.tsconfigEditorJson = tsconfigEditorJson;
+    }
+
+    /** Reads and parses the given tsconfig file and the tsconfig_editor file it extends. */
+    @Nullable
+    static Contents read(Project project, Label label, File tsconfig) {
+      WorkspaceRoot workspaceRoot = WorkspaceRoot.fromProject(project);
+      FileOperationProvider fOps = FileOperationProvider.getInstance();
+      // read before parsing, so a concurrent modification is picked up by the next update
+      long tsconfigModifiedTime = fOps.getFileModifiedTime(tsconfig);
+      File tsconfigEditor;
+      try {
+        JsonObject object = parse(tsconfig);
+        tsconfigEditor =
+            fOps.getCanonicalFile(
+                new File(tsconfig.getParentFile(), object.get("extends").getAsString()));
+      } catch (IOException e) {
+        logger.warn(e);
+        return null;
+      }
+      if (!fOps.exists(tsconfigEditor)) {
+        return null;
+      }
+      long tsconfigEditorModifiedTime = fOps.getFileModifiedTime(tsconfigEditor);
+      JsonObject tsconfigEditorJson;
+      try {
+        tsconfigEditorJson = parse(tsconfigEditor);
+      } catch (IOException e) {
+        logger.warn(e);
+        tsconfigEditorJson = new JsonObject();
+      }
+
+      // When a path in the tsconfig_editor refers to a file in the workspace, they'll have this
+      // prefix. This assumes that blaze-bin is just a subdirectory in the workspace root.
+      String workspacePrefix = buildWorkspacePrefix(label.blazePackage().relativePath());
+
+      // We must use this prefix instead after resolving the location of the tsconfig_editor. In
+      // this case blaze-bin is a completely unrelated directory to the workspace root. This prefix
+      // will .. all the way to the system root directory, then follow the absolute path to the
+      // workspace.
+      String workspaceRelativePath =
+          tsconfigEditor
+              .getParentFile()
+              .toPath()
+              .relativize(workspaceRoot.directory().toPath())
+              .toString();
+
+      return new Contents(
+          label,
+          tsconfig,
+          tsconfigEditor,
+          tsconfigModifiedTime,
+          tsconfigEditorModifiedTime,
+          workspacePrefix,
+          workspaceRelativePath,
+          tsconfigEditorJson);
+    }
+
+    private static JsonObject parse(File file) throws IOException {
+      return new JsonParser()
+          .parse(
+              new InputStreamReader(
+                  InputStreamProvider.getInstance().forFile(file), Charsets.UTF_8))
+          .getAsJsonObject();
+    }
+
+    Label getLabel() {
+      return label;
+    }
+
+    /**
+     * Returns true if neither the tsconfig file nor the tsconfig_editor file it extends have been
+     * modified since they were read.
+     */
+    boolean isUpToDate(File tsconfig) {
+      FileOperationProvider fOps = FileOperationProvider.getInstance();
+      return this.tsconfig.equals(tsconfig)
+          && tsconfigModifiedTime == fOps.getFileModifiedTime(tsconfig)
+          && tsconfigEditorModifiedTime == fOps.getFileModifiedTime(tsconfigEditor);
+    }
+
+    /** Returns true if the other contents were read from the same files, with the same content. */
+    boolean hasSameContent(@Nullable Contents other) {
+      return other != null
+          && label.equals(other.label)
+          && tsconfig.equals(other.tsconfig)
+          && tsconfigEditor.equals(other.tsconfigEditor)
+          && workspaceRelativePathReplacement.equals(other.workspaceRelativePathReplacement)
+          && tsconfigEditorJson.equals(other.tsconfigEditorJson);
+    }
+  }
 }
@@ -33,16 +33,14 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.ModificationTracker;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
@@ -55,12 +53,14 @@ class BlazeTypeScriptConfigServiceImpl implements TypeScriptConfigService {
   private final List<TypeScriptConfigsChangedListener> listeners;
 
   private volatile ImmutableMap<VirtualFile, TypeScriptConfig> configs;
-  private final AtomicInteger configsHash = new AtomicInteger(Objects.hash());
+  // the tsconfig contents from the last update, kept so unmodified files aren't parsed again
+  private volatile ImmutableMap<Label, BlazeTypeScriptConfig.Contents> contents;
 
   BlazeTypeScriptConfigServiceImpl(Project project) {
     this.project = project;
     this.listeners = new ArrayList<>();
     this.configs = ImmutableMap.of();
+    this.contents = ImmutableMap.of();
   }
 
   /**
@@ -75,39 +75,62 @@ class BlazeTypeScriptConfigServiceImpl implements TypeScriptConfigService {
       logger.error("Updating tsconfig files on EDT or with a read lock.");
       return;
     }
-    configs =
+    ImmutableMap<Label, BlazeTypeScriptConfig.Contents> oldContents = contents;
+    AtomicInteger reused = new AtomicInteger();
+    ImmutableMap<Label, BlazeTypeScriptConfig.Contents> newContents =
         tsconfigs.entrySet().parallelStream()
             .map(
-                entry ->
-                    BlazeTypeScriptConfig.getInstance(project, entry.getKey(), entry.getValue()))
+                entry -> {
+                  BlazeTypeScriptConfig.Contents old = oldContents.get(entry.getKey());
+                  if (old != null && old.isUpToDate(entry.getValue())) {
+                    reused.incrementAndGet();
+                    return old;
+                  }
+                  return BlazeTypeScriptConfig.Contents.read(
+                      project, entry.getKey(), entry.getValue());
+                })
+            .filter(Objects::nonNull)
+            .collect(
+                ImmutableMap.toImmutableMap(
+                    BlazeTypeScriptConfig.Contents::getLabel, Functions.identity()));
+    // The configs themselves are always rebuilt, as their file lists, root dirs, etc. are resolved
+    // against the VFS and may have changed even if the tsconfig files haven't.
+    Map<File, File> resolvedSymlinks = new ConcurrentHashMap<>();
+    ImmutableMap<VirtualFile, TypeScriptConfig> oldConfigs = configs;
+    contents = newContents;
+    configs =
+        newContents.values().stream()
+            .map(c -> BlazeTypeScriptConfig.getInstance(project, c, resolvedSymlinks))
             .filter(Objects::nonNull)
             .collect(
                 ImmutableMap.toImmutableMap(TypeScriptConfig::getConfigFile, Functions.identity()));
+    logger.info(
+        String.format("Updated %d tsconfig files, %d unmodified", configs.size(), reused.get()));
     for (TypeScriptConfigsChangedListener listener : listeners) {
       listener.afterUpdate(configs.keySet());
     }
-    restartServiceIfConfigsChanged();
+    if (!oldConfigs.keySet().equals(configs.keySet())
+        || contentsChanged(oldContents, newContents)) {
+      restartService();
+    }
+  }
+
+  /** Returns true if any tsconfig was added, removed or parsed with different content. */
+  private static boolean contentsChanged(
+      ImmutableMap<Label, BlazeTypeScriptConfig.Contents> oldContents,
+      ImmutableMap<Label, BlazeTypeScriptConfig.Contents> newContents) {
+    return !oldContents.keySet().equals(newContents.keySet())
+        || newContents.entrySet().stream()
+            .anyMatch(e -> !e.getValue().hasSameContent(oldContents.get(e.getKey())));
   }
 
-  private void restartServiceIfConfigsChanged() {
+  private void restartService() {
     if (!restartTypeScriptService.getValue()) {
       return;
     }
-    int pathHash = Arrays.hashCode(configs.keySet().stream().map(VirtualFile::getPath).toArray());
-    long contentTimestamp =
-        configs.values().stream()
-            .map(TypeScriptConfig::getDependencies)
-            .flatMap(Collection::stream)
-            .map(VfsUtil::virtualToIoFile)
-            .map(File::lastModified)
-            .max(Comparator.naturalOrder())
-            .orElse(0L);
-    int newConfigsHash = Objects.hash(pathHash, contentTimestamp);
-    if (configsHash.getAndSet(newConfigsHash) != newConfigsHash) {
-      TransactionGuard.getInstance()
-          .submitTransactionLater(
-              project, () -> TypeScriptCompilerService.restartServices(project, false));
-    }
+    TransactionGuard.getInstance()
+        .submitTransactionLater(
+            project, () -> TypeScriptCompilerService.restartServices(project, false));
   }
 
   @Override
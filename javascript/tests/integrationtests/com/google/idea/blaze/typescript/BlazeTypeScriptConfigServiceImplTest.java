@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.typescript;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.BlazeIntegrationTestCase;
+import com.google.idea.blaze.base.io.VfsUtils;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.intellij.lang.typescript.tsconfig.TypeScriptConfig;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Integration tests for {@link BlazeTypeScriptConfigServiceImpl}. */
+@RunWith(JUnit4.class)
+public class BlazeTypeScriptConfigServiceImplTest extends BlazeIntegrationTestCase {
+  private static final ImmutableMap<Label, File> TSCONFIGS =
+      ImmutableMap.of(
+          Label.create("//project/foo:tsconfig"),
+          new File("/src/workspace/project/foo/tsconfig.json"));
+
+  private BlazeTypeScriptConfigServiceImpl service;
+
+  @Before
+  public final void before() {
+    fileSystem.createFile(
+        "/src/workspace/project/foo/tsconfig.json",
+        "{\"extends\": \"../../blaze-bin/project/foo/tsconfig_editor.json\"}");
+    fileSystem.createFile(
+        "/src/workspace/blaze-bin/project/foo/tsconfig_editor.json",
+        "{",
+        "    \"compilerOptions\": {",
+        "        \"baseUrl\": \".\",",
+        "        \"rootDirs\": [\"../../../project/foo\", \"../../../project/generated\"]",
+        "    },",
+        "    \"files\": [",
+        "        \"../../../project/foo/foo.ts\",",
+        "        \"../../../project/foo/generated.ts\"",
+        "    ]",
+        "}");
+    fileSystem.createFile("/src/workspace/project/foo/foo.ts");
+
+    service = new BlazeTypeScriptConfigServiceImpl(getProject());
+    service.update(TSCONFIGS);
+  }
+
+  @Override
+  protected boolean runTestsOnEdt() {
+    return false;
+  }
+
+  @Test
+  public void testFileListIsResolvedAgainAfterUnmodifiedUpdate() {
+    TypeScriptConfig config = getOnlyConfig();
+    assertThat(config.getFileList()).containsExactly(vf("/src/workspace/project/foo/foo.ts"));
+
+    // e.g. generated by a build, without touching the tsconfig files
+    fileSystem.createFile("/src/workspace/project/foo/generated.ts");
+    service.update(TSCONFIGS);
+
+    TypeScriptConfig updatedConfig = getOnlyConfig();
+    assertThat(updatedConfig).isNotSameAs(config);
+    assertThat(updatedConfig.getFileList())
+        .containsExactly(
+            vf("/src/workspace/project/foo/foo.ts"),
+            vf("/src/workspace/project/foo/generated.ts"));
+    assertThat(updatedConfig.isFromFileList(vf("/src/workspace/project/foo/generated.ts")))
+        .isTrue();
+  }
+
+  @Test
+  public void testRootDirsAreResolvedAgainAfterUnmodifiedUpdate() {
+    assertThat(ReadAction.compute(getOnlyConfig()::getRootDirsFiles))
+        .containsExactly(vf("/src/workspace/project/foo"));
+
+    fileSystem.createDirectory("/src/workspace/project/generated");
+    service.update(TSCONFIGS);
+
+    assertThat(ReadAction.compute(getOnlyConfig()::getRootDirsFiles))
+        .containsExactly(
+            vf("/src/workspace/project/foo"), vf("/src/workspace/project/generated"));
+  }
+
+  @Test
+  public void testConfigIsRebuiltFromUnmodifiedContents() {
+    TypeScriptConfig config = getOnlyConfig();
+
+    service.update(TSCONFIGS);
+
+    TypeScriptConfig updatedConfig = getOnlyConfig();
+    assertThat(updatedConfig.getConfigFile()).isEqualTo(config.getConfigFile());
+    assertThat(updatedConfig.getBaseUrl()).isEqualTo(vf("/src/workspace/blaze-bin/project/foo"));
+    assertThat(updatedConfig.getDependencies())
+        .containsExactly(vf("/src/workspace/blaze-bin/project/foo/tsconfig_editor.json"));
+  }
+
+  @Test
+  public void testRemovedTsconfigIsDropped() {
+    service.update(ImmutableMap.of());
+
+    assertThat(service.getConfigs()).isEmpty();
+    assertThat(service.hasConfigs()).isFalse();
+  }
+
+  private TypeScriptConfig getOnlyConfig() {
+    assertThat(service.getConfigs()).hasSize(1);
+    return service.getConfigs().get(0);
+  }
+
+  private static VirtualFile vf(String path) {
+    VirtualFile resolved = VfsUtils.resolveVirtualFile(new File(path), false);
+    assertThat(resolved).isNotNull();
+    return resolved;
+  }
+}
@@ -26,6 +26,7 @@ import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.BlazeLibrary;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.BlazeVersionData;
+import com.google.idea.blaze.base.model.primitives.Kind;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
@@ -36,9 +37,12 @@ import com.google.idea.blaze.base.sync.BlazeSyncPlugin;
 import com.google.idea.blaze.base.sync.SyncListener;
 import com.google.idea.blaze.base.sync.SyncMode;
 import com.google.idea.blaze.base.sync.SyncResult;
+import com.google.idea.blaze.base.sync.TargetMapVisitor;
+import com.google.idea.blaze.base.sync.TargetMapVisitors;
 import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.google.idea.blaze.base.sync.libraries.LibrarySource;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
 import com.google.idea.blaze.java.sync.JavaLanguageLevelHelper;
 import com.google.idea.blaze.java.sync.model.BlazeJarLibrary;
 import com.intellij.facet.FacetManager;
@@ -53,8 +57,9 @@ import com.intellij.pom.java.LanguageLevel;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.jetbrains.kotlin.android.synthetic.AndroidCommandLineProcessor;
@@ -183,11 +188,36 @@ public class BlazeKotlinSyncPlugin implements BlazeSyncPlugin {
 
   @Nullable
   private static KotlinToolchainIdeInfo findToolchain(TargetMap targets) {
-    return targets.targets().stream()
-        .map(TargetIdeInfo::getKotlinToolchainIdeInfo)
-        .filter(Objects::nonNull)
-        .findFirst()
-        .orElse(null);
+    return TargetMapVisitors.getResult(targets, ToolchainVisitor.INSTANCE).orElse(null);
+  }
+
+  /** Finds the kotlin toolchain, as part of the shared target map pass during sync. */
+  static class ToolchainVisitor implements TargetMapVisitor<Optional<KotlinToolchainIdeInfo>> {
+    private static final ToolchainVisitor INSTANCE = new ToolchainVisitor();
+
+    @Override
+    public String getName() {
+      return "KotlinToolchain";
+    }
+
+    @Override
+    public boolean isActive(WorkspaceLanguageSettings languageSettings) {
+      return languageSettings.isLanguageActive(LanguageClass.KOTLIN);
+    }
+
+    @Override
+    public boolean visitsKind(Kind kind) {
+      // the toolchain info isn't tied to a particular rule kind
+      return true;
+    }
+
+    @Override
+    public Collector<TargetIdeInfo, ?, Optional<KotlinToolchainIdeInfo>> collector() {
+      return Collectors.reducing(
+          Optional.empty(),
+          target -> Optional.ofNullable(target.getKotlinToolchainIdeInfo()),
+          (first, second) -> first.isPresent() ? first : second);
+    }
   }
 
   @Nullable
@@ -15,17 +15,13 @@
  */
 package com.google.idea.blaze.python.resolve.provider;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.base.Stopwatch;
 import com.google.idea.blaze.base.command.buildresult.OutputArtifactResolver;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
-import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.model.BlazeProjectData;
-import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.sync.SyncCache;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
-import com.google.idea.blaze.python.resolve.BlazePyResolverUtils;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiElement;
@@ -38,9 +34,7 @@ import com.jetbrains.python.codeInsight.imports.AutoImportQuickFix;
 import com.jetbrains.python.psi.PyUtil;
 import com.jetbrains.python.psi.resolve.PyQualifiedNameResolveContext;
 import java.io.File;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -48,17 +42,14 @@ import javax.annotation.Nullable;
  * import strings are resolved to python packages and modules.
  */
 public abstract class AbstractPyImportResolverStrategy implements PyImportResolverStrategy {
+  private static final Logger logger = Logger.getInstance(AbstractPyImportResolverStrategy.class);
 
   @Nullable
   @Override
   public final PsiElement resolveFromSyncData(
       QualifiedName name, PyQualifiedNameResolveContext context) {
     PySourcesIndex index = getSourcesIndex(context.getProject());
-    if (index == null) {
-      return null;
-    }
-    PsiElementProvider resolver = index.sourceMap.get(name);
-    return resolver != null ? resolver.get(context.getPsiManager()) : null;
+    return index != null ? index.resolve(name, context.getPsiManager()) : null;
   }
 
   @Override
@@ -70,12 +61,8 @@ public abstract class AbstractPyImportResolverStrategy implements PyImportResolv
       return;
     }
     PsiManager psiManager = PsiManager.getInstance(project);
-    for (QualifiedName candidate : index.shortNames.get(name)) {
-      PsiElementProvider resolver = index.sourceMap.get(candidate);
-      if (resolver == null) {
-        continue;
-      }
-      PsiElement psi = PyUtil.turnDirIntoInit(resolver.get(psiManager));
+    for (QualifiedName candidate : index.getImportCandidates(name)) {
+      PsiElement psi = PyUtil.turnDirIntoInit(index.resolve(candidate, psiManager));
       if (psi == null) {
         continue;
       }
@@ -91,60 +78,27 @@ public abstract class AbstractPyImportResolverStrategy implements PyImportResolv
     return SyncCache.getInstance(project).get(getClass(), this::buildSourcesIndex);
   }
 
-  @SuppressWarnings("unused")
   private PySourcesIndex buildSourcesIndex(Project project, BlazeProjectData projectData) {
-    ImmutableSetMultimap.Builder<String, QualifiedName> shortNames = ImmutableSetMultimap.builder();
-    Map<QualifiedName, PsiElementProvider> map = new HashMap<>();
+    Stopwatch timer = Stopwatch.createStarted();
     ArtifactLocationDecoder decoder = projectData.getArtifactLocationDecoder();
-    for (TargetIdeInfo target : projectData.getTargetMap().targets()) {
-      for (ArtifactLocation source : getPySources(target)) {
-        QualifiedName name = toImportString(source);
-        if (name == null || name.getLastComponent() == null) {
-          continue;
-        }
-        shortNames.put(name.getLastComponent(), name);
-        PsiElementProvider psiProvider = psiProviderFromArtifact(project, decoder, source);
-        map.put(name, psiProvider);
-        if (includeParentDirectory(source)) {
-          map.put(name.removeTail(1), PsiElementProvider.getParent(psiProvider));
-        }
-      }
-    }
-    return new PySourcesIndex(shortNames.build(), ImmutableMap.copyOf(map));
-  }
-
-  private static PsiElementProvider psiProviderFromArtifact(
-      Project project, ArtifactLocationDecoder decoder, ArtifactLocation source) {
-    return (manager) -> {
-      File file = OutputArtifactResolver.resolve(project, decoder, source);
-      if (file == null) {
-        return null;
-      }
-      if (PyNames.INIT_DOT_PY.equals(file.getName())) {
-        file = file.getParentFile();
-      }
-      return BlazePyResolverUtils.resolveFile(manager, file);
-    };
-  }
-
-  private static Collection<ArtifactLocation> getPySources(TargetIdeInfo target) {
-    if (target.getPyIdeInfo() != null) {
-      return target.getPyIdeInfo().getSources();
-    }
-    if (target.getKind().getLanguageClass() == LanguageClass.PYTHON) {
-      return target.getSources();
-    }
-    return ImmutableList.of();
+    PySourcesIndex index =
+        PySourcesIndex.build(
+            projectData.getTargetMap(),
+            this::toImportString,
+            source -> OutputArtifactResolver.resolve(project, decoder, source));
+    logger.info(
+        String.format(
+            "%s: indexed %d python modules in %d ms",
+            getClass().getSimpleName(),
+            index.getModuleCount(),
+            timer.elapsed(TimeUnit.MILLISECONDS)));
+    return index;
   }
 
   /** Maps a blaze artifact to the import string used to reference it. */
   @Nullable
   abstract QualifiedName toImportString(ArtifactLocation source);
 
-  private static boolean includeParentDirectory(ArtifactLocation source) {
-    return source.getRelativePath().endsWith(".py");
-  }
-
   static QualifiedName fromRelativePath(String relativePath) {
     relativePath = StringUtil.trimEnd(relativePath, File.separator + PyNames.INIT_DOT_PY);
     relativePath = StringUtil.trimExtensions(relativePath);
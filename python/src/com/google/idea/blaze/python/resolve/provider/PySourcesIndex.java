@@ -15,19 +15,210 @@
  */
 package com.google.idea.blaze.python.resolve.provider;
 
-import com.google.common.collect.ImmutableMap;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.python.resolve.BlazePyResolverUtils;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.util.QualifiedName;
+import com.jetbrains.python.PyNames;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
-/** An index of python sources and their associated import strings. */
+/**
+ * An index of python sources and their associated import strings.
+ *
+ * <p>Import strings are stored as a trie of name components, with each module referring to its
+ * source artifact by index. Source files and psi elements are only resolved when a module is
+ * looked up.
+ */
 class PySourcesIndex {
-  final ImmutableSetMultimap<String, QualifiedName> shortNames;
-  final ImmutableMap<QualifiedName, PsiElementProvider> sourceMap;
 
-  PySourcesIndex(
-      ImmutableSetMultimap<String, QualifiedName> shortNames,
-      ImmutableMap<QualifiedName, PsiElementProvider> sourceMap) {
+  private final ImmutableList<ArtifactLocation> artifacts;
+  private final AtomicReferenceArray<File> files;
+  private final Function<ArtifactLocation, File> fileResolver;
+  private final Node root;
+  private final ImmutableSetMultimap<String, Node> shortNames;
+
+  private PySourcesIndex(
+      ImmutableList<ArtifactLocation> artifacts,
+      Function<ArtifactLocation, File> fileResolver,
+      Node root,
+      ImmutableSetMultimap<String, Node> shortNames) {
+    this.artifacts = artifacts;
+    this.files = new AtomicReferenceArray<>(artifacts.size());
+    this.fileResolver = fileResolver;
+    this.root = root;
     this.shortNames = shortNames;
-    this.sourceMap = sourceMap;
+  }
+
+  /**
+   * Builds an index of the python sources in the target map.
+   *
+   * @param importStringFunction maps a source to its import string, or null if it's not importable
+   * @param fileResolver resolves a source to a local file, only called on lookup
+   */
+  static PySourcesIndex build(
+      TargetMap targetMap,
+      Function<ArtifactLocation, QualifiedName> importStringFunction,
+      Function<ArtifactLocation, File> fileResolver) {
+    Builder builder = new Builder();
+    for (TargetIdeInfo target : targetMap.targets()) {
+      for (ArtifactLocation source : getPySources(target)) {
+        QualifiedName name = importStringFunction.apply(source);
+        if (name == null || name.getLastComponent() == null) {
+          continue;
+        }
+        builder.addModule(source, name.getComponents());
+      }
+    }
+    return new PySourcesIndex(
+        builder.artifacts.build(), fileResolver, builder.root, builder.shortNames.build());
+  }
+
+  int getModuleCount() {
+    return artifacts.size();
+  }
+
+  /** Returns the package or module with the given import string, or null if there isn't one. */
+  @Nullable
+  PsiElement resolve(QualifiedName name, PsiManager manager) {
+    Node node = find(name);
+    return node != null ? resolve(node, manager) : null;
+  }
+
+  /** Returns the import strings of all modules with the given name. */
+  ImmutableList<QualifiedName> getImportCandidates(String shortName) {
+    return shortNames.get(shortName).stream()
+        .map(Node::getQualifiedName)
+        .collect(toImmutableList());
+  }
+
+  @Nullable
+  private Node find(QualifiedName name) {
+    Node node = root;
+    for (String component : name.getComponents()) {
+      node = node.children != null ? node.children.get(component) : null;
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  @Nullable
+  private PsiElement resolve(Node node, PsiManager manager) {
+    if (node.artifact < 0) {
+      return null;
+    }
+    File file = getFile(node.artifact);
+    if (file == null) {
+      return null;
+    }
+    if (PyNames.INIT_DOT_PY.equals(file.getName())) {
+      file = file.getParentFile();
+    }
+    PsiElement psi = BlazePyResolverUtils.resolveFile(manager, file);
+    if (node.isParentDirectory) {
+      return psi != null ? psi.getParent() : null;
+    }
+    return psi;
+  }
+
+  @Nullable
+  private File getFile(int artifact) {
+    File file = files.get(artifact);
+    if (file == null) {
+      file = fileResolver.apply(artifacts.get(artifact));
+      files.set(artifact, file);
+    }
+    return file;
+  }
+
+  private static Collection<ArtifactLocation> getPySources(TargetIdeInfo target) {
+    if (target.getPyIdeInfo() != null) {
+      return target.getPyIdeInfo().getSources();
+    }
+    if (target.getKind().getLanguageClass() == LanguageClass.PYTHON) {
+      return target.getSources();
+    }
+    return ImmutableList.of();
+  }
+
+  private static boolean includeParentDirectory(ArtifactLocation source) {
+    return source.getRelativePath().endsWith(".py");
+  }
+
+  /** Accumulates the trie and artifacts of a new index. */
+  private static class Builder {
+    private final Node root = new Node(null, "");
+    private final ImmutableList.Builder<ArtifactLocation> artifacts = ImmutableList.builder();
+    private final ImmutableSetMultimap.Builder<String, Node> shortNames =
+        ImmutableSetMultimap.builder();
+    private int artifactCount;
+
+    /** Adds a module. Later modules with the same import string replace earlier ones. */
+    private void addModule(ArtifactLocation source, List<String> components) {
+      Node node = root;
+      for (String component : components) {
+        if (node.children == null) {
+          node.children = new HashMap<>();
+        }
+        Node parent = node;
+        node = node.children.computeIfAbsent(component, name -> new Node(parent, name));
+      }
+      int artifact = artifactCount++;
+      artifacts.add(source);
+      node.artifact = artifact;
+      node.isParentDirectory = false;
+      shortNames.put(node.name, node);
+      if (includeParentDirectory(source) && node.parent != null) {
+        node.parent.artifact = artifact;
+        node.parent.isParentDirectory = true;
+      }
+    }
+  }
+
+  /**
+   * A component of an import string. Refers to the artifact of the module with this import string,
+   * or (for packages) to a module whose parent directory is this package.
+   */
+  private static class Node {
+    @Nullable private final Node parent;
+    private final String name;
+    @Nullable private Map<String, Node> children;
+    private int artifact = -1;
+    private boolean isParentDirectory;
+
+    private Node(@Nullable Node parent, String name) {
+      this.parent = parent;
+      this.name = name;
+    }
+
+    private List<String> getComponents() {
+      List<String> components = new ArrayList<>();
+      for (Node node = this; node.parent != null; node = node.parent) {
+        components.add(node.name);
+      }
+      return Lists.reverse(components);
+    }
+
+    private QualifiedName getQualifiedName() {
+      return QualifiedName.fromComponents(getComponents());
+    }
   }
 }
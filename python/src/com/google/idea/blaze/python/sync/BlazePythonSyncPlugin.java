@@ -20,7 +20,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.PyIdeInfo.PythonVersion;
 import com.google.idea.blaze.base.ideinfo.PyIdeInfo;
-import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.model.BlazeVersionData;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
@@ -128,8 +127,7 @@ public class BlazePythonSyncPlugin implements BlazeSyncPlugin {
       ModuleEditor moduleEditor,
       Module workspaceModule,
       ModifiableRootModel workspaceModifiableModel) {
-    if (blazeProjectData.getTargetMap().targets().stream()
-        .allMatch(target -> target.getPyIdeInfo() == null)) {
+    if (PyIdeInfoVisitor.getPyIdeInfos(blazeProjectData.getTargetMap()).isEmpty()) {
       return;
     }
     updatePythonFacet(
@@ -345,11 +343,7 @@ public class BlazePythonSyncPlugin implements BlazeSyncPlugin {
     Set<PythonVersion> configuredVersions = new HashSet<>();
     List<PythonVersion> compatibleVersions = new ArrayList<>(DEFAULT_PYTHON_VERSIONS);
 
-    for (TargetIdeInfo ideInfo : blazeProjectData.getTargetMap().targets()) {
-      PyIdeInfo pyIdeInfo = ideInfo.getPyIdeInfo();
-      if (pyIdeInfo == null) {
-        continue;
-      }
+    for (PyIdeInfo pyIdeInfo : PyIdeInfoVisitor.getPyIdeInfos(blazeProjectData.getTargetMap())) {
       if (pyIdeInfo.getPythonVersion() != PythonVersion.UNKNOWN) {
         configuredVersions.add(pyIdeInfo.getPythonVersion());
       }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.python.sync;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.ideinfo.PyIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.LanguageClass;
+import com.google.idea.blaze.base.sync.TargetMapVisitor;
+import com.google.idea.blaze.base.sync.TargetMapVisitors;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import java.util.stream.Collector;
+
+/** Collects the {@link PyIdeInfo} of all targets, as part of the shared target map pass. */
+class PyIdeInfoVisitor implements TargetMapVisitor<ImmutableList<PyIdeInfo>> {
+  private static final PyIdeInfoVisitor INSTANCE = new PyIdeInfoVisitor();
+
+  static ImmutableList<PyIdeInfo> getPyIdeInfos(TargetMap targetMap) {
+    return TargetMapVisitors.getResult(targetMap, INSTANCE);
+  }
+
+  @Override
+  public String getName() {
+    return "PythonTargets";
+  }
+
+  @Override
+  public boolean isActive(WorkspaceLanguageSettings languageSettings) {
+    return languageSettings.isLanguageActive(LanguageClass.PYTHON);
+  }
+
+  @Override
+  public boolean visitsKind(Kind kind) {
+    // python info isn't limited to rules of the python language class
+    return true;
+  }
+
+  @Override
+  public Collector<TargetIdeInfo, ?, ImmutableList<PyIdeInfo>> collector() {
+    return Collector.of(
+        ImmutableList::<PyIdeInfo>builder,
+        (builder, target) -> {
+          if (target.getPyIdeInfo() != null) {
+            builder.add(target.getPyIdeInfo());
+          }
+        },
+        (left, right) -> left.addAll(right.build()),
+        ImmutableList.Builder::build);
+  }
+}
@@ -79,9 +79,7 @@ public class PythonPrefetchFileSource implements PrefetchFileSource, OutputsProv
         };
     ArtifactLocationDecoder decoder = blazeProjectData.getArtifactLocationDecoder();
     List<File> sourceFiles =
-        blazeProjectData.getTargetMap().targets().stream()
-            .filter(t -> t.getPyIdeInfo() != null)
-            .map(TargetIdeInfo::getPyIdeInfo)
+        PyIdeInfoVisitor.getPyIdeInfos(blazeProjectData.getTargetMap()).stream()
             .map(PyIdeInfo::getSources)
             .flatMap(Collection::stream)
             .filter(shouldPrefetch)
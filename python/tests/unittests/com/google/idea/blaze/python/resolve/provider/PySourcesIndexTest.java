@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.python.resolve.provider;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.PyIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.intellij.psi.util.QualifiedName;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PySourcesIndex}. */
+@RunWith(JUnit4.class)
+public class PySourcesIndexTest {
+
+  @Test
+  public void testImportCandidates() {
+    PySourcesIndex index =
+        build(
+            TargetMapBuilder.builder()
+                .addTarget(pyTarget("//foo:lib", "foo/bar/util.py", "foo/bar/__init__.py"))
+                .addTarget(pyTarget("//baz:lib", "baz/util.py"))
+                .build());
+
+    assertThat(index.getImportCandidates("util"))
+        .containsExactly(
+            QualifiedName.fromDottedString("foo.bar.util"),
+            QualifiedName.fromDottedString("baz.util"));
+    assertThat(index.getImportCandidates("bar"))
+        .containsExactly(QualifiedName.fromDottedString("foo.bar"));
+    assertThat(index.getImportCandidates("other")).isEmpty();
+    assertThat(index.getModuleCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testSourceListedBySeveralTargetsIsOneCandidate() {
+    PySourcesIndex index =
+        build(
+            TargetMapBuilder.builder()
+                .addTarget(pyTarget("//foo:lib", "foo/util.py"))
+                .addTarget(pyTarget("//foo:lib_test", "foo/util.py", "foo/util_test.py"))
+                .build());
+
+    assertThat(index.getImportCandidates("util"))
+        .containsExactly(QualifiedName.fromDottedString("foo.util"));
+    assertThat(index.getImportCandidates("util_test"))
+        .containsExactly(QualifiedName.fromDottedString("foo.util_test"));
+  }
+
+  @Test
+  public void testFilesAreNotResolvedWhileBuilding() {
+    List<ArtifactLocation> resolved = new ArrayList<>();
+    PySourcesIndex.build(
+        TargetMapBuilder.builder().addTarget(pyTarget("//foo:lib", "foo/util.py")).build(),
+        source -> AbstractPyImportResolverStrategy.fromRelativePath(source.getRelativePath()),
+        source -> {
+          resolved.add(source);
+          return new File(source.getRelativePath());
+        });
+    assertThat(resolved).isEmpty();
+  }
+
+  private static PySourcesIndex build(TargetMap targetMap) {
+    return PySourcesIndex.build(
+        targetMap,
+        source -> AbstractPyImportResolverStrategy.fromRelativePath(source.getRelativePath()),
+        source -> new File(source.getRelativePath()));
+  }
+
+  private static TargetIdeInfo.Builder pyTarget(String label, String... sources) {
+    ImmutableList.Builder<ArtifactLocation> artifacts = ImmutableList.builder();
+    for (String source : sources) {
+      artifacts.add(ArtifactLocation.builder().setRelativePath(source).setIsSource(true).build());
+    }
+    return TargetIdeInfo.builder()
+        .setLabel(label)
+        .setPyInfo(PyIdeInfo.builder().addSources(artifacts.build()));
+  }
+}
@@ -15,17 +15,22 @@
  */
 package com.google.idea.blaze.scala.sync.importer;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.LibraryKey;
+import com.google.idea.blaze.base.model.primitives.Kind;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.settings.Blaze;
+import com.google.idea.blaze.base.sync.TargetMapVisitor;
+import com.google.idea.blaze.base.sync.TargetMapVisitors;
 import com.google.idea.blaze.base.sync.projectview.ProjectViewTargetImportFilter;
+import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
 import com.google.idea.blaze.base.targetmaps.TransitiveDependencyMap;
 import com.google.idea.blaze.java.sync.importer.JavaSourceFilter;
 import com.google.idea.blaze.java.sync.model.BlazeJarLibrary;
@@ -33,6 +38,7 @@ import com.google.idea.blaze.scala.sync.model.BlazeScalaImportResult;
 import com.intellij.openapi.project.Project;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 /** Builds a BlazeWorkspace. */
@@ -59,9 +65,7 @@ public final class BlazeScalaWorkspaceImporter {
             Blaze.getBuildSystem(project), workspaceRoot, projectViewSet);
 
     List<TargetKey> scalaSourceTargets =
-        targetMap.targets().stream()
-            .filter(target -> target.getJavaIdeInfo() != null)
-            .filter(target -> target.getKind().getLanguageClass() == LanguageClass.SCALA)
+        TargetMapVisitors.getResult(targetMap, ScalaTargetsVisitor.INSTANCE).stream()
             .filter(importFilter::isSourceTarget)
             .map(TargetIdeInfo::getKey)
             .collect(Collectors.toList());
@@ -90,4 +94,37 @@ public final class BlazeScalaWorkspaceImporter {
 
     return new BlazeScalaImportResult(ImmutableMap.copyOf(libraries));
   }
+
+  /** Collects the scala targets with java info, as part of the shared target map pass. */
+  static class ScalaTargetsVisitor implements TargetMapVisitor<ImmutableList<TargetIdeInfo>> {
+    private static final ScalaTargetsVisitor INSTANCE = new ScalaTargetsVisitor();
+
+    @Override
+    public String getName() {
+      return "ScalaTargets";
+    }
+
+    @Override
+    public boolean isActive(WorkspaceLanguageSettings languageSettings) {
+      return languageSettings.isLanguageActive(LanguageClass.SCALA);
+    }
+
+    @Override
+    public boolean visitsKind(Kind kind) {
+      return kind.getLanguageClass() == LanguageClass.SCALA;
+    }
+
+    @Override
+    public Collector<TargetIdeInfo, ?, ImmutableList<TargetIdeInfo>> collector() {
+      return Collector.of(
+          ImmutableList::<TargetIdeInfo>builder,
+          (builder, target) -> {
+            if (target.getJavaIdeInfo() != null) {
+              builder.add(target);
+            }
+          },
+          (left, right) -> left.addAll(right.build()),
+          ImmutableList.Builder::build);
+    }
+  }
 }